@@ -3,13 +3,14 @@ package com.stackoverflow;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableJpaAuditing
+@EnableScheduling
 public class StackOverflowCloneApplication {
 
     public static void main(String[] args) {
         SpringApplication.run(StackOverflowCloneApplication.class, args);
     }
 }
-
@@ -6,6 +6,7 @@ import com.stackoverflow.entity.User;
 import com.stackoverflow.repository.QuestionRepository;
 import com.stackoverflow.repository.TagRepository;
 import com.stackoverflow.repository.UserRepository;
+import com.stackoverflow.service.common.CounterReconciliationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -33,6 +34,9 @@ public class DataInitializer implements CommandLineRunner {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private CounterReconciliationService counterReconciliationService;
+
     @Override
     public void run(String... args) throws Exception {
         // Chỉ khởi tạo nếu database rỗng
@@ -201,11 +205,8 @@ public class DataInitializer implements CommandLineRunner {
     }
 
     private void updateTagCounts() {
-        for (Tag tag : tagRepository.findAll()) {
-            long count = questionRepository.count();
-            tag.setQuestionCount((int) count);
-            tagRepository.save(tag);
-        }
+        // Câu hỏi mẫu được lưu thẳng qua repository, đếm lại bộ đếm từ dữ liệu thật
+        counterReconciliationService.reconcile();
     }
 }
 
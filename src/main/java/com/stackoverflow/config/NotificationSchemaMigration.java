@@ -0,0 +1,43 @@
+package com.stackoverflow.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Notification Schema Migration - Nới notifications.user_id thành NULL cho thông báo chung
+ *
+ * Schema cũ tạo cột NOT NULL và ddl-auto=update không nới ràng buộc. Chạy sau khi Hibernate cập nhật schema
+ * (DependsOn entityManagerFactory) và trước khi ứng dụng nhận request; lỗi làm ứng dụng dừng khởi động
+ * thay vì chạy tiếp với schema không ghi được thông báo chung. Idempotent: không làm gì nếu cột đã nullable.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class NotificationSchemaMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationSchemaMigration.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void migrate() {
+        List<String> nullable = jdbcTemplate.queryForList(
+                "SELECT IS_NULLABLE FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'notifications' AND COLUMN_NAME = 'user_id'",
+                String.class);
+        if (!nullable.isEmpty() && "NO".equalsIgnoreCase(nullable.get(0))) {
+            try {
+                jdbcTemplate.execute("ALTER TABLE notifications ALTER COLUMN user_id BIGINT NULL");
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Could not make notifications.user_id nullable", e);
+            }
+            log.info("notifications.user_id is now nullable for global notifications");
+        }
+    }
+}
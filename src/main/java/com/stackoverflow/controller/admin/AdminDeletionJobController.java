@@ -0,0 +1,40 @@
+package com.stackoverflow.controller.admin;
+
+import com.stackoverflow.entity.DeletionJob;
+import com.stackoverflow.service.common.DeletionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Admin Deletion Job Controller - Trạng thái và tiến độ các tiến trình xóa chạy nền (JSON)
+ */
+@RestController
+@RequestMapping("/admin/deletions")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminDeletionJobController {
+
+    @Autowired
+    private DeletionService deletionService;
+
+    /**
+     * Các tiến trình xóa gần đây
+     */
+    @GetMapping
+    public List<DeletionJob> recentJobs() {
+        return deletionService.getRecentJobs();
+    }
+
+    /**
+     * Trạng thái một tiến trình xóa
+     */
+    @GetMapping("/{id}")
+    public DeletionJob job(@PathVariable Long id) {
+        return deletionService.getJob(id);
+    }
+}
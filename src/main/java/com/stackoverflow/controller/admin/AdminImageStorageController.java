@@ -0,0 +1,57 @@
+package com.stackoverflow.controller.admin;
+
+import com.stackoverflow.service.common.ImageStorage;
+import com.stackoverflow.service.common.ImageStorageMigrationService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Admin Image Storage Controller - Trạng thái nơi lưu ảnh và chuyển file cũ sang pack (JSON)
+ */
+@RestController
+@RequestMapping("/admin/image-storage")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminImageStorageController {
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @Autowired
+    private ObjectProvider<ImageStorageMigrationService> migrationService;
+
+    @GetMapping
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("storage", imageStorage.getStats());
+        ImageStorageMigrationService migration = migrationService.getIfAvailable();
+        if (migration != null) {
+            status.put("migration", migration.getStatus());
+        }
+        return status;
+    }
+
+    /**
+     * Bắt đầu chuyển các file ảnh hiện có vào pack (chỉ khi images.storage.type=pack)
+     */
+    @PostMapping("/migrate")
+    public ResponseEntity<?> migrate() {
+        ImageStorageMigrationService migration = migrationService.getIfAvailable();
+        if (migration == null) {
+            return ResponseEntity.badRequest().body("Pack storage is not enabled (images.storage.type=pack)");
+        }
+        if (!migration.start()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Migration is already running");
+        }
+        return ResponseEntity.accepted().body(migration.getStatus());
+    }
+}
@@ -0,0 +1,115 @@
+package com.stackoverflow.controller.admin;
+
+import com.stackoverflow.service.common.CounterReconciliationService;
+import com.stackoverflow.service.common.GroupFanoutService;
+import com.stackoverflow.service.common.HotImageCache;
+import com.stackoverflow.service.common.HotQuestionService;
+import com.stackoverflow.service.common.ImageBlobStore;
+import com.stackoverflow.service.common.ImageStorage;
+import com.stackoverflow.service.common.ImageVariantService;
+import com.stackoverflow.service.common.PresenceService;
+import com.stackoverflow.service.common.QuestionLiveService;
+import com.stackoverflow.service.common.QuestionFragmentCache;
+import com.stackoverflow.service.common.QuestionSearchIndex;
+import com.stackoverflow.service.common.SimilarQuestionService;
+import com.stackoverflow.service.common.StompOutboundGate;
+import com.stackoverflow.service.common.TagAutocompleteService;
+import com.stackoverflow.service.common.TagDictionary;
+import com.stackoverflow.service.common.UnreadCounterService;
+import com.stackoverflow.service.common.VoteService;
+import com.stackoverflow.service.common.ViewCountService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Admin Metrics Controller - Số liệu vận hành của các bộ đệm/tác vụ nền (JSON)
+ */
+@RestController
+@RequestMapping("/admin/metrics")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminMetricsController {
+
+    @Autowired
+    private ViewCountService viewCountService;
+
+    @Autowired
+    private QuestionFragmentCache questionFragmentCache;
+
+    @Autowired
+    private HotQuestionService hotQuestionService;
+
+    @Autowired
+    private QuestionSearchIndex questionSearchIndex;
+
+    @Autowired
+    private TagAutocompleteService tagAutocompleteService;
+
+    @Autowired
+    private TagDictionary tagDictionary;
+
+    @Autowired
+    private SimilarQuestionService similarQuestionService;
+
+    @Autowired
+    private VoteService voteService;
+
+    @Autowired
+    private CounterReconciliationService counterReconciliationService;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private GroupFanoutService groupFanoutService;
+
+    @Autowired
+    private StompOutboundGate stompOutboundGate;
+
+    @Autowired
+    private QuestionLiveService questionLiveService;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private HotImageCache hotImageCache;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private ImageBlobStore imageBlobStore;
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @GetMapping
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("questionViews", viewCountService.getStats());
+        metrics.put("questionFragments", questionFragmentCache.getStats());
+        metrics.put("hotQuestions", hotQuestionService.getStats());
+        metrics.put("searchIndex", questionSearchIndex.getStats());
+        metrics.put("tagAutocomplete", tagAutocompleteService.getStats());
+        metrics.put("tagDictionary", tagDictionary.getStats());
+        metrics.put("similarQuestions", similarQuestionService.getStats());
+        metrics.put("votes", voteService.getStats());
+        metrics.put("counterReconciliation", counterReconciliationService.getStats());
+        metrics.put("unreadCounters", unreadCounterService.getStats());
+        metrics.put("groupFanout", groupFanoutService.getStats());
+        metrics.put("stomp", stompOutboundGate.getStats());
+        metrics.put("liveCounts", questionLiveService.getStats());
+        metrics.put("presence", presenceService.getStats());
+        metrics.put("hotImages", hotImageCache.getStats());
+        metrics.put("imageVariants", imageVariantService.getStats());
+        metrics.put("imageStorage", imageBlobStore.getStats());
+        metrics.put("imageStore", imageStorage.getStats());
+        return metrics;
+    }
+}
@@ -1,6 +1,8 @@
 package com.stackoverflow.controller.admin;
 
+import com.stackoverflow.entity.DeletionJob;
 import com.stackoverflow.entity.Question;
+import com.stackoverflow.service.common.DeletionService;
 import com.stackoverflow.service.common.QuestionService;
 import com.stackoverflow.service.common.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,6 +11,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -28,6 +31,9 @@ public class AdminQuestionController {
     @Autowired
     private QuestionService questionService;
 
+    @Autowired
+    private DeletionService deletionService;
+
     @Autowired
     private UserService userService;
 
@@ -225,11 +231,12 @@ public class AdminQuestionController {
      * Xóa bài viết
      */
     @PostMapping("/{id}/delete")
-    public String deleteQuestion(@PathVariable Long id, RedirectAttributes redirectAttributes) {
+    public String deleteQuestion(@PathVariable Long id, Authentication authentication,
+                                 RedirectAttributes redirectAttributes) {
         try {
-            questionService.deleteQuestion(id);
+            DeletionJob job = deletionService.requestQuestionDeletion(id, authentication.getName());
             redirectAttributes.addFlashAttribute("successMessage", 
-                "Question deleted successfully!");
+                "Question is being deleted in the background (job #" + job.getId() + ")");
             return "redirect:/admin/questions";
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("errorMessage", 
@@ -1,6 +1,8 @@
 package com.stackoverflow.controller.admin;
 
 import com.stackoverflow.entity.Tag;
+import com.stackoverflow.entity.TagMergeJob;
+import com.stackoverflow.service.common.TagMergeService;
 import com.stackoverflow.service.common.TagService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -13,6 +15,8 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.util.List;
+
 /**
  * Admin Tag Controller - Quản lý thẻ
  */
@@ -24,6 +28,9 @@ public class AdminTagController {
     @Autowired
     private TagService tagService;
 
+    @Autowired
+    private TagMergeService tagMergeService;
+
     /**
      * Danh sách thẻ
      */
@@ -57,6 +64,7 @@ public class AdminTagController {
         model.addAttribute("sortBy", sortBy);
         model.addAttribute("sortDir", sortDir);
         model.addAttribute("reverseSortDir", sortDir.equals("asc") ? "desc" : "asc");
+        model.addAttribute("mergeJobs", tagMergeService.getRecentJobs());
         model.addAttribute("pageTitle", "Quản Lý Thẻ - Quản Trị");
         
         return "admin/tags/list";
@@ -145,9 +153,35 @@ public class AdminTagController {
             RedirectAttributes redirectAttributes) {
         
         try {
-            tagService.mergeTags(sourceTagId, targetTagId);
+            TagMergeJob job = tagMergeService.startMerge(sourceTagId, targetTagId);
+            redirectAttributes.addFlashAttribute("successMessage", 
+                "Đã bắt đầu gộp thẻ '" + job.getSourceTagName() + "' vào '" + job.getTargetTagName() + "'. Theo dõi tiến trình bên dưới.");
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("errorMessage", 
+                "Lỗi: " + e.getMessage());
+        }
+        
+        return "redirect:/admin/tags";
+    }
+
+    /**
+     * Tiến trình gộp thẻ gần đây (JSON, trang danh sách thẻ gọi định kỳ)
+     */
+    @GetMapping("/merges")
+    @ResponseBody
+    public List<TagMergeJob> mergeJobs() {
+        return tagMergeService.getRecentJobs();
+    }
+
+    /**
+     * Chạy tiếp tiến trình gộp bị lỗi
+     */
+    @PostMapping("/merges/{id}/resume")
+    public String resumeMerge(@PathVariable Long id, RedirectAttributes redirectAttributes) {
+        try {
+            tagMergeService.resume(id);
             redirectAttributes.addFlashAttribute("successMessage", 
-                "Gộp thẻ thành công!");
+                "Đang chạy tiếp tiến trình gộp thẻ!");
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("errorMessage", 
                 "Lỗi: " + e.getMessage());
@@ -1,13 +1,16 @@
 package com.stackoverflow.controller.admin;
 
+import com.stackoverflow.entity.DeletionJob;
 import com.stackoverflow.entity.User;
 import com.stackoverflow.service.common.AdminService;
+import com.stackoverflow.service.common.DeletionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -26,6 +29,9 @@ public class AdminUserController {
     @Autowired
     private AdminService adminService;
 
+    @Autowired
+    private DeletionService deletionService;
+
     /**
      * Danh sách người dùng
      */
@@ -252,11 +258,12 @@ public class AdminUserController {
      * Xóa người dùng
      */
     @PostMapping("/{id}/delete")
-    public String deleteUser(@PathVariable Long id, RedirectAttributes redirectAttributes) {
+    public String deleteUser(@PathVariable Long id, Authentication authentication,
+                             RedirectAttributes redirectAttributes) {
         try {
-            adminService.deleteUser(id);
+            DeletionJob job = deletionService.requestUserDeletion(id, authentication.getName());
             redirectAttributes.addFlashAttribute("successMessage", 
-                "Đã xóa người dùng!");
+                "Đang xóa người dùng '" + job.getTargetLabel() + "' ở chế độ nền (tiến trình #" + job.getId() + ")");
             return "redirect:/admin/users";
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("errorMessage", 
@@ -1,42 +1,78 @@
 package com.stackoverflow.controller.common;
 
+import com.stackoverflow.dto.FeedCursor;
+import com.stackoverflow.dto.FeedPagination;
+import com.stackoverflow.dto.SearchHits;
 import com.stackoverflow.entity.Question;
+import com.stackoverflow.service.common.ApproximateCountService;
+import com.stackoverflow.service.common.HotQuestionService;
+import com.stackoverflow.service.common.QuestionSearchIndex;
 import com.stackoverflow.service.common.QuestionService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Controller;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.Optional;
+
 @Controller
 public class HomeController {
 
     @Autowired
     private QuestionService questionService;
 
+    @Autowired
+    private ApproximateCountService approximateCountService;
+
+    @Autowired
+    private HotQuestionService hotQuestionService;
+
+    @Autowired
+    private QuestionSearchIndex questionSearchIndex;
+
+    @Value("${feed.max-offset-pages:5}")
+    private int maxOffsetPages;
+
     @GetMapping({"/", "/home"})
     public String home(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "15") int size,
             @RequestParam(defaultValue = "newest") String sort,
+            @RequestParam(required = false) String cursor,
             Model model) {
         
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Question> questions;
+        long totalQuestions = approximateCountService.getApprovedQuestionCount();
+        model.addAttribute("totalQuestions", totalQuestions);
         
-        if ("votes".equals(sort)) {
-            questions = questionService.getQuestionsByVotes(pageable);
-        } else {
-            questions = questionService.getAllQuestions(pageable);
+        if ("hot".equals(sort)) {
+            // Xếp hạng nằm trong bộ nhớ: trang nào cũng chỉ là 1 truy vấn IN theo id, không cần con trỏ
+            page = Math.max(page, 0);
+            Slice<Question> questions = new SliceImpl<>(hotQuestionService.getHotQuestions(page, size),
+                    PageRequest.of(page, size), (long) (page + 1) * size < hotQuestionService.size());
+            model.addAttribute("questions", questions);
+            model.addAttribute("pagination", FeedPagination.of(questions, page, size, maxOffsetPages,
+                    hotQuestionService.size(), FeedCursor::byCreatedAt));
+            model.addAttribute("sort", sort);
+            model.addAttribute("pageTitle", "Hot Questions - Stack Overflow Clone");
+            return "home";
         }
         
+        boolean byVotes = "votes".equals(sort);
+        FeedCursor after = FeedCursor.decode(cursor, byVotes ? FeedCursor.SORT_VOTES : FeedCursor.SORT_CREATED).orElse(null);
+        page = FeedPagination.clampPage(page, after, maxOffsetPages);
+        
+        Slice<Question> questions = byVotes
+                ? questionService.getTopVotedQuestions(after, page, size)
+                : questionService.getNewestQuestions(after, page, size);
+        
         model.addAttribute("questions", questions);
-        model.addAttribute("currentPage", page);
-        model.addAttribute("totalPages", questions.getTotalPages());
+        model.addAttribute("pagination", FeedPagination.of(questions, page, size, maxOffsetPages, totalQuestions,
+                byVotes ? FeedCursor::byVotes : FeedCursor::byCreatedAt));
         model.addAttribute("sort", sort);
         model.addAttribute("pageTitle", "Top Questions - Stack Overflow Clone");
         
@@ -48,18 +84,37 @@ public class HomeController {
             @RequestParam String q,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "15") int size,
+            @RequestParam(required = false) String cursor,
             Model model) {
         
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Question> questions = questionService.searchQuestions(q, pageable);
+        model.addAttribute("searchQuery", q);
+        
+        // Chỉ mục đảo ngược (BM25); phân trang trong bộ nhớ nên không cần con trỏ
+        Optional<SearchHits> hits = questionSearchIndex.search(q, Math.max(page, 0), size);
+        if (hits.isPresent()) {
+            page = Math.max(page, 0);
+            int totalHits = hits.get().getTotalHits();
+            Slice<Question> questions = new SliceImpl<>(questionService.getQuestionsInOrder(hits.get().getQuestionIds()),
+                    PageRequest.of(page, size), (long) (page + 1) * size < totalHits);
+            model.addAttribute("questions", questions);
+            model.addAttribute("pagination", FeedPagination.of(questions, page, size, maxOffsetPages, totalHits,
+                    FeedCursor::byCreatedAt));
+            model.addAttribute("totalHits", totalHits);
+            model.addAttribute("pageTitle", "Search Results - Stack Overflow Clone");
+            return "search";
+        }
+        
+        // Fallback: chỉ mục chưa sẵn sàng hoặc truy vấn không có từ khóa hợp lệ
+        FeedCursor after = FeedCursor.decode(cursor, FeedCursor.SORT_CREATED).orElse(null);
+        page = FeedPagination.clampPage(page, after, maxOffsetPages);
+        
+        Slice<Question> questions = questionService.searchNewestQuestions(q, after, page, size);
         
         model.addAttribute("questions", questions);
-        model.addAttribute("currentPage", page);
-        model.addAttribute("totalPages", questions.getTotalPages());
-        model.addAttribute("searchQuery", q);
+        model.addAttribute("pagination", FeedPagination.of(questions, page, size, maxOffsetPages, -1,
+                FeedCursor::byCreatedAt));
         model.addAttribute("pageTitle", "Search Results - Stack Overflow Clone");
         
         return "search";
     }
 }
-
@@ -1,17 +1,23 @@
 package com.stackoverflow.controller.common;
 
+import com.stackoverflow.dto.StoredImage;
 import com.stackoverflow.entity.ImageAttachment;
 import com.stackoverflow.entity.User;
 import com.stackoverflow.service.common.ImageService;
+import com.stackoverflow.service.common.ImageVariantService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/images")
@@ -20,6 +26,9 @@ public class ImageController {
     @Autowired
     private ImageService imageService;
 
+    @Value("${images.cache-max-age-days:365}")
+    private long cacheMaxAgeDays;
+
     @PostMapping("/upload")
     public ResponseEntity<?> uploadImage(
             @RequestParam("file") MultipartFile file,
@@ -57,18 +66,37 @@ public class ImageController {
         }
     }
 
+    /**
+     * Stream ảnh từ đĩa; Range trả 206, If-None-Match/If-Modified-Since trả 304 chỉ từ siêu dữ liệu
+     *
+     * @param size original (mặc định), medium hoặc thumbnail
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getImage(@PathVariable Long id) {
-        try {
-            ImageAttachment attachment = imageService.findById(id)
-                .orElseThrow(() -> new RuntimeException("Image not found"));
-            
-            return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(attachment.getContentType()))
-                .body(imageService.getImageData(attachment));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                .body("Image not found: " + e.getMessage());
+    public ResponseEntity<?> getImage(@PathVariable Long id,
+                                      @RequestParam(value = "size", defaultValue = ImageVariantService.ORIGINAL) String size,
+                                      WebRequest webRequest) {
+        if (!ImageVariantService.SIZES.contains(size)) {
+            return ResponseEntity.badRequest().body("Unknown image size: " + size);
+        }
+        StoredImage image = imageService.getStoredImage(id, size).orElse(null);
+        if (image == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Image not found");
+        }
+        // Biến thể chưa tạo xong: trả tạm ảnh gốc, trình duyệt phải hỏi lại để nhận biến thể sau này
+        CacheControl cacheControl = image.isStable()
+                ? CacheControl.maxAge(cacheMaxAgeDays, TimeUnit.DAYS).cachePublic().immutable()
+                : CacheControl.noCache();
+        // Request có điều kiện khớp: trả 304 ngay, không mở file và không chạm cache ảnh nóng
+        if (webRequest.checkNotModified(image.getEtag(), image.getLastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
         }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(image.getEtag())
+                .lastModified(image.getLastModified())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.parseMediaType(image.getContentType()));
+        return imageService.openImage(image)
+                .<ResponseEntity<?>>map(response::body)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body("Image not found"));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package com.stackoverflow.controller.common;
+
+import com.stackoverflow.service.common.UnreadCounterService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ModelAttribute;
+
+/**
+ * Thuộc tính dùng chung của layout (badge thông báo/tin nhắn ở header), đọc từ cache nên không tốn truy vấn
+ */
+@ControllerAdvice
+public class LayoutModelAdvice {
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @ModelAttribute
+    public void addLayoutAttributes(Authentication authentication, Model model) {
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            model.addAttribute("unreadNotifications", 0L);
+            model.addAttribute("unreadMessages", 0L);
+            return;
+        }
+        String username = authentication.getName();
+        model.addAttribute("unreadNotifications", unreadCounterService.getUnreadNotifications(username));
+        model.addAttribute("unreadMessages", unreadCounterService.getUnreadMessages(username));
+    }
+}
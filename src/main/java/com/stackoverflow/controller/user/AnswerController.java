@@ -8,6 +8,7 @@ import com.stackoverflow.service.common.AnswerService;
 import com.stackoverflow.service.common.QuestionService;
 import com.stackoverflow.service.common.UserService;
 import com.stackoverflow.service.common.ImageService;
+import com.stackoverflow.service.common.VoteService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
@@ -35,6 +36,9 @@ public class AnswerController {
     @Autowired
     private ImageService imageService;
 
+    @Autowired
+    private VoteService voteService;
+
     @PostMapping("/question/{questionId}")
     public String postAnswer(
             @PathVariable Long questionId,
@@ -162,27 +166,19 @@ public class AnswerController {
     @PostMapping("/{id}/upvote")
     @ResponseBody
     public String upvoteAnswer(@PathVariable Long id, Authentication authentication) {
-        Answer answer = answerService.findById(id)
-                .orElseThrow(() -> new RuntimeException("Answer not found"));
-        
-        User user = userService.findByUsername(authentication.getName())
+        Long userId = userService.findIdByUsername(authentication.getName())
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
-        answerService.upvoteAnswer(answer, user);
-        return String.valueOf(answer.getVotes());
+        return String.valueOf(voteService.upvoteAnswer(id, userId));
     }
 
     @PostMapping("/{id}/downvote")
     @ResponseBody
     public String downvoteAnswer(@PathVariable Long id, Authentication authentication) {
-        Answer answer = answerService.findById(id)
-                .orElseThrow(() -> new RuntimeException("Answer not found"));
-        
-        User user = userService.findByUsername(authentication.getName())
+        Long userId = userService.findIdByUsername(authentication.getName())
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
-        answerService.downvoteAnswer(answer, user);
-        return String.valueOf(answer.getVotes());
+        return String.valueOf(voteService.retractAnswerVote(id, userId));
     }
 }
 
@@ -4,6 +4,7 @@ import com.stackoverflow.entity.UserGroup;
 import com.stackoverflow.entity.User;
 import com.stackoverflow.service.common.GroupService;
 import com.stackoverflow.service.common.UserService;
+import com.stackoverflow.service.common.WebSocketService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
@@ -13,6 +14,7 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/groups")
@@ -24,6 +26,9 @@ public class GroupController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private WebSocketService webSocketService;
+
     @PostMapping
     public ResponseEntity<?> createGroup(
             @RequestBody UserGroup group,
@@ -79,6 +84,35 @@ public class GroupController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Người tạo nhóm gửi thông báo cho cả nhóm; fan-out cho từng thành viên chạy ở nền
+     */
+    @PostMapping("/{groupId}/notifications")
+    public ResponseEntity<?> notifyGroup(
+            @PathVariable Long groupId,
+            @RequestBody Map<String, String> body,
+            @AuthenticationPrincipal User currentUser) {
+        UserGroup group = groupService.findById(groupId)
+            .orElseThrow(() -> new RuntimeException("Group not found"));
+
+        if (!currentUser.equals(group.getCreator())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body("Only group creator can notify the group");
+        }
+
+        String message = body.get("message");
+        if (message == null || message.isBlank()) {
+            return ResponseEntity.badRequest().body("Message is required");
+        }
+        String type = body.getOrDefault("type", "GROUP");
+
+        if (!webSocketService.notifyGroup(group, message, type)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body("Group notification queue is full, try again later");
+        }
+        return ResponseEntity.accepted().build();
+    }
+
     @MessageMapping("/group.activity")
     @SendTo("/topic/group.updates")
     public String sendGroupActivity(String activity) {
@@ -0,0 +1,67 @@
+package com.stackoverflow.controller.user;
+
+import com.stackoverflow.dto.InboxPage;
+import com.stackoverflow.entity.User;
+import com.stackoverflow.service.common.NotificationService;
+import com.stackoverflow.service.common.UnreadCounterService;
+import com.stackoverflow.service.common.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Notification Controller - Hộp thư thông báo (JSON, phân trang bằng con trỏ)
+ */
+@RestController
+@RequestMapping("/api/notifications")
+public class NotificationController {
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private UserService userService;
+
+    /**
+     * Một trang hộp thư; trang sau lấy bằng ?cursor=nextCursor
+     */
+    @GetMapping
+    public InboxPage inbox(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return notificationService.getInbox(currentUser(userDetails), cursor, size);
+    }
+
+    /**
+     * Số chưa đọc cho badge ở header (từ cache)
+     */
+    @GetMapping("/unread-count")
+    public Map<String, Long> unreadCount(@AuthenticationPrincipal UserDetails userDetails) {
+        String username = userDetails.getUsername();
+        return Map.of(
+                "notifications", unreadCounterService.getUnreadNotifications(username),
+                "messages", unreadCounterService.getUnreadMessages(username));
+    }
+
+    @PostMapping("/{id}/read")
+    public void markAsRead(@PathVariable Long id, @AuthenticationPrincipal UserDetails userDetails) {
+        notificationService.markAsRead(id, currentUser(userDetails));
+    }
+
+    @PostMapping("/read-all")
+    public Map<String, Integer> markAllAsRead(@AuthenticationPrincipal UserDetails userDetails) {
+        return Map.of("marked", notificationService.markAllAsRead(currentUser(userDetails)));
+    }
+
+    private User currentUser(UserDetails userDetails) {
+        return userService.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+    }
+}
@@ -0,0 +1,33 @@
+package com.stackoverflow.controller.user;
+
+import com.stackoverflow.service.common.PresenceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Presence Controller - Tra trạng thái online theo lô (ví dụ danh sách thành viên nhóm)
+ */
+@RestController
+@RequestMapping("/api/presence")
+public class PresenceController {
+
+    private static final int MAX_IDS = 500;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @GetMapping
+    public Map<String, Set<Long>> online(@RequestParam List<Long> userIds) {
+        if (userIds.size() > MAX_IDS) {
+            throw new RuntimeException("Too many user ids (max " + MAX_IDS + ")");
+        }
+        return Map.of("online", presenceService.findOnline(userIds));
+    }
+}
@@ -1,6 +1,7 @@
 package com.stackoverflow.controller.user;
 
 import com.stackoverflow.entity.User;
+import com.stackoverflow.service.common.PresenceService;
 import com.stackoverflow.service.common.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -24,6 +25,9 @@ public class ProfileController {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private PresenceService presenceService;
+
     /**
      * Xem profile của mình
      */
@@ -152,6 +156,7 @@ public class ProfileController {
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
         model.addAttribute("user", user);
+        model.addAttribute("online", presenceService.isOnline(user.getId()));
         model.addAttribute("pageTitle", username + "'s Profile");
         
         return "profile/public-view";
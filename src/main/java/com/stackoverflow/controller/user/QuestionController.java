@@ -1,5 +1,8 @@
 package com.stackoverflow.controller.user;
 
+import com.stackoverflow.dto.AnswerSectionFragment;
+import com.stackoverflow.dto.QuestionPageView;
+import com.stackoverflow.dto.SimilarQuestion;
 import com.stackoverflow.entity.*;
 import com.stackoverflow.service.common.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,6 +14,8 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.security.core.Authentication;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import java.util.Set;
 import java.util.List;
@@ -25,10 +30,10 @@ public class QuestionController {
     private QuestionService questionService;
 
     @Autowired
-    private AnswerService answerService;
+    private QuestionPageService questionPageService;
 
     @Autowired
-    private CommentService commentService;
+    private QuestionFragmentCache questionFragmentCache;
 
     @Autowired
     private UserService userService;
@@ -45,10 +50,35 @@ public class QuestionController {
     @Autowired
     private TagService tagService;
 
+    @Autowired
+    private SimilarQuestionService similarQuestionService;
+
+    @Autowired
+    private VoteService voteService;
+
+    @Autowired
+    private DeletionService deletionService;
+
     @GetMapping("/{id}")
-    public String viewQuestion(@PathVariable Long id, Model model, Authentication authentication) {
-        Question question = questionService.findById(id)
-                .orElseThrow(() -> new RuntimeException("Question not found"));
+    public String viewQuestion(@PathVariable Long id, Model model, Authentication authentication,
+                               HttpServletRequest request, HttpServletResponse response) {
+        // Phần câu trả lời/bình luận lấy từ cache nếu có, khi đó chỉ cần nạp phần đầu trang.
+        // Phiên bản được đọc trước khi nạp dữ liệu để HTML render ra không mới hơn phiên bản gắn kèm
+        long fragmentVersion = questionFragmentCache.currentVersion(id);
+        AnswerSectionFragment answerSection = questionFragmentCache.get(id, fragmentVersion);
+        QuestionPageView page = null;
+        Question question;
+        List<ImageAttachment> questionImages;
+        if (answerSection != null) {
+            question = questionPageService.loadQuestion(id)
+                    .orElseThrow(() -> new RuntimeException("Question not found"));
+            questionImages = questionPageService.loadQuestionImages(id);
+        } else {
+            page = questionPageService.loadPage(id)
+                    .orElseThrow(() -> new RuntimeException("Question not found"));
+            question = page.getQuestion();
+            questionImages = page.getQuestionImages();
+        }
         
         // Check if question is approved or user has permission to view
         if (!question.getIsApproved()) {
@@ -67,32 +97,56 @@ public class QuestionController {
             }
         }
         
+        if (answerSection == null) {
+            answerSection = questionFragmentCache.render(page, fragmentVersion, request, response);
+        }
+        
         // Increment views
         questionService.incrementViews(question);
         
-        List<Answer> answers = answerService.getAnswersByQuestion(question);
-        
-        // Debug: Log images for each answer
-        System.out.println("=== Question ID: " + id + " ===");
-        System.out.println("Total Answers: " + answers.size());
-        for (Answer answer : answers) {
-            System.out.println("Answer ID: " + answer.getId() + " - Images count: " + 
-                (answer.getImages() != null ? answer.getImages().size() : "NULL"));
-            if (answer.getImages() != null && !answer.getImages().isEmpty()) {
-                answer.getImages().forEach(img -> 
-                    System.out.println("  - Image ID: " + img.getId() + ", Path: " + img.getPath())
-                );
+        // Trạng thái vote của người xem: 1 lần kiểm tra cho câu hỏi + 1 lần cho toàn bộ câu trả lời
+        List<Long> answerIds = answerSection.getAnswers().stream()
+                .map(AnswerSectionFragment.RenderedAnswer::getId)
+                .collect(Collectors.toList());
+        boolean votedQuestion = false;
+        Set<Long> votedAnswerIds = Set.of();
+        if (authentication != null) {
+            Long userId = userService.findIdByUsername(authentication.getName()).orElse(null);
+            if (userId != null) {
+                votedQuestion = voteService.hasVotedQuestion(userId, id);
+                votedAnswerIds = voteService.getVotedAnswerIds(userId, answerIds);
             }
         }
+        model.addAttribute("votedQuestion", votedQuestion);
+        model.addAttribute("votedAnswerIds", votedAnswerIds);
+        // Số vote = giá trị đã lưu + delta chưa flush
+        model.addAttribute("questionVotes", voteService.getQuestionVotes(id, question.getVotes()));
+        model.addAttribute("pendingAnswerVotes", voteService.getPendingAnswerVotes(answerIds));
+        // Điểm uy tín không nằm trong phần được cache: đọc mới mỗi lần
+        model.addAttribute("authorReputations", userService.getReputations(answerSection.getAnswers().stream()
+                .map(AnswerSectionFragment.RenderedAnswer::getAuthorId)
+                .collect(Collectors.toSet())));
         
         model.addAttribute("question", question);
-        model.addAttribute("answers", answers);
-        model.addAttribute("questionComments", commentService.getCommentsByQuestion(question));
+        model.addAttribute("questionImages", questionImages);
+        model.addAttribute("answerSection", answerSection);
+        model.addAttribute("viewCount", questionService.getViewCount(question));
         model.addAttribute("pageTitle", question.getTitle() + " - Stack Overflow Clone");
         
         return "question/view";
     }
 
+    /**
+     * Câu hỏi có thể trùng lặp với tiêu đề đang gõ (JSON, dùng cho form đặt câu hỏi)
+     */
+    @GetMapping("/similar")
+    @ResponseBody
+    public List<SimilarQuestion> similarQuestions(
+            @RequestParam String title,
+            @RequestParam(defaultValue = "5") int limit) {
+        return similarQuestionService.findSimilar(title, Math.min(limit, 20));
+    }
+
     @GetMapping("/ask")
     public String askQuestionForm(Model model) {
         model.addAttribute("question", new Question());
@@ -216,34 +270,26 @@ public class QuestionController {
             return "redirect:/questions/" + id;
         }
         
-        questionService.deleteQuestion(id);
+        deletionService.requestQuestionDeletion(id, currentUser.getUsername());
         return "redirect:/";
     }
 
     @PostMapping("/{id}/upvote")
     @ResponseBody
     public String upvoteQuestion(@PathVariable Long id, Authentication authentication) {
-        Question question = questionService.findById(id)
-                .orElseThrow(() -> new RuntimeException("Question not found"));
-        
-        User user = userService.findByUsername(authentication.getName())
+        Long userId = userService.findIdByUsername(authentication.getName())
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
-        questionService.upvoteQuestion(question, user);
-        return String.valueOf(question.getVotes());
+        return String.valueOf(voteService.upvoteQuestion(id, userId));
     }
 
     @PostMapping("/{id}/downvote")
     @ResponseBody
     public String downvoteQuestion(@PathVariable Long id, Authentication authentication) {
-        Question question = questionService.findById(id)
-                .orElseThrow(() -> new RuntimeException("Question not found"));
-        
-        User user = userService.findByUsername(authentication.getName())
+        Long userId = userService.findIdByUsername(authentication.getName())
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
-        questionService.downvoteQuestion(question, user);
-        return String.valueOf(question.getVotes());
+        return String.valueOf(voteService.retractQuestionVote(id, userId));
     }
 
     @PostMapping
@@ -301,16 +347,6 @@ public class QuestionController {
     }
 
     private Set<Tag> processTags(String tagString) {
-        return Arrays.stream(tagString.split("\\s+"))
-            .map(tagName -> {
-                Tag tag = tagService.findByName(tagName)
-                    .orElseGet(() -> {
-                        Tag newTag = new Tag();
-                        newTag.setName(tagName);
-                        return tagService.save(newTag);
-                    });
-                return tag;
-            })
-            .collect(Collectors.toSet());
+        return tagService.getOrCreateTags(Arrays.asList(tagString.split("\\s+")));
     }
 }
\ No newline at end of file
@@ -1,18 +1,27 @@
 package com.stackoverflow.controller.user;
 
+import com.stackoverflow.dto.FeedCursor;
+import com.stackoverflow.dto.FeedPagination;
+import com.stackoverflow.dto.TagSuggestion;
 import com.stackoverflow.entity.Question;
 import com.stackoverflow.entity.Tag;
 import com.stackoverflow.service.common.QuestionService;
+import com.stackoverflow.service.common.TagAutocompleteService;
 import com.stackoverflow.service.common.TagService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.List;
 
 @Controller
 public class TagController {
@@ -23,6 +32,12 @@ public class TagController {
     @Autowired
     private QuestionService questionService;
 
+    @Autowired
+    private TagAutocompleteService tagAutocompleteService;
+
+    @Value("${feed.max-offset-pages:5}")
+    private int maxOffsetPages;
+
     @GetMapping("/tags")
     public String listTags(
             @RequestParam(defaultValue = "0") int page,
@@ -52,26 +67,41 @@ public class TagController {
         return "tags/list";
     }
 
+    /**
+     * Gợi ý thẻ theo tiền tố (JSON), dùng cho ô nhập thẻ khi đặt câu hỏi
+     */
+    @GetMapping("/tags/autocomplete")
+    @ResponseBody
+    public List<TagSuggestion> autocomplete(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit) {
+        return tagAutocompleteService.suggest(q, limit);
+    }
+
     @GetMapping("/tags/{tagName}")
     public String viewTag(
             @PathVariable String tagName,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "15") int size,
+            @RequestParam(required = false) String cursor,
             Model model) {
         
         Tag tag = tagService.findByName(tagName)
                 .orElseThrow(() -> new RuntimeException("Tag not found"));
         
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Question> questions = questionService.getQuestionsByTag(tag, pageable);
+        FeedCursor after = FeedCursor.decode(cursor, FeedCursor.SORT_CREATED).orElse(null);
+        page = FeedPagination.clampPage(page, after, maxOffsetPages);
+        
+        Slice<Question> questions = questionService.getNewestQuestionsByTag(tag, after, page, size);
+        // Tag.questionCount là bộ đếm sẵn có, dùng làm tổng gần đúng thay cho COUNT(*)
+        long totalQuestions = tag.getQuestionCount() != null ? tag.getQuestionCount() : -1;
         
         model.addAttribute("tag", tag);
         model.addAttribute("questions", questions);
-        model.addAttribute("currentPage", page);
-        model.addAttribute("totalPages", questions.getTotalPages());
+        model.addAttribute("pagination", FeedPagination.of(questions, page, size, maxOffsetPages, totalQuestions,
+                FeedCursor::byCreatedAt));
         model.addAttribute("pageTitle", "'" + tag.getName() + "' Questions - Stack Overflow Clone");
         
         return "tags/view";
     }
 }
-
@@ -3,6 +3,7 @@ package com.stackoverflow.controller.user;
 import com.stackoverflow.entity.Question;
 import com.stackoverflow.entity.User;
 import com.stackoverflow.service.common.AnswerService;
+import com.stackoverflow.service.common.PresenceService;
 import com.stackoverflow.service.common.QuestionService;
 import com.stackoverflow.service.common.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,6 +28,9 @@ public class UserController {
     @Autowired
     private AnswerService answerService;
 
+    @Autowired
+    private PresenceService presenceService;
+
     @GetMapping
     public String listUsers(
             @RequestParam(defaultValue = "0") int page,
@@ -48,6 +52,7 @@ public class UserController {
         }
         
         model.addAttribute("users", users);
+        model.addAttribute("onlineUserIds", presenceService.findOnline(users.map(User::getId).getContent()));
         model.addAttribute("currentPage", page);
         model.addAttribute("totalPages", users.getTotalPages());
         model.addAttribute("sort", sort);
@@ -83,6 +88,7 @@ public class UserController {
         Long answerCount = answerService.countByAuthor(user);
         
         model.addAttribute("user", user);
+        model.addAttribute("online", presenceService.isOnline(user.getId()));
         model.addAttribute("questionCount", questionCount);
         model.addAttribute("answerCount", answerCount);
         model.addAttribute("currentTab", tab);
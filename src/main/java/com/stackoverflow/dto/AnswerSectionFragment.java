@@ -0,0 +1,47 @@
+package com.stackoverflow.dto;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Phần câu trả lời/bình luận của trang câu hỏi đã được render sẵn (không chứa phần riêng của từng user).
+ * Các nút vote, sửa/xóa, chấp nhận và thẻ tác giả (điểm uy tín thay đổi độc lập với nội dung câu hỏi)
+ * được render trực tiếp quanh các đoạn HTML này.
+ */
+@Value
+public class AnswerSectionFragment {
+
+    String questionCommentsHtml;
+
+    /** Số bình luận của câu hỏi (QuestionLiveService đẩy cùng giá trị này khi thay đổi) */
+    int commentCount;
+
+    List<RenderedAnswer> answers;
+
+    @Value
+    public static class RenderedAnswer {
+        Long id;
+        Long authorId;
+        String authorUsername;
+        LocalDateTime createdAt;
+        Integer votes;
+        Boolean accepted;
+        /** body + ảnh */
+        String contentHtml;
+        /** bình luận */
+        String commentsHtml;
+    }
+
+    /**
+     * Kích thước ước lượng (byte) để giới hạn bộ nhớ của cache
+     */
+    public int weight() {
+        long chars = questionCommentsHtml.length();
+        for (RenderedAnswer answer : answers) {
+            chars += answer.getContentHtml().length() + answer.getCommentsHtml().length() + 96;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, chars * 2);
+    }
+}
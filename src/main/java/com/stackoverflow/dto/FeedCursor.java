@@ -0,0 +1,81 @@
+package com.stackoverflow.dto;
+
+import com.stackoverflow.entity.Question;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Con trỏ phân trang keyset (seek): kiểu sắp xếp + giá trị cột sắp xếp + id của dòng cuối trang trước.
+ * Trang kế tiếp lấy các dòng đứng sau (sortValue, id) thay vì OFFSET.
+ */
+@Value
+public class FeedCursor {
+
+    public static final String SORT_CREATED = "created";
+    public static final String SORT_VOTES = "votes";
+
+    /** Kiểu sắp xếp đã sinh ra con trỏ (SORT_CREATED / SORT_VOTES) */
+    String sortKey;
+
+    /** createdAt (ISO) hoặc votes, tùy kiểu sắp xếp */
+    String sortValue;
+
+    Long id;
+
+    public static FeedCursor byCreatedAt(Question question) {
+        return byCreatedAt(question.getCreatedAt(), question.getId());
+    }
+
+    public static FeedCursor byCreatedAt(LocalDateTime createdAt, Long id) {
+        return new FeedCursor(SORT_CREATED, createdAt.toString(), id);
+    }
+
+    public static FeedCursor byVotes(Question question) {
+        return new FeedCursor(SORT_VOTES, String.valueOf(question.getVotes()), question.getId());
+    }
+
+    public LocalDateTime asCreatedAt() {
+        return LocalDateTime.parse(sortValue);
+    }
+
+    public int asVotes() {
+        return Integer.parseInt(sortValue);
+    }
+
+    public String encode() {
+        String raw = sortKey + "|" + sortValue + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Giải mã con trỏ từ query string cho kiểu sắp xếp đang xem.
+     * Con trỏ rỗng, sai định dạng hoặc sinh ra từ kiểu sắp xếp khác được bỏ qua (về trang đầu),
+     * nên giá trị trả về luôn đọc được bằng asCreatedAt()/asVotes() tương ứng.
+     */
+    public static Optional<FeedCursor> decode(String token, String expectedSortKey) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length != 3 || !parts[0].equals(expectedSortKey)) {
+                return Optional.empty();
+            }
+            FeedCursor cursor = new FeedCursor(parts[0], parts[1], Long.parseLong(parts[2]));
+            if (SORT_VOTES.equals(cursor.sortKey)) {
+                cursor.asVotes();
+            } else {
+                cursor.asCreatedAt();
+            }
+            return Optional.of(cursor);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return Optional.empty();
+        }
+    }
+}
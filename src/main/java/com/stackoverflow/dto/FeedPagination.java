@@ -0,0 +1,64 @@
+package com.stackoverflow.dto;
+
+import com.stackoverflow.entity.Question;
+import lombok.Value;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Thông tin điều hướng của một trang feed phân trang keyset.
+ *
+ * Chỉ vài trang đầu có link số (OFFSET nhỏ, rẻ); sâu hơn chỉ đi tiếp bằng con trỏ "Next".
+ */
+@Value
+public class FeedPagination {
+
+    int currentPage;
+
+    /** Số link trang đánh số được hiển thị (0..offsetPages-1) */
+    int offsetPages;
+
+    /** Con trỏ của trang kế tiếp, null nếu đây là trang cuối */
+    String nextCursor;
+
+    /**
+     * @param approximateTotal tổng gần đúng, hoặc số âm nếu không biết (ví dụ kết quả tìm kiếm)
+     */
+    public static FeedPagination of(Slice<Question> slice, int page, int size, int maxOffsetPages,
+                                    long approximateTotal, Function<Question, FeedCursor> cursorOf) {
+        String next = null;
+        List<Question> content = slice.getContent();
+        if (slice.hasNext() && !content.isEmpty()) {
+            next = cursorOf.apply(content.get(content.size() - 1)).encode();
+        }
+
+        int knownPages;
+        if (approximateTotal >= 0) {
+            knownPages = (int) Math.min(Integer.MAX_VALUE, (approximateTotal + size - 1) / size);
+        } else {
+            knownPages = slice.hasNext() ? page + 2 : page + 1;
+        }
+        if (page < maxOffsetPages) {
+            // Trang hiện tại luôn nằm trong dãy số, kể cả khi tổng gần đúng đã cũ
+            knownPages = Math.max(knownPages, slice.hasNext() ? page + 2 : page + 1);
+        }
+        return new FeedPagination(page, Math.min(maxOffsetPages, knownPages), next);
+    }
+
+    /**
+     * Không có con trỏ thì chỉ cho phép OFFSET trong vài trang đầu
+     */
+    public static int clampPage(int page, FeedCursor after, int maxOffsetPages) {
+        page = Math.max(page, 0);
+        return after == null ? Math.min(page, maxOffsetPages - 1) : page;
+    }
+
+    /**
+     * Trang trước chỉ có link khi nó nằm trong vùng OFFSET
+     */
+    public boolean isHasPrevious() {
+        return currentPage > 0 && currentPage <= offsetPages;
+    }
+}
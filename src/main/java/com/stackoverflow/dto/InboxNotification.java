@@ -0,0 +1,20 @@
+package com.stackoverflow.dto;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một dòng trong hộp thư thông báo của user. Với thông báo chung, trạng thái đã đọc được tính
+ * từ mốc đã đọc của user chứ không lấy từ cột is_read (dòng dùng chung cho mọi người)
+ */
+@Value
+public class InboxNotification {
+    Long id;
+    String type;
+    String message;
+    String link;
+    boolean global;
+    boolean read;
+    LocalDateTime createdAt;
+}
@@ -0,0 +1,19 @@
+package com.stackoverflow.dto;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Một trang hộp thư thông báo (phân trang keyset theo createdAt, id)
+ */
+@Value
+public class InboxPage {
+
+    List<InboxNotification> items;
+
+    /** Con trỏ của trang kế tiếp, null nếu đây là trang cuối */
+    String nextCursor;
+
+    long unreadCount;
+}
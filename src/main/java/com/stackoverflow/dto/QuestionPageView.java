@@ -0,0 +1,46 @@
+package com.stackoverflow.dto;
+
+import com.stackoverflow.entity.Answer;
+import com.stackoverflow.entity.Comment;
+import com.stackoverflow.entity.ImageAttachment;
+import com.stackoverflow.entity.Question;
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Toàn bộ dữ liệu của trang chi tiết câu hỏi, được nạp sẵn trong một số truy vấn cố định.
+ * Template chỉ đọc từ view này, không được đi theo quan hệ lazy của entity.
+ */
+@Value
+public class QuestionPageView {
+
+    Question question;
+
+    List<ImageAttachment> questionImages;
+
+    List<Comment> questionComments;
+
+    /** Câu trả lời đã sắp xếp theo votes giảm dần, kèm author và images */
+    List<Answer> answers;
+
+    /** Bình luận theo answerId */
+    Map<Long, List<Comment>> answerComments;
+
+    public QuestionPageView(Question question,
+                            List<ImageAttachment> questionImages,
+                            List<Comment> questionComments,
+                            List<Answer> answers,
+                            Map<Long, List<Comment>> answerComments) {
+        this.question = question;
+        this.questionImages = List.copyOf(questionImages);
+        this.questionComments = List.copyOf(questionComments);
+        this.answers = List.copyOf(answers);
+        this.answerComments = Map.copyOf(answerComments);
+    }
+
+    public List<Comment> getCommentsFor(Answer answer) {
+        return answerComments.getOrDefault(answer.getId(), List.of());
+    }
+}
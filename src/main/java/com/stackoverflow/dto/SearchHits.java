@@ -0,0 +1,16 @@
+package com.stackoverflow.dto;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Một trang kết quả từ chỉ mục tìm kiếm: id câu hỏi theo thứ tự điểm BM25 + tổng số kết quả
+ */
+@Value
+public class SearchHits {
+
+    List<Long> questionIds;
+
+    int totalHits;
+}
@@ -0,0 +1,16 @@
+package com.stackoverflow.dto;
+
+import lombok.Value;
+
+/**
+ * Câu hỏi có tiêu đề gần giống (ước lượng Jaccard từ chữ ký MinHash)
+ */
+@Value
+public class SimilarQuestion {
+
+    Long id;
+
+    String title;
+
+    double similarity;
+}
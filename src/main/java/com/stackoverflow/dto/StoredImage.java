@@ -0,0 +1,28 @@
+package com.stackoverflow.dto;
+
+import lombok.Value;
+
+/**
+ * Siêu dữ liệu của một file ảnh đã lưu, đủ để trả lời GET có điều kiện mà không đọc file
+ */
+@Value
+public class StoredImage {
+
+    Long id;
+
+    /** Đường dẫn tương đối trong upload.path (file gốc hoặc biến thể kích thước) */
+    String path;
+
+    String contentType;
+
+    long length;
+
+    /** Epoch millis */
+    long lastModified;
+
+    /** ETag mạnh (có dấu nháy); file ảnh không bao giờ bị ghi đè nên không đổi theo thời gian */
+    String etag;
+
+    /** false khi đang tạm trả ảnh gốc thay cho biến thể chưa tạo xong: không được cache lâu dài */
+    boolean stable;
+}
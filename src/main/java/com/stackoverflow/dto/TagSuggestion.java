@@ -0,0 +1,21 @@
+package com.stackoverflow.dto;
+
+import lombok.Value;
+
+import java.util.Comparator;
+
+/**
+ * Một gợi ý thẻ cho autocomplete
+ */
+@Value
+public class TagSuggestion {
+
+    /** Thẻ dùng nhiều hơn đứng trước, cùng số lượng thì theo tên */
+    public static final Comparator<TagSuggestion> BY_POPULARITY =
+            Comparator.comparingInt(TagSuggestion::getQuestionCount).reversed()
+                    .thenComparing(TagSuggestion::getName);
+
+    String name;
+
+    int questionCount;
+}
@@ -29,7 +29,8 @@ public class Answer {
     @Column(nullable = false, columnDefinition = "TEXT")
     private String body;
 
-    @Column(nullable = false)
+    // Chỉ được cập nhật bằng UPDATE votes = votes ± 1 (VoteService), không ghi đè khi save entity
+    @Column(nullable = false, updatable = false)
     private Integer votes = 0;
 
     @Column(nullable = false)
@@ -48,11 +48,8 @@ public class Badge {
     @ManyToMany(mappedBy = "badges")
     private Set<User> users = new HashSet<>();
 
-    @Column(nullable = false)
+    // Chỉ được cập nhật bằng SQL tương đối (CounterService), không ghi đè khi save entity
+    @Column(nullable = false, updatable = false)
     private Integer earnedCount = 0;
-
-    public void incrementEarnedCount() {
-        this.earnedCount++;
-    }
 }
 
@@ -51,7 +51,8 @@ public class Category {
     @Column(nullable = false)
     private Boolean isActive = true;
 
-    @Column(nullable = false)
+    // Chỉ được cập nhật bằng SQL tương đối (CounterService), không ghi đè khi save entity
+    @Column(nullable = false, updatable = false)
     private Integer questionCount = 0;
 
     private String icon;
@@ -61,15 +62,5 @@ public class Category {
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
-
-    public void incrementQuestionCount() {
-        this.questionCount++;
-    }
-
-    public void decrementQuestionCount() {
-        if (this.questionCount > 0) {
-            this.questionCount--;
-        }
-    }
 }
 
@@ -0,0 +1,102 @@
+package com.stackoverflow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tiến trình xóa dữ liệu chạy nền (người dùng hoặc câu hỏi). Các bước xóa lặp lại được,
+ * nên tiến trình dở dang chỉ cần chạy lại từ đầu khi khởi động lại
+ */
+@Entity
+@Table(name = "deletion_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class DeletionJob {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    public static final String TYPE_USER = "USER";
+    public static final String TYPE_QUESTION = "QUESTION";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String targetType; // USER, QUESTION
+
+    @Column(nullable = false)
+    private Long targetId;
+
+    /** Tên người dùng / tiêu đề câu hỏi để hiển thị sau khi đã xóa */
+    private String targetLabel;
+
+    private String requestedBy;
+
+    @Column(nullable = false)
+    private String status = PENDING; // PENDING, RUNNING, COMPLETED, FAILED
+
+    /** Bước đang chạy: QUESTIONS, ANSWERS, COMMENTS, IMAGES, ACCOUNT */
+    private String stage;
+
+    @Column(nullable = false)
+    private Integer stageIndex = 0;
+
+    @Column(nullable = false)
+    private Integer totalStages = 1;
+
+    @Column(nullable = false)
+    private Long totalQuestions = 0L;
+
+    @Column(nullable = false)
+    private Long deletedQuestions = 0L;
+
+    /** Tổng số dòng đã xóa ở mọi bảng */
+    @Column(nullable = false)
+    private Long deletedRows = 0L;
+
+    @Column(nullable = false)
+    private Long deletedFiles = 0L;
+
+    @Column(nullable = false)
+    private Long failedFiles = 0L;
+
+    @Column(length = 1000)
+    private String error;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime completedAt;
+
+    public boolean isActive() {
+        return PENDING.equals(status) || RUNNING.equals(status);
+    }
+
+    public int getProgressPercent() {
+        if (COMPLETED.equals(status)) {
+            return 100;
+        }
+        // Bước xóa câu hỏi chiếm phần lớn công việc, các bước sau chia đều phần còn lại
+        double questions = totalQuestions > 0 ? (double) deletedQuestions / totalQuestions : 1.0;
+        double done = stageIndex == 0 ? questions : stageIndex;
+        return (int) Math.min(99, done * 100 / Math.max(1, totalStages));
+    }
+}
@@ -16,6 +16,13 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @EntityListeners(AuditingEntityListener.class)
 public class ImageAttachment {
+
+    // Trạng thái tạo biến thể kích thước (thumbnail, medium)
+    public static final String VARIANTS_PENDING = "PENDING";
+    // Chỉ dùng cho image_blobs: một worker đã nhận việc tạo biến thể của nội dung
+    public static final String VARIANTS_PROCESSING = "PROCESSING";
+    public static final String VARIANTS_READY = "READY";
+    public static final String VARIANTS_FAILED = "FAILED";
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -29,6 +36,20 @@ public class ImageAttachment {
     
     @Column(nullable = false)
     private String path;
+
+    /** Blob nội dung (image_blobs.id); null với ảnh lưu theo kiểu một file mỗi lần tải lên trước đây */
+    @Column(name = "blob_id")
+    private Long blobId;
+
+    /** Bản thu nhỏ trong upload.path; null khi ảnh gốc đã đủ nhỏ (phục vụ ảnh gốc) */
+    private String thumbnailPath;
+
+    /** Bản cỡ vừa để hiển thị trong nội dung; null khi ảnh gốc đã đủ nhỏ */
+    private String mediumPath;
+
+    /** null với ảnh tải lên trước khi có pipeline biến thể (được xử lý bù như PENDING) */
+    @Column(length = 16)
+    private String variantStatus;
     
     @ManyToOne
     @JoinColumn(name = "question_id")
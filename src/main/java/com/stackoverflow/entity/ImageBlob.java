@@ -0,0 +1,58 @@
+package com.stackoverflow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Nội dung ảnh lưu một lần theo SHA-256; refCount là số ImageAttachment đang trỏ tới.
+ * Chỉ được ghi bằng SQL tương đối trong ImageBlobStore; blob về 0 được dọn sau một khoảng chờ
+ */
+@Entity
+@Table(name = "image_blobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageBlob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** SHA-256 dạng hex chữ thường */
+    @Column(nullable = false, unique = true, length = 64)
+    private String hash;
+
+    /** Đường dẫn tương đối trong upload.path: blobs/ab/cd/abcd... */
+    @Column(nullable = false)
+    private String path;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(nullable = false)
+    private Integer refCount = 0;
+
+    /** Lúc refCount về 0 (null khi đang được dùng) */
+    private LocalDateTime releasedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * Trạng thái tạo biến thể cho nội dung này (null = chưa ai nhận, PROCESSING, READY, FAILED).
+     * Nhận việc bằng UPDATE có điều kiện nên mỗi nội dung chỉ được thu nhỏ một lần dù nhiều ảnh cùng trỏ tới
+     */
+    @Column(length = 16)
+    private String variantStatus;
+
+    /** Lúc nhận việc; lần nhận quá images.variants.claim-timeout-ms coi như bỏ dở */
+    private LocalDateTime variantClaimedAt;
+
+    private String thumbnailPath;
+
+    private String mediumPath;
+}
@@ -22,8 +22,8 @@ public class Notification {
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "user_id", nullable = false)
-    private User user;
+    @JoinColumn(name = "user_id", nullable = true)
+    private User user; // null với thông báo chung (isGlobal = true); schema cũ: NotificationSchemaMigration
 
     @Column(nullable = false)
     private String type; // SYSTEM, COMMENT, ANSWER, VOTE, MESSAGE, EVENT
@@ -39,6 +39,9 @@ public class Notification {
     @Column(nullable = false)
     private Boolean isGlobal = false; // For system-wide notifications
 
+    @Column(name = "target_role")
+    private String targetRole; // Thông báo chung theo vai trò (USER, MANAGER, ADMIN); null = tất cả
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "sender_id")
     private User sender;
@@ -0,0 +1,26 @@
+package com.stackoverflow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Mốc đã đọc thông báo chung của một người dùng: thông báo chung tạo sau globalReadAt là chưa đọc
+ */
+@Entity
+@Table(name = "notification_read_markers")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationReadMarker {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "global_read_at", nullable = false)
+    private LocalDateTime globalReadAt;
+}
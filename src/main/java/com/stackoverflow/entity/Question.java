@@ -17,7 +17,11 @@ import java.util.List;
 import java.util.Set;
 
 @Entity
-@Table(name = "questions")
+@Table(name = "questions", indexes = {
+        // Phục vụ phân trang keyset của feed (seek theo (cột sắp xếp, id))
+        @Index(name = "idx_questions_approved_created", columnList = "is_approved, created_at DESC, id DESC"),
+        @Index(name = "idx_questions_approved_votes", columnList = "is_approved, votes DESC, id DESC")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -37,13 +41,16 @@ public class Question {
     @Column(nullable = false, columnDefinition = "TEXT")
     private String body;
 
-    @Column(nullable = false)
+    // Chỉ được cập nhật bằng UPDATE views = views + ? (ViewCountService), không ghi đè khi save entity
+    @Column(nullable = false, updatable = false)
     private Integer views = 0;
 
-    @Column(nullable = false)
+    // Chỉ được cập nhật bằng UPDATE votes = votes ± 1 (VoteService), không ghi đè khi save entity
+    @Column(nullable = false, updatable = false)
     private Integer votes = 0;
 
-    @Column(nullable = false)
+    // Chỉ được cập nhật bằng SQL tương đối (CounterService), không ghi đè khi save entity
+    @Column(nullable = false, updatable = false)
     private Integer answerCount = 0;
 
     @Column(nullable = false)
@@ -52,7 +59,7 @@ public class Question {
     @Column(nullable = false)
     private Boolean isLocked = false;
 
-    @Column(nullable = false)
+    @Column(name = "is_approved", nullable = false)
     private Boolean isApproved = false;  // For moderation - default needs approval
 
     @ManyToOne(fetch = FetchType.LAZY)
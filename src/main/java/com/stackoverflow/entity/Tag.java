@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
@@ -31,24 +33,18 @@ public class Tag {
     @Column(columnDefinition = "TEXT")
     private String description;
 
-    @Column(nullable = false)
+    // Chỉ được cập nhật bằng SQL tương đối (CounterService), không ghi đè khi save entity
+    @Column(nullable = false, updatable = false)
     private Integer questionCount = 0;
 
+    // Không tham gia equals/hashCode/toString: Question.tags là Set nên băm Tag không được nạp collection lazy này
     @ManyToMany(mappedBy = "tags")
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     private Set<Question> questions = new HashSet<>();
 
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
-
-    public void incrementQuestionCount() {
-        this.questionCount++;
-    }
-
-    public void decrementQuestionCount() {
-        if (this.questionCount > 0) {
-            this.questionCount--;
-        }
-    }
 }
 
@@ -0,0 +1,96 @@
+package com.stackoverflow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tiến trình gộp thẻ chạy nền. Con trỏ question_id được lưu sau mỗi đoạn nên có thể chạy tiếp khi khởi động lại
+ */
+@Entity
+@Table(name = "tag_merge_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class TagMergeJob {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long sourceTagId;
+
+    @Column(nullable = false)
+    private Long targetTagId;
+
+    @Column(nullable = false)
+    private String sourceTagName;
+
+    @Column(nullable = false)
+    private String targetTagName;
+
+    @Column(nullable = false)
+    private String status = PENDING; // PENDING, RUNNING, COMPLETED, FAILED
+
+    /** question_id nhỏ nhất cần xử lý, dùng để tính phần trăm */
+    @Column(nullable = false)
+    private Long startQuestionId = 0L;
+
+    /** question_id lớn nhất của thẻ nguồn (cập nhật nếu có câu hỏi mới trong lúc gộp) */
+    @Column(nullable = false)
+    private Long endQuestionId = 0L;
+
+    /** Đã xử lý xong mọi question_id <= cursorQuestionId */
+    @Column(nullable = false)
+    private Long cursorQuestionId = 0L;
+
+    /** Số dòng question_tags chuyển sang thẻ đích */
+    @Column(nullable = false)
+    private Long movedRows = 0L;
+
+    /** Số câu hỏi đã có sẵn thẻ đích (chỉ xóa dòng của thẻ nguồn) */
+    @Column(nullable = false)
+    private Long dedupedRows = 0L;
+
+    @Column(length = 1000)
+    private String error;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime completedAt;
+
+    public boolean isActive() {
+        return PENDING.equals(status) || RUNNING.equals(status);
+    }
+
+    public int getProgressPercent() {
+        if (COMPLETED.equals(status)) {
+            return 100;
+        }
+        long total = endQuestionId - startQuestionId + 1;
+        if (total <= 0) {
+            return 0;
+        }
+        long done = Math.max(0, cursorQuestionId - startQuestionId + 1);
+        return (int) Math.min(99, done * 100 / total);
+    }
+}
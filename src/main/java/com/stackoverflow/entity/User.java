@@ -83,6 +83,7 @@ public class User {
     @OneToMany(mappedBy = "author", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Comment> comments = new ArrayList<>();
 
+    // Bảng vote chỉ được đọc/ghi qua VoteService (SQL trực tiếp); không duyệt collection này
     @ManyToMany
     @JoinTable(
         name = "user_votes_questions",
@@ -0,0 +1,12 @@
+package com.stackoverflow.event;
+
+import lombok.Value;
+
+/**
+ * Phát ra khi một ảnh mới được lưu; sau commit ảnh được đưa vào hàng đợi tạo biến thể kích thước
+ */
+@Value
+public class ImageUploadedEvent {
+
+    Long imageId;
+}
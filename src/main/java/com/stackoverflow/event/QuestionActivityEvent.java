@@ -0,0 +1,36 @@
+package com.stackoverflow.event;
+
+import com.stackoverflow.entity.Question;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ảnh chụp các chỉ số của câu hỏi sau một hoạt động (vote, trả lời, lượt xem, duyệt)
+ */
+@Value
+public class QuestionActivityEvent {
+
+    Long questionId;
+
+    LocalDateTime createdAt;
+
+    boolean approved;
+
+    int votes;
+
+    int answerCount;
+
+    /** Lượt xem đã lưu trong DB (chưa gồm delta đang chờ flush) */
+    int views;
+
+    public static QuestionActivityEvent of(Question question) {
+        return new QuestionActivityEvent(
+                question.getId(),
+                question.getCreatedAt(),
+                Boolean.TRUE.equals(question.getIsApproved()),
+                question.getVotes() != null ? question.getVotes() : 0,
+                question.getAnswerCount() != null ? question.getAnswerCount() : 0,
+                question.getViews() != null ? question.getViews() : 0);
+    }
+}
@@ -0,0 +1,13 @@
+package com.stackoverflow.event;
+
+import lombok.Value;
+
+/**
+ * Phát ra khi nội dung hiển thị trên trang câu hỏi thay đổi
+ * (câu trả lời, bình luận, lượt vote, câu trả lời được chấp nhận)
+ */
+@Value
+public class QuestionContentChangedEvent {
+
+    Long questionId;
+}
@@ -0,0 +1,18 @@
+package com.stackoverflow.event;
+
+import lombok.Value;
+
+/**
+ * Phát ra khi câu hỏi được tạo, sửa, duyệt, từ chối hoặc xóa
+ */
+@Value
+public class QuestionLifecycleEvent {
+
+    public enum Type {
+        CREATED, UPDATED, APPROVED, REJECTED, DELETED
+    }
+
+    Long questionId;
+
+    Type type;
+}
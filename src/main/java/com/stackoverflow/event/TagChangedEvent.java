@@ -0,0 +1,35 @@
+package com.stackoverflow.event;
+
+import lombok.Value;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Phát ra khi tập thẻ thay đổi (tạo, gộp, xóa, đổi tên)
+ */
+@Value
+public class TagChangedEvent {
+
+    /** Thẻ được tạo/cập nhật: tên -> questionCount */
+    Map<String, Integer> upserted;
+
+    /** Tên thẻ đã bị xóa (hoặc tên cũ của thẻ vừa đổi tên) */
+    Set<String> removed;
+
+    public static TagChangedEvent upserted(Map<String, Integer> tags) {
+        return new TagChangedEvent(Map.copyOf(tags), Set.of());
+    }
+
+    public static TagChangedEvent removed(String name) {
+        return new TagChangedEvent(Map.of(), Set.of(name));
+    }
+
+    /**
+     * Thẻ được sửa: nếu đổi tên thì tên cũ bị gỡ và tên mới được thêm
+     */
+    public static TagChangedEvent updated(String previousName, String name, int questionCount) {
+        Set<String> removed = previousName != null && !previousName.equals(name) ? Set.of(previousName) : Set.of();
+        return new TagChangedEvent(Map.of(name, questionCount), removed);
+    }
+}
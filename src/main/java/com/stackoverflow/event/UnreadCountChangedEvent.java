@@ -0,0 +1,36 @@
+package com.stackoverflow.event;
+
+import lombok.Value;
+
+/**
+ * Phát ra khi số thông báo/tin nhắn chưa đọc của người dùng thay đổi
+ */
+@Value
+public class UnreadCountChangedEvent {
+
+    public enum Counter {
+        NOTIFICATIONS, MESSAGES
+    }
+
+    /** null = mọi người dùng (ví dụ thông báo chung) */
+    String username;
+
+    Counter counter;
+
+    int delta;
+
+    /** Không biết delta chính xác: bỏ giá trị cache, đếm lại ở lần đọc sau */
+    boolean recount;
+
+    public static UnreadCountChangedEvent delta(String username, Counter counter, int delta) {
+        return new UnreadCountChangedEvent(username, counter, delta, false);
+    }
+
+    public static UnreadCountChangedEvent recount(String username, Counter counter) {
+        return new UnreadCountChangedEvent(username, counter, 0, true);
+    }
+
+    public static UnreadCountChangedEvent recountAll(Counter counter) {
+        return new UnreadCountChangedEvent(null, counter, 0, true);
+    }
+}
@@ -18,6 +18,10 @@ public interface AnswerRepository extends JpaRepository<Answer, Long> {
     @Query("SELECT a FROM Answer a LEFT JOIN FETCH a.images WHERE a.question = :question ORDER BY a.votes DESC, a.createdAt DESC")
     List<Answer> findByQuestionOrderByVotesDescCreatedAtDesc(@Param("question") Question question);
     
+    // Question page: author + images (+ uploader vì ImageAttachment.uploadedBy là EAGER) trong 1 câu lệnh
+    @Query("SELECT a FROM Answer a JOIN FETCH a.author LEFT JOIN FETCH a.images i LEFT JOIN FETCH i.uploadedBy WHERE a.question.id = :questionId ORDER BY a.votes DESC, a.createdAt DESC")
+    List<Answer> findPageAnswersByQuestionId(@Param("questionId") Long questionId);
+    
     Page<Answer> findByAuthor(User author, Pageable pageable);
     
     @Query("SELECT COUNT(a) FROM Answer a WHERE a.author = :author")
@@ -6,6 +6,8 @@ import com.stackoverflow.entity.Question;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -16,6 +18,12 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     List<Comment> findByQuestionOrderByCreatedAtAsc(Question question);
     
     List<Comment> findByAnswerOrderByCreatedAtAsc(Answer answer);
+    
+    // Question page: bình luận của câu hỏi và của tất cả câu trả lời trong 1 câu lệnh
+    @Query("SELECT c FROM Comment c JOIN FETCH c.author LEFT JOIN c.answer a " +
+           "WHERE (c.question.id = :questionId OR a.question.id = :questionId) AND c.isDeleted = false " +
+           "ORDER BY c.createdAt ASC")
+    List<Comment> findPageCommentsByQuestionId(@Param("questionId") Long questionId);
 
     // Admin features
     Page<Comment> findByBodyContaining(String keyword, Pageable pageable);
@@ -0,0 +1,22 @@
+package com.stackoverflow.repository;
+
+import com.stackoverflow.entity.DeletionJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DeletionJobRepository extends JpaRepository<DeletionJob, Long> {
+    
+    List<DeletionJob> findByStatusIn(Collection<String> statuses);
+    
+    List<DeletionJob> findTop20ByOrderByCreatedAtDesc();
+    
+    @Query("SELECT COUNT(j) > 0 FROM DeletionJob j WHERE j.status IN ('PENDING', 'RUNNING') " +
+           "AND j.targetType = :targetType AND j.targetId = :targetId")
+    boolean existsActive(@Param("targetType") String targetType, @Param("targetId") Long targetId);
+}
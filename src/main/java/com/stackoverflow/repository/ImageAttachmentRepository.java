@@ -3,11 +3,28 @@ package com.stackoverflow.repository;
 import com.stackoverflow.entity.ImageAttachment;
 import com.stackoverflow.entity.Question;
 import com.stackoverflow.entity.Answer;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface ImageAttachmentRepository extends JpaRepository<ImageAttachment, Long> {
     List<ImageAttachment> findByQuestion(Question question);
     List<ImageAttachment> findByAnswer(Answer answer);
+
+    /** Ảnh khác cùng nội dung đã có biến thể kích thước */
+    Optional<ImageAttachment> findFirstByBlobIdAndVariantStatus(Long blobId, String variantStatus);
+    
+    @Query("SELECT i FROM ImageAttachment i JOIN FETCH i.uploadedBy WHERE i.question.id = :questionId ORDER BY i.id")
+    List<ImageAttachment> findByQuestionIdWithUploader(@Param("questionId") Long questionId);
+
+    /**
+     * Id ảnh chưa có biến thể kích thước (keyset theo id)
+     */
+    @Query("SELECT i.id FROM ImageAttachment i WHERE (i.variantStatus IS NULL OR i.variantStatus = 'PENDING') " +
+           "AND i.id > :afterId ORDER BY i.id")
+    List<Long> findPendingVariantIds(@Param("afterId") Long afterId, Pageable pageable);
 }
\ No newline at end of file
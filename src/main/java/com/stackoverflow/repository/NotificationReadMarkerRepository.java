@@ -0,0 +1,9 @@
+package com.stackoverflow.repository;
+
+import com.stackoverflow.entity.NotificationReadMarker;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface NotificationReadMarkerRepository extends JpaRepository<NotificationReadMarker, Long> {
+}
@@ -5,8 +5,12 @@ import com.stackoverflow.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -17,6 +21,38 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     List<Notification> findByUserAndIsReadFalseOrderByCreatedAtDesc(User user);
     
     long countByIsReadFalse();
+
+    long countByIsGlobalFalseAndIsReadFalse();
+
+    long countByUserAndIsReadFalse(User user);
+
+    /**
+     * Một trang hộp thư: thông báo riêng của user cộng thông báo chung (toàn hệ thống hoặc đúng vai trò)
+     * tạo sau mốc since, đứng sau con trỏ (beforeAt, beforeId) theo thứ tự createdAt, id giảm dần
+     */
+    @Query("SELECT n FROM Notification n WHERE (n.user = :user " +
+           "OR (n.isGlobal = true AND (n.targetRole IS NULL OR n.targetRole = :role) AND n.createdAt >= :since)) " +
+           "AND (n.createdAt < :beforeAt OR (n.createdAt = :beforeAt AND n.id < :beforeId)) " +
+           "ORDER BY n.createdAt DESC, n.id DESC")
+    List<Notification> findInboxBefore(@Param("user") User user, @Param("role") String role,
+                                       @Param("since") LocalDateTime since,
+                                       @Param("beforeAt") LocalDateTime beforeAt, @Param("beforeId") Long beforeId,
+                                       Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true, n.readAt = :readAt WHERE n.user = :user AND n.isRead = false")
+    int markAllReadByUser(@Param("user") User user, @Param("readAt") LocalDateTime readAt);
+
+    /**
+     * Thông báo chung chưa đọc: tạo sau mốc đã đọc (hoặc sau lúc tạo tài khoản)
+     */
+    @Query("SELECT n FROM Notification n WHERE n.isGlobal = true AND (n.targetRole IS NULL OR n.targetRole = :role) " +
+           "AND n.createdAt > :after ORDER BY n.createdAt DESC, n.id DESC")
+    List<Notification> findGlobalAfter(@Param("role") String role, @Param("after") LocalDateTime after);
+
+    @Query("SELECT COUNT(n) FROM Notification n WHERE n.isGlobal = true " +
+           "AND (n.targetRole IS NULL OR n.targetRole = :role) AND n.createdAt > :after")
+    long countGlobalAfter(@Param("role") String role, @Param("after") LocalDateTime after);
     
     // For user deletion
     void deleteByUser(User user);
@@ -5,12 +5,15 @@ import com.stackoverflow.entity.Tag;
 import com.stackoverflow.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,6 +26,10 @@ public interface QuestionRepository extends JpaRepository<Question, Long> {
     @Query("SELECT q FROM Question q LEFT JOIN FETCH q.tags LEFT JOIN FETCH q.author WHERE q.id = :id")
     Optional<Question> findByIdWithTagsAndAuthor(@Param("id") Long id);
     
+    // Question page: group và group.creator là EAGER nên fetch luôn để tránh thêm câu lệnh
+    @Query("SELECT q FROM Question q JOIN FETCH q.author LEFT JOIN FETCH q.tags LEFT JOIN FETCH q.group g LEFT JOIN FETCH g.creator WHERE q.id = :id")
+    Optional<Question> findPageQuestionById(@Param("id") Long id);
+    
     @Query("SELECT q FROM Question q WHERE q.isApproved = true ORDER BY q.createdAt DESC")
     Page<Question> findAllByOrderByCreatedAtDesc(Pageable pageable);
     
@@ -44,6 +51,72 @@ public interface QuestionRepository extends JpaRepository<Question, Long> {
     @Query("SELECT q FROM Question q JOIN q.tags t WHERE q.isApproved = true AND t = :tag ORDER BY q.createdAt DESC")
     Page<Question> findByTag(@Param("tag") Tag tag, Pageable pageable);
     
+    // ===== Keyset pagination: trả về Slice (không COUNT), sắp xếp ổn định theo (cột, id) =====
+    
+    @Query("SELECT q FROM Question q WHERE q.isApproved = true ORDER BY q.createdAt DESC, q.id DESC")
+    Slice<Question> findNewest(Pageable pageable);
+    
+    @Query("SELECT q FROM Question q WHERE q.isApproved = true " +
+           "AND (q.createdAt < :createdAt OR (q.createdAt = :createdAt AND q.id < :id)) " +
+           "ORDER BY q.createdAt DESC, q.id DESC")
+    Slice<Question> findNewestAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+    
+    @Query("SELECT q FROM Question q WHERE q.isApproved = true ORDER BY q.votes DESC, q.id DESC")
+    Slice<Question> findTopVoted(Pageable pageable);
+    
+    @Query("SELECT q FROM Question q WHERE q.isApproved = true " +
+           "AND (q.votes < :votes OR (q.votes = :votes AND q.id < :id)) " +
+           "ORDER BY q.votes DESC, q.id DESC")
+    Slice<Question> findTopVotedAfter(@Param("votes") Integer votes, @Param("id") Long id, Pageable pageable);
+    
+    @Query("SELECT q FROM Question q JOIN q.tags t WHERE q.isApproved = true AND t = :tag ORDER BY q.createdAt DESC, q.id DESC")
+    Slice<Question> findNewestByTag(@Param("tag") Tag tag, Pageable pageable);
+    
+    @Query("SELECT q FROM Question q JOIN q.tags t WHERE q.isApproved = true AND t = :tag " +
+           "AND (q.createdAt < :createdAt OR (q.createdAt = :createdAt AND q.id < :id)) " +
+           "ORDER BY q.createdAt DESC, q.id DESC")
+    Slice<Question> findNewestByTagAfter(@Param("tag") Tag tag, @Param("createdAt") LocalDateTime createdAt,
+                                         @Param("id") Long id, Pageable pageable);
+    
+    @Query("SELECT q FROM Question q WHERE q.isApproved = true AND (LOWER(q.title) LIKE LOWER(CONCAT('%', :search, '%')) OR LOWER(q.body) LIKE LOWER(CONCAT('%', :search, '%'))) " +
+           "ORDER BY q.createdAt DESC, q.id DESC")
+    Slice<Question> searchNewest(@Param("search") String search, Pageable pageable);
+    
+    @Query("SELECT q FROM Question q WHERE q.isApproved = true AND (LOWER(q.title) LIKE LOWER(CONCAT('%', :search, '%')) OR LOWER(q.body) LIKE LOWER(CONCAT('%', :search, '%'))) " +
+           "AND (q.createdAt < :createdAt OR (q.createdAt = :createdAt AND q.id < :id)) " +
+           "ORDER BY q.createdAt DESC, q.id DESC")
+    Slice<Question> searchNewestAfter(@Param("search") String search, @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") Long id, Pageable pageable);
+    
+    // ===== Hot questions =====
+    
+    @Query("SELECT q.id, q.createdAt, q.votes, q.answerCount, q.views FROM Question q " +
+           "WHERE q.isApproved = true AND q.createdAt >= :since")
+    List<Object[]> findHotCandidates(@Param("since") LocalDateTime since);
+    
+    /**
+     * Nạp một trang câu hỏi theo danh sách id (thứ tự do caller sắp lại)
+     */
+    @Query("SELECT q FROM Question q JOIN FETCH q.author LEFT JOIN FETCH q.tags " +
+           "LEFT JOIN FETCH q.group g LEFT JOIN FETCH g.creator WHERE q.id IN :ids")
+    List<Question> findFeedQuestionsByIds(@Param("ids") Collection<Long> ids);
+    
+    // ===== Search index =====
+    
+    @Query("SELECT q.id, q.updatedAt FROM Question q WHERE q.isApproved = true")
+    List<Object[]> findSearchStamps();
+    
+    @Query("SELECT q.id, q.title, q.body, q.updatedAt, q.isApproved FROM Question q WHERE q.id IN :ids")
+    List<Object[]> findSearchDocuments(@Param("ids") Collection<Long> ids);
+    
+    // ===== Similar questions (MinHash) =====
+    
+    @Query("SELECT q.id, q.title FROM Question q WHERE q.isApproved = true")
+    List<Object[]> findApprovedTitles();
+    
+    @Query("SELECT q.id, q.title, q.isApproved FROM Question q WHERE q.id = :id")
+    List<Object[]> findTitleById(@Param("id") Long id);
+    
     @Query("SELECT COUNT(q) FROM Question q WHERE q.author = :author")
     Long countByAuthor(@Param("author") User author);
 
@@ -0,0 +1,22 @@
+package com.stackoverflow.repository;
+
+import com.stackoverflow.entity.TagMergeJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TagMergeJobRepository extends JpaRepository<TagMergeJob, Long> {
+    
+    List<TagMergeJob> findByStatusIn(Collection<String> statuses);
+    
+    List<TagMergeJob> findTop10ByOrderByCreatedAtDesc();
+    
+    @Query("SELECT COUNT(j) > 0 FROM TagMergeJob j WHERE j.status IN ('PENDING', 'RUNNING') " +
+           "AND (j.sourceTagId IN :tagIds OR j.targetTagId IN :tagIds)")
+    boolean existsActiveForTags(@Param("tagIds") Collection<Long> tagIds);
+}
@@ -8,6 +8,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -25,5 +27,13 @@ public interface TagRepository extends JpaRepository<Tag, Long> {
     
     @Query("SELECT t FROM Tag t WHERE LOWER(t.name) LIKE LOWER(CONCAT('%', :search, '%'))")
     Page<Tag> searchTags(@Param("search") String search, Pageable pageable);
+    
+    List<Tag> findByNameIn(Collection<String> names);
+
+    @Query("SELECT t.name, t.questionCount FROM Tag t")
+    List<Object[]> findAllNamesAndCounts();
+    
+    @Query("SELECT t.name, t.id FROM Tag t WHERE t.name IN :names")
+    List<Object[]> findIdsByNames(@Param("names") Collection<String> names);
 }
 
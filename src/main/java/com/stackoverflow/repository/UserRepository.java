@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,6 +17,13 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     Optional<User> findByUsername(String username);
     
+    @Query("SELECT u.id FROM User u WHERE u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
+
+    /** (id, reputation) của các user, dùng cho phần trang không được cache */
+    @Query("SELECT u.id, u.reputation FROM User u WHERE u.id IN :ids")
+    List<Object[]> findReputations(@Param("ids") Collection<Long> ids);
+    
     Optional<User> findByEmail(String email);
     
     Boolean existsByUsername(String username);
@@ -3,9 +3,11 @@ package com.stackoverflow.service.common;
 import com.stackoverflow.entity.Answer;
 import com.stackoverflow.entity.Question;
 import com.stackoverflow.entity.User;
+import com.stackoverflow.event.QuestionActivityEvent;
+import com.stackoverflow.event.QuestionContentChangedEvent;
 import com.stackoverflow.repository.AnswerRepository;
-import com.stackoverflow.repository.QuestionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -22,7 +24,10 @@ public class AnswerService {
     private AnswerRepository answerRepository;
     
     @Autowired
-    private QuestionRepository questionRepository;
+    private CounterService counterService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     public Answer createAnswer(Answer answer) {
         answer.setVotes(0);
@@ -30,13 +35,14 @@ public class AnswerService {
         
         Answer savedAnswer = answerRepository.save(answer);
         
-        // Increment answer count
+        // Increment answer count (relative UPDATE, entity chỉ nhận giá trị mới để phát sự kiện)
         Question question = answer.getQuestion();
         if (question != null) {
-            question.setAnswerCount(question.getAnswerCount() + 1);
-            questionRepository.save(question);
+            question.setAnswerCount(counterService.adjustAnswerCount(question.getId(), 1));
+            eventPublisher.publishEvent(QuestionActivityEvent.of(question));
         }
         
+        publishChange(answer);
         return savedAnswer;
     }
 
@@ -53,7 +59,9 @@ public class AnswerService {
     }
 
     public Answer updateAnswer(Answer answer) {
-        return answerRepository.save(answer);
+        Answer saved = answerRepository.save(answer);
+        publishChange(saved);
+        return saved;
     }
 
     public void deleteAnswer(Long id) {
@@ -63,12 +71,13 @@ public class AnswerService {
             Question question = answer.getQuestion();
             
             // Decrement answer count
-            if (question != null && question.getAnswerCount() > 0) {
-                question.setAnswerCount(question.getAnswerCount() - 1);
-                questionRepository.save(question);
+            if (question != null) {
+                question.setAnswerCount(counterService.adjustAnswerCount(question.getId(), -1));
+                eventPublisher.publishEvent(QuestionActivityEvent.of(question));
             }
             
             answerRepository.deleteById(id);
+            publishChange(answer);
         }
     }
 
@@ -86,22 +95,7 @@ public class AnswerService {
         answer.setIsAccepted(true);
         question.setAcceptedAnswer(answer);
         answerRepository.save(answer);
-    }
-
-    public void upvoteAnswer(Answer answer, User user) {
-        if (!user.getVotedAnswers().contains(answer)) {
-            answer.upvote();
-            user.getVotedAnswers().add(answer);
-            answerRepository.save(answer);
-        }
-    }
-
-    public void downvoteAnswer(Answer answer, User user) {
-        if (user.getVotedAnswers().contains(answer)) {
-            answer.downvote();
-            user.getVotedAnswers().remove(answer);
-            answerRepository.save(answer);
-        }
+        publishChange(answer);
     }
 
     public Long countByAuthor(User author) {
@@ -111,5 +105,11 @@ public class AnswerService {
     public Long countByQuestion(Question question) {
         return answerRepository.countByQuestion(question);
     }
+
+    private void publishChange(Answer answer) {
+        if (answer.getQuestion() != null) {
+            eventPublisher.publishEvent(new QuestionContentChangedEvent(answer.getQuestion().getId()));
+        }
+    }
 }
 
@@ -0,0 +1,37 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.repository.QuestionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Approximate Count Service - Tổng số câu hỏi gần đúng cho phân trang
+ *
+ * Trang danh sách không chạy COUNT(*) mỗi request; giá trị được làm mới định kỳ ở nền.
+ */
+@Service
+public class ApproximateCountService {
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    private final AtomicLong approvedQuestions = new AtomicLong(-1);
+
+    public long getApprovedQuestionCount() {
+        long count = approvedQuestions.get();
+        if (count < 0) {
+            // Lần đầu sau khi khởi động
+            refresh();
+            count = approvedQuestions.get();
+        }
+        return count;
+    }
+
+    @Scheduled(fixedDelayString = "${feed.count-refresh-ms:60000}")
+    public void refresh() {
+        approvedQuestions.set(questionRepository.countByIsApproved(true));
+    }
+}
@@ -25,6 +25,9 @@ public class BadgeService {
     @Autowired
     private UserBadgeRepository userBadgeRepository;
 
+    @Autowired
+    private CounterService counterService;
+
     /**
      * Award badge to user
      */
@@ -42,8 +45,7 @@ public class BadgeService {
         userBadgeRepository.save(userBadge);
         
         // Increment badge earned count
-        badge.incrementEarnedCount();
-        badgeRepository.save(badge);
+        counterService.incrementBadgeEarnedCount(badge.getId());
         
         // Award points based on badge type
         int points = switch (badge.getType().toUpperCase()) {
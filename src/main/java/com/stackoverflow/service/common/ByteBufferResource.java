@@ -0,0 +1,132 @@
+package com.stackoverflow.service.common;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+
+/**
+ * Resource đọc từ một ByteBuffer (thường là direct buffer ngoài heap) mà không sao chép toàn bộ vào byte[].
+ * Mỗi lần getInputStream dùng một bản duplicate nên nhiều request đọc song song được.
+ *
+ * Buffer có thể được tái sử dụng (HotImageCache): khi đó mỗi stream giữ một Lease tới khi đóng; nếu buffer
+ * đã được thu hồi trước khi stream mở thì đọc từ fallback (file gốc).
+ */
+final class ByteBufferResource extends AbstractResource {
+
+    /**
+     * Quyền đọc buffer dùng chung
+     */
+    interface Lease {
+
+        /**
+         * @return false nếu buffer đã được thu hồi để dùng cho nội dung khác
+         */
+        boolean acquire();
+
+        void release();
+    }
+
+    private final ByteBuffer buffer;
+    private final String description;
+    private final long lastModified;
+    private final Lease lease;
+    private final Supplier<Resource> fallback;
+
+    ByteBufferResource(ByteBuffer buffer, String description, long lastModified) {
+        this(buffer, description, lastModified, null, null);
+    }
+
+    ByteBufferResource(ByteBuffer buffer, String description, long lastModified,
+                       Lease lease, Supplier<Resource> fallback) {
+        this.buffer = buffer.asReadOnlyBuffer();
+        this.description = description;
+        this.lastModified = lastModified;
+        this.lease = lease;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (lease == null) {
+            return new BufferInputStream(buffer.duplicate(), null);
+        }
+        if (lease.acquire()) {
+            return new BufferInputStream(buffer.duplicate(), lease);
+        }
+        Resource source = fallback != null ? fallback.get() : null;
+        if (source == null) {
+            throw new IOException(description + " is no longer available");
+        }
+        return source.getInputStream();
+    }
+
+    @Override
+    public long contentLength() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public boolean isReadable() {
+        return true;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    private static final class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+        private Lease lease;
+
+        BufferInputStream(ByteBuffer buffer, Lease lease) {
+            this.buffer = buffer;
+            this.lease = lease;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public void close() {
+            if (lease != null) {
+                lease.release();
+                lease = null;
+            }
+        }
+    }
+}
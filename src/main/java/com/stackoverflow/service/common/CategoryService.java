@@ -22,6 +22,9 @@ public class CategoryService {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private CounterService counterService;
+
     /**
      * Tạo chuyên mục mới
      */
@@ -117,23 +120,17 @@ public class CategoryService {
      * Tăng số lượng câu hỏi trong chuyên mục
      */
     public void incrementQuestionCount(Long categoryId) {
-        Category category = categoryRepository.findById(categoryId)
-                .orElseThrow(() -> new RuntimeException("Category not found"));
-        
-        category.setQuestionCount(category.getQuestionCount() + 1);
-        categoryRepository.save(category);
+        if (!counterService.adjustCategoryQuestionCount(categoryId, 1)) {
+            throw new RuntimeException("Category not found");
+        }
     }
 
     /**
      * Giảm số lượng câu hỏi trong chuyên mục
      */
     public void decrementQuestionCount(Long categoryId) {
-        Category category = categoryRepository.findById(categoryId)
-                .orElseThrow(() -> new RuntimeException("Category not found"));
-        
-        if (category.getQuestionCount() > 0) {
-            category.setQuestionCount(category.getQuestionCount() - 1);
-            categoryRepository.save(category);
+        if (!counterService.adjustCategoryQuestionCount(categoryId, -1) && !categoryRepository.existsById(categoryId)) {
+            throw new RuntimeException("Category not found");
         }
     }
 
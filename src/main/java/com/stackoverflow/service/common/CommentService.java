@@ -3,8 +3,10 @@ package com.stackoverflow.service.common;
 import com.stackoverflow.entity.Answer;
 import com.stackoverflow.entity.Comment;
 import com.stackoverflow.entity.Question;
+import com.stackoverflow.event.QuestionContentChangedEvent;
 import com.stackoverflow.repository.CommentRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
@@ -23,13 +25,18 @@ public class CommentService {
     @Autowired
     private CommentRepository commentRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     public Comment createComment(Comment comment) {
         // Ensure isApproved is set (default to true for all users)
         // Can be changed later if moderation is enabled
         if (comment.getIsApproved() == null) {
             comment.setIsApproved(true);
         }
-        return commentRepository.save(comment);
+        Comment saved = commentRepository.save(comment);
+        publishChange(saved);
+        return saved;
     }
 
     public Comment saveComment(Comment comment) {
@@ -38,7 +45,9 @@ public class CommentService {
         if (comment.getIsApproved() == null) {
             comment.setIsApproved(true);
         }
-        return commentRepository.save(comment);
+        Comment saved = commentRepository.save(comment);
+        publishChange(saved);
+        return saved;
     }
 
     public Optional<Comment> findById(Long id) {
@@ -54,7 +63,10 @@ public class CommentService {
     }
 
     public void deleteComment(Long id) {
-        commentRepository.deleteById(id);
+        commentRepository.findById(id).ifPresent(comment -> {
+            commentRepository.delete(comment);
+            publishChange(comment);
+        });
     }
 
     // ================== ADMIN FEATURES ==================
@@ -71,7 +83,9 @@ public class CommentService {
         Comment comment = commentRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Comment not found"));
         comment.setBody(newBody);
-        return commentRepository.save(comment);
+        Comment saved = commentRepository.save(comment);
+        publishChange(saved);
+        return saved;
     }
 
     public void softDeleteComment(Long id) {
@@ -79,6 +93,7 @@ public class CommentService {
                 .orElseThrow(() -> new RuntimeException("Comment not found"));
         comment.setIsDeleted(true);
         commentRepository.save(comment);
+        publishChange(comment);
     }
 
     public void approveComment(Long id) {
@@ -86,6 +101,7 @@ public class CommentService {
                 .orElseThrow(() -> new RuntimeException("Comment not found"));
         comment.setIsApproved(true);
         commentRepository.save(comment);
+        publishChange(comment);
     }
 
     public void rejectComment(Long id) {
@@ -93,6 +109,7 @@ public class CommentService {
                 .orElseThrow(() -> new RuntimeException("Comment not found"));
         comment.setIsApproved(false);
         commentRepository.save(comment);
+        publishChange(comment);
     }
 
     public long countAll() {
@@ -101,6 +118,21 @@ public class CommentService {
 
     // ================== HELPER METHODS ==================
 
+    /**
+     * Báo cho cache trang câu hỏi biết bình luận đã thay đổi
+     */
+    private void publishChange(Comment comment) {
+        Long questionId = null;
+        if (comment.getQuestion() != null) {
+            questionId = comment.getQuestion().getId();
+        } else if (comment.getAnswer() != null && comment.getAnswer().getQuestion() != null) {
+            questionId = comment.getAnswer().getQuestion().getId();
+        }
+        if (questionId != null) {
+            eventPublisher.publishEvent(new QuestionContentChangedEvent(questionId));
+        }
+    }
+
     /**
      * Check if current user is ADMIN or MANAGER
      */
@@ -0,0 +1,206 @@
+package com.stackoverflow.service.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bộ đệm cộng dồn delta theo id và ghi xuống DB theo lô (write-behind)
+ *
+ * Mỗi id có một LongAdder (phân tán theo luồng), nên hàng trăm lượt cộng cùng lúc vào một câu hỏi nóng
+ * không tranh nhau một khóa. flush() lấy delta của từng id bằng sumThenReset (mỗi ô được getAndSet nguyên tử)
+ * rồi chạy một JDBC batch với câu lệnh tương đối dạng "SET col = col + ? WHERE id = ?", nên mọi cập nhật
+ * của cùng một dòng trong một chu kỳ được gộp thành một lệnh UPDATE.
+ *
+ * Id không có cập nhật trong cả một chu kỳ được gỡ khỏi map để map không phình theo số id từng ghi nhận:
+ * adder bị đánh dấu retired rồi được lấy nốt phần còn lại. Luồng cộng thấy adder đã retired sau khi cộng
+ * thì tự lấy phần còn lại và cộng lại vào adder mới; getAndSet bảo đảm mỗi delta được lấy đúng một lần.
+ * Batch chạy trong một transaction: lỗi giữa chừng thì rollback toàn bộ rồi mới trả delta lại hàng đợi,
+ * không dòng nào bị cộng hai lần.
+ */
+public class CounterBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(CounterBuffer.class);
+
+    private final String name;
+    private final String flushSql;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentHashMap<Long, Cell> pending = new ConcurrentHashMap<>();
+
+    private final Object flushLock = new Object();
+
+    // Metrics
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong lastFlushAt = new AtomicLong(System.currentTimeMillis());
+    private final AtomicLong lastFlushDurationMs = new AtomicLong();
+    private final AtomicLong maxFlushDurationMs = new AtomicLong();
+    private final AtomicLong lastBatchSize = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final AtomicLong totalFlushedDelta = new AtomicLong();
+    private final AtomicLong totalFlushedRows = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    /**
+     * @param flushSql câu lệnh nhận 2 tham số (delta, id)
+     */
+    public CounterBuffer(String name, String flushSql, JdbcTemplate jdbcTemplate,
+                         TransactionTemplate transactionTemplate) {
+        this.name = name;
+        this.flushSql = flushSql;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Cộng delta cho id (không truy vấn DB)
+     */
+    public void add(Long id, long delta) {
+        accumulate(id, delta);
+        recorded.incrementAndGet();
+    }
+
+    /**
+     * Delta chưa được ghi xuống DB của id
+     */
+    public long getPending(Long id) {
+        Cell cell = pending.get(id);
+        return cell != null ? cell.adder.sum() : 0L;
+    }
+
+    /**
+     * Ghi toàn bộ delta đang chờ bằng 1 JDBC batch
+     *
+     * @return delta đã ghi theo id (rỗng nếu không có gì hoặc ghi lỗi)
+     */
+    public Map<Long, Long> flush() {
+        synchronized (flushLock) {
+            long start = System.currentTimeMillis();
+            Map<Long, Long> deltas = drain();
+            if (deltas.isEmpty()) {
+                lastFlushAt.set(start);
+                lastBatchSize.set(0);
+                return Collections.emptyMap();
+            }
+
+            List<Object[]> batch = new ArrayList<>(deltas.size());
+            deltas.forEach((id, delta) -> batch.add(new Object[]{delta, id}));
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(flushSql, batch));
+            } catch (RuntimeException e) {
+                // Batch đã rollback: trả delta lại hàng đợi để lần flush sau thử lại
+                deltas.forEach(this::restore);
+                failedFlushes.incrementAndGet();
+                log.warn("Failed to flush {} {} counters: {}", deltas.size(), name, e.getMessage());
+                return Collections.emptyMap();
+            }
+
+            long now = System.currentTimeMillis();
+            lastFlushAt.set(now);
+            lastFlushDurationMs.set(now - start);
+            maxFlushDurationMs.accumulateAndGet(now - start, Math::max);
+            lastBatchSize.set(batch.size());
+            maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+            totalFlushedRows.addAndGet(batch.size());
+            totalFlushedDelta.addAndGet(deltas.values().stream().mapToLong(Math::abs).sum());
+            return deltas;
+        }
+    }
+
+    /**
+     * Lấy delta của từng id bằng sumThenReset. Id không có delta nào từ lần flush trước được gỡ khỏi map;
+     * delta cộng đồng thời vào adder vừa gỡ được lấy ở đây hoặc do chính luồng cộng đưa sang adder mới
+     */
+    private Map<Long, Long> drain() {
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        for (Map.Entry<Long, Cell> entry : pending.entrySet()) {
+            Long id = entry.getKey();
+            Cell cell = entry.getValue();
+            long delta = cell.adder.sumThenReset();
+            if (delta == 0 && pending.remove(id, cell)) {
+                cell.retired = true;
+                delta = cell.adder.sumThenReset();
+            }
+            if (delta != 0) {
+                deltas.merge(id, delta, Long::sum);
+            }
+        }
+        return deltas;
+    }
+
+    private void restore(Long id, long delta) {
+        accumulate(id, delta);
+    }
+
+    private void accumulate(Long id, long delta) {
+        while (delta != 0) {
+            Cell cell = pending.computeIfAbsent(id, key -> new Cell());
+            cell.adder.add(delta);
+            if (!cell.retired) {
+                return;
+            }
+            // drain() vừa gỡ adder này: lấy lại phần chưa được drain lấy và cộng vào adder mới
+            delta = cell.adder.sumThenReset();
+        }
+    }
+
+    /**
+     * Số id có delta khác 0 đang chờ
+     */
+    public int getPendingCount() {
+        int count = 0;
+        for (Cell cell : pending.values()) {
+            if (cell.adder.sum() != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long getPendingDelta() {
+        return pending.values().stream().mapToLong(cell -> Math.abs(cell.adder.sum())).sum();
+    }
+
+    public long getTotalFlushedDelta() {
+        return totalFlushedDelta.get();
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", getPendingCount());
+        stats.put("trackedIds", pending.size());
+        stats.put("pendingDelta", getPendingDelta());
+        stats.put("recorded", recorded.get());
+        stats.put("flushLagMs", System.currentTimeMillis() - lastFlushAt.get());
+        stats.put("lastFlushDurationMs", lastFlushDurationMs.get());
+        stats.put("maxFlushDurationMs", maxFlushDurationMs.get());
+        stats.put("lastBatchSize", lastBatchSize.get());
+        stats.put("maxBatchSize", maxBatchSize.get());
+        stats.put("totalFlushedRows", totalFlushedRows.get());
+        stats.put("totalFlushedDelta", totalFlushedDelta.get());
+        stats.put("failedFlushes", failedFlushes.get());
+        return stats;
+    }
+
+    private static final class Cell {
+
+        final LongAdder adder = new LongAdder();
+        /** Đã bị drain() gỡ khỏi map */
+        volatile boolean retired;
+    }
+}
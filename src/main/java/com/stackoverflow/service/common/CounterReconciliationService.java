@@ -0,0 +1,184 @@
+package com.stackoverflow.service.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Counter Reconciliation Service - Đối soát định kỳ các bộ đếm phi chuẩn hóa
+ *
+ * Duyệt bảng theo từng khoảng id (counters.reconcile-chunk-size), mỗi khoảng một câu GROUP BY đọc
+ * cùng lúc giá trị đang lưu và giá trị thật, rồi sửa các dòng lệch bằng delta tương đối
+ * "col = col + (thật - đang lưu)". Cập nhật đồng thời xảy ra giữa lúc đọc và lúc sửa thay đổi cả
+ * hai phía như nhau nên không bị ghi đè. Không chạy trong một giao dịch dài: mỗi câu lệnh tự commit.
+ *
+ * Category.questionCount không có nguồn dữ liệu để đếm lại (câu hỏi không gắn chuyên mục) nên không đối soát.
+ */
+@Service
+public class CounterReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(CounterReconciliationService.class);
+
+    private static final int MAX_RECENT_CORRECTIONS = 50;
+
+    private static final List<Counter> COUNTERS = List.of(
+            new Counter("tagQuestionCount", "tags", "question_count",
+                    "SELECT t.id, t.question_count, COUNT(qt.question_id) FROM tags t "
+                            + "LEFT JOIN question_tags qt ON qt.tag_id = t.id "
+                            + "WHERE t.id BETWEEN ? AND ? GROUP BY t.id, t.question_count"),
+            new Counter("questionAnswerCount", "questions", "answer_count",
+                    "SELECT q.id, q.answer_count, COUNT(a.id) FROM questions q "
+                            + "LEFT JOIN answers a ON a.question_id = q.id "
+                            + "WHERE q.id BETWEEN ? AND ? GROUP BY q.id, q.answer_count"),
+            new Counter("badgeEarnedCount", "badges", "earned_count",
+                    "SELECT b.id, b.earned_count, COUNT(ub.id) FROM badges b "
+                            + "LEFT JOIN user_badges ub ON ub.badge_id = b.id "
+                            + "WHERE b.id BETWEEN ? AND ? GROUP BY b.id, b.earned_count"),
+            new Counter("imageBlobRefCount", "image_blobs", "ref_count",
+                    "SELECT b.id, b.ref_count, COUNT(i.id) FROM image_blobs b "
+                            + "LEFT JOIN image_attachments i ON i.blob_id = b.id "
+                            + "WHERE b.id BETWEEN ? AND ? GROUP BY b.id, b.ref_count"));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${counters.reconcile-chunk-size:1000}")
+    private int chunkSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // Metrics
+    private final Map<String, Map<String, Object>> lastRunStats = new LinkedHashMap<>();
+    private final Deque<String> recentCorrections = new ArrayDeque<>();
+    private long runs;
+    private long totalCorrectedRows;
+    private long lastRunAt;
+    private long lastRunDurationMs;
+
+    /**
+     * Đối soát tất cả bộ đếm
+     *
+     * @return số dòng đã sửa (0 nếu đang có lần chạy khác)
+     */
+    @Scheduled(initialDelayString = "${counters.reconcile-initial-delay-ms:120000}",
+            fixedDelayString = "${counters.reconcile-interval-ms:3600000}")
+    public int reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            int corrected = 0;
+            for (Counter counter : COUNTERS) {
+                corrected += reconcile(counter);
+            }
+            synchronized (this) {
+                runs++;
+                totalCorrectedRows += corrected;
+                lastRunAt = start;
+                lastRunDurationMs = System.currentTimeMillis() - start;
+            }
+            if (corrected > 0) {
+                log.warn("Counter reconciliation corrected {} drifted rows in {} ms", corrected, lastRunDurationMs);
+            }
+            return corrected;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int reconcile(Counter counter) {
+        Map<String, Object> bounds = jdbcTemplate.queryForMap("SELECT MIN(id) AS lo, MAX(id) AS hi FROM " + counter.table);
+        long checked = 0;
+        long totalDrift = 0;
+        int corrected = 0;
+        if (bounds.get("lo") != null) {
+            long lo = ((Number) bounds.get("lo")).longValue();
+            long hi = ((Number) bounds.get("hi")).longValue();
+            String fixSql = "UPDATE " + counter.table + " SET " + counter.column + " = " + counter.column + " + ? WHERE id = ?";
+            for (long from = lo; from <= hi; from += chunkSize) {
+                long to = Math.min(hi, from + chunkSize - 1);
+                List<Object[]> fixes = new ArrayList<>();
+                List<long[]> rows = jdbcTemplate.query(counter.checkSql,
+                        (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)}, from, to);
+                for (long[] row : rows) {
+                    checked++;
+                    long id = row[0];
+                    long stored = row[1];
+                    long actual = row[2];
+                    if (stored != actual) {
+                        fixes.add(new Object[]{actual - stored, id});
+                        totalDrift += Math.abs(actual - stored);
+                        recordCorrection(counter.name + "#" + id + ": " + stored + " -> " + actual);
+                    }
+                }
+                if (!fixes.isEmpty()) {
+                    jdbcTemplate.batchUpdate(fixSql, fixes);
+                    corrected += fixes.size();
+                }
+            }
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("checkedRows", checked);
+        stats.put("correctedRows", corrected);
+        stats.put("totalDrift", totalDrift);
+        synchronized (this) {
+            lastRunStats.put(counter.name, stats);
+        }
+        if (corrected > 0) {
+            log.info("Counter {} drifted on {} rows (total drift {})", counter.name, corrected, totalDrift);
+        }
+        return corrected;
+    }
+
+    private synchronized void recordCorrection(String correction) {
+        if (recentCorrections.size() >= MAX_RECENT_CORRECTIONS) {
+            recentCorrections.removeFirst();
+        }
+        recentCorrections.addLast(correction);
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("runs", runs);
+        stats.put("running", running.get());
+        stats.put("lastRunAgeMs", lastRunAt > 0 ? System.currentTimeMillis() - lastRunAt : -1);
+        stats.put("lastRunDurationMs", lastRunDurationMs);
+        stats.put("totalCorrectedRows", totalCorrectedRows);
+        stats.put("lastRun", new LinkedHashMap<>(lastRunStats));
+        stats.put("recentCorrections", new ArrayList<>(recentCorrections));
+        return stats;
+    }
+
+    private static final class Counter {
+
+        final String name;
+        final String table;
+        final String column;
+        /** Trả về (id, giá trị đang lưu, giá trị thật) cho khoảng id [?, ?] */
+        final String checkSql;
+
+        Counter(String name, String table, String column, String checkSql) {
+            this.name = name;
+            this.table = table;
+            this.column = column;
+            this.checkSql = checkSql;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.stackoverflow.service.common;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counter Service - Cập nhật các bộ đếm phi chuẩn hóa bằng SQL tương đối
+ *
+ * Tag.questionCount, Question.answerCount, Category.questionCount và Badge.earnedCount chỉ được
+ * ghi bằng "SET col = col ± n" nên không cần đọc entity trước, không mất cập nhật khi chạy đồng thời
+ * và chỉ khóa dòng trong thời gian của một câu UPDATE. Các cột này có updatable = false trên entity.
+ * Sai lệch còn sót (dữ liệu cũ, lỗi giữa chừng) do CounterReconciliationService sửa định kỳ.
+ */
+@Service
+@Transactional
+public class CounterService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // ================== TAG ==================
+
+    /**
+     * Id các thẻ đang gắn với câu hỏi theo DB (trước khi Hibernate flush thay đổi mới)
+     */
+    @Transactional(readOnly = true)
+    public Set<Long> findTagIds(Long questionId) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT tag_id FROM question_tags WHERE question_id = ?", Long.class, questionId));
+    }
+
+    /**
+     * Cộng delta vào questionCount của các thẻ (không xuống dưới 0)
+     */
+    public void adjustTagQuestionCounts(Collection<Long> tagIds, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        Map<Long, Integer> deltas = new HashMap<>();
+        tagIds.forEach(tagId -> deltas.put(tagId, delta));
+        adjustTagQuestionCounts(deltas);
+    }
+
+    /**
+     * Cộng delta riêng cho từng thẻ (1 JDBC batch)
+     */
+    public void adjustTagQuestionCounts(Map<Long, Integer> deltas) {
+        batchAdjust("UPDATE tags SET question_count = question_count + ? WHERE id = ? AND question_count + ? >= 0", deltas);
+    }
+
+    /**
+     * Đếm lại questionCount của một thẻ từ question_tags (dùng sau thao tác hàng loạt như gộp thẻ)
+     *
+     * @return giá trị mới
+     */
+    public int recountTagQuestionCount(Long tagId) {
+        jdbcTemplate.update(
+                "UPDATE tags SET question_count = (SELECT COUNT(*) FROM question_tags WHERE tag_id = ?) WHERE id = ?",
+                tagId, tagId);
+        return readCount("SELECT question_count FROM tags WHERE id = ?", tagId);
+    }
+
+    // ================== QUESTION ==================
+
+    /**
+     * Cộng delta vào answerCount của câu hỏi
+     *
+     * @return giá trị mới (đọc lại trong cùng giao dịch, dòng vẫn đang bị khóa bởi UPDATE)
+     */
+    public int adjustAnswerCount(Long questionId, int delta) {
+        jdbcTemplate.update(
+                "UPDATE questions SET answer_count = answer_count + ? WHERE id = ? AND answer_count + ? >= 0",
+                delta, questionId, delta);
+        return readCount("SELECT answer_count FROM questions WHERE id = ?", questionId);
+    }
+
+    /**
+     * Cộng delta riêng cho answerCount của từng câu hỏi (1 JDBC batch)
+     */
+    public void adjustAnswerCounts(Map<Long, Integer> deltas) {
+        batchAdjust("UPDATE questions SET answer_count = answer_count + ? WHERE id = ? AND answer_count + ? >= 0", deltas);
+    }
+
+    // ================== CATEGORY ==================
+
+    /**
+     * Cộng delta vào questionCount của chuyên mục
+     *
+     * @return false nếu chuyên mục không tồn tại hoặc bộ đếm đã về 0
+     */
+    public boolean adjustCategoryQuestionCount(Long categoryId, int delta) {
+        return jdbcTemplate.update(
+                "UPDATE categories SET question_count = question_count + ? WHERE id = ? AND question_count + ? >= 0",
+                delta, categoryId, delta) > 0;
+    }
+
+    // ================== BADGE ==================
+
+    public void incrementBadgeEarnedCount(Long badgeId) {
+        jdbcTemplate.update("UPDATE badges SET earned_count = earned_count + 1 WHERE id = ?", badgeId);
+    }
+
+    /**
+     * Giảm earnedCount của mọi huy hiệu người dùng đang có, gọi trước khi xóa dòng user_badges
+     */
+    public int decrementBadgesOfUser(Long userId) {
+        return jdbcTemplate.update(
+                "UPDATE badges SET earned_count = earned_count - 1 "
+                        + "WHERE earned_count > 0 AND id IN (SELECT badge_id FROM user_badges WHERE user_id = ?)",
+                userId);
+    }
+
+    private void batchAdjust(String sql, Map<Long, Integer> deltas) {
+        List<Object[]> batch = new ArrayList<>(deltas.size());
+        deltas.forEach((id, delta) -> {
+            if (delta != 0) {
+                batch.add(new Object[]{delta, id, delta});
+            }
+        });
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch);
+        }
+    }
+
+    private int readCount(String sql, Long id) {
+        List<Integer> values = jdbcTemplate.queryForList(sql, Integer.class, id);
+        return values.isEmpty() || values.get(0) == null ? 0 : values.get(0);
+    }
+}
@@ -0,0 +1,534 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.entity.DeletionJob;
+import com.stackoverflow.event.QuestionContentChangedEvent;
+import com.stackoverflow.event.QuestionLifecycleEvent;
+import com.stackoverflow.event.UnreadCountChangedEvent;
+import com.stackoverflow.repository.DeletionJobRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Deletion Service - Xóa người dùng/câu hỏi chạy nền bằng câu lệnh theo tập hợp
+ *
+ * Dữ liệu được xóa theo thứ tự khóa ngoại, mỗi đoạn (deletion.chunk-size id) là một giao dịch ngắn:
+ * vote -> question_tags -> bình luận -> ảnh -> câu trả lời -> câu hỏi, cuối cùng là tài khoản.
+ * Bộ đếm (tag, answerCount, vote, huy hiệu) được trừ bằng SQL tương đối trước khi xóa dòng.
+ * File ảnh chỉ bị xóa sau khi đoạn tương ứng đã commit, ngoài giao dịch.
+ * Mọi bước đều lặp lại được nên tiến trình dở dang được chạy lại từ đầu khi khởi động lại.
+ */
+@Service
+public class DeletionService {
+
+    private static final Logger log = LoggerFactory.getLogger(DeletionService.class);
+
+    private static final String STAGE_QUESTIONS = "QUESTIONS";
+    private static final String STAGE_ANSWERS = "ANSWERS";
+    private static final String STAGE_COMMENTS = "COMMENTS";
+    private static final String STAGE_IMAGES = "IMAGES";
+    private static final String STAGE_ACCOUNT = "ACCOUNT";
+
+    private static final List<String> USER_STAGES =
+            List.of(STAGE_QUESTIONS, STAGE_ANSWERS, STAGE_COMMENTS, STAGE_IMAGES, STAGE_ACCOUNT);
+
+    /** Câu hỏi chứa bình luận/ảnh (trực tiếp hoặc qua câu trả lời), để làm mới cache trang câu hỏi */
+    private static final String QUESTION_OF_COMMENTS_SQL =
+            "SELECT DISTINCT COALESCE(c.question_id, a.question_id) FROM comments c " +
+            "LEFT JOIN answers a ON a.id = c.answer_id WHERE c.id IN (%s)";
+
+    // File gốc và các biến thể kích thước của ảnh, blob nội dung dùng chung
+    private static final String IMAGE_PATHS_SQL = "SELECT path, thumbnail_path, medium_path, blob_id FROM image_attachments";
+
+    private static final String QUESTION_OF_IMAGES_SQL =
+            "SELECT DISTINCT COALESCE(i.question_id, a.question_id) FROM image_attachments i " +
+            "LEFT JOIN answers a ON a.id = i.answer_id WHERE i.id IN (%s)";
+
+    @Autowired
+    private DeletionJobRepository jobRepository;
+
+    @Autowired
+    private CounterService counterService;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private ImageBlobStore blobStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${deletion.chunk-size:500}")
+    private int chunkSize;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "deletion");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // ================== API ==================
+
+    /**
+     * Đưa yêu cầu xóa người dùng (kèm toàn bộ dữ liệu) vào hàng đợi
+     */
+    public DeletionJob requestUserDeletion(Long userId, String requestedBy) {
+        List<String> usernames = jdbcTemplate.queryForList("SELECT username FROM users WHERE id = ?", String.class, userId);
+        if (usernames.isEmpty()) {
+            throw new RuntimeException("User not found");
+        }
+        Long questions = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM questions WHERE author_id = ?", Long.class, userId);
+        return enqueue(DeletionJob.TYPE_USER, userId, usernames.get(0), requestedBy, USER_STAGES.size(), questions);
+    }
+
+    /**
+     * Đưa yêu cầu xóa câu hỏi (kèm câu trả lời, bình luận, ảnh) vào hàng đợi
+     */
+    public DeletionJob requestQuestionDeletion(Long questionId, String requestedBy) {
+        List<String> titles = jdbcTemplate.queryForList("SELECT title FROM questions WHERE id = ?", String.class, questionId);
+        if (titles.isEmpty()) {
+            throw new RuntimeException("Question not found");
+        }
+        return enqueue(DeletionJob.TYPE_QUESTION, questionId, titles.get(0), requestedBy, 1, 1L);
+    }
+
+    public List<DeletionJob> getRecentJobs() {
+        return jobRepository.findTop20ByOrderByCreatedAtDesc();
+    }
+
+    public DeletionJob getJob(Long jobId) {
+        return jobRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Deletion job not found"));
+    }
+
+    /**
+     * Chạy lại các tiến trình đang dở khi node bị tắt giữa chừng. Mọi node đều chạy lúc khởi động nên chỉ node
+     * nhận được tiến trình (cập nhật có điều kiện trên status và updated_at) mới chạy lại
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        for (DeletionJob job : jobRepository.findByStatusIn(Set.of(DeletionJob.PENDING, DeletionJob.RUNNING))) {
+            if (!claim(job)) {
+                continue;
+            }
+            log.info("Resuming deletion job {} ({} {})", job.getId(), job.getTargetType(), job.getTargetId());
+            submit(job.getId());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private DeletionJob enqueue(String type, Long targetId, String label, String requestedBy, int stages, Long questions) {
+        if (jobRepository.existsActive(type, targetId)) {
+            throw new RuntimeException("Đang có tiến trình xóa cho đối tượng này");
+        }
+        DeletionJob job = new DeletionJob();
+        job.setTargetType(type);
+        job.setTargetId(targetId);
+        job.setTargetLabel(label != null && label.length() > 255 ? label.substring(0, 255) : label);
+        job.setRequestedBy(requestedBy);
+        job.setTotalStages(stages);
+        job.setTotalQuestions(questions != null ? questions : 0L);
+        job = jobRepository.save(job);
+        submit(job.getId());
+        return job;
+    }
+
+    private boolean claim(DeletionJob job) {
+        LocalDateTime seen = job.getUpdatedAt();
+        return jdbcTemplate.update(
+                "UPDATE deletion_jobs SET status = ?, updated_at = ? WHERE id = ? AND status = ?"
+                        + (seen != null ? " AND updated_at = ?" : " AND updated_at IS NULL"),
+                seen != null
+                        ? new Object[]{DeletionJob.RUNNING, LocalDateTime.now(), job.getId(), job.getStatus(), seen}
+                        : new Object[]{DeletionJob.RUNNING, LocalDateTime.now(), job.getId(), job.getStatus()}) == 1;
+    }
+
+    private void submit(Long jobId) {
+        executor.submit(() -> run(jobId));
+    }
+
+    // ================== WORKER ==================
+
+    private void run(Long jobId) {
+        DeletionJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || DeletionJob.COMPLETED.equals(job.getStatus())) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            job.setStatus(DeletionJob.RUNNING);
+            job.setError(null);
+            // Chạy lại từ đầu trên phần dữ liệu còn lại: đặt lại cả ba bộ đếm tiến độ cùng lúc
+            job.setDeletedQuestions(0L);
+            job.setDeletedRows(0L);
+            job.setDeletedFiles(0L);
+            job = jobRepository.save(job);
+
+            if (DeletionJob.TYPE_QUESTION.equals(job.getTargetType())) {
+                job = stage(job, STAGE_QUESTIONS, 0);
+                job = progress(job, deleteQuestionChunk(List.of(job.getTargetId())), 1);
+            } else {
+                job = deleteUser(job);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+
+            job.setStatus(DeletionJob.COMPLETED);
+            job.setStageIndex(job.getTotalStages());
+            job.setCompletedAt(LocalDateTime.now());
+            jobRepository.save(job);
+            log.info("Deletion job {} ({} {}) completed in {} ms: {} rows, {} files",
+                    jobId, job.getTargetType(), job.getTargetId(), System.currentTimeMillis() - start,
+                    job.getDeletedRows(), job.getDeletedFiles());
+        } catch (RuntimeException e) {
+            log.warn("Deletion job {} failed: {}", jobId, e.getMessage());
+            jobRepository.findById(jobId).ifPresent(failed -> {
+                failed.setStatus(DeletionJob.FAILED);
+                String message = String.valueOf(e.getMessage());
+                failed.setError(message.length() > 1000 ? message.substring(0, 1000) : message);
+                jobRepository.save(failed);
+            });
+        }
+    }
+
+    private DeletionJob deleteUser(DeletionJob job) {
+        Long userId = job.getTargetId();
+
+        // 1. Câu hỏi của người dùng (kèm mọi thứ bên trong)
+        job = stage(job, STAGE_QUESTIONS, 0);
+        for (List<Long> ids = nextIds("SELECT id FROM questions WHERE author_id = ? AND id > ? ORDER BY id", userId, 0L);
+             !ids.isEmpty() && !Thread.currentThread().isInterrupted();
+             ids = nextIds("SELECT id FROM questions WHERE author_id = ? AND id > ? ORDER BY id", userId, last(ids))) {
+            job = progress(job, deleteQuestionChunk(ids), ids.size());
+        }
+
+        // 2. Câu trả lời trên câu hỏi của người khác
+        job = stage(job, STAGE_ANSWERS, 1);
+        for (List<Long> ids = nextIds("SELECT id FROM answers WHERE author_id = ? AND id > ? ORDER BY id", userId, 0L);
+             !ids.isEmpty() && !Thread.currentThread().isInterrupted();
+             ids = nextIds("SELECT id FROM answers WHERE author_id = ? AND id > ? ORDER BY id", userId, last(ids))) {
+            job = progress(job, deleteAnswerChunk(ids), 0);
+        }
+
+        // 3. Bình luận ở nơi khác
+        job = stage(job, STAGE_COMMENTS, 2);
+        for (List<Long> ids = nextIds("SELECT id FROM comments WHERE author_id = ? AND id > ? ORDER BY id", userId, 0L);
+             !ids.isEmpty() && !Thread.currentThread().isInterrupted();
+             ids = nextIds("SELECT id FROM comments WHERE author_id = ? AND id > ? ORDER BY id", userId, last(ids))) {
+            job = progress(job, deleteCommentChunk(ids), 0);
+        }
+
+        // 4. Ảnh người dùng tải lên ở nơi khác
+        job = stage(job, STAGE_IMAGES, 3);
+        for (List<Long> ids = nextIds("SELECT id FROM image_attachments WHERE user_id = ? AND id > ? ORDER BY id", userId, 0L);
+             !ids.isEmpty() && !Thread.currentThread().isInterrupted();
+             ids = nextIds("SELECT id FROM image_attachments WHERE user_id = ? AND id > ? ORDER BY id", userId, last(ids))) {
+            job = progress(job, deleteImageChunk(ids), 0);
+        }
+
+        // 5. Dữ liệu gắn với tài khoản, cuối cùng là tài khoản
+        job = stage(job, STAGE_ACCOUNT, 4);
+        job = progress(job, deleteInChunks("notifications", "user_id = ?", userId), 0);
+        job = progress(job, deleteInChunks("activity_logs", "user_id = ?", userId), 0);
+        job = progress(job, deleteAccount(userId), 0);
+        return job;
+    }
+
+    // ================== CHUNKS ==================
+
+    /**
+     * Xóa một đoạn câu hỏi cùng câu trả lời, bình luận, ảnh, vote và dòng question_tags của chúng
+     */
+    private ChunkResult deleteQuestionChunk(List<Long> questionIds) {
+        ChunkResult result = transactionTemplate.execute(status -> {
+            String in = placeholders(questionIds.size());
+            Object[] ids = questionIds.toArray();
+            Object[] idsTwice = concat(ids, ids);
+            String answersOf = "SELECT id FROM answers WHERE question_id IN (" + in + ")";
+            ChunkResult chunk = new ChunkResult();
+
+            chunk.rows += jdbcTemplate.update("DELETE FROM user_votes_answers WHERE answer_id IN (" + answersOf + ")", ids);
+            chunk.rows += jdbcTemplate.update("DELETE FROM user_votes_questions WHERE question_id IN (" + in + ")", ids);
+
+            Map<Long, Integer> tagDeltas = new HashMap<>();
+            jdbcTemplate.query("SELECT tag_id, COUNT(*) FROM question_tags WHERE question_id IN (" + in + ") GROUP BY tag_id",
+                    rs -> {
+                        tagDeltas.put(rs.getLong(1), -rs.getInt(2));
+                    }, ids);
+            counterService.adjustTagQuestionCounts(tagDeltas);
+            chunk.rows += jdbcTemplate.update("DELETE FROM question_tags WHERE question_id IN (" + in + ")", ids);
+
+            chunk.rows += jdbcTemplate.update(
+                    "DELETE FROM comments WHERE question_id IN (" + in + ") OR answer_id IN (" + answersOf + ")", idsTwice);
+
+            String imagesWhere = " WHERE question_id IN (" + in + ") OR answer_id IN (" + answersOf + ")";
+            collectImagePaths(chunk.paths, imagesWhere, idsTwice);
+            chunk.rows += jdbcTemplate.update("DELETE FROM image_attachments" + imagesWhere, idsTwice);
+
+            jdbcTemplate.update("UPDATE questions SET accepted_answer_id = NULL WHERE id IN (" + in + ")", ids);
+            chunk.rows += jdbcTemplate.update("DELETE FROM answers WHERE question_id IN (" + in + ")", ids);
+            chunk.rows += jdbcTemplate.update("DELETE FROM questions WHERE id IN (" + in + ")", ids);
+
+            questionIds.forEach(id -> eventPublisher.publishEvent(
+                    new QuestionLifecycleEvent(id, QuestionLifecycleEvent.Type.DELETED)));
+            return chunk;
+        });
+        return cleanupFiles(result);
+    }
+
+    /**
+     * Xóa một đoạn câu trả lời (trên câu hỏi của người khác) và trừ answerCount của câu hỏi
+     */
+    private ChunkResult deleteAnswerChunk(List<Long> answerIds) {
+        ChunkResult result = transactionTemplate.execute(status -> {
+            String in = placeholders(answerIds.size());
+            Object[] ids = answerIds.toArray();
+            ChunkResult chunk = new ChunkResult();
+
+            chunk.rows += jdbcTemplate.update("DELETE FROM user_votes_answers WHERE answer_id IN (" + in + ")", ids);
+            chunk.rows += jdbcTemplate.update("DELETE FROM comments WHERE answer_id IN (" + in + ")", ids);
+            collectImagePaths(chunk.paths, " WHERE answer_id IN (" + in + ")", ids);
+            chunk.rows += jdbcTemplate.update("DELETE FROM image_attachments WHERE answer_id IN (" + in + ")", ids);
+            jdbcTemplate.update("UPDATE questions SET accepted_answer_id = NULL WHERE accepted_answer_id IN (" + in + ")", ids);
+
+            Map<Long, Integer> answerDeltas = new HashMap<>();
+            jdbcTemplate.query("SELECT question_id, COUNT(*) FROM answers WHERE id IN (" + in + ") GROUP BY question_id",
+                    rs -> {
+                        answerDeltas.put(rs.getLong(1), -rs.getInt(2));
+                    }, ids);
+            counterService.adjustAnswerCounts(answerDeltas);
+            chunk.rows += jdbcTemplate.update("DELETE FROM answers WHERE id IN (" + in + ")", ids);
+
+            publishContentChanged(answerDeltas.keySet());
+            return chunk;
+        });
+        return cleanupFiles(result);
+    }
+
+    private ChunkResult deleteCommentChunk(List<Long> commentIds) {
+        return transactionTemplate.execute(status -> {
+            String in = placeholders(commentIds.size());
+            Object[] ids = commentIds.toArray();
+            ChunkResult chunk = new ChunkResult();
+            List<Long> questionIds = jdbcTemplate.queryForList(String.format(QUESTION_OF_COMMENTS_SQL, in), Long.class, ids);
+            chunk.rows += jdbcTemplate.update("DELETE FROM comments WHERE id IN (" + in + ")", ids);
+            publishContentChanged(questionIds);
+            return chunk;
+        });
+    }
+
+    private ChunkResult deleteImageChunk(List<Long> imageIds) {
+        ChunkResult result = transactionTemplate.execute(status -> {
+            String in = placeholders(imageIds.size());
+            Object[] ids = imageIds.toArray();
+            ChunkResult chunk = new ChunkResult();
+            List<Long> questionIds = jdbcTemplate.queryForList(String.format(QUESTION_OF_IMAGES_SQL, in), Long.class, ids);
+            collectImagePaths(chunk.paths, " WHERE id IN (" + in + ")", ids);
+            chunk.rows += jdbcTemplate.update("DELETE FROM image_attachments WHERE id IN (" + in + ")", ids);
+            publishContentChanged(questionIds);
+            return chunk;
+        });
+        return cleanupFiles(result);
+    }
+
+    /**
+     * Xóa các dòng của bảng lớn theo từng đoạn id (mỗi đoạn một giao dịch)
+     */
+    private ChunkResult deleteInChunks(String table, String where, Long userId) {
+        ChunkResult total = new ChunkResult();
+        String select = "SELECT id FROM " + table + " WHERE " + where + " AND id > ? ORDER BY id";
+        for (List<Long> ids = nextIds(select, userId, 0L);
+             !ids.isEmpty() && !Thread.currentThread().isInterrupted();
+             ids = nextIds(select, userId, last(ids))) {
+            String delete = "DELETE FROM " + table + " WHERE id IN (" + placeholders(ids.size()) + ")";
+            Object[] args = ids.toArray();
+            Integer rows = transactionTemplate.execute(status -> jdbcTemplate.update(delete, args));
+            total.rows += rows != null ? rows : 0;
+        }
+        return total;
+    }
+
+    /**
+     * Các bảng nối và tham chiếu còn lại của tài khoản, rồi xóa tài khoản.
+     * Số chưa đọc đã cache của người nhận tin nhắn (và của chính tài khoản) được đếm lại sau commit
+     */
+    private ChunkResult deleteAccount(Long userId) {
+        return transactionTemplate.execute(status -> {
+            ChunkResult chunk = new ChunkResult();
+            List<String> messageReceivers = jdbcTemplate.queryForList("SELECT DISTINCT u.username FROM messages m " +
+                    "JOIN users u ON u.id = m.receiver_id WHERE m.sender_id = ? AND m.receiver_id <> ? AND m.is_read = ?",
+                    String.class, userId, userId, false);
+            String username = jdbcTemplate.queryForList("SELECT username FROM users WHERE id = ?", String.class, userId)
+                    .stream().findFirst().orElse(null);
+
+            // Vote của người dùng cho nội dung người khác: trừ bộ đếm trước khi xóa dòng vote
+            jdbcTemplate.update("UPDATE questions SET votes = votes - 1 " +
+                    "WHERE id IN (SELECT question_id FROM user_votes_questions WHERE user_id = ?)", userId);
+            jdbcTemplate.update("UPDATE answers SET votes = votes - 1 " +
+                    "WHERE id IN (SELECT answer_id FROM user_votes_answers WHERE user_id = ?)", userId);
+            chunk.rows += jdbcTemplate.update("DELETE FROM user_votes_questions WHERE user_id = ?", userId);
+            chunk.rows += jdbcTemplate.update("DELETE FROM user_votes_answers WHERE user_id = ?", userId);
+
+            counterService.decrementBadgesOfUser(userId);
+            chunk.rows += jdbcTemplate.update("DELETE FROM user_badges WHERE user_id = ?", userId);
+            chunk.rows += jdbcTemplate.update("DELETE FROM user_following WHERE follower_id = ? OR following_id = ?", userId, userId);
+
+            // Sự kiện và nhóm do người dùng tạo; câu hỏi trong nhóm được giữ lại, chỉ bỏ liên kết nhóm
+            chunk.rows += jdbcTemplate.update("DELETE FROM event_participants WHERE user_id = ? " +
+                    "OR event_id IN (SELECT id FROM events WHERE creator_id = ?)", userId, userId);
+            chunk.rows += jdbcTemplate.update("DELETE FROM events WHERE creator_id = ?", userId);
+            jdbcTemplate.update("UPDATE questions SET group_id = NULL " +
+                    "WHERE group_id IN (SELECT id FROM user_groups WHERE creator_id = ?)", userId);
+            chunk.rows += jdbcTemplate.update("DELETE FROM group_members WHERE user_id = ? " +
+                    "OR group_id IN (SELECT id FROM user_groups WHERE creator_id = ?)", userId, userId);
+            chunk.rows += jdbcTemplate.update("DELETE FROM user_groups WHERE creator_id = ?", userId);
+
+            jdbcTemplate.update("UPDATE notifications SET sender_id = NULL WHERE sender_id = ?", userId);
+            chunk.rows += jdbcTemplate.update("DELETE FROM notification_read_markers WHERE user_id = ?", userId);
+            jdbcTemplate.update("UPDATE messages SET reply_to_id = NULL " +
+                    "WHERE reply_to_id IN (SELECT id FROM messages WHERE sender_id = ? OR receiver_id = ?)", userId, userId);
+            chunk.rows += jdbcTemplate.update("DELETE FROM messages WHERE sender_id = ? OR receiver_id = ?", userId, userId);
+            jdbcTemplate.update("UPDATE reports SET resolved_by = NULL WHERE resolved_by = ?", userId);
+            chunk.rows += jdbcTemplate.update("DELETE FROM reports WHERE reporter_id = ?", userId);
+            jdbcTemplate.update("UPDATE categories SET manager_id = NULL WHERE manager_id = ?", userId);
+            jdbcTemplate.update("UPDATE system_settings SET updated_by = NULL WHERE updated_by = ?", userId);
+
+            chunk.rows += jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+
+            // Listener chạy sau commit; thông báo riêng đã xóa theo đoạn ở trên nên đếm lại cả hai bộ đếm của tài khoản
+            messageReceivers.forEach(receiver -> eventPublisher.publishEvent(
+                    UnreadCountChangedEvent.recount(receiver, UnreadCountChangedEvent.Counter.MESSAGES)));
+            if (username != null) {
+                eventPublisher.publishEvent(UnreadCountChangedEvent.recount(username, UnreadCountChangedEvent.Counter.MESSAGES));
+                eventPublisher.publishEvent(UnreadCountChangedEvent.recount(username, UnreadCountChangedEvent.Counter.NOTIFICATIONS));
+            }
+            return chunk;
+        });
+    }
+
+    // ================== INTERNAL ==================
+
+    /**
+     * File riêng của ảnh sắp xóa được xóa sau commit; ảnh lưu theo blob chỉ bỏ tham chiếu (trong giao dịch hiện tại)
+     */
+    private void collectImagePaths(List<String> paths, String where, Object... args) {
+        Map<Long, Integer> blobReferences = new HashMap<>();
+        jdbcTemplate.query(IMAGE_PATHS_SQL + where, rs -> {
+            long blobId = rs.getLong(4);
+            if (!rs.wasNull()) {
+                blobReferences.merge(blobId, 1, Integer::sum);
+                return;
+            }
+            for (int column = 1; column <= 3; column++) {
+                String path = rs.getString(column);
+                if (path != null) {
+                    paths.add(path);
+                }
+            }
+        }, args);
+        blobStore.release(blobReferences);
+    }
+
+    /**
+     * Xóa file ảnh của đoạn vừa commit (ngoài giao dịch, lỗi chỉ được đếm lại)
+     */
+    private ChunkResult cleanupFiles(ChunkResult chunk) {
+        for (String path : chunk.paths) {
+            if (imageService.deleteStoredFile(path)) {
+                chunk.files++;
+            } else {
+                chunk.failedFiles++;
+            }
+        }
+        return chunk;
+    }
+
+    private void publishContentChanged(Iterable<Long> questionIds) {
+        for (Long questionId : questionIds) {
+            if (questionId != null) {
+                eventPublisher.publishEvent(new QuestionContentChangedEvent(questionId));
+            }
+        }
+    }
+
+    private DeletionJob stage(DeletionJob job, String stage, int index) {
+        job.setStage(stage);
+        job.setStageIndex(index);
+        return jobRepository.save(job);
+    }
+
+    private DeletionJob progress(DeletionJob job, ChunkResult chunk, int questions) {
+        job.setDeletedQuestions(job.getDeletedQuestions() + questions);
+        job.setDeletedRows(job.getDeletedRows() + chunk.rows);
+        job.setDeletedFiles(job.getDeletedFiles() + chunk.files);
+        job.setFailedFiles(job.getFailedFiles() + chunk.failedFiles);
+        return jobRepository.save(job);
+    }
+
+    /**
+     * Tối đa chunkSize id tiếp theo sau afterId (keyset, không OFFSET)
+     */
+    private List<Long> nextIds(String sql, Long ownerId, long afterId) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setLong(1, ownerId);
+            statement.setLong(2, afterId);
+            statement.setMaxRows(chunkSize);
+            return statement;
+        }, (rs, rowNum) -> rs.getLong(1));
+    }
+
+    private static long last(List<Long> ids) {
+        return ids.get(ids.size() - 1);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private static Object[] concat(Object[] first, Object[] second) {
+        Object[] result = new Object[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static final class ChunkResult {
+
+        long rows;
+        long files;
+        long failedFiles;
+        final List<String> paths = new ArrayList<>();
+    }
+}
@@ -0,0 +1,96 @@
+package com.stackoverflow.service.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Image storage một file mỗi khóa trong upload.path (bố cục ban đầu)
+ *
+ * Luôn được tạo: khi images.storage.type=pack nó là nơi đọc dự phòng cho các file chưa được chuyển
+ * sang pack và là nguồn của ImageStorageMigrationService.
+ */
+@Component
+public class FileImageStorage implements ImageStorage {
+
+    private static final Logger log = LoggerFactory.getLogger(FileImageStorage.class);
+
+    @Value("${upload.path}")
+    private String uploadPath;
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public Optional<Resource> open(String key) {
+        FileSystemResource resource = new FileSystemResource(resolve(key));
+        return resource.isReadable() ? Optional.of(resource) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Stat> stat(String key) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(resolve(key), BasicFileAttributes.class);
+            return Optional.of(new Stat(attributes.size(), attributes.lastModifiedTime().toMillis()));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Cannot read attributes of image file {}: {}", key, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(resolve(key));
+    }
+
+    @Override
+    public boolean delete(String key) {
+        try {
+            Files.deleteIfExists(resolve(key));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to delete image file {}: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * File của khóa (không kiểm tra tồn tại)
+     */
+    public Path resolve(String key) {
+        Path root = Paths.get(uploadPath).toAbsolutePath().normalize();
+        Path file = root.resolve(key).normalize();
+        if (!file.startsWith(root)) {
+            throw new IllegalArgumentException("Image key escapes upload directory: " + key);
+        }
+        return file;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", "file");
+        stats.put("root", Paths.get(uploadPath).toAbsolutePath().normalize().toString());
+        return stats;
+    }
+}
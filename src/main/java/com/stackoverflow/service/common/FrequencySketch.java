@@ -0,0 +1,71 @@
+package com.stackoverflow.service.common;
+
+/**
+ * Count-min sketch 4 hàng, bộ đếm 4 bit (tối đa 15), ước lượng tần suất truy cập gần đây của id.
+ * Sau mỗi sampleSize lần ghi, mọi bộ đếm bị chia đôi để tần suất cũ phai dần.
+ * Đồng bộ đơn giản bằng synchronized: chỉ dùng ở đường trượt cache.
+ */
+final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+
+    private final byte[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedKeys số khóa khác nhau dự kiến
+     */
+    FrequencySketch(int expectedKeys) {
+        int width = Integer.highestOneBit(Math.max(64, expectedKeys) * 2 - 1);
+        this.table = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = width * 10;
+    }
+
+    synchronized void increment(long id) {
+        long hash = mix(id);
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            if (table[row][index] < MAX_COUNT) {
+                table[row][index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    synchronized int frequency(long id) {
+        long hash = mix(id);
+        int min = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, table[row][index(hash, row)]);
+        }
+        return min;
+    }
+
+    private void reset() {
+        for (byte[] row : table) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = (byte) (row[i] >>> 1);
+            }
+        }
+        additions /= 2;
+    }
+
+    private int index(long hash, int row) {
+        int h = (int) (hash >>> (row * 16)) ^ (int) (hash >>> 32) * (row + 1);
+        return h & mask;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
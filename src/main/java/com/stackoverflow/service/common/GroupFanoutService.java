@@ -0,0 +1,254 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.event.UnreadCountChangedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Group Fan-out Service - Gửi thông báo nhóm cho từng thành viên ở nền
+ *
+ * notifyGroup chỉ đưa một tác vụ vào hàng đợi có giới hạn rồi trả về ngay. Luồng fan-out đọc thành
+ * viên theo lô keyset (fanout.batch-size), chèn thông báo của cả lô bằng một JDBC batch rồi giao từng
+ * tin STOMP cho nhóm luồng push có hàng đợi giới hạn. Khi hàng đợi push đầy, chính luồng fan-out gửi tin
+ * đó (backpressure: fan-out chậm lại theo tốc độ push thay vì bỏ tin). Hàng đợi tác vụ đầy thì tác vụ bị
+ * bỏ và được đếm.
+ */
+@Service
+public class GroupFanoutService {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupFanoutService.class);
+
+    private static final String MEMBERS_SQL =
+            "SELECT u.id, u.username FROM group_members gm JOIN users u ON u.id = gm.user_id " +
+            "WHERE gm.group_id = ? AND u.id > ? ORDER BY u.id";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO notifications (user_id, type, message, is_read, is_global, created_at) VALUES (?, ?, ?, 0, 0, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${fanout.batch-size:500}")
+    private int batchSize;
+
+    @Value("${fanout.job-queue-capacity:100}")
+    private int jobQueueCapacity;
+
+    @Value("${fanout.push-threads:4}")
+    private int pushThreads;
+
+    @Value("${fanout.push-queue-capacity:10000}")
+    private int pushQueueCapacity;
+
+    private ThreadPoolExecutor fanoutExecutor;
+    private ThreadPoolExecutor pushExecutor;
+
+    // Metrics
+    private final AtomicLong submittedJobs = new AtomicLong();
+    private final AtomicLong completedJobs = new AtomicLong();
+    private final AtomicLong failedJobs = new AtomicLong();
+    private final AtomicLong droppedJobs = new AtomicLong();
+    private final AtomicLong persistedNotifications = new AtomicLong();
+    private final AtomicLong sentPushes = new AtomicLong();
+    private final AtomicLong failedPushes = new AtomicLong();
+    private final AtomicLong callerRunPushes = new AtomicLong();
+    private final AtomicLong droppedPushes = new AtomicLong();
+    private final AtomicLong lastLatencyMs = new AtomicLong();
+    private final AtomicLong maxLatencyMs = new AtomicLong();
+    private final AtomicLong totalLatencyMs = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        fanoutExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(jobQueueCapacity), daemonFactory("group-fanout"),
+                new ThreadPoolExecutor.AbortPolicy());
+        pushExecutor = new ThreadPoolExecutor(pushThreads, pushThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(pushQueueCapacity), daemonFactory("group-push"), this::rejectPush);
+    }
+
+    /**
+     * Hàng đợi push đầy: luồng gọi (luồng fan-out) tự gửi. Sau khi shutdown thì bỏ tin
+     */
+    private void rejectPush(Runnable send, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            droppedPushes.incrementAndGet();
+            return;
+        }
+        callerRunPushes.incrementAndGet();
+        send.run();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanoutExecutor.shutdownNow();
+        pushExecutor.shutdownNow();
+    }
+
+    /**
+     * Đưa fan-out của một thông báo nhóm vào hàng đợi, trả về ngay
+     *
+     * @return false nếu hàng đợi đầy và tác vụ bị bỏ
+     */
+    public boolean fanOut(Long groupId, String title, String message, String type) {
+        long submittedAt = System.currentTimeMillis();
+        try {
+            fanoutExecutor.execute(() -> run(groupId, title, message, type, submittedAt));
+            submittedJobs.incrementAndGet();
+            return true;
+        } catch (RejectedExecutionException e) {
+            droppedJobs.incrementAndGet();
+            log.warn("Group fan-out queue full, dropped notification for group {}", groupId);
+            return false;
+        }
+    }
+
+    private void run(Long groupId, String title, String message, String type, long submittedAt) {
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        long lastUserId = 0;
+        boolean finished = false;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Member> members = nextMembers(groupId, lastUserId);
+                if (members.isEmpty()) {
+                    break;
+                }
+                persist(members, type, message, createdAt);
+                for (Member member : members) {
+                    eventPublisher.publishEvent(UnreadCountChangedEvent.delta(
+                            member.username, UnreadCountChangedEvent.Counter.NOTIFICATIONS, 1));
+                    push(member.username, Map.of(
+                            "title", title,
+                            "message", message,
+                            "type", type,
+                            "createdAt", createdAt.toLocalDateTime().toString()));
+                }
+                lastUserId = members.get(members.size() - 1).id;
+            }
+            // Bị ngắt giữa chừng (shutdown) thì không tính là hoàn tất
+            finished = !Thread.currentThread().isInterrupted();
+            if (finished) {
+                completedJobs.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            finished = true;
+            failedJobs.incrementAndGet();
+            log.warn("Group fan-out for group {} failed after user {}: {}", groupId, lastUserId, e.getMessage());
+        } finally {
+            // Độ trễ trung bình chỉ tính các tác vụ đã chạy xong (completed + failed)
+            if (finished) {
+                long latency = System.currentTimeMillis() - submittedAt;
+                lastLatencyMs.set(latency);
+                maxLatencyMs.accumulateAndGet(latency, Math::max);
+                totalLatencyMs.addAndGet(latency);
+            }
+        }
+    }
+
+    private List<Member> nextMembers(Long groupId, long afterUserId) {
+        PreparedStatementCreator select = connection -> {
+            PreparedStatement ps = connection.prepareStatement(MEMBERS_SQL);
+            ps.setLong(1, groupId);
+            ps.setLong(2, afterUserId);
+            ps.setMaxRows(batchSize);
+            return ps;
+        };
+        return jdbcTemplate.query(select, (rs, rowNum) -> new Member(rs.getLong(1), rs.getString(2)));
+    }
+
+    private void persist(List<Member> members, String type, String message, Timestamp createdAt) {
+        List<Object[]> batch = new ArrayList<>(members.size());
+        for (Member member : members) {
+            batch.add(new Object[]{member.id, type, message, createdAt});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+        persistedNotifications.addAndGet(members.size());
+    }
+
+    /**
+     * Giao tin cho nhóm luồng push; hàng đợi đầy thì rejectPush gửi ngay trên luồng này
+     */
+    private void push(String username, Object payload) {
+        Runnable send = () -> {
+            try {
+                messagingTemplate.convertAndSendToUser(username, "/queue/notifications", payload);
+                sentPushes.incrementAndGet();
+            } catch (RuntimeException e) {
+                failedPushes.incrementAndGet();
+            }
+        };
+        pushExecutor.execute(send);
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long finished = completedJobs.get() + failedJobs.get();
+        stats.put("submittedJobs", submittedJobs.get());
+        stats.put("completedJobs", completedJobs.get());
+        stats.put("failedJobs", failedJobs.get());
+        stats.put("droppedJobs", droppedJobs.get());
+        stats.put("queuedJobs", fanoutExecutor.getQueue().size());
+        stats.put("persistedNotifications", persistedNotifications.get());
+        stats.put("sentPushes", sentPushes.get());
+        stats.put("failedPushes", failedPushes.get());
+        stats.put("callerRunPushes", callerRunPushes.get());
+        stats.put("droppedPushes", droppedPushes.get());
+        stats.put("queuedPushes", pushExecutor.getQueue().size());
+        stats.put("lastLatencyMs", lastLatencyMs.get());
+        stats.put("maxLatencyMs", maxLatencyMs.get());
+        stats.put("avgLatencyMs", finished > 0 ? totalLatencyMs.get() / finished : 0);
+        return stats;
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Member {
+
+        final long id;
+        final String username;
+
+        Member(long id, String username) {
+            this.id = id;
+            this.username = username;
+        }
+    }
+}
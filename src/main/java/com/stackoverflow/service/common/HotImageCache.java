@@ -0,0 +1,314 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.dto.StoredImage;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hot Image Cache - Bytes của các ảnh được xem nhiều nhất, giữ trong direct ByteBuffer (ngoài heap)
+ *
+ * Trên heap chỉ có vài đối tượng nhỏ cho mỗi ảnh nên heap không đổi dù cache lớn tới đâu; tổng số byte
+ * bị giới hạn bởi images.offheap.max-bytes. Mọi lượt truy cập được ghi vào FrequencySketch; ảnh chỉ được
+ * nạp khi đã được yêu cầu ít nhất images.offheap.min-frequency lần gần đây, và khi đầy chỉ được đẩy ra
+ * những ảnh cũ có tần suất thấp hơn nó (TinyLFU) - ảnh xem một lần không đẩy được ảnh nóng.
+ * Khóa là đường dẫn file, nên mỗi biến thể kích thước của một ảnh là một mục riêng. Buffer của ảnh bị đẩy ra
+ * được dùng lại cho ảnh mới khi không còn stream nào đọc nó; stream mở sau khi buffer bị thu hồi đọc file gốc.
+ */
+@Component
+public class HotImageCache {
+
+    private static final Logger log = LoggerFactory.getLogger(HotImageCache.class);
+
+    // Số ảnh cũ nhất được xét làm nạn nhân cho một lần nạp
+    private static final int MAX_VICTIM_SCAN = 16;
+
+    @Value("${images.offheap.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${images.offheap.max-entry-bytes:2097152}")
+    private long maxEntryBytes;
+
+    @Value("${images.offheap.min-frequency:2}")
+    private int minFrequency;
+
+    @Value("${images.offheap.expected-images:10000}")
+    private int expectedImages;
+
+    private FrequencySketch sketch;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /** Thứ tự nạp, dùng để chọn nạn nhân; chỉ truy cập khi giữ khóa của chính nó */
+    private final LinkedHashMap<String, Entry> insertionOrder = new LinkedHashMap<>();
+
+    // Metrics
+    private final AtomicLong bytesHeld = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong admissions = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong allocations = new AtomicLong();
+    private final AtomicLong reusedBuffers = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        sketch = new FrequencySketch(expectedImages);
+    }
+
+    /**
+     * Ảnh trong cache (hoặc null); luôn ghi nhận một lượt truy cập
+     *
+     * @param fallback mở lại file khi buffer bị thu hồi trước khi response kịp đọc
+     */
+    public Resource get(StoredImage image, Supplier<Resource> fallback) {
+        sketch.increment(frequencyKey(image.getPath()));
+        Entry entry = entries.get(image.getPath());
+        if (entry != null && entry.etag.equals(image.getEtag())) {
+            hits.incrementAndGet();
+            return entry.resource(image, fallback);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Thử nạp ảnh vừa trượt cache. Quyết định nhận và chọn nạn nhân trước khi cấp phát, nên ảnh bị từ chối
+     * không tốn bộ nhớ ngoài heap; buffer của nạn nhân không còn ai đọc được dùng lại
+     *
+     * @return Resource từ cache nếu ảnh được nhận, null nếu không (người gọi đọc file như bình thường)
+     */
+    public Resource admit(StoredImage image, Resource source) {
+        long length = image.getLength();
+        int frequency = sketch.frequency(frequencyKey(image.getPath()));
+        if (length <= 0 || length > maxEntryBytes || length > maxBytes || frequency < minFrequency) {
+            rejections.incrementAndGet();
+            return null;
+        }
+
+        ByteBuffer buffer;
+        synchronized (insertionOrder) {
+            if (entries.containsKey(image.getPath())) {
+                return null;
+            }
+            List<Entry> victims = selectVictims(length, frequency);
+            if (victims == null) {
+                rejections.incrementAndGet();
+                return null;
+            }
+            victims.forEach(this::remove);
+            evictions.addAndGet(victims.size());
+            buffer = reclaim(victims, (int) length);
+            // Giữ chỗ trước khi đọc file để các lần nạp song song không vượt maxBytes
+            bytesHeld.addAndGet(buffer != null ? buffer.capacity() : length);
+        }
+        if (buffer != null) {
+            reusedBuffers.incrementAndGet();
+        } else {
+            buffer = ByteBuffer.allocateDirect((int) length);
+            allocations.incrementAndGet();
+        }
+
+        try {
+            read(source, buffer, (int) length);
+        } catch (IOException e) {
+            bytesHeld.addAndGet(-buffer.capacity());
+            log.warn("Could not load image {} into the hot cache: {}", image.getId(), e.getMessage());
+            return null;
+        }
+
+        Entry entry = new Entry(image.getId(), image.getPath(), image.getEtag(), buffer);
+        synchronized (insertionOrder) {
+            if (entries.putIfAbsent(entry.path, entry) != null) {
+                // Request khác đã nạp cùng ảnh trong lúc đọc file
+                bytesHeld.addAndGet(-buffer.capacity());
+                return null;
+            }
+            insertionOrder.put(entry.path, entry);
+            admissions.incrementAndGet();
+        }
+        return entry.resource(image, () -> source);
+    }
+
+    /**
+     * Buffer nhỏ nhất đủ chứa length trong số các nạn nhân không còn stream nào đang đọc; các buffer khác
+     * được bỏ cho GC giải phóng
+     */
+    private static ByteBuffer reclaim(List<Entry> victims, int length) {
+        Entry best = null;
+        for (Entry victim : victims) {
+            if (victim.capacity() >= length && (best == null || victim.capacity() < best.capacity())
+                    && victim.reclaim()) {
+                if (best != null) {
+                    best.unreclaim();
+                }
+                best = victim;
+            }
+        }
+        return best != null ? best.buffer : null;
+    }
+
+    /**
+     * Các ảnh cũ cần đẩy ra để có chỗ, null nếu không đủ chỗ mà không đẩy ảnh nóng hơn
+     */
+    private List<Entry> selectVictims(long length, int candidateFrequency) {
+        long needed = bytesHeld.get() + length - maxBytes;
+        List<Entry> victims = new ArrayList<>();
+        Iterator<Entry> iterator = insertionOrder.values().iterator();
+        for (int scanned = 0; needed > 0 && scanned < MAX_VICTIM_SCAN && iterator.hasNext(); scanned++) {
+            Entry entry = iterator.next();
+            if (sketch.frequency(frequencyKey(entry.path)) < candidateFrequency) {
+                victims.add(entry);
+                needed -= entry.capacity();
+            }
+        }
+        return needed > 0 ? null : victims;
+    }
+
+    /**
+     * Bỏ mọi kích thước của ảnh
+     */
+    public void invalidate(Long imageId) {
+        synchronized (insertionOrder) {
+            List<Entry> matches = new ArrayList<>();
+            for (Entry entry : insertionOrder.values()) {
+                if (entry.id.equals(imageId)) {
+                    matches.add(entry);
+                }
+            }
+            matches.forEach(this::remove);
+            invalidations.addAndGet(matches.size());
+        }
+    }
+
+    /**
+     * Bỏ ảnh theo file (xóa file ở tác vụ nền chỉ biết đường dẫn)
+     */
+    public void invalidatePath(String path) {
+        synchronized (insertionOrder) {
+            Entry entry = entries.get(path);
+            if (entry != null) {
+                remove(entry);
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    private void remove(Entry entry) {
+        if (entries.remove(entry.path, entry)) {
+            insertionOrder.remove(entry.path);
+            bytesHeld.addAndGet(-entry.capacity());
+        }
+    }
+
+    private static long frequencyKey(String path) {
+        return path.hashCode();
+    }
+
+    private static void read(Resource source, ByteBuffer buffer, int length) throws IOException {
+        buffer.clear().limit(length);
+        try (ReadableByteChannel channel = source.readableChannel()) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("File is shorter than expected");
+                }
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        stats.put("entries", entries.size());
+        stats.put("bytesHeld", bytesHeld.get());
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("hitRatio", total > 0 ? (double) hitCount / total : 0.0);
+        stats.put("admissions", admissions.get());
+        stats.put("rejections", rejections.get());
+        stats.put("evictions", evictions.get());
+        stats.put("allocations", allocations.get());
+        stats.put("reusedBuffers", reusedBuffers.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private static final class Entry implements ByteBufferResource.Lease {
+
+        private static final int RECLAIMED = -1;
+
+        final Long id;
+        final String path;
+        final String etag;
+        final ByteBuffer buffer;
+        /** Số stream đang đọc buffer, RECLAIMED khi buffer đã được giao cho ảnh khác */
+        final AtomicInteger readers = new AtomicInteger();
+
+        Entry(Long id, String path, String etag, ByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.etag = etag;
+            this.buffer = buffer;
+        }
+
+        Resource resource(StoredImage image, Supplier<Resource> fallback) {
+            return new ByteBufferResource(buffer, "hot image " + image.getId(), image.getLastModified(), this, fallback);
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        @Override
+        public boolean acquire() {
+            int current;
+            do {
+                current = readers.get();
+                if (current == RECLAIMED) {
+                    return false;
+                }
+            } while (!readers.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        @Override
+        public void release() {
+            readers.decrementAndGet();
+        }
+
+        /**
+         * Thu hồi buffer của mục đã bị đẩy ra; thất bại nếu còn stream đang đọc
+         */
+        boolean reclaim() {
+            return readers.compareAndSet(0, RECLAIMED);
+        }
+
+        void unreclaim() {
+            readers.set(0);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.entity.Question;
+import com.stackoverflow.event.QuestionActivityEvent;
+import com.stackoverflow.event.QuestionLifecycleEvent;
+import com.stackoverflow.repository.QuestionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hot Question Service - Xếp hạng "hot" trong bộ nhớ
+ *
+ * Điểm hot không phụ thuộc thời điểm đọc (kiểu Reddit):
+ *   score = sign(e) * log10(max(|e|, 1)) + createdAt(giây) / 45000
+ * với e = 3*votes + 2*answers + views/10. Câu hỏi mới hơn 12.5 giờ cần tương tác gấp 10 lần
+ * để xếp ngang, nên thứ tự không bị "cũ" theo thời gian và chỉ cần cập nhật khi có hoạt động.
+ *
+ * Chỉ giữ top N câu hỏi (skip list sắp theo điểm). Vote/trả lời/lượt xem cập nhật từng câu hỏi
+ * không qua khóa chung: mỗi id được cập nhật nguyên tử trong ConcurrentHashMap.compute (khóa theo bin),
+ * nên lượt xem của các câu hỏi khác nhau không chờ nhau. Rebuild toàn bộ định kỳ từ DB để sửa mọi sai lệch;
+ * câu hỏi bị xóa trong lúc rebuild được ghi tombstone và gỡ khỏi chỉ mục mới trước khi dùng.
+ */
+@Service
+public class HotQuestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(HotQuestionService.class);
+
+    private static final double SECONDS_PER_ORDER = 45000d;
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Autowired
+    private QuestionService questionService;
+
+    @Autowired
+    private ViewCountService viewCountService;
+
+    @Value("${hot.max-entries:5000}")
+    private int maxEntries;
+
+    @Value("${hot.rebuild-window-days:30}")
+    private int rebuildWindowDays;
+
+    private volatile Index index = new Index();
+
+    /** Hoạt động đến trong lúc rebuild, áp lại sau khi thay chỉ mục (null khi không rebuild) */
+    private volatile Map<Long, QuestionActivityEvent> rebuildBacklog;
+
+    /** Câu hỏi đã xóa -> thời điểm ghi nhận; giữ tới khi một rebuild bắt đầu sau thời điểm đó */
+    private final Map<Long, Long> tombstones = new ConcurrentHashMap<>();
+
+    private final Object rebuildLock = new Object();
+
+    // Metrics
+    private final AtomicLong incrementalUpdates = new AtomicLong();
+    private final AtomicLong lastRebuildAt = new AtomicLong();
+    private final AtomicLong lastRebuildDurationMs = new AtomicLong();
+    private final AtomicLong lastRebuildCandidates = new AtomicLong();
+
+    /**
+     * Id câu hỏi hot của một trang (không truy vấn DB)
+     */
+    public List<Long> getHotQuestionIds(int page, int size) {
+        List<Long> ids = new ArrayList<>(size);
+        long skip = (long) page * size;
+        Iterator<Ranked> it = index.ranking.iterator();
+        while (it.hasNext() && ids.size() < size) {
+            Ranked ranked = it.next();
+            if (skip > 0) {
+                skip--;
+            } else {
+                ids.add(ranked.id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Lấy một trang câu hỏi hot: 1 truy vấn IN theo id, giữ nguyên thứ tự xếp hạng
+     */
+    public List<Question> getHotQuestions(int page, int size) {
+        return questionService.getQuestionsInOrder(getHotQuestionIds(page, size));
+    }
+
+    public int size() {
+        return index.byId.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivity(QuestionActivityEvent event) {
+        if (tombstones.containsKey(event.getQuestionId())) {
+            return;
+        }
+        // Ghi backlog TRƯỚC khi đọc index: nếu rebuild đã thay index thì đọc được index mới,
+        // nếu chưa thì rebuild sẽ thấy sự kiện trong backlog
+        Map<Long, QuestionActivityEvent> backlog = rebuildBacklog;
+        if (backlog != null) {
+            backlog.put(event.getQuestionId(), event);
+        }
+        apply(index, event);
+        incrementalUpdates.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLifecycle(QuestionLifecycleEvent event) {
+        if (event.getType() != QuestionLifecycleEvent.Type.DELETED) {
+            return;
+        }
+        Long id = event.getQuestionId();
+        tombstones.put(id, System.currentTimeMillis());
+        Map<Long, QuestionActivityEvent> backlog = rebuildBacklog;
+        if (backlog != null) {
+            backlog.remove(id);
+        }
+        index.remove(id);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${hot.rebuild-interval-ms:600000}", fixedDelayString = "${hot.rebuild-interval-ms:600000}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    /**
+     * Tính lại toàn bộ chỉ mục từ các câu hỏi đã duyệt trong cửa sổ thời gian gần đây.
+     * Chỉ mục mới được dựng riêng rồi thay thế; hoạt động đến trong lúc đó được áp lại và
+     * câu hỏi bị xóa trong lúc đó (tombstone) được gỡ khỏi chỉ mục mới.
+     */
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.currentTimeMillis();
+            Map<Long, QuestionActivityEvent> backlog = new ConcurrentHashMap<>();
+            rebuildBacklog = backlog;
+            try {
+                LocalDateTime since = LocalDateTime.now().minusDays(rebuildWindowDays);
+                List<Object[]> rows = questionRepository.findHotCandidates(since);
+
+                Index rebuilt = new Index();
+                int kept = 0;
+                for (Object[] row : rows) {
+                    Long id = (Long) row[0];
+                    long views = viewCountService.getViewCount(id, (Integer) row[4]);
+                    rebuilt.ranking.add(new Ranked(id, score((LocalDateTime) row[1], (Integer) row[2], (Integer) row[3], views)));
+                    // size() của skip list là O(n) nên tự đếm
+                    if (++kept > maxEntries) {
+                        rebuilt.ranking.pollLast();
+                        kept--;
+                    }
+                }
+                rebuilt.ranking.forEach(ranked -> rebuilt.byId.put(ranked.id, ranked));
+
+                index = rebuilt;
+                backlog.values().forEach(event -> apply(rebuilt, event));
+                tombstones.keySet().forEach(rebuilt::remove);
+                // Xóa ghi nhận trước lúc bắt đầu rebuild đã commit trước truy vấn ở trên nên không cần giữ nữa
+                tombstones.values().removeIf(deletedAt -> deletedAt < start);
+                lastRebuildCandidates.set(rows.size());
+            } catch (RuntimeException e) {
+                log.warn("Hot question rebuild failed: {}", e.getMessage());
+            } finally {
+                rebuildBacklog = null;
+                lastRebuildAt.set(System.currentTimeMillis());
+                lastRebuildDurationMs.set(System.currentTimeMillis() - start);
+            }
+        }
+    }
+
+    private void apply(Index target, QuestionActivityEvent event) {
+        Long id = event.getQuestionId();
+        if (!event.isApproved() || event.getCreatedAt() == null) {
+            target.remove(id);
+            return;
+        }
+        long views = viewCountService.getViewCount(id, event.getViews());
+        target.update(new Ranked(id, score(event.getCreatedAt(), event.getVotes(), event.getAnswerCount(), views)), maxEntries);
+    }
+
+    static double score(LocalDateTime createdAt, Integer votes, Integer answerCount, long views) {
+        double engagement = 3d * (votes != null ? votes : 0)
+                + 2d * (answerCount != null ? answerCount : 0)
+                + views / 10d;
+        double order = Math.log10(Math.max(Math.abs(engagement), 1d));
+        double sign = Math.signum(engagement);
+        return sign * order + createdAt.toEpochSecond(ZoneOffset.UTC) / SECONDS_PER_ORDER;
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", index.byId.size());
+        stats.put("tombstones", tombstones.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("incrementalUpdates", incrementalUpdates.get());
+        stats.put("lastRebuildAgeMs", System.currentTimeMillis() - lastRebuildAt.get());
+        stats.put("lastRebuildDurationMs", lastRebuildDurationMs.get());
+        stats.put("lastRebuildCandidates", lastRebuildCandidates.get());
+        return stats;
+    }
+
+    /**
+     * Một phiên bản chỉ mục: map id -> điểm và skip list theo điểm. Mọi thay đổi của một id chạy trong
+     * byId.compute nên map và skip list luôn khớp nhau theo từng id mà không cần khóa chung.
+     */
+    private static final class Index {
+
+        final ConcurrentHashMap<Long, Ranked> byId = new ConcurrentHashMap<>();
+
+        final ConcurrentSkipListSet<Ranked> ranking = new ConcurrentSkipListSet<>();
+
+        void update(Ranked updated, int maxEntries) {
+            byId.compute(updated.id, (id, previous) -> {
+                if (previous == null && byId.size() >= maxEntries) {
+                    Ranked lowest = lowest();
+                    if (lowest != null && updated.compareTo(lowest) > 0) {
+                        return null;  // Không lọt vào top N
+                    }
+                }
+                if (previous != null) {
+                    ranking.remove(previous);
+                }
+                ranking.add(updated);
+                return updated;
+            });
+            while (byId.size() > maxEntries) {
+                Ranked evicted = ranking.pollLast();
+                if (evicted == null) {
+                    break;
+                }
+                // Chỉ gỡ nếu id chưa được cập nhật sang điểm khác trong lúc đó
+                byId.remove(evicted.id, evicted);
+            }
+        }
+
+        void remove(Long id) {
+            byId.computeIfPresent(id, (key, previous) -> {
+                ranking.remove(previous);
+                return null;
+            });
+        }
+
+        private Ranked lowest() {
+            try {
+                return ranking.last();
+            } catch (NoSuchElementException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Phần tử xếp hạng: điểm giảm dần, cùng điểm thì id giảm dần
+     */
+    private static final class Ranked implements Comparable<Ranked> {
+
+        final long id;
+
+        final double score;
+
+        Ranked(long id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Ranked other) {
+            int byScore = Double.compare(other.score, score);
+            return byScore != 0 ? byScore : Long.compare(other.id, id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Ranked r && r.id == id && Double.compare(r.score, score) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id) * 31 + Double.hashCode(score);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.stackoverflow.service.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Image Blob Store - Lưu nội dung ảnh theo địa chỉ SHA-256, mỗi nội dung một file
+ *
+ * Upload được stream vào file tạm đồng thời tính SHA-256 (không giữ cả file trong bộ nhớ), sau đó
+ * trong giao dịch lưu ImageAttachment: tăng refCount của blob cùng hash, hoặc tạo dòng mới. File tạm
+ * chỉ được đưa vào ImageStorage (khóa blobs/ab/cd/&lt;hash&gt;) sau khi giao dịch commit, nên giao dịch
+ * rollback không để lại file mồ côi. Xóa ảnh chỉ giảm refCount trong cùng giao dịch xóa dòng ảnh.
+ * Blob về 0 được tác vụ nền xóa sau images.blobs.gc-grace-ms (một lần tải lên lại trong khoảng chờ
+ * dùng lại blob), cùng các biến thể kích thước sinh ra cạnh nó.
+ */
+@Service
+public class ImageBlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageBlobStore.class);
+
+    private static final String BLOB_DIR = "blobs";
+    private static final String STAGING_DIR = "staging";
+    private static final int GC_BATCH_SIZE = 200;
+    private static final int ACQUIRE_ATTEMPTS = 3;
+
+    private static final String ACQUIRE_SQL =
+            "UPDATE image_blobs SET ref_count = ref_count + 1, released_at = NULL WHERE hash = ?";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO image_blobs (hash, path, size, ref_count, created_at) VALUES (?, ?, ?, 1, ?)";
+
+    private static final String RELEASE_SQL =
+            "UPDATE image_blobs SET ref_count = CASE WHEN ref_count > ? THEN ref_count - ? ELSE 0 END, " +
+            "released_at = CASE WHEN ref_count > ? THEN released_at ELSE ? END WHERE id = ?";
+
+    private static final String GC_DELETE_SQL =
+            "DELETE FROM image_blobs WHERE id = ? AND ref_count = 0 AND (released_at IS NULL OR released_at < ?) " +
+            "AND NOT EXISTS (SELECT 1 FROM image_attachments WHERE blob_id = ?)";
+
+    @Value("${upload.path}")
+    private String uploadPath;
+
+    @Value("${images.blobs.gc-grace-ms:3600000}")
+    private long gcGraceMs;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private HotImageCache hotImageCache;
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Metrics
+    private final AtomicLong uploads = new AtomicLong();
+    private final AtomicLong duplicateUploads = new AtomicLong();
+    private final AtomicLong duplicateBytes = new AtomicLong();
+    private final AtomicLong collectedBlobs = new AtomicLong();
+    private final AtomicLong collectedBytes = new AtomicLong();
+
+    /**
+     * Ghi upload vào file tạm và tính SHA-256 trong cùng một lần đọc (ngoài giao dịch)
+     */
+    public StagedBlob stage(MultipartFile file) throws IOException {
+        Path temp = createStagingFile("upload-");
+        MessageDigest digest = sha256();
+        try (InputStream input = new DigestInputStream(file.getInputStream(), digest)) {
+            long size = Files.copy(input, temp, StandardCopyOption.REPLACE_EXISTING);
+            return new StagedBlob(temp, HexFormat.of().formatHex(digest.digest()), size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * File tạm cục bộ để ghi nội dung trước khi đưa vào ImageStorage
+     */
+    public Path createStagingFile(String prefix) throws IOException {
+        Path stagingDir = Paths.get(uploadPath, BLOB_DIR, STAGING_DIR);
+        Files.createDirectories(stagingDir);
+        return Files.createTempFile(stagingDir, prefix, ".tmp");
+    }
+
+    /**
+     * Thêm một tham chiếu tới blob của nội dung đã stage, tạo blob nếu chưa có. Gọi trong giao dịch lưu ảnh;
+     * không ghi file: nếu StoredBlob.isPendingWrite() thì gọi write() sau khi giao dịch commit
+     *
+     * @return id và đường dẫn blob
+     */
+    public StoredBlob acquire(StagedBlob staged) {
+        String path = BLOB_DIR + "/" + staged.hash.substring(0, 2) + "/" + staged.hash.substring(2, 4) + "/" + staged.hash;
+        Boolean existed = null;
+        for (int attempt = 0; attempt < ACQUIRE_ATTEMPTS && existed == null; attempt++) {
+            if (jdbcTemplate.update(ACQUIRE_SQL, staged.hash) > 0) {
+                existed = true;
+                continue;
+            }
+            try {
+                jdbcTemplate.update(INSERT_SQL, staged.hash, path, staged.size, Timestamp.valueOf(LocalDateTime.now()));
+                existed = false;
+            } catch (DuplicateKeyException e) {
+                // Upload cùng nội dung vừa tạo blob, hoặc GC vừa xóa dòng cũ: thử lại
+            }
+        }
+        if (existed == null) {
+            throw new IllegalStateException("Could not acquire image blob " + staged.hash);
+        }
+
+        uploads.incrementAndGet();
+        boolean pendingWrite = !existed || !imageStorage.exists(path);
+        if (!pendingWrite) {
+            duplicateUploads.incrementAndGet();
+            duplicateBytes.addAndGet(staged.size);
+        }
+        Long id = jdbcTemplate.queryForObject("SELECT id FROM image_blobs WHERE hash = ?", Long.class, staged.hash);
+        return new StoredBlob(id, path, pendingWrite);
+    }
+
+    /**
+     * Đưa file tạm vào ImageStorage cho blob mới (hoặc file bị mất). Gọi sau khi giao dịch acquire commit:
+     * dòng đã có refCount &gt; 0 nên GC không xóa được blob trong lúc ghi
+     */
+    public void write(StagedBlob staged, StoredBlob blob) throws IOException {
+        imageStorage.put(blob.path, staged.temp);
+    }
+
+    /**
+     * Xóa file tạm nếu nội dung đã có sẵn hoặc giao dịch lỗi
+     */
+    public void discard(StagedBlob staged) {
+        try {
+            Files.deleteIfExists(staged.temp);
+        } catch (IOException e) {
+            log.warn("Failed to delete staged upload {}: {}", staged.temp, e.getMessage());
+        }
+    }
+
+    /**
+     * Bỏ tham chiếu của các ảnh bị xóa (blobId -> số ảnh). Gọi trong giao dịch xóa dòng image_attachments
+     */
+    public void release(Map<Long, Integer> references) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batch = new ArrayList<>(references.size());
+        references.forEach((blobId, count) -> batch.add(new Object[]{count, count, count, now, blobId}));
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(RELEASE_SQL, batch);
+        }
+    }
+
+    public void release(Long blobId) {
+        release(Map.of(blobId, 1));
+    }
+
+    /**
+     * Xóa blob không còn tham chiếu sau khoảng chờ. Mỗi blob được xóa trong một giao dịch riêng: DELETE có
+     * điều kiện giữ khóa dòng (và khóa khóa duy nhất của hash) cho tới khi file đã bị xóa và giao dịch commit,
+     * nên acquire() cùng hash phải chờ rồi tạo dòng mới và ghi lại file, không thể tham chiếu một blob
+     * mà file đang bị xóa
+     *
+     * @return số blob đã xóa
+     */
+    @Scheduled(initialDelayString = "${images.blobs.gc-interval-ms:600000}",
+            fixedDelayString = "${images.blobs.gc-interval-ms:600000}")
+    public int collectGarbage() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(Duration.ofMillis(gcGraceMs)));
+        int collected = 0;
+        long afterId = 0L;
+        while (true) {
+            long after = afterId;
+            List<Object[]> candidates = jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT id, path, size FROM image_blobs WHERE ref_count = 0 AND id > ? ORDER BY id");
+                statement.setLong(1, after);
+                statement.setMaxRows(GC_BATCH_SIZE);
+                return statement;
+            }, (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getString(2), rs.getLong(3)});
+            if (candidates.isEmpty()) {
+                break;
+            }
+            for (Object[] candidate : candidates) {
+                Long id = (Long) candidate[0];
+                Boolean deleted = transactionTemplate.execute(status -> {
+                    if (jdbcTemplate.update(GC_DELETE_SQL, id, cutoff, id) == 0) {
+                        return false;
+                    }
+                    deleteFiles((String) candidate[1]);
+                    return true;
+                });
+                if (Boolean.TRUE.equals(deleted)) {
+                    collected++;
+                    collectedBytes.addAndGet((Long) candidate[2]);
+                }
+            }
+            afterId = (Long) candidates.get(candidates.size() - 1)[0];
+        }
+        collectedBlobs.addAndGet(collected);
+        if (collected > 0) {
+            log.info("Collected {} unreferenced image blobs", collected);
+        }
+        return collected;
+    }
+
+    /**
+     * Xóa blob và các biến thể kích thước sinh ra từ nó (&lt;hash&gt;-medium.jpg, ...)
+     */
+    private void deleteFiles(String path) {
+        List<String> keys = new ArrayList<>();
+        keys.add(path);
+        keys.addAll(ImageVariantService.variantPaths(path));
+        for (String key : keys) {
+            hotImageCache.invalidatePath(key);
+            if (!imageStorage.delete(key)) {
+                log.warn("Failed to delete image blob file {}", key);
+            }
+        }
+    }
+
+    /**
+     * Báo cáo dung lượng tiết kiệm nhờ khử trùng lặp
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT COUNT(*), COALESCE(SUM(size), 0), COALESCE(SUM(size * ref_count), 0), COALESCE(SUM(ref_count), 0), " +
+                "COALESCE(SUM(CASE WHEN ref_count = 0 THEN 1 ELSE 0 END), 0) FROM image_blobs",
+                rs -> {
+                    long storedBytes = rs.getLong(2);
+                    long referencedBytes = rs.getLong(3);
+                    stats.put("blobs", rs.getLong(1));
+                    stats.put("references", rs.getLong(4));
+                    stats.put("unreferencedBlobs", rs.getLong(5));
+                    stats.put("storedBytes", storedBytes);
+                    stats.put("referencedBytes", referencedBytes);
+                    stats.put("savedBytes", Math.max(0, referencedBytes - storedBytes));
+                    stats.put("dedupeRatio", storedBytes > 0 ? (double) referencedBytes / storedBytes : 1.0);
+                });
+        stats.put("uploads", uploads.get());
+        stats.put("duplicateUploads", duplicateUploads.get());
+        stats.put("duplicateBytes", duplicateBytes.get());
+        stats.put("collectedBlobs", collectedBlobs.get());
+        stats.put("collectedBytes", collectedBytes.get());
+        return stats;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Upload đã ghi ra file tạm, chưa có tham chiếu
+     */
+    public static final class StagedBlob {
+
+        final Path temp;
+        final String hash;
+        final long size;
+
+        StagedBlob(Path temp, String hash, long size) {
+            this.temp = temp;
+            this.hash = hash;
+            this.size = size;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Blob đã được tham chiếu
+     */
+    public static final class StoredBlob {
+
+        final Long id;
+        final String path;
+        final boolean pendingWrite;
+
+        StoredBlob(Long id, String path, boolean pendingWrite) {
+            this.id = id;
+            this.path = path;
+            this.pendingWrite = pendingWrite;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * File blob chưa có trong ImageStorage: cần write() sau khi commit
+         */
+        public boolean isPendingWrite() {
+            return pendingWrite;
+        }
+    }
+}
@@ -1,35 +1,42 @@
 package com.stackoverflow.service.common;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.stackoverflow.dto.StoredImage;
 import com.stackoverflow.entity.ImageAttachment;
 import com.stackoverflow.entity.Question;
 import com.stackoverflow.entity.Answer;
 import com.stackoverflow.entity.User;
+import com.stackoverflow.event.ImageUploadedEvent;
+import com.stackoverflow.event.QuestionContentChangedEvent;
 import com.stackoverflow.repository.ImageAttachmentRepository;
 import com.stackoverflow.repository.QuestionRepository;
 import com.stackoverflow.repository.AnswerRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.Resource;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ImageService {
 
-    @Value("${upload.path}")
-    private String uploadPath;
+    private static final Logger log = LoggerFactory.getLogger(ImageService.class);
 
     @Autowired
     private ImageAttachmentRepository imageAttachmentRepository;
@@ -40,110 +47,124 @@ public class ImageService {
     @Autowired
     private AnswerRepository answerRepository;
 
-    public ImageAttachment saveImage(MultipartFile file, Long questionId, Long answerId, User uploadedBy) throws IOException {
-        validateImage(file);
-        
-        // Create upload directory if it doesn't exist
-        Path uploadDir = Paths.get(uploadPath);
-        if (!Files.exists(uploadDir)) {
-            Files.createDirectories(uploadDir);
-        }
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
-        // Generate unique filename with date prefix for better organization
-        String originalFilename = file.getOriginalFilename();
-        String extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-        String datePrefix = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-        String newFilename = datePrefix + "-" + UUID.randomUUID().toString() + extension;
+    @Autowired
+    private HotImageCache hotImageCache;
 
-        // Save file to disk with error handling
-        Path filePath = uploadDir.resolve(newFilename);
-        try {
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-        } catch (IOException e) {
-            throw new IOException("Failed to save image: " + e.getMessage());
-        }
+    @Autowired
+    private ImageBlobStore blobStore;
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
-        // Create and save image attachment record
-        ImageAttachment attachment = new ImageAttachment();
-        attachment.setFileName(originalFilename);
-        attachment.setPath(newFilename);
-        attachment.setContentType(file.getContentType());
-        attachment.setUploadedBy(uploadedBy);
+    @Value("${images.metadata-cache.max-entries:10000}")
+    private long metadataCacheSize;
+
+    // "id:size" -> siêu dữ liệu file (file bất biến nên chỉ cần bỏ khi xóa hoặc khi biến thể được tạo xong)
+    private Cache<String, StoredImage> storedImages;
+
+    // Đường dẫn file -> các khóa "id:size" đang cache file đó (nhiều ảnh có thể dùng chung một blob)
+    private final ConcurrentHashMap<String, Set<String>> storedKeysByPath = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        storedImages = Caffeine.newBuilder()
+                .maximumSize(metadataCacheSize)
+                .evictionListener((String key, StoredImage image, RemovalCause cause) -> unindexStoredImage(key, image))
+                .build();
+    }
 
+    public ImageAttachment saveImage(MultipartFile file, Long questionId, Long answerId, User uploadedBy) throws IOException {
         // Associate with question or answer if provided
+        Question question = null;
         if (questionId != null) {
-            Question question = questionRepository.findById(questionId)
+            question = questionRepository.findById(questionId)
                 .orElseThrow(() -> new RuntimeException("Question not found"));
-            attachment.setQuestion(question);
         }
-        
+
+        Answer answer = null;
         if (answerId != null) {
-            Answer answer = answerRepository.findById(answerId)
+            answer = answerRepository.findById(answerId)
                 .orElseThrow(() -> new RuntimeException("Answer not found"));
-            attachment.setAnswer(answer);
         }
 
-        return imageAttachmentRepository.save(attachment);
+        return store(file, question, answer, uploadedBy);
     }
 
     public ImageAttachment saveQuestionImage(MultipartFile file, Question question) throws IOException {
-        validateImage(file);
-        
-        // Create upload directory if it doesn't exist
-        Path uploadDir = Paths.get(uploadPath);
-        if (!Files.exists(uploadDir)) {
-            Files.createDirectories(uploadDir);
-        }
-
-        // Generate unique filename
-        String originalFilename = file.getOriginalFilename();
-        String extension = originalFilename != null ? originalFilename.substring(originalFilename.lastIndexOf(".")) : ".jpg";
-        String filename = UUID.randomUUID().toString() + extension;
-        
-        // Save file to disk
-        Path filePath = uploadDir.resolve(filename);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-        
-        // Create and save image attachment
-        ImageAttachment image = new ImageAttachment();
-        image.setFileName(originalFilename);
-        image.setPath(filename);
-        image.setContentType(file.getContentType());
-        image.setQuestion(question);
-        image.setUploadedBy(question.getAuthor());
-        image.setCreatedAt(LocalDateTime.now());
-        
-        return imageAttachmentRepository.save(image);
+        return store(file, question, null, question.getAuthor());
     }
     
     public ImageAttachment saveAnswerImage(MultipartFile file, Answer answer) throws IOException {
+        return store(file, null, answer, answer.getAuthor());
+    }
+
+    /**
+     * Đường lưu ảnh duy nhất: stream vào file tạm (tính SHA-256), rồi trong một giao dịch tham chiếu blob
+     * cùng nội dung (hoặc tạo blob mới) và lưu bản ghi ảnh. Nội dung trùng dùng lại cả biến thể kích thước.
+     * File của blob mới được ghi sau khi commit; ghi lỗi thì xóa lại bản ghi ảnh và bỏ tham chiếu
+     */
+    private ImageAttachment store(MultipartFile file, Question question, Answer answer, User uploadedBy) throws IOException {
         validateImage(file);
-        
-        // Create upload directory if it doesn't exist
-        Path uploadDir = Paths.get(uploadPath);
-        if (!Files.exists(uploadDir)) {
-            Files.createDirectories(uploadDir);
+
+        ImageBlobStore.StagedBlob staged;
+        try {
+            staged = blobStore.stage(file);
+        } catch (IOException e) {
+            throw new IOException("Failed to save image: " + e.getMessage());
         }
 
-        // Generate unique filename
-        String originalFilename = file.getOriginalFilename();
-        String extension = originalFilename != null ? originalFilename.substring(originalFilename.lastIndexOf(".")) : ".jpg";
-        String filename = UUID.randomUUID().toString() + extension;
-        
-        // Save file to disk
-        Path filePath = uploadDir.resolve(filename);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-        
-        // Create and save image attachment
-        ImageAttachment image = new ImageAttachment();
-        image.setFileName(originalFilename);
-        image.setPath(filename);
-        image.setContentType(file.getContentType());
-        image.setAnswer(answer);
-        image.setUploadedBy(answer.getAuthor());
-        image.setCreatedAt(LocalDateTime.now());
-        
-        return imageAttachmentRepository.save(image);
+        ImageAttachment saved;
+        try {
+            ImageBlobStore.StoredBlob[] acquired = new ImageBlobStore.StoredBlob[1];
+            saved = transactionTemplate.execute(status -> {
+                ImageBlobStore.StoredBlob blob = blobStore.acquire(staged);
+                acquired[0] = blob;
+
+                ImageAttachment attachment = new ImageAttachment();
+                attachment.setFileName(file.getOriginalFilename());
+                attachment.setPath(blob.getPath());
+                attachment.setBlobId(blob.getId());
+                attachment.setContentType(file.getContentType());
+                attachment.setQuestion(question);
+                attachment.setAnswer(answer);
+                attachment.setUploadedBy(uploadedBy);
+                attachment.setCreatedAt(LocalDateTime.now());
+                attachment.setVariantStatus(ImageAttachment.VARIANTS_PENDING);
+                imageAttachmentRepository.findFirstByBlobIdAndVariantStatus(blob.getId(), ImageAttachment.VARIANTS_READY)
+                        .ifPresent(existing -> {
+                            attachment.setThumbnailPath(existing.getThumbnailPath());
+                            attachment.setMediumPath(existing.getMediumPath());
+                            attachment.setVariantStatus(ImageAttachment.VARIANTS_READY);
+                        });
+                return imageAttachmentRepository.save(attachment);
+            });
+
+            if (acquired[0].isPendingWrite()) {
+                try {
+                    blobStore.write(staged, acquired[0]);
+                } catch (IOException | RuntimeException e) {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        imageAttachmentRepository.deleteById(saved.getId());
+                        blobStore.release(saved.getBlobId());
+                    });
+                    throw new IOException("Failed to save image: " + e.getMessage());
+                }
+            }
+        } finally {
+            blobStore.discard(staged);
+        }
+
+        if (ImageAttachment.VARIANTS_PENDING.equals(saved.getVariantStatus())) {
+            eventPublisher.publishEvent(new ImageUploadedEvent(saved.getId()));
+        }
+        publishAnswerImageChange(saved);
+        return saved;
     }
     
     private void validateImage(MultipartFile file) {
@@ -172,16 +193,56 @@ public class ImageService {
             throw new AccessDeniedException("You don't have permission to delete this image");
         }
 
-        // Delete file from disk with error handling
-        Path filePath = Paths.get(uploadPath, attachment.getPath());
-        try {
-            Files.deleteIfExists(filePath);
-        } catch (IOException e) {
-            throw new IOException("Failed to delete image file: " + e.getMessage());
+        if (attachment.getBlobId() != null) {
+            // Nội dung dùng chung: chỉ bỏ tham chiếu, blob được dọn khi không còn ảnh nào dùng
+            transactionTemplate.executeWithoutResult(status -> {
+                imageAttachmentRepository.delete(attachment);
+                blobStore.release(attachment.getBlobId());
+            });
+            evictStoredImage(attachment.getId());
+            publishAnswerImageChange(attachment);
+            return;
+        }
+
+        // Delete file from storage
+        if (!deleteStoredFile(attachment.getPath())) {
+            throw new IOException("Failed to delete image file " + attachment.getPath());
+        }
+        // Biến thể kích thước: lỗi chỉ để lại file thừa
+        for (String variantPath : new String[]{attachment.getThumbnailPath(), attachment.getMediumPath()}) {
+            if (variantPath != null) {
+                deleteStoredFile(variantPath);
+            }
         }
 
         // Remove database record
         imageAttachmentRepository.delete(attachment);
+        evictStoredImage(attachment.getId());
+        publishAnswerImageChange(attachment);
+    }
+
+    /**
+     * Xóa file ảnh khỏi ImageStorage (không kiểm tra quyền, không đụng tới DB).
+     * Dùng cho tác vụ nền sau khi dòng image_attachments đã bị xóa và giao dịch đã commit.
+     *
+     * @return false nếu không xóa được
+     */
+    public boolean deleteStoredFile(String path) {
+        Set<String> keys = storedKeysByPath.remove(path);
+        if (keys != null) {
+            storedImages.invalidateAll(keys);
+        }
+        hotImageCache.invalidatePath(path);
+        return imageStorage.delete(path);
+    }
+
+    /**
+     * Ảnh của câu trả lời nằm trong phần trang câu hỏi được cache
+     */
+    private void publishAnswerImageChange(ImageAttachment attachment) {
+        if (attachment.getAnswer() != null && attachment.getAnswer().getQuestion() != null) {
+            eventPublisher.publishEvent(new QuestionContentChangedEvent(attachment.getAnswer().getQuestion().getId()));
+        }
     }
 
     public List<ImageAttachment> getImagesForQuestion(Question question) {
@@ -192,11 +253,102 @@ public class ImageService {
         return imageAttachmentRepository.findByAnswer(answer);
     }
 
-    public byte[] getImageData(ImageAttachment attachment) throws IOException {
-        Path filePath = Paths.get(uploadPath, attachment.getPath());
-        if (!Files.exists(filePath)) {
-            throw new IOException("Image file not found: " + attachment.getPath());
+    /**
+     * Siêu dữ liệu để phục vụ ảnh gốc
+     */
+    public Optional<StoredImage> getStoredImage(Long id) {
+        return getStoredImage(id, ImageVariantService.ORIGINAL);
+    }
+
+    /**
+     * Siêu dữ liệu để phục vụ ảnh ở một kích thước: cache theo id nên request có điều kiện (304)
+     * không cần truy vấn DB hay đọc file. Biến thể chưa tạo xong được thay bằng ảnh gốc và không cache
+     *
+     * @param size một trong ImageVariantService.SIZES
+     * @return rỗng nếu không có bản ghi hoặc file đã mất
+     */
+    public Optional<StoredImage> getStoredImage(Long id, String size) {
+        String key = id + ":" + size;
+        StoredImage cached = storedImages.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<StoredImage> loaded = imageAttachmentRepository.findById(id).flatMap(image -> describe(image, size));
+        loaded.filter(StoredImage::isStable).ifPresent(image -> cacheStoredImage(key, image));
+        return loaded;
+    }
+
+    private void cacheStoredImage(String key, StoredImage image) {
+        storedKeysByPath.computeIfAbsent(image.getPath(), path -> ConcurrentHashMap.newKeySet()).add(key);
+        storedImages.put(key, image);
+    }
+
+    private void unindexStoredImage(String key, StoredImage image) {
+        if (image != null) {
+            storedKeysByPath.computeIfPresent(image.getPath(), (path, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    /**
+     * Bỏ siêu dữ liệu và bytes đang cache của mọi kích thước của ảnh
+     */
+    public void evictStoredImage(Long id) {
+        for (String size : ImageVariantService.SIZES) {
+            String key = id + ":" + size;
+            unindexStoredImage(key, storedImages.asMap().remove(key));
+        }
+        hotImageCache.invalidate(id);
+    }
+
+    /**
+     * File ảnh dưới dạng Resource để stream (hỗ trợ Range) thay vì đọc cả file vào byte[].
+     * Ảnh nóng lưu dạng file được phục vụ từ HotImageCache (ngoài heap); ảnh trong pack đã được map vào bộ nhớ
+     */
+    public Optional<Resource> openImage(StoredImage image) {
+        Resource cached = hotImageCache.get(image, () -> imageStorage.open(image.getPath()).orElse(null));
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Resource resource = imageStorage.open(image.getPath()).orElse(null);
+        if (resource == null) {
+            // File bị xóa sau khi siêu dữ liệu được cache
+            evictStoredImage(image.getId());
+            return Optional.empty();
+        }
+        Resource admitted = resource.isFile() ? hotImageCache.admit(image, resource) : null;
+        return Optional.of(admitted != null ? admitted : resource);
+    }
+
+    private Optional<StoredImage> describe(ImageAttachment attachment, String size) {
+        String path = attachment.getPath();
+        String contentType = attachment.getContentType();
+        boolean stable = true;
+        if (!ImageVariantService.ORIGINAL.equals(size)) {
+            String status = attachment.getVariantStatus();
+            if (ImageAttachment.VARIANTS_READY.equals(status)) {
+                // null: ảnh gốc đã đủ nhỏ hoặc định dạng không thu nhỏ được
+                String variantPath = ImageVariantService.THUMBNAIL.equals(size)
+                        ? attachment.getThumbnailPath() : attachment.getMediumPath();
+                if (variantPath != null) {
+                    path = variantPath;
+                    contentType = ImageVariantService.contentTypeOf(variantPath);
+                }
+            } else if (!ImageAttachment.VARIANTS_FAILED.equals(status)) {
+                stable = false;
+            }
+        }
+
+        ImageStorage.Stat stat = imageStorage.stat(path).orElse(null);
+        if (stat == null) {
+            log.warn("Image file {} is missing", path);
+            return Optional.empty();
         }
-        return Files.readAllBytes(filePath);
+        long length = stat.getLength();
+        long lastModified = stat.getLastModified();
+        String etag = "\"" + attachment.getId() + "-" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        return Optional.of(new StoredImage(attachment.getId(), path, contentType, length, lastModified, etag, stable));
     }
-}
\ No newline at end of file
+}
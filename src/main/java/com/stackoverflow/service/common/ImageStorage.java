@@ -0,0 +1,56 @@
+package com.stackoverflow.service.common;
+
+import lombok.Value;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Nơi lưu bytes của ảnh gốc, blob và biến thể kích thước, theo khóa là đường dẫn tương đối
+ * (giá trị của ImageAttachment.path, thumbnailPath, mediumPath)
+ *
+ * FileImageStorage giữ bố cục một file mỗi khóa trong upload.path (mặc định); PackImageStorage
+ * gộp nhiều khóa vào các segment lớn (images.storage.type=pack). ImageService, ImageBlobStore và
+ * ImageVariantService chỉ làm việc qua interface này.
+ */
+public interface ImageStorage {
+
+    /**
+     * Lưu nội dung file cục bộ source dưới khóa key, ghi đè nếu đã có. source bị chuyển đi hoặc xóa
+     */
+    void put(String key, Path source) throws IOException;
+
+    /**
+     * @return rỗng nếu không có khóa
+     */
+    Optional<Resource> open(String key);
+
+    /**
+     * Kích thước và thời điểm ghi, không đọc nội dung
+     */
+    Optional<Stat> stat(String key);
+
+    boolean exists(String key);
+
+    /**
+     * @return false nếu không xóa được (không có khóa thì coi như đã xóa)
+     */
+    boolean delete(String key);
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    Map<String, Object> getStats();
+
+    @Value
+    class Stat {
+
+        long length;
+
+        /** Epoch millis */
+        long lastModified;
+    }
+}
@@ -0,0 +1,164 @@
+package com.stackoverflow.service.common;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Image Storage Migration Service - Chuyển file ảnh từ bố cục một file mỗi ảnh sang pack (images.storage.type=pack)
+ *
+ * Duyệt image_attachments theo id, mỗi khóa (ảnh gốc/blob và biến thể) được ghi vào pack rồi file cũ bị xóa.
+ * Trong lúc chuyển, ảnh chưa tới lượt vẫn được PackImageStorage đọc từ file nên không cần dừng dịch vụ.
+ * Chạy lại an toàn: khóa đã có trong pack chỉ còn việc xóa file cũ nếu còn sót.
+ */
+@Service
+@ConditionalOnProperty(name = "images.storage.type", havingValue = "pack")
+public class ImageStorageMigrationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageStorageMigrationService.class);
+
+    @Autowired
+    private PackImageStorage packStorage;
+
+    @Autowired
+    private FileImageStorage fileStorage;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${images.storage.migration.chunk-size:500}")
+    private int chunkSize;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "image-storage-migration");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // Tiến độ
+    private volatile long cursorImageId;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile String lastError;
+    private final AtomicLong migratedFiles = new AtomicLong();
+    private final AtomicLong migratedBytes = new AtomicLong();
+    private final AtomicLong alreadyPacked = new AtomicLong();
+    private final AtomicLong missingFiles = new AtomicLong();
+    private final AtomicLong failedFiles = new AtomicLong();
+
+    /**
+     * Bắt đầu chuyển nền
+     *
+     * @return false nếu đang có lần chạy khác
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        cursorImageId = 0L;
+        startedAt = System.currentTimeMillis();
+        finishedAt = 0L;
+        lastError = null;
+        executor.submit(this::run);
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Khóa đang ghi dở bị bỏ khi đọc lại pack; file cũ chưa bị xóa nên chạy lại là đủ
+        executor.shutdownNow();
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<String> keys = new ArrayList<>();
+                long after = cursorImageId;
+                List<Long> ids = jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(
+                            "SELECT id, path, thumbnail_path, medium_path FROM image_attachments WHERE id > ? ORDER BY id");
+                    statement.setLong(1, after);
+                    statement.setMaxRows(chunkSize);
+                    return statement;
+                }, (rs, rowNum) -> {
+                    for (int column = 2; column <= 4; column++) {
+                        String key = rs.getString(column);
+                        if (key != null) {
+                            keys.add(key);
+                        }
+                    }
+                    return rs.getLong(1);
+                });
+                if (ids.isEmpty()) {
+                    break;
+                }
+                keys.forEach(this::migrate);
+                cursorImageId = ids.get(ids.size() - 1);
+            }
+            log.info("Image storage migration finished: {} files ({} bytes) moved into packs, {} missing, {} failed",
+                    migratedFiles.get(), migratedBytes.get(), missingFiles.get(), failedFiles.get());
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            log.warn("Image storage migration stopped at image {}: {}", cursorImageId, e.getMessage());
+        } finally {
+            finishedAt = System.currentTimeMillis();
+            running.set(false);
+        }
+    }
+
+    private void migrate(String key) {
+        if (packStorage.isPacked(key)) {
+            // Lần chạy trước đã ghi vào pack nhưng chưa kịp xóa file cũ (blob dùng chung cũng rơi vào đây)
+            fileStorage.delete(key);
+            alreadyPacked.incrementAndGet();
+            return;
+        }
+        ImageStorage.Stat stat = fileStorage.stat(key).orElse(null);
+        if (stat == null) {
+            missingFiles.incrementAndGet();
+            return;
+        }
+        Path file = fileStorage.resolve(key);
+        try {
+            packStorage.put(key, file, stat.getLastModified());
+            migratedFiles.incrementAndGet();
+            migratedBytes.addAndGet(stat.getLength());
+        } catch (Exception e) {
+            failedFiles.incrementAndGet();
+            log.warn("Failed to move image {} into pack storage: {}", key, e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("cursorImageId", cursorImageId);
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        status.put("migratedFiles", migratedFiles.get());
+        status.put("migratedBytes", migratedBytes.get());
+        status.put("alreadyPacked", alreadyPacked.get());
+        status.put("missingFiles", missingFiles.get());
+        status.put("failedFiles", failedFiles.get());
+        status.put("lastError", lastError);
+        return status;
+    }
+}
@@ -0,0 +1,498 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.entity.ImageAttachment;
+import com.stackoverflow.event.ImageUploadedEvent;
+import com.stackoverflow.repository.ImageAttachmentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Image Variant Service - Tạo nền các bản thu nhỏ (thumbnail, medium) của ảnh tải lên bằng ImageIO
+ *
+ * Upload chỉ lưu ảnh gốc với variantStatus = PENDING rồi trả về; sau commit ảnh được đưa vào một
+ * executor có hàng đợi giới hạn. Hàng đợi đầy thì ảnh vẫn PENDING và được lần quét định kỳ
+ * (cũng chạy khi khởi động) đưa lại vào hàng đợi, nên công việc dở dang không mất khi tắt máy.
+ * Ảnh được giải mã với subsampling nên bộ nhớ không phụ thuộc độ phân giải gốc; biến thể được ghi ra
+ * file tạm rồi đưa vào ImageStorage, và bị xóa nếu ảnh đã bị xóa trong lúc xử lý. Ảnh cùng nội dung
+ * (cùng blob) chỉ được thu nhỏ một lần: worker nhận việc trên dòng image_blobs.
+ */
+@Service
+public class ImageVariantService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageVariantService.class);
+
+    public static final String ORIGINAL = "original";
+    public static final String MEDIUM = "medium";
+    public static final String THUMBNAIL = "thumbnail";
+
+    public static final Set<String> SIZES = Set.of(ORIGINAL, MEDIUM, THUMBNAIL);
+
+    private static final int RESCAN_PAGE_SIZE = 200;
+
+    private static final String MARK_DONE_SQL =
+            "UPDATE image_attachments SET thumbnail_path = ?, medium_path = ?, variant_status = ? WHERE id = ?";
+
+    // Nhận việc của một nội dung: chưa ai nhận, hoặc lần nhận trước đã quá hạn (worker chết giữa chừng)
+    private static final String CLAIM_BLOB_SQL =
+            "UPDATE image_blobs SET variant_status = ?, variant_claimed_at = ? WHERE id = ? " +
+            "AND (variant_status IS NULL OR (variant_status = ? AND variant_claimed_at < ?))";
+
+    private static final String MARK_BLOB_DONE_SQL =
+            "UPDATE image_blobs SET thumbnail_path = ?, medium_path = ?, variant_status = ? WHERE id = ?";
+
+    private static final String MARK_BLOB_IMAGES_DONE_SQL =
+            "UPDATE image_attachments SET thumbnail_path = ?, medium_path = ?, variant_status = ? WHERE blob_id = ?";
+
+    @Value("${images.variants.thumbnail-size:320}")
+    private int thumbnailSize;
+
+    @Value("${images.variants.medium-size:1024}")
+    private int mediumSize;
+
+    @Value("${images.variants.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    @Value("${images.variants.threads:2}")
+    private int threads;
+
+    @Value("${images.variants.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${images.variants.claim-timeout-ms:600000}")
+    private long claimTimeoutMs;
+
+    @Autowired
+    private ImageAttachmentRepository imageAttachmentRepository;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @Autowired
+    private ImageBlobStore blobStore;
+
+    private ThreadPoolExecutor executor;
+
+    // Id đang nằm trong hàng đợi hoặc đang xử lý, để lần quét không xếp trùng
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+
+    // Metrics
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong variantsWritten = new AtomicLong();
+    private final AtomicLong unsupported = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+    private final AtomicLong requeued = new AtomicLong();
+    private final AtomicLong totalProcessingMs = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Ảnh chưa xử lý vẫn PENDING trong DB
+        executor.shutdownNow();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onImageUploaded(ImageUploadedEvent event) {
+        enqueue(event.getImageId());
+    }
+
+    /**
+     * Đưa lại ảnh PENDING vào hàng đợi khi khởi động (công việc dở dang của lần chạy trước)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        int count = requeuePending();
+        if (count > 0) {
+            log.info("Re-queued {} images waiting for size variants", count);
+        }
+    }
+
+    /**
+     * Quét ảnh PENDING theo id cho tới khi hàng đợi đầy
+     *
+     * @return số ảnh được đưa vào hàng đợi
+     */
+    @Scheduled(initialDelayString = "${images.variants.rescan-interval-ms:60000}",
+            fixedDelayString = "${images.variants.rescan-interval-ms:60000}")
+    public int requeuePending() {
+        int count = 0;
+        long afterId = 0L;
+        while (executor.getQueue().remainingCapacity() > 0) {
+            List<Long> ids = imageAttachmentRepository.findPendingVariantIds(afterId, PageRequest.of(0, RESCAN_PAGE_SIZE));
+            if (ids.isEmpty()) {
+                break;
+            }
+            for (Long id : ids) {
+                if (queued.contains(id)) {
+                    continue;
+                }
+                if (!enqueue(id)) {
+                    return count;
+                }
+                count++;
+            }
+            afterId = ids.get(ids.size() - 1);
+        }
+        requeued.addAndGet(count);
+        return count;
+    }
+
+    /**
+     * @return false nếu hàng đợi đầy (ảnh vẫn PENDING, lần quét sau sẽ lấy lại)
+     */
+    private boolean enqueue(Long imageId) {
+        if (!queued.add(imageId)) {
+            return true;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    process(imageId);
+                } finally {
+                    queued.remove(imageId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            queued.remove(imageId);
+            deferred.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Tạo biến thể cho một ảnh. Ảnh lưu theo blob nhận việc trên dòng image_blobs (UPDATE có điều kiện):
+     * chỉ một worker thu nhỏ mỗi nội dung và ghi kết quả cho mọi ảnh cùng blob; worker khác chép kết quả
+     * đã có hoặc bỏ qua nếu nội dung đang được xử lý
+     */
+    void process(Long imageId) {
+        ImageAttachment image = imageAttachmentRepository.findById(imageId).orElse(null);
+        if (image == null || ImageAttachment.VARIANTS_READY.equals(image.getVariantStatus())
+                || ImageAttachment.VARIANTS_FAILED.equals(image.getVariantStatus())) {
+            return;
+        }
+        if (image.getBlobId() == null) {
+            // Ảnh cũ một file mỗi lần tải lên: không có nội dung dùng chung để khử trùng lặp
+            Variants variants = generate(image);
+            if (jdbcTemplate.update(MARK_DONE_SQL, variants.thumbnailPath, variants.mediumPath, variants.status, imageId) == 0) {
+                // Ảnh bị xóa trong lúc xử lý
+                variants.delete();
+                return;
+            }
+            imageService.evictStoredImage(imageId);
+            return;
+        }
+
+        Long blobId = image.getBlobId();
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp staleBefore = Timestamp.valueOf(now.minus(Duration.ofMillis(claimTimeoutMs)));
+        if (jdbcTemplate.update(CLAIM_BLOB_SQL, ImageAttachment.VARIANTS_PROCESSING, Timestamp.valueOf(now), blobId,
+                ImageAttachment.VARIANTS_PROCESSING, staleBefore) == 0) {
+            copyFromBlob(imageId, blobId);
+            return;
+        }
+
+        Variants variants = generate(image);
+        if (jdbcTemplate.update(MARK_BLOB_DONE_SQL, variants.thumbnailPath, variants.mediumPath, variants.status, blobId) == 0) {
+            // Blob đã bị dọn (không còn ảnh nào trỏ tới) trong lúc xử lý
+            variants.delete();
+            return;
+        }
+        List<Long> imageIds = jdbcTemplate.queryForList("SELECT id FROM image_attachments WHERE blob_id = ?", Long.class, blobId);
+        jdbcTemplate.update(MARK_BLOB_IMAGES_DONE_SQL, variants.thumbnailPath, variants.mediumPath, variants.status, blobId);
+        imageIds.forEach(imageService::evictStoredImage);
+    }
+
+    /**
+     * Nội dung đã được worker khác nhận: chép kết quả nếu đã xong, nếu chưa thì worker đó sẽ cập nhật ảnh này
+     */
+    private void copyFromBlob(Long imageId, Long blobId) {
+        List<Variants> done = jdbcTemplate.query(
+                "SELECT variant_status, thumbnail_path, medium_path FROM image_blobs WHERE id = ?",
+                (rs, rowNum) -> new Variants(rs.getString(1), rs.getString(2), rs.getString(3)), blobId);
+        if (done.isEmpty() || ImageAttachment.VARIANTS_PROCESSING.equals(done.get(0).status)) {
+            deduplicated.incrementAndGet();
+            return;
+        }
+        Variants variants = done.get(0);
+        jdbcTemplate.update(MARK_DONE_SQL, variants.thumbnailPath, variants.mediumPath, variants.status, imageId);
+        reused.incrementAndGet();
+        imageService.evictStoredImage(imageId);
+    }
+
+    /**
+     * Giải mã, thu nhỏ và lưu các biến thể. Lỗi thì xóa phần đã ghi và trả về FAILED
+     */
+    private Variants generate(ImageAttachment image) {
+        long start = System.currentTimeMillis();
+        String mediumPath = null;
+        String thumbnailPath = null;
+        try {
+            BufferedImage source = decode(image.getPath());
+            if (source == null) {
+                // Định dạng ImageIO không đọc được (webp, svg...): mọi kích thước dùng ảnh gốc
+                unsupported.incrementAndGet();
+            } else {
+                String format = source.getColorModel().hasAlpha() ? "png" : "jpg";
+                BufferedImage medium = scale(source, mediumSize, format);
+                if (medium != null) {
+                    mediumPath = write(medium, image.getPath(), MEDIUM, format);
+                    source = medium;
+                }
+                BufferedImage thumbnail = scale(source, thumbnailSize, format);
+                if (thumbnail != null) {
+                    thumbnailPath = write(thumbnail, image.getPath(), THUMBNAIL, format);
+                }
+            }
+            processed.incrementAndGet();
+            return new Variants(ImageAttachment.VARIANTS_READY, thumbnailPath, mediumPath);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to create size variants for image {}: {}", image.getId(), e.getMessage());
+            new Variants(ImageAttachment.VARIANTS_FAILED, thumbnailPath, mediumPath).delete();
+            failed.incrementAndGet();
+            return new Variants(ImageAttachment.VARIANTS_FAILED, null, null);
+        } finally {
+            totalProcessingMs.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Giải mã ảnh, bỏ bớt điểm ảnh ngay khi đọc (subsampling) nhưng vẫn giữ ít nhất gấp đôi cỡ medium
+     *
+     * @return null nếu không có ImageReader cho định dạng này
+     */
+    private BufferedImage decode(String path) throws IOException {
+        Resource resource = imageStorage.open(path)
+                .orElseThrow(() -> new IOException("Image file " + path + " is missing"));
+        try (InputStream stream = resource.getInputStream();
+             ImageInputStream input = ImageIO.createImageInputStream(stream)) {
+            if (input == null) {
+                throw new IOException("Cannot open " + path);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int factor = Math.max(1, longestSide / (2 * mediumSize));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(factor, factor, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Thu nhỏ để cạnh dài bằng bound, mỗi bước giảm tối đa một nửa để tránh răng cưa
+     *
+     * @return null nếu ảnh đã đủ nhỏ
+     */
+    private static BufferedImage scale(BufferedImage source, int bound, String format) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (Math.max(width, height) <= bound) {
+            return null;
+        }
+        double ratio = (double) bound / Math.max(width, height);
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+        int type = "png".equals(format) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = source;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                // JPEG không có kênh alpha: nền trắng thay cho vùng trong suốt
+                graphics.drawImage(current, 0, 0, width, height, type == BufferedImage.TYPE_INT_RGB ? Color.WHITE : null, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    /**
+     * Ghi biến thể ra file tạm rồi đưa vào ImageStorage, để không bao giờ phục vụ file dở
+     *
+     * @return khóa của biến thể
+     */
+    private String write(BufferedImage image, String originalPath, String size, String format) throws IOException {
+        String variantPath = variantPath(originalPath, size, format);
+        Path temp = blobStore.createStagingFile("variant-");
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(temp.toFile())) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpg".equals(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            writer.dispose();
+        }
+        try {
+            imageStorage.put(variantPath, temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        variantsWritten.incrementAndGet();
+        return variantPath;
+    }
+
+    /**
+     * Khóa của biến thể cạnh ảnh gốc: "abc.png" -> "abc-medium.jpg"
+     */
+    static String variantPath(String originalPath, String size, String format) {
+        int dot = originalPath.lastIndexOf('.');
+        int slash = originalPath.lastIndexOf('/');
+        String base = dot > slash + 1 ? originalPath.substring(0, dot) : originalPath;
+        return base + "-" + size + "." + format;
+    }
+
+    /**
+     * Mọi khóa biến thể có thể có của một ảnh gốc
+     */
+    static List<String> variantPaths(String originalPath) {
+        List<String> paths = new ArrayList<>();
+        for (String size : List.of(MEDIUM, THUMBNAIL)) {
+            for (String format : List.of("jpg", "png")) {
+                paths.add(variantPath(originalPath, size, format));
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Kiểu nội dung của file biến thể theo đuôi file
+     */
+    public static String contentTypeOf(String variantPath) {
+        return variantPath.endsWith(".png") ? "image/png" : "image/jpeg";
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long done = processed.get() + failed.get();
+        stats.put("queued", executor.getQueue().size());
+        stats.put("active", executor.getActiveCount());
+        stats.put("processed", processed.get());
+        stats.put("variantsWritten", variantsWritten.get());
+        stats.put("unsupported", unsupported.get());
+        stats.put("failed", failed.get());
+        stats.put("deduplicated", deduplicated.get());
+        stats.put("reused", reused.get());
+        stats.put("deferred", deferred.get());
+        stats.put("requeued", requeued.get());
+        stats.put("avgProcessingMs", done > 0 ? totalProcessingMs.get() / done : 0);
+        return stats;
+    }
+
+    /**
+     * Kết quả tạo biến thể của một nội dung
+     */
+    private final class Variants {
+
+        final String status;
+        final String thumbnailPath;
+        final String mediumPath;
+
+        Variants(String status, String thumbnailPath, String mediumPath) {
+            this.status = status;
+            this.thumbnailPath = thumbnailPath;
+            this.mediumPath = mediumPath;
+        }
+
+        /**
+         * Xóa các file biến thể đã ghi (ảnh hoặc blob không còn, hoặc tạo lỗi giữa chừng)
+         */
+        void delete() {
+            for (String path : new String[]{thumbnailPath, mediumPath}) {
+                if (path != null) {
+                    imageService.deleteStoredFile(path);
+                }
+            }
+        }
+    }
+}
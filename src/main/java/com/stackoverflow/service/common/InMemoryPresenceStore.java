@@ -0,0 +1,91 @@
+package com.stackoverflow.service.common;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Presence store trong bộ nhớ của node hiện tại (mặc định, presence.store=memory)
+ */
+@Component
+@ConditionalOnProperty(name = "presence.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryPresenceStore implements PresenceStore {
+
+    private final ConcurrentHashMap<Long, Long> lastSeen = new ConcurrentHashMap<>();
+
+    /** userId -> (nodeId -> số phiên đang mở); chỉ thay đổi trong compute của map */
+    private final ConcurrentHashMap<Long, Map<String, Integer>> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public void markSeen(Long userId, long seenAt) {
+        lastSeen.merge(userId, seenAt, Math::max);
+    }
+
+    @Override
+    public void markOffline(Long userId) {
+        lastSeen.remove(userId);
+    }
+
+    @Override
+    public int sessionOpened(Long userId, String nodeId) {
+        int[] total = {0};
+        sessions.compute(userId, (id, nodes) -> {
+            Map<String, Integer> updated = nodes != null ? nodes : new HashMap<>();
+            updated.merge(nodeId, 1, Integer::sum);
+            total[0] = total(updated);
+            return updated;
+        });
+        return total[0];
+    }
+
+    @Override
+    public int sessionClosed(Long userId, String nodeId) {
+        int[] total = {0};
+        sessions.computeIfPresent(userId, (id, nodes) -> {
+            nodes.computeIfPresent(nodeId, (node, count) -> count > 1 ? count - 1 : null);
+            total[0] = total(nodes);
+            if (total[0] == 0) {
+                // Vẫn giữ khóa của userId: sessionOpened đồng thời chỉ chạy sau khi user đã offline
+                lastSeen.remove(id);
+                return null;
+            }
+            return nodes;
+        });
+        return total[0];
+    }
+
+    private static int total(Map<String, Integer> perNode) {
+        int total = 0;
+        for (int count : perNode.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public long lastSeen(Long userId) {
+        Long seenAt = lastSeen.get(userId);
+        return seenAt != null ? seenAt : 0L;
+    }
+
+    @Override
+    public Map<Long, Long> lastSeen(Collection<Long> userIds) {
+        Map<Long, Long> result = new HashMap<>();
+        for (Long userId : userIds) {
+            Long seenAt = lastSeen.get(userId);
+            if (seenAt != null) {
+                result.put(userId, seenAt);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return lastSeen.size();
+    }
+}
@@ -2,8 +2,10 @@ package com.stackoverflow.service.common;
 
 import com.stackoverflow.entity.Message;
 import com.stackoverflow.entity.User;
+import com.stackoverflow.event.UnreadCountChangedEvent;
 import com.stackoverflow.repository.MessageRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -22,6 +24,9 @@ public class MessageService {
     @Autowired
     private MessageRepository messageRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * Gửi tin nhắn
      */
@@ -34,7 +39,9 @@ public class MessageService {
         message.setIsRead(false);
         message.setCreatedAt(LocalDateTime.now());
         
-        return messageRepository.save(message);
+        Message saved = messageRepository.save(message);
+        publishUnreadDelta(receiver, 1);
+        return saved;
     }
 
     /**
@@ -64,15 +71,23 @@ public class MessageService {
     public void markAsRead(Long messageId) {
         Message message = messageRepository.findById(messageId)
                 .orElseThrow(() -> new RuntimeException("Message not found"));
-        message.setIsRead(true);
-        messageRepository.save(message);
+        if (!Boolean.TRUE.equals(message.getIsRead())) {
+            message.setIsRead(true);
+            messageRepository.save(message);
+            publishUnreadDelta(message.getReceiver(), -1);
+        }
     }
 
     /**
      * Xóa tin nhắn
      */
     public void deleteMessage(Long messageId) {
-        messageRepository.deleteById(messageId);
+        messageRepository.findById(messageId).ifPresent(message -> {
+            if (!Boolean.TRUE.equals(message.getIsRead())) {
+                publishUnreadDelta(message.getReceiver(), -1);
+            }
+            messageRepository.delete(message);
+        });
     }
 
     /**
@@ -89,5 +104,11 @@ public class MessageService {
     public long countUnread(User user) {
         return messageRepository.countByReceiverAndIsReadFalse(user);
     }
-}
 
+    private void publishUnreadDelta(User receiver, int delta) {
+        if (receiver != null) {
+            eventPublisher.publishEvent(UnreadCountChangedEvent.delta(
+                    receiver.getUsername(), UnreadCountChangedEvent.Counter.MESSAGES, delta));
+        }
+    }
+}
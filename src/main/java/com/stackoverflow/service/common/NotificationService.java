@@ -1,28 +1,79 @@
 package com.stackoverflow.service.common;
 
+import com.stackoverflow.dto.FeedCursor;
+import com.stackoverflow.dto.InboxNotification;
+import com.stackoverflow.dto.InboxPage;
 import com.stackoverflow.entity.Notification;
+import com.stackoverflow.entity.NotificationReadMarker;
 import com.stackoverflow.entity.User;
+import com.stackoverflow.event.UnreadCountChangedEvent;
+import com.stackoverflow.repository.NotificationReadMarkerRepository;
 import com.stackoverflow.repository.NotificationRepository;
 import com.stackoverflow.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Notification Service
+ *
+ * Thông báo chung (toàn hệ thống hoặc theo vai trò) được lưu thành MỘT dòng isGlobal = true thay vì
+ * chèn một dòng cho mỗi người dùng: chi phí gửi không phụ thuộc số người dùng. Hộp thư gộp thông báo
+ * riêng với thông báo chung khi đọc; trạng thái đã đọc của thông báo chung là mốc thời gian theo từng
+ * người dùng (NotificationReadMarker), mọi thông báo chung tạo sau mốc là chưa đọc.
+ * Mọi thay đổi số chưa đọc được phát qua UnreadCountChangedEvent cho UnreadCounterService.
+ */
 @Service
 @Transactional
 public class NotificationService {
 
+    private static final Logger log = LoggerFactory.getLogger(NotificationService.class);
+
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    // Mốc cho tài khoản cũ không có createdAt
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    // Con trỏ của trang đầu: sau mọi thông báo
+    private static final LocalDateTime END_OF_TIME = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private static final int MAX_PAGE_SIZE = 50;
+
+    private static final String ADVANCE_MARKER_SQL =
+            "UPDATE notification_read_markers SET global_read_at = ? WHERE user_id = ? AND global_read_at < ?";
+
+    private static final String INSERT_MARKER_SQL =
+            "INSERT INTO notification_read_markers (user_id, global_read_at) SELECT ?, ? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM notification_read_markers WHERE user_id = ?)";
+
     @Autowired
     private NotificationRepository notificationRepository;
 
+    @Autowired
+    private NotificationReadMarkerRepository readMarkerRepository;
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * Gửi thông báo đến 1 người dùng
      */
@@ -33,75 +84,163 @@ public class NotificationService {
         notification.setType(type);
         notification.setIsRead(false);
         notification.setCreatedAt(LocalDateTime.now());
-        return notificationRepository.save(notification);
+        Notification saved = notificationRepository.save(notification);
+        eventPublisher.publishEvent(UnreadCountChangedEvent.delta(
+                user.getUsername(), UnreadCountChangedEvent.Counter.NOTIFICATIONS, 1));
+        return saved;
     }
 
     /**
-     * Gửi thông báo đến TẤT CẢ người dùng
+     * Gửi thông báo đến TẤT CẢ người dùng (1 dòng chung)
+     *
+     * @return số người nhận
      */
     public int broadcastToAll(String message, String type) {
-        List<User> allUsers = userRepository.findAll();
-        int count = 0;
-        for (User user : allUsers) {
-            sendToUser(user, message, type);
-            count++;
-        }
-        return count;
+        saveGlobal(null, message, type);
+        return (int) userRepository.count();
     }
 
     /**
-     * Gửi thông báo đến người dùng theo role
+     * Gửi thông báo đến người dùng theo role (1 dòng chung). Chấp nhận cả "USER" lẫn "ROLE_USER"
+     *
+     * @return số người nhận
      */
     public int broadcastToRole(String role, String message, String type) {
-        List<User> users = userRepository.findByRole(role);
-        int count = 0;
-        for (User user : users) {
-            sendToUser(user, message, type);
-            count++;
+        String normalized = normalizeRole(role);
+        if (normalized == null) {
+            throw new RuntimeException("Role is required");
+        }
+        saveGlobal(normalized, message, type);
+        return (int) (userRepository.countByRole(normalized) + userRepository.countByRole(ROLE_PREFIX + normalized));
+    }
+
+    /**
+     * Vai trò không có tiền tố "ROLE_", viết hoa
+     */
+    public static String normalizeRole(String role) {
+        if (role == null || role.isBlank()) {
+            return null;
         }
-        return count;
+        String normalized = role.trim().toUpperCase();
+        return normalized.startsWith(ROLE_PREFIX) ? normalized.substring(ROLE_PREFIX.length()) : normalized;
     }
 
     /**
-     * Lấy thông báo của 1 user
+     * Một trang hộp thư của 1 user: thông báo riêng và thông báo chung, mới nhất trước
+     *
+     * @param cursor con trỏ nhận từ trang trước (null = trang đầu)
      */
-    public List<Notification> getNotificationsByUser(User user) {
-        return notificationRepository.findByUserOrderByCreatedAtDesc(user);
+    @Transactional(readOnly = true)
+    public InboxPage getInbox(User user, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // Con trỏ sai định dạng: về trang đầu
+        FeedCursor after = FeedCursor.decode(cursor, FeedCursor.SORT_CREATED).orElse(null);
+        LocalDateTime beforeAt = after != null ? after.asCreatedAt() : END_OF_TIME;
+        Long beforeId = after != null ? after.getId() : Long.MAX_VALUE;
+
+        // Lấy thêm 1 dòng để biết còn trang sau
+        List<Notification> rows = notificationRepository.findInboxBefore(user, normalizeRole(user.getRole()), since(user),
+                beforeAt, beforeId, PageRequest.of(0, pageSize + 1));
+        boolean hasNext = rows.size() > pageSize;
+        if (hasNext) {
+            rows = rows.subList(0, pageSize);
+        }
+
+        LocalDateTime readUpTo = globalReadUpTo(user);
+        List<InboxNotification> items = new ArrayList<>(rows.size());
+        for (Notification n : rows) {
+            items.add(toInbox(n, readUpTo));
+        }
+        String next = null;
+        if (hasNext) {
+            Notification last = rows.get(rows.size() - 1);
+            next = FeedCursor.byCreatedAt(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new InboxPage(items, next, countUnread(user));
+    }
+
+    /**
+     * Lấy thông báo chưa đọc (riêng và chung), mới nhất trước
+     */
+    @Transactional(readOnly = true)
+    public List<InboxNotification> getUnreadNotifications(User user) {
+        LocalDateTime readUpTo = globalReadUpTo(user);
+        List<InboxNotification> unread = new ArrayList<>();
+        for (Notification n : notificationRepository.findByUserAndIsReadFalseOrderByCreatedAtDesc(user)) {
+            unread.add(toInbox(n, readUpTo));
+        }
+        for (Notification n : notificationRepository.findGlobalAfter(normalizeRole(user.getRole()), readUpTo)) {
+            unread.add(toInbox(n, readUpTo));
+        }
+        unread.sort((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()));
+        return unread;
     }
 
     /**
-     * Lấy thông báo chưa đọc
+     * Số thông báo chưa đọc của 1 user (riêng + chung)
      */
-    public List<Notification> getUnreadNotifications(User user) {
-        return notificationRepository.findByUserAndIsReadFalseOrderByCreatedAtDesc(user);
+    @Transactional(readOnly = true)
+    public long countUnread(User user) {
+        return notificationRepository.countByUserAndIsReadFalse(user)
+                + notificationRepository.countGlobalAfter(normalizeRole(user.getRole()), globalReadUpTo(user));
     }
 
     /**
-     * Đánh dấu đã đọc
+     * Đánh dấu đã đọc. Với thông báo chung, mốc đã đọc được dời tới thông báo này
+     * (các thông báo chung cũ hơn cũng được coi là đã đọc)
      */
-    public void markAsRead(Long notificationId) {
+    public void markAsRead(Long notificationId, User user) {
         Notification notification = notificationRepository.findById(notificationId)
                 .orElseThrow(() -> new RuntimeException("Notification not found"));
-        notification.setIsRead(true);
-        notificationRepository.save(notification);
+        if (Boolean.TRUE.equals(notification.getIsGlobal())) {
+            // Thông báo chung theo vai trò khác không thuộc hộp thư của người dùng này
+            if (notification.getTargetRole() != null
+                    && !notification.getTargetRole().equals(normalizeRole(user.getRole()))) {
+                throw new RuntimeException("Notification not found");
+            }
+            advanceGlobalReadMarker(user.getId(), notification.getCreatedAt());
+            eventPublisher.publishEvent(UnreadCountChangedEvent.recount(
+                    user.getUsername(), UnreadCountChangedEvent.Counter.NOTIFICATIONS));
+            return;
+        }
+        if (notification.getUser() == null || !notification.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("Notification not found");
+        }
+        if (!Boolean.TRUE.equals(notification.getIsRead())) {
+            notification.markAsRead();
+            notificationRepository.save(notification);
+            eventPublisher.publishEvent(UnreadCountChangedEvent.delta(
+                    user.getUsername(), UnreadCountChangedEvent.Counter.NOTIFICATIONS, -1));
+        }
     }
 
     /**
-     * Đánh dấu tất cả đã đọc
+     * Đánh dấu tất cả đã đọc: 1 câu UPDATE cho thông báo riêng, dời mốc cho thông báo chung
+     *
+     * @return số thông báo riêng vừa được đánh dấu
      */
-    public void markAllAsRead(User user) {
-        List<Notification> unread = getUnreadNotifications(user);
-        for (Notification n : unread) {
-            n.setIsRead(true);
-            notificationRepository.save(n);
-        }
+    public int markAllAsRead(User user) {
+        LocalDateTime now = LocalDateTime.now();
+        int updated = notificationRepository.markAllReadByUser(user, now);
+        advanceGlobalReadMarker(user.getId(), now);
+        eventPublisher.publishEvent(UnreadCountChangedEvent.recount(
+                user.getUsername(), UnreadCountChangedEvent.Counter.NOTIFICATIONS));
+        return updated;
     }
 
     /**
      * Xóa thông báo
      */
     public void deleteNotification(Long id) {
-        notificationRepository.deleteById(id);
+        notificationRepository.findById(id).ifPresent(notification -> {
+            if (Boolean.TRUE.equals(notification.getIsGlobal())) {
+                eventPublisher.publishEvent(UnreadCountChangedEvent.recountAll(UnreadCountChangedEvent.Counter.NOTIFICATIONS));
+            } else if (!Boolean.TRUE.equals(notification.getIsRead()) && notification.getUser() != null) {
+                eventPublisher.publishEvent(UnreadCountChangedEvent.delta(
+                        notification.getUser().getUsername(), UnreadCountChangedEvent.Counter.NOTIFICATIONS, -1));
+            }
+            notificationRepository.delete(notification);
+        });
     }
 
     /**
@@ -118,8 +257,63 @@ public class NotificationService {
         return notificationRepository.count();
     }
 
+    /**
+     * Admin: số thông báo riêng chưa đọc (thông báo chung không có trạng thái đọc chung)
+     */
     public long countUnread() {
-        return notificationRepository.countByIsReadFalse();
+        return notificationRepository.countByIsGlobalFalseAndIsReadFalse();
+    }
+
+    private Notification saveGlobal(String targetRole, String message, String type) {
+        Notification notification = new Notification();
+        notification.setGlobal(true);
+        notification.setTargetRole(targetRole);
+        notification.setMessage(message);
+        notification.setType(type);
+        notification.setIsRead(false);
+        notification.setCreatedAt(LocalDateTime.now());
+        Notification saved = notificationRepository.save(notification);
+        eventPublisher.publishEvent(UnreadCountChangedEvent.recountAll(UnreadCountChangedEvent.Counter.NOTIFICATIONS));
+        return saved;
+    }
+
+    /**
+     * Thông báo chung tạo trước thời điểm này được coi là đã đọc
+     */
+    private LocalDateTime globalReadUpTo(User user) {
+        LocalDateTime since = since(user);
+        LocalDateTime marker = readMarkerRepository.findById(user.getId())
+                .map(NotificationReadMarker::getGlobalReadAt)
+                .orElse(null);
+        return marker != null && marker.isAfter(since) ? marker : since;
+    }
+
+    /**
+     * Người dùng chỉ thấy thông báo chung gửi sau khi tạo tài khoản
+     */
+    private LocalDateTime since(User user) {
+        return user.getCreatedAt() != null ? user.getCreatedAt() : EPOCH;
     }
-}
 
+    /**
+     * Dời mốc đã đọc tới readAt (không lùi lại)
+     */
+    private void advanceGlobalReadMarker(Long userId, LocalDateTime readAt) {
+        Timestamp at = Timestamp.valueOf(readAt);
+        if (jdbcTemplate.update(ADVANCE_MARKER_SQL, at, userId, at) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_MARKER_SQL, userId, at, userId);
+        } catch (DuplicateKeyException e) {
+            // Yêu cầu khác của cùng user vừa tạo mốc: dời lại theo mốc đó
+            jdbcTemplate.update(ADVANCE_MARKER_SQL, at, userId, at);
+        }
+    }
+
+    private InboxNotification toInbox(Notification n, LocalDateTime globalReadUpTo) {
+        boolean global = Boolean.TRUE.equals(n.getIsGlobal());
+        boolean read = global ? !n.getCreatedAt().isAfter(globalReadUpTo) : Boolean.TRUE.equals(n.getIsRead());
+        return new InboxNotification(n.getId(), n.getType(), n.getMessage(), n.getLink(), global, read, n.getCreatedAt());
+    }
+}
@@ -0,0 +1,632 @@
+package com.stackoverflow.service.common;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pack Image Storage - Gộp nhiều ảnh nhỏ vào các segment lớn chỉ ghi nối đuôi (images.storage.type=pack)
+ *
+ * Mỗi bản ghi: header cố định (magic, loại, độ dài khóa, độ dài dữ liệu, thời điểm, vị trí bản ghi PUT
+ * bị xóa) + khóa UTF-8 + dữ liệu. Chỉ mục khóa -> (segment, offset, độ dài) nằm trong bộ nhớ và được dựng
+ * lại khi khởi động bằng cách đọc header tuần tự; bản ghi cuối bị cắt dở (tắt máy giữa lúc ghi) được bỏ.
+ * Segment đã đầy được map một lần và đọc qua MappedByteBuffer (không read(), không sao chép vào heap);
+ * segment đang ghi được map theo từng khối CHUNK_BYTES cố định khi khối đã ghi kín, phần đuôi đang lớn
+ * dần được đọc bằng FileChannel.read thay vì map lại cả segment.
+ *
+ * Xóa ghi một tombstone trỏ tới đúng bản ghi PUT bị xóa, nên tombstone cũ không bao giờ xóa nhầm lần ghi
+ * lại sau đó. Compactor chép các bản ghi còn sống của segment có tỉ lệ byte chết cao sang segment đang
+ * ghi rồi xóa file segment cũ; file còn được map (Windows không cho xóa) được đánh dấu .retired và xóa
+ * lại ở lần compact sau hoặc khi khởi động, trước khi đọc lại chỉ mục. Khóa chưa có trong pack được đọc
+ * từ FileImageStorage (chưa migrate).
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "images.storage.type", havingValue = "pack")
+public class PackImageStorage implements ImageStorage {
+
+    private static final Logger log = LoggerFactory.getLogger(PackImageStorage.class);
+
+    private static final int MAGIC = 0x494D4750; // "IMGP"
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    // magic(4) type(1) keyLength(2) dataLength(8) timestamp(8) refSegment(4) refOffset(8)
+    private static final int HEADER_BYTES = 35;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".pack";
+    private static final String RETIRED_SUFFIX = ".retired";
+    // Khối map cố định của segment đang ghi
+    private static final long CHUNK_BYTES = 16L * 1024 * 1024;
+    // Số lần đọc lại khi bản ghi vừa bị compact sang segment khác
+    private static final int READ_ATTEMPTS = 3;
+    // Một MappedByteBuffer chỉ địa chỉ hóa được tới 2 GB
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    @Value("${images.storage.pack.dir:uploads/packs}")
+    private String packDir;
+
+    @Value("${images.storage.pack.segment-bytes:268435456}")
+    private long segmentBytes;
+
+    @Value("${images.storage.pack.compact-threshold:0.5}")
+    private double compactThreshold;
+
+    @Autowired
+    private FileImageStorage legacy;
+
+    private final ConcurrentHashMap<String, Location> index = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Segment> segments = new ConcurrentHashMap<>();
+
+    /** Segment đã compact nhưng chưa xóa được file */
+    private final Set<Path> retired = ConcurrentHashMap.newKeySet();
+
+    /** Segment đang ghi; chỉ đổi khi giữ khóa của đối tượng này */
+    private Segment active;
+
+    // Metrics
+    private final AtomicLong puts = new AtomicLong();
+    private final AtomicLong deletes = new AtomicLong();
+    private final AtomicLong packedReads = new AtomicLong();
+    private final AtomicLong legacyReads = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+
+    @PostConstruct
+    public void init() throws IOException {
+        segmentBytes = Math.min(segmentBytes, MAX_SEGMENT_BYTES);
+        Path dir = Paths.get(packDir);
+        Files.createDirectories(dir);
+
+        // Segment đã compact xong ở lần chạy trước: xóa trước khi đọc để bản ghi của nó không sống lại
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX + RETIRED_SUFFIX)) {
+            for (Path marker : stream) {
+                String name = marker.getFileName().toString();
+                Files.deleteIfExists(dir.resolve(name.substring(0, name.length() - RETIRED_SUFFIX.length())));
+                Files.deleteIfExists(marker);
+            }
+        }
+
+        TreeMap<Integer, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                files.put(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), file);
+            }
+        }
+        for (Map.Entry<Integer, Path> file : files.entrySet()) {
+            Segment segment = new Segment(file.getKey(), file.getValue());
+            segments.put(segment.id, segment);
+            replay(segment, file.getKey().equals(files.lastKey()));
+        }
+
+        Segment last = files.isEmpty() ? null : segments.get(files.lastKey());
+        active = last != null && last.size < segmentBytes ? last : newSegment(files.isEmpty() ? 1 : files.lastKey() + 1);
+        for (Segment segment : segments.values()) {
+            segment.sealed = segment != active;
+        }
+        log.info("Pack image storage loaded {} keys from {} segments", index.size(), segments.size());
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    // ================== STORAGE ==================
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        put(key, source, System.currentTimeMillis());
+    }
+
+    /**
+     * Như put nhưng giữ thời điểm ghi cho trước: file migrate giữ lastModified cũ để ETag và
+     * Last-Modified đã gửi cho client vẫn còn đúng
+     */
+    public void put(String key, Path source, long lastModified) throws IOException {
+        try (FileChannel input = FileChannel.open(source, StandardOpenOption.READ)) {
+            long length = input.size();
+            synchronized (this) {
+                Location location = append(PUT, key, length, lastModified, 0, 0L,
+                        (channel, position) -> {
+                            for (long copied = 0; copied < length; ) {
+                                copied += input.transferTo(copied, length - copied, channel.position(position + copied));
+                            }
+                        });
+                active.channel.force(false);
+                markDead(index.put(key, location));
+            }
+        }
+        puts.incrementAndGet();
+        Files.deleteIfExists(source);
+        // Bản cũ (chưa migrate) không còn được đọc
+        legacy.delete(key);
+    }
+
+    @Override
+    public Optional<Resource> open(String key) {
+        for (int attempt = 0; attempt < READ_ATTEMPTS; attempt++) {
+            Location location = index.get(key);
+            if (location == null) {
+                legacyReads.incrementAndGet();
+                return legacy.open(key);
+            }
+            ByteBuffer data = read(location);
+            if (data != null) {
+                packedReads.incrementAndGet();
+                return Optional.of(new ByteBufferResource(data, "packed image " + key, location.lastModified));
+            }
+            // Segment vừa bị compact: chỉ mục đã trỏ sang vị trí mới
+        }
+        log.warn("Packed image {} kept moving while being read", key);
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Stat> stat(String key) {
+        Location location = index.get(key);
+        if (location == null) {
+            return legacy.stat(key);
+        }
+        return Optional.of(new Stat(location.length, location.lastModified));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return index.containsKey(key) || legacy.exists(key);
+    }
+
+    /**
+     * Khóa đã nằm trong pack (không tính file chưa migrate)
+     */
+    public boolean isPacked(String key) {
+        return index.containsKey(key);
+    }
+
+    @Override
+    public boolean delete(String key) {
+        boolean deleted = true;
+        synchronized (this) {
+            Location location = index.get(key);
+            if (location != null) {
+                try {
+                    Location tombstone = append(DELETE, key, 0, System.currentTimeMillis(), location.segment, location.offset,
+                            (channel, position) -> { });
+                    active.channel.force(false);
+                    index.remove(key, location);
+                    markDead(location);
+                    markDead(tombstone);
+                    deletes.incrementAndGet();
+                } catch (IOException e) {
+                    log.warn("Failed to delete packed image {}: {}", key, e.getMessage());
+                    deleted = false;
+                }
+            }
+        }
+        return legacy.delete(key) && deleted;
+    }
+
+    // ================== COMPACTION ==================
+
+    /**
+     * Chép bản ghi còn sống của các segment đã đầy có tỉ lệ byte chết >= images.storage.pack.compact-threshold
+     *
+     * @return số segment đã thu hồi
+     */
+    @Scheduled(initialDelayString = "${images.storage.pack.compact-interval-ms:300000}",
+            fixedDelayString = "${images.storage.pack.compact-interval-ms:300000}")
+    public int compact() {
+        deleteRetired();
+        List<Segment> candidates = new ArrayList<>();
+        synchronized (this) {
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.size > 0 && segment.deadBytes.get() >= compactThreshold * segment.size) {
+                    candidates.add(segment);
+                }
+            }
+        }
+        int compacted = 0;
+        for (Segment segment : candidates) {
+            try {
+                compact(segment);
+                compacted++;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to compact image pack segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+        return compacted;
+    }
+
+    private void compact(Segment segment) throws IOException {
+        long reclaimed = segment.size;
+        MappedByteBuffer mapped = segment.mapSealed();
+        long position = 0;
+        while (position + HEADER_BYTES <= segment.size) {
+            Header header = Header.read(mapped, position);
+            long recordEnd = position + HEADER_BYTES + header.keyLength + header.dataLength;
+            String key = header.key(mapped, position);
+            long dataOffset = position + HEADER_BYTES + header.keyLength;
+            synchronized (this) {
+                if (header.type == PUT) {
+                    Location location = index.get(key);
+                    if (location != null && location.segment == segment.id && location.offset == position) {
+                        ByteBuffer data = slice(mapped, dataOffset, header.dataLength);
+                        Location moved = append(PUT, key, header.dataLength, header.timestamp, 0, 0L,
+                                (channel, at) -> {
+                                    while (data.hasRemaining()) {
+                                        channel.write(data, at + data.position());
+                                    }
+                                });
+                        index.put(key, moved);
+                        reclaimed -= moved.recordBytes;
+                    }
+                } else if (segments.containsKey(header.refSegment) && header.refSegment != segment.id) {
+                    // Bản ghi PUT bị xóa vẫn nằm trong segment khác: giữ tombstone để nó không sống lại khi khởi động
+                    markDead(append(DELETE, key, 0, header.timestamp, header.refSegment, header.refOffset, (channel, at) -> { }));
+                }
+            }
+            position = recordEnd;
+        }
+        synchronized (this) {
+            active.channel.force(false);
+            segments.remove(segment.id);
+            segment.close();
+        }
+        // Request đang đọc giữ mapping riêng nên vẫn đọc được sau khi file bị xóa
+        retire(segment.path);
+        compactions.incrementAndGet();
+        reclaimedBytes.addAndGet(Math.max(0, reclaimed));
+        log.info("Compacted image pack segment {} ({} bytes reclaimed)", segment.path.getFileName(), reclaimed);
+    }
+
+    /**
+     * Xóa file segment đã compact. Đánh dấu trước khi xóa: nếu file còn được map (Windows) hoặc tiến trình
+     * dừng giữa chừng, file được xóa ở lần compact sau hoặc khi khởi động thay vì được đọc lại
+     */
+    private void retire(Path path) throws IOException {
+        Path marker = retiredMarker(path);
+        Files.write(marker, new byte[0]);
+        retired.add(path);
+        deleteRetired();
+        if (retired.contains(path)) {
+            log.info("Image pack segment {} is still mapped, deleting it later", path.getFileName());
+        }
+    }
+
+    private void deleteRetired() {
+        for (Path path : retired) {
+            try {
+                Files.deleteIfExists(path);
+                Files.deleteIfExists(retiredMarker(path));
+                retired.remove(path);
+            } catch (IOException e) {
+                // Còn request đang giữ mapping
+            }
+        }
+    }
+
+    private static Path retiredMarker(Path path) {
+        return path.resolveSibling(path.getFileName() + RETIRED_SUFFIX);
+    }
+
+    // ================== INTERNAL ==================
+
+    /**
+     * Đọc lại chỉ mục từ một segment; bản ghi cuối bị cắt dở ở segment cuối cùng bị bỏ khỏi file
+     */
+    private void replay(Segment segment, boolean last) throws IOException {
+        long size = segment.channel.size();
+        long position = 0;
+        ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            headerBuffer.clear();
+            readFully(segment.channel, headerBuffer, position);
+            headerBuffer.flip();
+            Header header = Header.read(headerBuffer, 0);
+            long recordEnd = position + HEADER_BYTES + header.keyLength + header.dataLength;
+            if (header.magic != MAGIC || header.dataLength < 0 || recordEnd > size) {
+                break;
+            }
+            ByteBuffer keyBuffer = ByteBuffer.allocate(header.keyLength);
+            readFully(segment.channel, keyBuffer, position + HEADER_BYTES);
+            String key = new String(keyBuffer.array(), StandardCharsets.UTF_8);
+            Location location = new Location(segment.id, position, position + HEADER_BYTES + header.keyLength,
+                    header.dataLength, recordEnd - position, header.timestamp);
+            if (header.type == PUT) {
+                markDead(index.put(key, location));
+            } else {
+                Location deleted = index.get(key);
+                if (deleted != null && deleted.segment == header.refSegment && deleted.offset == header.refOffset) {
+                    index.remove(key);
+                    markDead(deleted);
+                }
+                markDead(location);
+            }
+            position = recordEnd;
+        }
+        if (position < size) {
+            if (last) {
+                log.warn("Truncating torn record at {} in {}", position, segment.path.getFileName());
+                segment.channel.truncate(position);
+            } else {
+                log.warn("Ignoring unreadable tail at {} in {}", position, segment.path.getFileName());
+            }
+        }
+        segment.size = position;
+    }
+
+    /**
+     * Ghi một bản ghi vào cuối segment đang ghi (gọi khi giữ khóa), mở segment mới nếu vượt cỡ
+     */
+    private Location append(byte type, String key, long dataLength, long timestamp, int refSegment, long refOffset,
+                            DataWriter writer) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long recordBytes = HEADER_BYTES + keyBytes.length + dataLength;
+        if (keyBytes.length > 0xFFFF) {
+            throw new IOException("Image key is too long: " + key);
+        }
+        if (recordBytes > segmentBytes) {
+            throw new IOException("Image of " + dataLength + " bytes does not fit in a pack segment");
+        }
+        if (active.size > 0 && active.size + recordBytes > segmentBytes) {
+            active.channel.force(false);
+            active.seal();
+            active = newSegment(active.id + 1);
+        }
+
+        long position = active.size;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + keyBytes.length);
+        header.putInt(MAGIC).put(type).putShort((short) keyBytes.length).putLong(dataLength).putLong(timestamp)
+                .putInt(refSegment).putLong(refOffset).put(keyBytes).flip();
+        try {
+            writeFully(active.channel, header, position);
+            writer.write(active.channel, position + HEADER_BYTES + keyBytes.length);
+        } catch (IOException | RuntimeException e) {
+            // Bỏ phần đã ghi để bản ghi sau không nằm sau một bản ghi hỏng
+            active.channel.truncate(position);
+            throw e;
+        }
+        active.size = position + recordBytes;
+        return new Location(active.id, position, position + HEADER_BYTES + keyBytes.length, dataLength, recordBytes, timestamp);
+    }
+
+    private ByteBuffer read(Location location) {
+        Segment segment = segments.get(location.segment);
+        if (segment == null) {
+            return null;
+        }
+        try {
+            return segment.read(location.dataOffset, location.length);
+        } catch (ClosedChannelException e) {
+            // Segment vừa bị compact và đóng
+            return null;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read image pack segment " + segment.path, e);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer mapped, long offset, long length) {
+        return mapped.duplicate().position((int) offset).limit((int) (offset + length)).slice();
+    }
+
+    private void markDead(Location location) {
+        if (location != null) {
+            Segment segment = segments.get(location.segment);
+            if (segment != null) {
+                segment.deadBytes.addAndGet(location.recordBytes);
+            }
+        }
+    }
+
+    private Segment newSegment(int id) throws IOException {
+        Segment segment = new Segment(id, Paths.get(packDir, String.format("%s%06d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX)));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of pack segment");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long totalBytes = 0;
+        long deadBytes = 0;
+        for (Segment segment : segments.values()) {
+            totalBytes += segment.size;
+            deadBytes += segment.deadBytes.get();
+        }
+        stats.put("type", "pack");
+        stats.put("keys", index.size());
+        stats.put("segments", segments.size());
+        stats.put("totalBytes", totalBytes);
+        stats.put("deadBytes", deadBytes);
+        stats.put("puts", puts.get());
+        stats.put("deletes", deletes.get());
+        stats.put("packedReads", packedReads.get());
+        stats.put("legacyReads", legacyReads.get());
+        stats.put("compactions", compactions.get());
+        stats.put("reclaimedBytes", reclaimedBytes.get());
+        return stats;
+    }
+
+    @FunctionalInterface
+    private interface DataWriter {
+
+        void write(FileChannel channel, long position) throws IOException;
+    }
+
+    private static final class Location {
+
+        final int segment;
+        /** Vị trí đầu bản ghi (header) */
+        final long offset;
+        final long dataOffset;
+        final long length;
+        final long recordBytes;
+        final long lastModified;
+
+        Location(int segment, long offset, long dataOffset, long length, long recordBytes, long lastModified) {
+            this.segment = segment;
+            this.offset = offset;
+            this.dataOffset = dataOffset;
+            this.length = length;
+            this.recordBytes = recordBytes;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final class Header {
+
+        int magic;
+        byte type;
+        int keyLength;
+        long dataLength;
+        long timestamp;
+        int refSegment;
+        long refOffset;
+
+        static Header read(ByteBuffer buffer, long position) {
+            int at = (int) position;
+            Header header = new Header();
+            header.magic = buffer.getInt(at);
+            header.type = buffer.get(at + 4);
+            header.keyLength = Short.toUnsignedInt(buffer.getShort(at + 5));
+            header.dataLength = buffer.getLong(at + 7);
+            header.timestamp = buffer.getLong(at + 15);
+            header.refSegment = buffer.getInt(at + 23);
+            header.refOffset = buffer.getLong(at + 27);
+            return header;
+        }
+
+        String key(ByteBuffer buffer, long position) {
+            byte[] bytes = new byte[keyLength];
+            buffer.duplicate().position((int) position + HEADER_BYTES).get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class Segment {
+
+        final int id;
+        final Path path;
+        final FileChannel channel;
+        final AtomicLong deadBytes = new AtomicLong();
+        /** Độ dài phần đã ghi hợp lệ; chỉ đổi khi giữ khóa của PackImageStorage */
+        volatile long size;
+        /** Không còn được ghi: map cả segment một lần */
+        volatile boolean sealed;
+        private volatile MappedByteBuffer mapped;
+        /** Chỉ số khối -> mapping của khối đã ghi kín (segment đang ghi) */
+        private final ConcurrentHashMap<Long, MappedByteBuffer> chunks = new ConcurrentHashMap<>();
+
+        Segment(int id, Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        /**
+         * Dữ liệu [offset, offset + length): qua mapping nếu có thể, không bao giờ map lại phần đã map
+         */
+        ByteBuffer read(long offset, long length) throws IOException {
+            if (sealed) {
+                return slice(mapSealed(), offset, length);
+            }
+            long chunk = offset / CHUNK_BYTES;
+            long chunkStart = chunk * CHUNK_BYTES;
+            long chunkEnd = chunkStart + CHUNK_BYTES;
+            if (offset + length <= chunkEnd && chunkEnd <= size) {
+                MappedByteBuffer current = chunks.get(chunk);
+                if (current == null) {
+                    current = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, CHUNK_BYTES);
+                    MappedByteBuffer raced = chunks.putIfAbsent(chunk, current);
+                    current = raced != null ? raced : current;
+                }
+                return slice(current, offset - chunkStart, length);
+            }
+            // Đuôi đang ghi hoặc bản ghi vắt qua ranh giới khối
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            readFully(channel, buffer, offset);
+            return buffer.flip();
+        }
+
+        /**
+         * Mapping chỉ đọc của cả segment đã đầy, tạo một lần
+         */
+        MappedByteBuffer mapSealed() throws IOException {
+            MappedByteBuffer current = mapped;
+            if (current == null) {
+                synchronized (this) {
+                    current = mapped;
+                    if (current == null) {
+                        current = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                        mapped = current;
+                    }
+                }
+            }
+            return current;
+        }
+
+        /**
+         * Segment ngừng nhận ghi: đọc sau đó dùng mapping cả segment, bỏ các khối
+         */
+        void seal() {
+            sealed = true;
+            chunks.clear();
+        }
+
+        void close() {
+            // Bỏ tham chiếu tới mapping để file được giải phóng (và xóa được trên Windows) khi request cuối đọc xong
+            mapped = null;
+            chunks.clear();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close image pack segment {}: {}", path, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Presence Service - Trạng thái "đang online" theo phiên WebSocket, không ghi DB
+ *
+ * CONNECT gắn phiên với user (tra id một lần mỗi phiên); mọi frame vào từ phiên đó, kể cả heartbeat,
+ * chỉ cập nhật thời điểm hoạt động trong PresenceStore. Số phiên đang mở được đếm trong store theo
+ * từng node (presence.node-id), nên user chỉ offline ngay khi phiên cuối cùng trên mọi node đóng;
+ * phiên treo (mất heartbeat) hết hạn sau presence.timeout-ms nhờ TimerWheel, nên lượt quét chỉ chạm
+ * các user vừa tới hạn chứ không duyệt toàn bộ.
+ */
+@Service
+public class PresenceService implements ChannelInterceptor {
+
+    @Autowired
+    private PresenceStore presenceStore;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${presence.timeout-ms:30000}")
+    private long timeoutMs;
+
+    @Value("${presence.wheel-tick-ms:1000}")
+    private long wheelTickMs;
+
+    // Trống = id ngẫu nhiên mỗi lần khởi động
+    @Value("${presence.node-id:}")
+    private String nodeId;
+
+    /** sessionId -> userId */
+    private final ConcurrentHashMap<String, Long> sessionUsers = new ConcurrentHashMap<>();
+
+    private TimerWheel<Long> wheel;
+
+    // Metrics
+    private final AtomicLong touches = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong renewed = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = UUID.randomUUID().toString();
+        }
+        // Một vòng bánh xe dài hơn timeout để hầu hết khóa tới hạn ngay ở lần duyệt đầu
+        int slots = (int) Math.max(16, timeoutMs / wheelTickMs * 2);
+        wheel = new TimerWheel<>(wheelTickMs, slots, System.currentTimeMillis());
+    }
+
+    // ================== QUERIES ==================
+
+    /**
+     * O(1): một lần tra PresenceStore
+     */
+    public boolean isOnline(Long userId) {
+        return userId != null && presenceStore.lastSeen(userId) > System.currentTimeMillis() - timeoutMs;
+    }
+
+    /**
+     * Những user đang online trong danh sách (một lần tra store cho cả danh sách)
+     */
+    public Set<Long> findOnline(Collection<Long> userIds) {
+        long threshold = System.currentTimeMillis() - timeoutMs;
+        Set<Long> online = new HashSet<>();
+        presenceStore.lastSeen(userIds).forEach((userId, seenAt) -> {
+            if (seenAt > threshold) {
+                online.add(userId);
+            }
+        });
+        return online;
+    }
+
+    // ================== SESSION EVENTS ==================
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (user == null || sessionId == null) {
+            return;
+        }
+        userRepository.findIdByUsername(user.getName()).ifPresent(userId -> {
+            if (sessionUsers.put(sessionId, userId) == null) {
+                presenceStore.sessionOpened(userId, nodeId);
+            }
+            touch(userId);
+        });
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Long userId = sessionUsers.remove(event.getSessionId());
+        if (userId != null) {
+            // Store tự bỏ user khỏi danh sách online khi không còn phiên nào trên mọi node
+            presenceStore.sessionClosed(userId, nodeId);
+        }
+    }
+
+    /**
+     * Frame từ client (SEND, SUBSCRIBE, HEARTBEAT...) trên clientInboundChannel
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId != null) {
+            Long userId = sessionUsers.get(sessionId);
+            if (userId != null) {
+                touch(userId);
+            }
+        }
+        return message;
+    }
+
+    private void touch(Long userId) {
+        long now = System.currentTimeMillis();
+        presenceStore.markSeen(userId, now);
+        wheel.schedule(userId, now + timeoutMs);
+        touches.incrementAndGet();
+    }
+
+    // ================== SWEEP ==================
+
+    @Scheduled(fixedDelayString = "${presence.wheel-tick-ms:1000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        wheel.advance(now, userId -> {
+            long seenAt = presenceStore.lastSeen(userId);
+            if (seenAt == 0) {
+                return;
+            }
+            if (seenAt + timeoutMs > now) {
+                // Đã hoạt động lại sau lần hẹn trước (gia hạn lười)
+                wheel.schedule(userId, seenAt + timeoutMs);
+                renewed.incrementAndGet();
+            } else {
+                presenceStore.markOffline(userId);
+                expired.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", presenceStore.getClass().getSimpleName());
+        stats.put("nodeId", nodeId);
+        stats.put("trackedUsers", presenceStore.size());
+        stats.put("localSessions", sessionUsers.size());
+        stats.put("scheduledExpirations", wheel.size());
+        stats.put("touches", touches.get());
+        stats.put("renewed", renewed.get());
+        stats.put("expired", expired.get());
+        return stats;
+    }
+}
@@ -0,0 +1,51 @@
+package com.stackoverflow.service.common;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Nơi lưu thời điểm hoạt động gần nhất của người dùng đang online
+ *
+ * Bản mặc định (InMemoryPresenceStore) chỉ thấy các phiên của node hiện tại; khi chạy nhiều node
+ * có thể thay bằng một bản dùng chung (chọn bằng presence.store) mà không đổi PresenceService. Số phiên
+ * đang mở được đếm theo từng node, nên user chỉ offline khi phiên cuối cùng trên mọi node đóng.
+ */
+public interface PresenceStore {
+
+    /**
+     * Ghi nhận user hoạt động lúc seenAt (epoch millis); không lùi thời điểm đã lưu
+     */
+    void markSeen(Long userId, long seenAt);
+
+    /**
+     * Bỏ user khỏi danh sách online
+     */
+    void markOffline(Long userId);
+
+    /**
+     * Ghi nhận một phiên WebSocket vừa mở của user trên node nodeId
+     *
+     * @return tổng số phiên đang mở của user trên mọi node
+     */
+    int sessionOpened(Long userId, String nodeId);
+
+    /**
+     * Ghi nhận một phiên của user trên node nodeId vừa đóng. Khi tổng số phiên trên mọi node về 0, user
+     * được bỏ khỏi danh sách online trong cùng thao tác nguyên tử (một phiên mở đồng thời không bị mất)
+     *
+     * @return tổng số phiên còn mở của user trên mọi node
+     */
+    int sessionClosed(Long userId, String nodeId);
+
+    /**
+     * @return thời điểm hoạt động gần nhất, 0 nếu không online
+     */
+    long lastSeen(Long userId);
+
+    /**
+     * Thời điểm hoạt động gần nhất của các user đang có trong store (user không có thì không có khóa)
+     */
+    Map<Long, Long> lastSeen(Collection<Long> userIds);
+
+    int size();
+}
@@ -0,0 +1,176 @@
+package com.stackoverflow.service.common;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.stackoverflow.dto.AnswerSectionFragment;
+import com.stackoverflow.dto.AnswerSectionFragment.RenderedAnswer;
+import com.stackoverflow.dto.QuestionPageView;
+import com.stackoverflow.entity.Answer;
+import com.stackoverflow.event.QuestionContentChangedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Question Fragment Cache - Cache HTML đã render của phần câu trả lời/bình luận
+ *
+ * Mỗi câu hỏi có một phiên bản nội dung, lấy từ một bộ đếm toàn cục nên không bao giờ bị dùng lại.
+ * Phiên bản mới được cấp sau khi giao dịch thay đổi commit (QuestionContentChangedEvent). Người đọc lấy
+ * phiên bản TRƯỚC khi nạp dữ liệu và gắn nó vào HTML render ra; entry chỉ được dùng khi phiên bản gắn kèm
+ * trùng phiên bản hiện tại. Dữ liệu nạp sau khi đọc phiên bản v luôn mới ít nhất bằng trạng thái lúc v được
+ * cấp, nên HTML cũ không bao giờ được phục vụ dưới phiên bản mới hơn.
+ *
+ * Bảng phiên bản bị giới hạn số câu hỏi; câu hỏi bị loại khỏi bảng sẽ nhận phiên bản mới ở lần đọc sau
+ * (chỉ tốn một lần render lại). Cache HTML giới hạn theo số byte, loại bỏ theo W-TinyLFU (Caffeine).
+ */
+@Service
+public class QuestionFragmentCache {
+
+    private static final String FRAGMENT_TEMPLATE = "question/answer-fragments";
+
+    @Autowired
+    private ITemplateEngine templateEngine;
+
+    @Autowired
+    private ServletContext servletContext;
+
+    @Value("${question.fragment-cache.max-bytes:33554432}")
+    private long maxBytes;
+
+    @Value("${question.fragment-cache.max-versions:100000}")
+    private long maxVersions;
+
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    private Cache<Long, Long> versions;
+
+    private JakartaServletWebApplication webApplication;
+
+    private Cache<Long, VersionedFragment> cache;
+
+    @PostConstruct
+    public void init() {
+        webApplication = JakartaServletWebApplication.buildApplication(servletContext);
+        versions = Caffeine.newBuilder()
+                .maximumSize(maxVersions)
+                .build();
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Long key, VersionedFragment entry) -> entry.fragment.weight())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Phiên bản nội dung hiện tại của câu hỏi; phải được đọc trước khi nạp dữ liệu để render
+     */
+    public long currentVersion(Long questionId) {
+        return versions.get(questionId, id -> versionSequence.incrementAndGet());
+    }
+
+    /**
+     * Lấy phần câu trả lời đã render cho đúng phiên bản, null nếu chưa có trong cache
+     */
+    public AnswerSectionFragment get(Long questionId, long version) {
+        VersionedFragment entry = cache.getIfPresent(questionId);
+        return entry != null && entry.version == version ? entry.fragment : null;
+    }
+
+    /**
+     * Render phần câu trả lời từ page view và đưa vào cache dưới phiên bản đã đọc trước khi nạp page.
+     * Nếu nội dung đổi trong lúc nạp/render, phiên bản hiện tại đã khác nên entry này không được dùng lại.
+     */
+    public AnswerSectionFragment render(QuestionPageView page, long version,
+                                        HttpServletRequest request, HttpServletResponse response) {
+        Long questionId = page.getQuestion().getId();
+
+        WebContext context = new WebContext(webApplication.buildExchange(request, response), request.getLocale());
+
+        context.setVariable("comments", page.getQuestionComments());
+        String questionCommentsHtml = renderFragment("comments", context);
+
+        List<RenderedAnswer> answers = new ArrayList<>(page.getAnswers().size());
+        for (Answer answer : page.getAnswers()) {
+            context.setVariable("answer", answer);
+            context.setVariable("comments", page.getCommentsFor(answer));
+            answers.add(new RenderedAnswer(
+                    answer.getId(),
+                    answer.getAuthor().getId(),
+                    answer.getAuthor().getUsername(),
+                    answer.getCreatedAt(),
+                    answer.getVotes(),
+                    answer.getIsAccepted(),
+                    renderFragment("content", context),
+                    renderFragment("comments", context)));
+        }
+
+        AnswerSectionFragment fragment = new AnswerSectionFragment(questionCommentsHtml,
+                page.getQuestionComments().size(), List.copyOf(answers));
+        VersionedFragment entry = new VersionedFragment(version, fragment);
+        // Không ghi đè entry của phiên bản mới hơn do một request khác render xong trước
+        cache.asMap().merge(questionId, entry, (current, rendered) -> current.version > rendered.version ? current : rendered);
+        return fragment;
+    }
+
+    private String renderFragment(String name, WebContext context) {
+        return templateEngine.process(FRAGMENT_TEMPLATE, Set.of(name), context);
+    }
+
+    /**
+     * Cấp phiên bản mới sau khi giao dịch thay đổi đã commit, để lần đọc tiếp theo
+     * chắc chắn thấy dữ liệu mới
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onContentChanged(QuestionContentChangedEvent event) {
+        Long questionId = event.getQuestionId();
+        if (questionId == null) {
+            return;
+        }
+        versions.put(questionId, versionSequence.incrementAndGet());
+        cache.invalidate(questionId);
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("entries", cache.estimatedSize());
+        result.put("weightedBytes", cache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L));
+        result.put("maxBytes", maxBytes);
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("trackedVersions", versions.estimatedSize());
+        return result;
+    }
+
+    private static final class VersionedFragment {
+
+        final long version;
+        final AnswerSectionFragment fragment;
+
+        VersionedFragment(long version, AnswerSectionFragment fragment) {
+            this.version = version;
+            this.fragment = fragment;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.event.QuestionActivityEvent;
+import com.stackoverflow.event.QuestionContentChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Question Live Service - Đẩy số vote/câu trả lời/bình luận mới lên /topic/question.{id}
+ *
+ * Số người đang xem mỗi câu hỏi được đếm từ sự kiện SUBSCRIBE/UNSUBSCRIBE/DISCONNECT của STOMP.
+ * Thay đổi của câu hỏi không ai xem chỉ tốn một lần tra map; câu hỏi đang được xem được đánh dấu
+ * "bẩn" và mỗi nhịp (live.tick-ms) đọc lại số liệu của tất cả câu hỏi bẩn bằng vài câu IN rồi gửi
+ * tối đa một tin cho mỗi câu hỏi, nên một loạt vote liên tiếp chỉ thành một tin mỗi nhịp.
+ * Tin giống hệt tin đã gửi lần trước bị bỏ qua. Vote đi qua bộ đệm của VoteService nên xuất hiện
+ * sau lần flush kế tiếp, kèm delta đang chờ.
+ */
+@Service
+public class QuestionLiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(QuestionLiveService.class);
+
+    public static final String TOPIC_PREFIX = "/topic/question.";
+
+    private static final int IN_CHUNK = 500;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private VoteService voteService;
+
+    /** questionId -> số subscription đang mở; chỉ thay đổi trong compute/merge của map */
+    private final ConcurrentHashMap<Long, Integer> watchers = new ConcurrentHashMap<>();
+
+    /** sessionId -> (subscriptionId -> questionId) */
+    private final ConcurrentHashMap<String, Map<String, Long>> sessionSubscriptions = new ConcurrentHashMap<>();
+
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    /** Tin gửi gần nhất của các câu hỏi đang được xem */
+    private final ConcurrentHashMap<Long, Map<String, Object>> lastSent = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong changesWatched = new AtomicLong();
+    private final AtomicLong changesUnwatched = new AtomicLong();
+    private final AtomicLong pushes = new AtomicLong();
+    private final AtomicLong unchangedSkipped = new AtomicLong();
+    private final AtomicLong lastTickDurationMs = new AtomicLong();
+
+    // ================== SUBSCRIPTIONS ==================
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Long questionId = parseQuestionId(accessor.getDestination());
+        if (questionId == null || accessor.getSessionId() == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        Map<String, Long> subscriptions = sessionSubscriptions.computeIfAbsent(
+                accessor.getSessionId(), key -> new ConcurrentHashMap<>());
+        if (subscriptions.putIfAbsent(accessor.getSubscriptionId(), questionId) == null) {
+            // Tăng trong cùng thao tác nguyên tử với release (xóa khi về 0)
+            watchers.merge(questionId, 1, Integer::sum);
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Map<String, Long> subscriptions = accessor.getSessionId() != null
+                ? sessionSubscriptions.get(accessor.getSessionId()) : null;
+        if (subscriptions != null && accessor.getSubscriptionId() != null) {
+            Long questionId = subscriptions.remove(accessor.getSubscriptionId());
+            if (questionId != null) {
+                release(questionId);
+            }
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, Long> subscriptions = sessionSubscriptions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    private void release(Long questionId) {
+        watchers.computeIfPresent(questionId, (id, count) -> {
+            if (count > 1) {
+                return count - 1;
+            }
+            lastSent.remove(id);
+            return null;
+        });
+    }
+
+    public boolean isWatched(Long questionId) {
+        return watchers.containsKey(questionId);
+    }
+
+    private static Long parseQuestionId(String destination) {
+        if (destination == null || !destination.startsWith(TOPIC_PREFIX)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(destination.substring(TOPIC_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // ================== CHANGES ==================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onContentChanged(QuestionContentChangedEvent event) {
+        markChanged(event.getQuestionId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivity(QuestionActivityEvent event) {
+        markChanged(event.getQuestionId());
+    }
+
+    /**
+     * Ghi nhận thay đổi; câu hỏi không ai xem bị bỏ qua ngay
+     */
+    public void markChanged(Long questionId) {
+        if (questionId == null || !watchers.containsKey(questionId)) {
+            changesUnwatched.incrementAndGet();
+            return;
+        }
+        dirty.add(questionId);
+        changesWatched.incrementAndGet();
+    }
+
+    // ================== TICK ==================
+
+    @Scheduled(fixedDelayString = "${live.tick-ms:500}")
+    public void tick() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        List<Long> questionIds = new ArrayList<>();
+        for (Iterator<Long> iterator = dirty.iterator(); iterator.hasNext(); ) {
+            Long id = iterator.next();
+            iterator.remove();
+            if (watchers.containsKey(id)) {
+                questionIds.add(id);
+            }
+        }
+        try {
+            for (int i = 0; i < questionIds.size(); i += IN_CHUNK) {
+                push(questionIds.subList(i, Math.min(i + IN_CHUNK, questionIds.size())));
+            }
+        } catch (RuntimeException e) {
+            // Nhịp sau đọc lại số liệu mới nhất khi có thay đổi tiếp theo
+            log.warn("Live count tick failed: {}", e.getMessage());
+        }
+        ticks.incrementAndGet();
+        lastTickDurationMs.set(System.currentTimeMillis() - start);
+    }
+
+    private void push(List<Long> questionIds) {
+        String in = placeholders(questionIds);
+        Object[] ids = questionIds.toArray();
+
+        Map<Long, Map<String, Object>> payloads = new HashMap<>();
+        jdbcTemplate.query("SELECT id, votes, answer_count FROM questions WHERE id IN (" + in + ")", rs -> {
+            Long id = rs.getLong(1);
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("questionId", id);
+            payload.put("votes", voteService.getQuestionVotes(id, rs.getInt(2)));
+            payload.put("answerCount", rs.getInt(3));
+            payload.put("commentCount", 0);
+            payload.put("answerVotes", new LinkedHashMap<Long, Long>());
+            payloads.put(id, payload);
+        }, ids);
+
+        // Bình luận hiển thị của câu hỏi (giống số render trên trang), một câu GROUP BY cho cả lô
+        jdbcTemplate.query("SELECT question_id, COUNT(*) FROM comments WHERE question_id IN (" + in + ") " +
+                "AND answer_id IS NULL AND is_deleted = ? GROUP BY question_id", rs -> {
+            Map<String, Object> payload = payloads.get(rs.getLong(1));
+            if (payload != null) {
+                payload.put("commentCount", rs.getInt(2));
+            }
+        }, withFlag(ids, false));
+
+        Map<Long, Long> persistedAnswerVotes = new HashMap<>();
+        Map<Long, Long> answerQuestion = new HashMap<>();
+        jdbcTemplate.query("SELECT id, question_id, votes FROM answers WHERE question_id IN (" + in + ")", rs -> {
+            persistedAnswerVotes.put(rs.getLong(1), rs.getLong(3));
+            answerQuestion.put(rs.getLong(1), rs.getLong(2));
+        }, ids);
+        Map<Long, Long> pendingAnswerVotes = voteService.getPendingAnswerVotes(persistedAnswerVotes.keySet());
+        persistedAnswerVotes.forEach((answerId, votes) -> {
+            Map<String, Object> payload = payloads.get(answerQuestion.get(answerId));
+            if (payload != null) {
+                @SuppressWarnings("unchecked")
+                Map<Long, Long> answerVotes = (Map<Long, Long>) payload.get("answerVotes");
+                answerVotes.put(answerId, votes + pendingAnswerVotes.getOrDefault(answerId, 0L));
+            }
+        });
+
+        payloads.forEach((id, payload) -> {
+            if (!watchers.containsKey(id)) {
+                return;
+            }
+            if (payload.equals(lastSent.put(id, payload))) {
+                unchangedSkipped.incrementAndGet();
+                return;
+            }
+            messagingTemplate.convertAndSend(TOPIC_PREFIX + id, payload);
+            pushes.incrementAndGet();
+        });
+    }
+
+    private static String placeholders(Collection<Long> ids) {
+        return String.join(",", Collections.nCopies(ids.size(), "?"));
+    }
+
+    private static Object[] withFlag(Object[] ids, boolean flag) {
+        Object[] args = Arrays.copyOf(ids, ids.length + 1);
+        args[ids.length] = flag;
+        return args;
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long subscriptions = 0;
+        for (Integer count : watchers.values()) {
+            subscriptions += count;
+        }
+        stats.put("watchedQuestions", watchers.size());
+        stats.put("subscriptions", subscriptions);
+        stats.put("sessions", sessionSubscriptions.size());
+        stats.put("pendingQuestions", dirty.size());
+        stats.put("ticks", ticks.get());
+        stats.put("changesWatched", changesWatched.get());
+        stats.put("changesUnwatched", changesUnwatched.get());
+        stats.put("pushes", pushes.get());
+        stats.put("unchangedSkipped", unchangedSkipped.get());
+        stats.put("lastTickDurationMs", lastTickDurationMs.get());
+        return stats;
+    }
+}
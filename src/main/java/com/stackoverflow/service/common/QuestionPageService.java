@@ -0,0 +1,83 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.dto.QuestionPageView;
+import com.stackoverflow.entity.Answer;
+import com.stackoverflow.entity.Comment;
+import com.stackoverflow.entity.ImageAttachment;
+import com.stackoverflow.entity.Question;
+import com.stackoverflow.repository.AnswerRepository;
+import com.stackoverflow.repository.CommentRepository;
+import com.stackoverflow.repository.ImageAttachmentRepository;
+import com.stackoverflow.repository.QuestionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Question Page Service - Nạp đồ thị trang chi tiết câu hỏi với số truy vấn cố định
+ *
+ * 1. câu hỏi + author + tags + group
+ * 2. ảnh của câu hỏi
+ * 3. câu trả lời + author + images
+ * 4. bình luận của câu hỏi và của mọi câu trả lời + author
+ *
+ * Số câu lệnh SQL không phụ thuộc vào số câu trả lời hay bình luận.
+ */
+@Service
+@Transactional(readOnly = true)
+public class QuestionPageService {
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Autowired
+    private ImageAttachmentRepository imageAttachmentRepository;
+
+    @Autowired
+    private AnswerRepository answerRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    /**
+     * Chỉ phần đầu trang (truy vấn 1), dùng khi phần câu trả lời đã có trong QuestionFragmentCache
+     */
+    public Optional<Question> loadQuestion(Long questionId) {
+        return questionRepository.findPageQuestionById(questionId);
+    }
+
+    public List<ImageAttachment> loadQuestionImages(Long questionId) {
+        return imageAttachmentRepository.findByQuestionIdWithUploader(questionId);
+    }
+
+    public Optional<QuestionPageView> loadPage(Long questionId) {
+        Optional<Question> questionOpt = loadQuestion(questionId);
+        if (questionOpt.isEmpty()) {
+            return Optional.empty();
+        }
+        Question question = questionOpt.get();
+
+        List<ImageAttachment> questionImages = loadQuestionImages(questionId);
+        List<Answer> answers = answerRepository.findPageAnswersByQuestionId(questionId);
+        List<Comment> comments = commentRepository.findPageCommentsByQuestionId(questionId);
+
+        List<Comment> questionComments = new ArrayList<>();
+        Map<Long, List<Comment>> answerComments = new HashMap<>();
+        for (Comment comment : comments) {
+            if (comment.getAnswer() != null) {
+                answerComments.computeIfAbsent(comment.getAnswer().getId(), id -> new ArrayList<>()).add(comment);
+            } else {
+                questionComments.add(comment);
+            }
+        }
+        answerComments.replaceAll((id, list) -> List.copyOf(list));
+
+        return Optional.of(new QuestionPageView(question, questionImages, questionComments, answers, answerComments));
+    }
+}
@@ -0,0 +1,661 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.dto.SearchHits;
+import com.stackoverflow.event.QuestionLifecycleEvent;
+import com.stackoverflow.repository.QuestionRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Question Search Index - Chỉ mục đảo ngược trong bộ nhớ cho tìm kiếm câu hỏi
+ *
+ * Tiêu đề và nội dung được tách từ bởi SearchTextAnalyzer (bỏ dấu tiếng Việt), xếp hạng BM25
+ * với tần suất từ trong tiêu đề nhân hệ số search.title-boost (BM25F đơn giản).
+ * Chỉ câu hỏi đã duyệt được đánh chỉ mục.
+ *
+ * Lưu trên đĩa dạng segment: mỗi thay đổi được ghi nối (upsert/delete) vào segment đang mở,
+ * định kỳ các segment được gộp thành một ảnh chụp. Khi khởi động chỉ đọc lại segment rồi
+ * đối chiếu updatedAt với DB để đánh lại chỉ mục những câu hỏi đã thay đổi.
+ */
+@Service
+public class QuestionSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(QuestionSearchIndex.class);
+
+    private static final int SEGMENT_MAGIC = 0x51534958;  // "QSIX"
+    private static final int SEGMENT_VERSION = 1;
+    private static final byte OP_UPSERT = 1;
+    private static final byte OP_DELETE = 2;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final int REINDEX_CHUNK = 500;
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Value("${search.index-dir:data/search-index}")
+    private String indexDir;
+
+    @Value("${search.title-boost:3.0}")
+    private double titleBoost;
+
+    @Value("${search.max-segments:8}")
+    private int maxSegments;
+
+    @Value("${search.segment-max-records:20000}")
+    private int segmentMaxRecords;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Được bảo vệ bởi lock
+    private final Map<Long, Doc> docs = new HashMap<>();
+    private final Map<String, Map<Long, Doc>> postings = new HashMap<>();
+    private double totalLength;
+    private DataOutputStream liveSegment;
+    private long liveGeneration;
+    private int liveRecords;
+    private int segmentCount;
+
+    private volatile boolean ready;
+
+    /** Câu hỏi thay đổi trong lúc đang nạp chỉ mục, xử lý sau khi nạp xong */
+    private final Set<Long> changedDuringLoad = ConcurrentHashMap.newKeySet();
+
+    // Metrics
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong totalQueryNanos = new AtomicLong();
+    private final AtomicLong maxQueryNanos = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong segmentWriteFailures = new AtomicLong();
+    private volatile long loadDurationMs;
+    private volatile int reindexedOnStartup;
+
+    /**
+     * Tìm kiếm một trang kết quả.
+     *
+     * @return rỗng nếu chỉ mục chưa sẵn sàng hoặc truy vấn không có từ nào dùng được
+     *         (caller chuyển sang tìm bằng LIKE)
+     */
+    public Optional<SearchHits> search(String query, int page, int size) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        Set<String> terms = new LinkedHashSet<>(SearchTextAnalyzer.tokenize(query));
+        if (terms.isEmpty()) {
+            return Optional.empty();
+        }
+
+        long start = System.nanoTime();
+        Map<Long, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int documentCount = docs.size();
+            if (documentCount == 0) {
+                return Optional.of(new SearchHits(List.of(), 0));
+            }
+            double averageLength = Math.max(totalLength / documentCount, 1d);
+            for (String term : terms) {
+                Map<Long, Doc> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                int df = posting.size();
+                double idf = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+                for (Doc doc : posting.values()) {
+                    int[] tf = doc.terms.get(term);
+                    double weightedTf = titleBoost * tf[0] + tf[1];
+                    double norm = K1 * (1 - B + B * doc.length(titleBoost) / averageLength);
+                    scores.merge(doc.id, idf * weightedTf * (K1 + 1) / (weightedTf + norm), Double::sum);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort((a, b) -> {
+            int byScore = Double.compare(b.getValue(), a.getValue());
+            return byScore != 0 ? byScore : Long.compare(b.getKey(), a.getKey());
+        });
+        int from = (int) Math.min((long) page * size, ranked.size());
+        int to = Math.min(from + size, ranked.size());
+        List<Long> ids = new ArrayList<>(to - from);
+        for (Map.Entry<Long, Double> entry : ranked.subList(from, to)) {
+            ids.add(entry.getKey());
+        }
+
+        long elapsed = System.nanoTime() - start;
+        queries.incrementAndGet();
+        totalQueryNanos.addAndGet(elapsed);
+        maxQueryNanos.accumulateAndGet(elapsed, Math::max);
+        return Optional.of(new SearchHits(ids, ranked.size()));
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // ================== CẬP NHẬT TĂNG DẦN ==================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLifecycle(QuestionLifecycleEvent event) {
+        Long id = event.getQuestionId();
+        if (!ready) {
+            changedDuringLoad.add(id);
+            return;
+        }
+        try {
+            if (event.getType() == QuestionLifecycleEvent.Type.DELETED
+                    || event.getType() == QuestionLifecycleEvent.Type.REJECTED) {
+                remove(id);
+            } else {
+                reindex(List.of(id));
+            }
+        } catch (RuntimeException e) {
+            // Lần khởi động sau sẽ đối chiếu lại theo updatedAt
+            log.warn("Failed to update search index for question {}: {}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * Đọc lại tiêu đề/nội dung từ DB và cập nhật chỉ mục; câu hỏi không còn hoặc chưa duyệt bị gỡ
+     */
+    public void reindex(Collection<Long> ids) {
+        Set<Long> missing = new HashSet<>(ids);
+        for (Object[] row : questionRepository.findSearchDocuments(ids)) {
+            Long id = (Long) row[0];
+            missing.remove(id);
+            if (Boolean.TRUE.equals(row[4])) {
+                upsert(analyze(id, (String) row[1], (String) row[2], stamp((LocalDateTime) row[3])));
+            } else {
+                remove(id);
+            }
+        }
+        missing.forEach(this::remove);
+    }
+
+    private Doc analyze(Long id, String title, String body, long updatedAt) {
+        Map<String, int[]> terms = new HashMap<>();
+        List<String> titleTokens = SearchTextAnalyzer.tokenize(title);
+        List<String> bodyTokens = SearchTextAnalyzer.tokenize(body);
+        titleTokens.forEach(token -> terms.computeIfAbsent(token, t -> new int[2])[0]++);
+        bodyTokens.forEach(token -> terms.computeIfAbsent(token, t -> new int[2])[1]++);
+        return new Doc(id, updatedAt, titleTokens.size(), bodyTokens.size(), terms);
+    }
+
+    private void upsert(Doc doc) {
+        lock.writeLock().lock();
+        try {
+            applyUpsert(doc);
+            appendRecord(out -> writeUpsert(out, doc));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        updates.incrementAndGet();
+    }
+
+    private void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            if (applyDelete(id)) {
+                appendRecord(out -> {
+                    out.writeByte(OP_DELETE);
+                    out.writeLong(id);
+                });
+                updates.incrementAndGet();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Gọi trong write lock
+    private void applyUpsert(Doc doc) {
+        applyDelete(doc.id);
+        docs.put(doc.id, doc);
+        totalLength += doc.length(titleBoost);
+        for (String term : doc.terms.keySet()) {
+            postings.computeIfAbsent(term, t -> new HashMap<>()).put(doc.id, doc);
+        }
+    }
+
+    // Gọi trong write lock
+    private boolean applyDelete(Long id) {
+        Doc previous = docs.remove(id);
+        if (previous == null) {
+            return false;
+        }
+        totalLength -= previous.length(titleBoost);
+        for (String term : previous.terms.keySet()) {
+            Map<Long, Doc> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        return true;
+    }
+
+    // ================== SEGMENT TRÊN ĐĨA ==================
+
+    /**
+     * Nạp segment, đối chiếu với DB rồi mở chỉ mục cho tìm kiếm
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        try {
+            Path dir = Paths.get(indexDir);
+            Files.createDirectories(dir);
+            List<Path> segments = listSegments(dir);
+
+            lock.writeLock().lock();
+            try {
+                for (Path segment : segments) {
+                    readSegment(segment);
+                }
+                segmentCount = segments.size();
+                liveGeneration = segments.isEmpty() ? 0 : generationOf(segments.get(segments.size() - 1));
+                openNewLiveSegment();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            reindexedOnStartup = reconcile();
+            if (segmentCount > maxSegments) {
+                compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Không có chỉ mục thì /search dùng LIKE
+            log.error("Failed to load question search index: {}", e.getMessage());
+            return;
+        }
+        ready = true;
+        loadDurationMs = System.currentTimeMillis() - start;
+        log.info("Question search index ready: {} documents, {} reindexed, {} ms",
+                docs.size(), reindexedOnStartup, loadDurationMs);
+
+        // Thay đổi xảy ra trong lúc nạp
+        if (!changedDuringLoad.isEmpty()) {
+            List<Long> changed = new ArrayList<>(changedDuringLoad);
+            changedDuringLoad.removeAll(changed);
+            reindex(changed);
+        }
+    }
+
+    /**
+     * So updatedAt trong chỉ mục với DB: đánh lại câu hỏi mới/đã sửa, gỡ câu hỏi đã xóa/bỏ duyệt
+     */
+    private int reconcile() {
+        Map<Long, Long> current = new HashMap<>();
+        for (Object[] row : questionRepository.findSearchStamps()) {
+            current.put((Long) row[0], stamp((LocalDateTime) row[1]));
+        }
+
+        List<Long> stale = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            current.forEach((id, updatedAt) -> {
+                Doc doc = docs.get(id);
+                if (doc == null || doc.updatedAt != updatedAt) {
+                    stale.add(id);
+                }
+            });
+            for (Long id : docs.keySet()) {
+                if (!current.containsKey(id)) {
+                    removed.add(id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        removed.forEach(this::remove);
+        for (int i = 0; i < stale.size(); i += REINDEX_CHUNK) {
+            reindex(stale.subList(i, Math.min(i + REINDEX_CHUNK, stale.size())));
+        }
+        return stale.size() + removed.size();
+    }
+
+    /**
+     * Gộp toàn bộ segment thành một ảnh chụp. Giữ read lock: tìm kiếm vẫn chạy,
+     * cập nhật chờ tới khi gộp xong.
+     */
+    @Scheduled(initialDelayString = "${search.compact-interval-ms:3600000}", fixedDelayString = "${search.compact-interval-ms:3600000}")
+    public synchronized void compact() {
+        if (liveSegment == null) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            Path dir = Paths.get(indexDir);
+            closeLiveSegment();
+            long snapshotGeneration = liveGeneration + 1;
+            Path target = dir.resolve(segmentName(snapshotGeneration));
+            Path tmp = dir.resolve(segmentName(snapshotGeneration) + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SEGMENT_MAGIC);
+                out.writeInt(SEGMENT_VERSION);
+                for (Doc doc : docs.values()) {
+                    writeUpsert(out, doc);
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (Path segment : listSegments(dir)) {
+                if (generationOf(segment) < snapshotGeneration) {
+                    Files.deleteIfExists(segment);
+                }
+            }
+            liveGeneration = snapshotGeneration;
+            openNewLiveSegment();
+        } catch (IOException e) {
+            segmentWriteFailures.incrementAndGet();
+            log.warn("Failed to compact question search index: {}", e.getMessage());
+            reopenLiveSegment();
+        } finally {
+            // Đếm lại từ thư mục: ảnh chụp + segment đang ghi (hoặc các segment cũ nếu gộp lỗi)
+            segmentCount = countSegments();
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            closeLiveSegment();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // Gọi trong write lock
+    private void appendRecord(RecordWriter writer) {
+        if (liveSegment == null) {
+            return;
+        }
+        try {
+            writer.write(liveSegment);
+            liveSegment.flush();
+            if (++liveRecords >= segmentMaxRecords) {
+                closeLiveSegment();
+                openNewLiveSegment();
+            }
+        } catch (IOException e) {
+            // Chỉ mục trong bộ nhớ vẫn đúng; lần khởi động sau đối chiếu lại theo updatedAt
+            segmentWriteFailures.incrementAndGet();
+            log.warn("Failed to append to search index segment: {}", e.getMessage());
+        }
+    }
+
+    private void writeUpsert(DataOutputStream out, Doc doc) throws IOException {
+        out.writeByte(OP_UPSERT);
+        out.writeLong(doc.id);
+        out.writeLong(doc.updatedAt);
+        out.writeInt(doc.titleLength);
+        out.writeInt(doc.bodyLength);
+        out.writeInt(doc.terms.size());
+        for (Map.Entry<String, int[]> term : doc.terms.entrySet()) {
+            out.writeUTF(term.getKey());
+            out.writeInt(term.getValue()[0]);
+            out.writeInt(term.getValue()[1]);
+        }
+    }
+
+    /**
+     * Đọc một segment. Bản ghi chỉ được áp dụng khi đã đọc trọn; mọi lỗi đọc sau bản ghi đầy đủ cuối cùng
+     * (EOF, chuỗi UTF ghi dở, op không hợp lệ) được coi là đuôi bị ghi dở khi tắt đột ngột: file bị cắt
+     * về offset của bản ghi tốt cuối cùng, reconcile sẽ đánh lại các câu hỏi bị mất.
+     */
+    private void readSegment(Path segment) throws IOException {
+        long lastGoodOffset;
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(Files.newInputStream(segment)));
+             DataInputStream in = new DataInputStream(counter)) {
+            try {
+                if (in.readInt() != SEGMENT_MAGIC || in.readInt() != SEGMENT_VERSION) {
+                    log.warn("Skipping unknown search index segment {}", segment.getFileName());
+                    return;
+                }
+            } catch (EOFException e) {
+                log.warn("Skipping search index segment {} without header", segment.getFileName());
+                return;
+            }
+            lastGoodOffset = counter.count;
+            try {
+                while (true) {
+                    int op = in.read();
+                    if (op < 0) {
+                        return;
+                    }
+                    long id = in.readLong();
+                    if (op == OP_DELETE) {
+                        applyDelete(id);
+                    } else if (op == OP_UPSERT) {
+                        long updatedAt = in.readLong();
+                        int titleLength = in.readInt();
+                        int bodyLength = in.readInt();
+                        int termCount = in.readInt();
+                        if (termCount < 0) {
+                            throw new IOException("Invalid term count " + termCount);
+                        }
+                        Map<String, int[]> terms = new HashMap<>(Math.min(termCount, 1024) * 2);
+                        for (int i = 0; i < termCount; i++) {
+                            terms.put(in.readUTF(), new int[]{in.readInt(), in.readInt()});
+                        }
+                        applyUpsert(new Doc(id, updatedAt, titleLength, bodyLength, terms));
+                    } else {
+                        throw new IOException("Unknown record type " + op);
+                    }
+                    lastGoodOffset = counter.count;
+                }
+            } catch (IOException e) {
+                log.warn("Truncated search index segment {} at offset {}: {}",
+                        segment.getFileName(), lastGoodOffset, e.toString());
+            }
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(lastGoodOffset);
+        }
+    }
+
+    private void openNewLiveSegment() throws IOException {
+        liveGeneration++;
+        Path path = Paths.get(indexDir).resolve(segmentName(liveGeneration));
+        liveSegment = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)));
+        liveSegment.writeInt(SEGMENT_MAGIC);
+        liveSegment.writeInt(SEGMENT_VERSION);
+        liveSegment.flush();
+        liveRecords = 0;
+        segmentCount++;
+    }
+
+    /**
+     * Gộp lỗi sau khi đã đóng segment đang ghi: mở segment mới để các cập nhật sau vẫn được ghi xuống
+     */
+    private void reopenLiveSegment() {
+        if (liveSegment != null) {
+            return;
+        }
+        try {
+            openNewLiveSegment();
+        } catch (IOException e) {
+            log.warn("Failed to reopen search index segment: {}", e.getMessage());
+        }
+    }
+
+    private int countSegments() {
+        try {
+            return listSegments(Paths.get(indexDir)).size();
+        } catch (IOException e) {
+            return segmentCount;
+        }
+    }
+
+    private void closeLiveSegment() {
+        if (liveSegment == null) {
+            return;
+        }
+        try {
+            liveSegment.close();
+        } catch (IOException e) {
+            log.warn("Failed to close search index segment: {}", e.getMessage());
+        }
+        liveSegment = null;
+    }
+
+    private List<Path> listSegments(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().matches("segment-\\d+\\.seg"))
+                    .sorted((a, b) -> Long.compare(generationOf(a), generationOf(b)))
+                    .toList();
+        }
+    }
+
+    /**
+     * Đếm số byte đã đọc để biết offset của bản ghi đầy đủ cuối cùng
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    private static String segmentName(long generation) {
+        return String.format("segment-%010d.seg", generation);
+    }
+
+    private static long generationOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring("segment-".length(), name.length() - ".seg".length()));
+    }
+
+    private static long stamp(LocalDateTime updatedAt) {
+        return updatedAt != null ? updatedAt.toInstant(ZoneOffset.UTC).toEpochMilli() : 0L;
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("ready", ready);
+            stats.put("documents", docs.size());
+            stats.put("terms", postings.size());
+            stats.put("segments", segmentCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+        long count = queries.get();
+        stats.put("queries", count);
+        stats.put("avgQueryMicros", count > 0 ? totalQueryNanos.get() / count / 1000 : 0);
+        stats.put("maxQueryMicros", maxQueryNanos.get() / 1000);
+        stats.put("updates", updates.get());
+        stats.put("segmentWriteFailures", segmentWriteFailures.get());
+        stats.put("loadDurationMs", loadDurationMs);
+        stats.put("reindexedOnStartup", reindexedOnStartup);
+        return stats;
+    }
+
+    /**
+     * Một câu hỏi trong chỉ mục: tần suất từng từ trong tiêu đề [0] và nội dung [1]
+     */
+    private static final class Doc {
+
+        final long id;
+        final long updatedAt;
+        final int titleLength;
+        final int bodyLength;
+        final Map<String, int[]> terms;
+
+        Doc(long id, long updatedAt, int titleLength, int bodyLength, Map<String, int[]> terms) {
+            this.id = id;
+            this.updatedAt = updatedAt;
+            this.titleLength = titleLength;
+            this.bodyLength = bodyLength;
+            this.terms = terms;
+        }
+
+        double length(double titleBoost) {
+            return titleBoost * titleLength + bodyLength;
+        }
+    }
+}
@@ -1,20 +1,30 @@
 package com.stackoverflow.service.common;
 
+import com.stackoverflow.dto.FeedCursor;
 import com.stackoverflow.entity.Question;
 import com.stackoverflow.entity.Tag;
 import com.stackoverflow.entity.User;
+import com.stackoverflow.event.QuestionActivityEvent;
+import com.stackoverflow.event.QuestionLifecycleEvent;
 import com.stackoverflow.repository.QuestionRepository;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -28,8 +38,14 @@ public class QuestionService {
     @Autowired
     private TagService tagService;
 
-    @PersistenceContext
-    private EntityManager entityManager;
+    @Autowired
+    private ViewCountService viewCountService;
+
+    @Autowired
+    private CounterService counterService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     public Question createQuestion(Question question, Set<String> tagNames) {
         Set<Tag> tags = tagService.getOrCreateTags(tagNames);
@@ -46,11 +62,8 @@ public class QuestionService {
             question.setIsApproved(false); // USER questions need admin approval
         }
         
-        Question savedQuestion = questionRepository.save(question);
-        
-        // Increment question count for each tag
-        tags.forEach(Tag::incrementQuestionCount);
-        
+        Question savedQuestion = saveAndCountTags(question);
+        publishLifecycle(savedQuestion, QuestionLifecycleEvent.Type.CREATED);
         return savedQuestion;
     }
 
@@ -86,59 +99,81 @@ public class QuestionService {
         return questionRepository.searchQuestions(search, pageable);
     }
 
-    public Question updateQuestion(Question question, Set<String> tagNames) {
-        if (tagNames != null && !tagNames.isEmpty()) {
-            Set<Tag> tags = tagService.getOrCreateTags(tagNames);
-            question.setTags(tags);
+    // ================== FEEDS (keyset pagination) ==================
+    // cursor != null: lấy trang sau con trỏ (không OFFSET); ngược lại dùng OFFSET cho vài trang đầu.
+    // Tất cả trả về Slice nên không có câu COUNT(*).
+
+    public Slice<Question> getNewestQuestions(FeedCursor cursor, int page, int size) {
+        if (cursor != null) {
+            return questionRepository.findNewestAfter(cursor.asCreatedAt(), cursor.getId(), PageRequest.of(0, size));
         }
-        return questionRepository.save(question);
+        return questionRepository.findNewest(PageRequest.of(page, size));
     }
 
-    @Transactional
-    public void deleteQuestion(Long id) {
-        // STEP 1: Get question and decrement tag counts FIRST
-        Question question = questionRepository.findById(id)
-            .orElseThrow(() -> new RuntimeException("Question not found"));
-        
-        question.getTags().forEach(tag -> {
-            tag.setQuestionCount(Math.max(0, tag.getQuestionCount() - 1));
-        });
-        
-        // STEP 2: Delete from join table using direct EntityManager query
-        // This ensures it executes BEFORE deleteById
-        int deletedRows = entityManager.createNativeQuery(
-                "DELETE FROM question_tags WHERE question_id = :questionId")
-                .setParameter("questionId", id)
-                .executeUpdate();
-        
-        System.out.println("Deleted " + deletedRows + " rows from question_tags for question ID: " + id);
-        
-        // STEP 3: Now safe to delete the question
-        // Cascade will handle answers, comments, images
-        questionRepository.deleteById(id);
-        
-        System.out.println("Successfully deleted question ID: " + id);
+    public Slice<Question> getTopVotedQuestions(FeedCursor cursor, int page, int size) {
+        if (cursor != null) {
+            return questionRepository.findTopVotedAfter(cursor.asVotes(), cursor.getId(), PageRequest.of(0, size));
+        }
+        return questionRepository.findTopVoted(PageRequest.of(page, size));
     }
 
-    public void incrementViews(Question question) {
-        question.incrementViews();
-        questionRepository.save(question);
+    public Slice<Question> getNewestQuestionsByTag(Tag tag, FeedCursor cursor, int page, int size) {
+        if (cursor != null) {
+            return questionRepository.findNewestByTagAfter(tag, cursor.asCreatedAt(), cursor.getId(), PageRequest.of(0, size));
+        }
+        return questionRepository.findNewestByTag(tag, PageRequest.of(page, size));
+    }
+
+    public Slice<Question> searchNewestQuestions(String search, FeedCursor cursor, int page, int size) {
+        if (cursor != null) {
+            return questionRepository.searchNewestAfter(search, cursor.asCreatedAt(), cursor.getId(), PageRequest.of(0, size));
+        }
+        return questionRepository.searchNewest(search, PageRequest.of(page, size));
     }
 
-    public void upvoteQuestion(Question question, User user) {
-        if (!user.getVotedQuestions().contains(question)) {
-            question.upvote();
-            user.getVotedQuestions().add(question);
-            questionRepository.save(question);
+    /**
+     * Nạp câu hỏi theo danh sách id (từ chỉ mục trong bộ nhớ) bằng 1 truy vấn IN, giữ nguyên thứ tự
+     */
+    @Transactional(readOnly = true)
+    public List<Question> getQuestionsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
         }
+        Map<Long, Question> loaded = new HashMap<>();
+        for (Question question : questionRepository.findFeedQuestionsByIds(ids)) {
+            loaded.put(question.getId(), question);
+        }
+        List<Question> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Question question = loaded.get(id);
+            if (question != null) {
+                result.add(question);
+            }
+        }
+        return result;
     }
 
-    public void downvoteQuestion(Question question, User user) {
-        if (user.getVotedQuestions().contains(question)) {
-            question.downvote();
-            user.getVotedQuestions().remove(question);
-            questionRepository.save(question);
+    public Question updateQuestion(Question question, Set<String> tagNames) {
+        if (tagNames != null && !tagNames.isEmpty()) {
+            Set<Tag> tags = tagService.getOrCreateTags(tagNames);
+            question.setTags(tags);
         }
+        Question saved = saveAndCountTags(question);
+        publishLifecycle(saved, QuestionLifecycleEvent.Type.UPDATED);
+        return saved;
+    }
+
+    public void incrementViews(Question question) {
+        // Write-behind: chỉ ghi nhận trong bộ nhớ, ViewCountService sẽ flush theo lô
+        viewCountService.recordView(question.getId());
+        eventPublisher.publishEvent(QuestionActivityEvent.of(question));
+    }
+
+    /**
+     * Lượt xem hiển thị = giá trị trong DB + lượt xem chưa flush
+     */
+    public long getViewCount(Question question) {
+        return viewCountService.getViewCount(question.getId(), question.getViews());
     }
 
     public Long countByAuthor(User author) {
@@ -180,6 +215,7 @@ public class QuestionService {
                 .orElseThrow(() -> new RuntimeException("Question not found"));
         question.setIsApproved(true);
         questionRepository.save(question);
+        publishLifecycle(question, QuestionLifecycleEvent.Type.APPROVED);
     }
 
     public void rejectQuestion(Long questionId) {
@@ -187,6 +223,7 @@ public class QuestionService {
                 .orElseThrow(() -> new RuntimeException("Question not found"));
         question.setIsApproved(false);
         questionRepository.save(question);
+        publishLifecycle(question, QuestionLifecycleEvent.Type.REJECTED);
     }
 
     @Transactional
@@ -194,7 +231,8 @@ public class QuestionService {
         // Moderation logic for NEW questions only (id == null):
         // - ADMIN/MANAGER: always auto-approve (isApproved = true)
         // - USER: needs moderation (isApproved = false)
-        if (question.getId() == null) {
+        boolean isNew = question.getId() == null;
+        if (isNew) {
             // This is a new question
             if (isAdminOrManager()) {
                 question.setIsApproved(true);
@@ -203,7 +241,38 @@ public class QuestionService {
             }
         }
         // For existing questions, don't change isApproved (let admin control it)
-        return questionRepository.save(question);
+        Question saved = saveAndCountTags(question);
+        publishLifecycle(saved, isNew ? QuestionLifecycleEvent.Type.CREATED : QuestionLifecycleEvent.Type.UPDATED);
+        return saved;
+    }
+
+    /**
+     * Lưu câu hỏi và cập nhật questionCount của các thẻ được thêm/bỏ bằng SQL tương đối.
+     * Thẻ cũ đọc từ question_tags trước khi Hibernate flush thay đổi của entity.
+     */
+    private Question saveAndCountTags(Question question) {
+        Set<Long> before = question.getId() == null
+                ? Collections.emptySet()
+                : counterService.findTagIds(question.getId());
+        Question saved = questionRepository.save(question);
+        Set<Long> after = new HashSet<>();
+        saved.getTags().forEach(tag -> after.add(tag.getId()));
+
+        Set<Long> added = new HashSet<>(after);
+        added.removeAll(before);
+        Set<Long> removed = new HashSet<>(before);
+        removed.removeAll(after);
+        counterService.adjustTagQuestionCounts(added, 1);
+        counterService.adjustTagQuestionCounts(removed, -1);
+        return saved;
+    }
+
+    /**
+     * Thông báo thay đổi vòng đời kèm ảnh chụp chỉ số cho các chỉ mục trong bộ nhớ
+     */
+    private void publishLifecycle(Question question, QuestionLifecycleEvent.Type type) {
+        eventPublisher.publishEvent(new QuestionLifecycleEvent(question.getId(), type));
+        eventPublisher.publishEvent(QuestionActivityEvent.of(question));
     }
     
     /**
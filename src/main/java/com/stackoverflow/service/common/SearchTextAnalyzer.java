@@ -0,0 +1,68 @@
+package com.stackoverflow.service.common;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Tách từ cho chỉ mục tìm kiếm: bỏ thẻ HTML, bỏ dấu tiếng Việt (đ → d), chữ thường,
+ * tách theo ký tự không phải chữ/số và loại stopword tiếng Anh/tiếng Việt.
+ * "Lập trình" và "lap trinh" cho cùng token.
+ */
+final class SearchTextAnalyzer {
+
+    private static final Pattern HTML_TAG = Pattern.compile("<[^>]+>");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}#+]+");
+
+    private static final int MAX_TOKEN_LENGTH = 40;
+
+    // Stopword đã bỏ dấu
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "how", "i", "in", "is", "it",
+            "of", "on", "or", "that", "the", "this", "to", "was", "what", "when", "where", "which", "with",
+            "la", "cua", "va", "cac", "nhung", "cho", "trong", "mot", "co", "khong", "duoc", "nay", "thi",
+            "voi", "de", "den", "khi", "lam", "sao", "nao", "gi", "toi", "ban", "minh", "ve", "o");
+
+    private SearchTextAnalyzer() {
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return tokens;
+        }
+        String plain = HTML_TAG.matcher(text).replaceAll(" ");
+        for (String raw : SEPARATORS.split(fold(plain))) {
+            String token = trimSymbols(raw);
+            if (token.isEmpty() || token.length() > MAX_TOKEN_LENGTH || STOPWORDS.contains(token)) {
+                continue;
+            }
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * Bỏ dấu và chuyển chữ thường
+     */
+    static String fold(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+    }
+
+    // Giữ "c++", "c#" nhưng bỏ '#'/'+' đứng riêng hoặc ở đầu token
+    private static String trimSymbols(String token) {
+        int start = 0;
+        while (start < token.length() && (token.charAt(start) == '#' || token.charAt(start) == '+')) {
+            start++;
+        }
+        return token.substring(start);
+    }
+}
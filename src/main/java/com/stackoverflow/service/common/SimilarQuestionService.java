@@ -0,0 +1,351 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.dto.SimilarQuestion;
+import com.stackoverflow.event.QuestionLifecycleEvent;
+import com.stackoverflow.repository.QuestionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Similar Question Service - Phát hiện câu hỏi trùng lặp khi đặt câu hỏi (MinHash + LSH)
+ *
+ * Tiêu đề được chuẩn hóa (bỏ dấu, bỏ stopword) rồi tách thành shingle 3 ký tự. Mỗi câu hỏi đã
+ * duyệt có chữ ký MinHash int[SIGNATURE_SIZE]; chữ ký chia thành BANDS dải, mỗi dải băm vào một
+ * bucket. Hai tiêu đề có Jaccard ~ s trùng ít nhất một dải với xác suất 1 - (1 - s^ROWS)^BANDS,
+ * nên chỉ cần so chữ ký với các ứng viên cùng bucket thay vì toàn bộ câu hỏi.
+ */
+@Service
+public class SimilarQuestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(SimilarQuestionService.class);
+
+    private static final int BANDS = 16;
+    private static final int ROWS = 4;
+    private static final int SIGNATURE_SIZE = BANDS * ROWS;
+    private static final int SHINGLE_SIZE = 3;
+    private static final long PRIME = (1L << 31) - 1;
+
+    /** Hệ số a, b của các hàm băm h(x) = (a*x + b) mod PRIME, cố định để chữ ký ổn định */
+    private static final long[] HASH_A = new long[SIGNATURE_SIZE];
+    private static final long[] HASH_B = new long[SIGNATURE_SIZE];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED_D0C5L);
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            HASH_A[i] = 1 + random.nextLong(PRIME - 1);
+            HASH_B[i] = random.nextLong(PRIME);
+        }
+    }
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Value("${similar.min-similarity:0.35}")
+    private double minSimilarity;
+
+    @Value("${similar.rebuild-parallelism:0}")
+    private int rebuildParallelism;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Câu hỏi thay đổi trong lúc rebuild, đọc lại sau khi thay chỉ mục */
+    private volatile Set<Long> changedDuringRebuild;
+
+    // Được bảo vệ bởi lock
+    private Map<Long, Entry> entries = new HashMap<>();
+    private Map<Long, List<Long>> buckets = new HashMap<>();
+
+    // Metrics
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong totalQueryNanos = new AtomicLong();
+    private final AtomicLong totalCandidates = new AtomicLong();
+    private volatile long lastRebuildDurationMs;
+
+    /**
+     * Tìm câu hỏi có tiêu đề gần giống, giống nhất trước
+     */
+    public List<SimilarQuestion> findSimilar(String title, int limit) {
+        int[] signature = signature(title);
+        if (signature == null) {
+            return Collections.emptyList();
+        }
+        long start = System.nanoTime();
+        List<SimilarQuestion> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Set<Long> candidates = new HashSet<>();
+            for (int band = 0; band < BANDS; band++) {
+                List<Long> bucket = buckets.get(bandKey(signature, band));
+                if (bucket != null) {
+                    candidates.addAll(bucket);
+                }
+            }
+            totalCandidates.addAndGet(candidates.size());
+            for (Long id : candidates) {
+                Entry entry = entries.get(id);
+                double similarity = estimateJaccard(signature, entry.signature);
+                if (similarity >= minSimilarity) {
+                    result.add(new SimilarQuestion(id, entry.title, similarity));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort((a, b) -> Double.compare(b.getSimilarity(), a.getSimilarity()));
+        queries.incrementAndGet();
+        totalQueryNanos.addAndGet(System.nanoTime() - start);
+        return result.subList(0, Math.min(Math.max(limit, 0), result.size()));
+    }
+
+    // ================== ĐỒNG BỘ ==================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLifecycle(QuestionLifecycleEvent event) {
+        Long id = event.getQuestionId();
+        Set<Long> pending = changedDuringRebuild;
+        if (pending != null) {
+            pending.add(id);
+        }
+        if (event.getType() == QuestionLifecycleEvent.Type.DELETED
+                || event.getType() == QuestionLifecycleEvent.Type.REJECTED) {
+            remove(id);
+            return;
+        }
+        refresh(id);
+    }
+
+    /**
+     * Đọc lại tiêu đề từ DB; câu hỏi không còn hoặc chưa duyệt bị gỡ khỏi chỉ mục
+     */
+    private void refresh(Long id) {
+        List<Object[]> rows = questionRepository.findTitleById(id);
+        if (rows.isEmpty() || !Boolean.TRUE.equals(rows.get(0)[2])) {
+            remove(id);
+        } else {
+            put(id, (String) rows.get(0)[1]);
+        }
+    }
+
+    private void put(Long id, String title) {
+        int[] signature = signature(title);
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            if (signature != null) {
+                addInternal(buckets, entries, new Entry(id, title, signature));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void addInternal(Map<Long, List<Long>> buckets, Map<Long, Entry> entries, Entry entry) {
+        entries.put(entry.id, entry);
+        for (int band = 0; band < BANDS; band++) {
+            buckets.computeIfAbsent(bandKey(entry.signature, band), k -> new ArrayList<>(2)).add(entry.id);
+        }
+    }
+
+    // Gọi trong write lock
+    private void removeInternal(Long id) {
+        Entry previous = entries.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            long key = bandKey(previous.signature, band);
+            List<Long> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(id);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Dựng lại toàn bộ chỉ mục khi khởi động: tính chữ ký song song bằng fork-join,
+     * rồi thay thế chỉ mục cũ
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        changedDuringRebuild = ConcurrentHashMap.newKeySet();
+        List<Object[]> rows = questionRepository.findApprovedTitles();
+        int[][] signatures = new int[rows.size()][];
+
+        ForkJoinPool pool = rebuildParallelism > 0 ? new ForkJoinPool(rebuildParallelism) : ForkJoinPool.commonPool();
+        try {
+            pool.invoke(new SignatureTask(rows, signatures, 0, rows.size()));
+        } finally {
+            if (pool != ForkJoinPool.commonPool()) {
+                pool.shutdown();
+            }
+        }
+
+        Map<Long, Entry> newEntries = new HashMap<>(rows.size() * 2);
+        Map<Long, List<Long>> newBuckets = new HashMap<>(rows.size() * 2);
+        for (int i = 0; i < rows.size(); i++) {
+            if (signatures[i] != null) {
+                addInternal(newBuckets, newEntries, new Entry((Long) rows.get(i)[0], (String) rows.get(i)[1], signatures[i]));
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            entries = newEntries;
+            buckets = newBuckets;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Set<Long> changed = changedDuringRebuild;
+        changedDuringRebuild = null;
+        changed.forEach(this::refresh);
+        lastRebuildDurationMs = System.currentTimeMillis() - start;
+        log.info("Similar question index built: {} questions, {} buckets, {} ms",
+                newEntries.size(), newBuckets.size(), lastRebuildDurationMs);
+    }
+
+    private static final class SignatureTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final int THRESHOLD = 512;
+
+        private final List<Object[]> rows;
+        private final int[][] signatures;
+        private final int from;
+        private final int to;
+
+        SignatureTask(List<Object[]> rows, int[][] signatures, int from, int to) {
+            this.rows = rows;
+            this.signatures = signatures;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    signatures[i] = signature((String) rows.get(i)[1]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SignatureTask(rows, signatures, from, middle),
+                    new SignatureTask(rows, signatures, middle, to));
+        }
+    }
+
+    // ================== MINHASH ==================
+
+    /**
+     * Chữ ký MinHash của tiêu đề, null nếu tiêu đề quá ngắn để so sánh
+     */
+    static int[] signature(String title) {
+        List<String> tokens = SearchTextAnalyzer.tokenize(title);
+        if (tokens.isEmpty()) {
+            return null;
+        }
+        String normalized = String.join(" ", tokens);
+        if (normalized.length() < SHINGLE_SIZE) {
+            return null;
+        }
+        int[] signature = new int[SIGNATURE_SIZE];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int i = 0; i + SHINGLE_SIZE <= normalized.length(); i++) {
+            long shingle = normalized.substring(i, i + SHINGLE_SIZE).hashCode() & 0xFFFFFFFFL;
+            for (int h = 0; h < SIGNATURE_SIZE; h++) {
+                int value = (int) ((HASH_A[h] * shingle + HASH_B[h]) % PRIME);
+                if (value < signature[h]) {
+                    signature[h] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static double estimateJaccard(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / SIGNATURE_SIZE;
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long hash = band;
+        for (int r = band * ROWS; r < (band + 1) * ROWS; r++) {
+            hash = hash * 0x9E3779B97F4A7C15L + signature[r];
+        }
+        return hash;
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("questions", entries.size());
+            stats.put("buckets", buckets.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        long count = queries.get();
+        stats.put("queries", count);
+        stats.put("avgQueryMicros", count > 0 ? totalQueryNanos.get() / count / 1000 : 0);
+        stats.put("avgCandidates", count > 0 ? totalCandidates.get() / count : 0);
+        stats.put("lastRebuildDurationMs", lastRebuildDurationMs);
+        return stats;
+    }
+
+    private static final class Entry {
+
+        final long id;
+        final String title;
+        final int[] signature;
+
+        Entry(long id, String title, int[] signature) {
+            this.id = id;
+            this.title = title;
+            this.signature = signature;
+        }
+    }
+}
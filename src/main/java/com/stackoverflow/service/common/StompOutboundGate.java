@@ -0,0 +1,404 @@
+package com.stackoverflow.service.common;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * STOMP Outbound Gate - Hàng đợi ra theo từng phiên WebSocket
+ *
+ * Được đăng ký bằng WebSocketTransportRegistration.addDecoratorFactory: mỗi phiên được bọc trong một
+ * GatedSession nằm dưới ConcurrentWebSocketSessionDecorator của Spring. sendMessage chỉ xếp frame vào
+ * hàng đợi của phiên rồi trả về ngay; một luồng ghi (websocket.outbound.writer-threads) ghi lần lượt
+ * ra socket. Vì vậy tồn đọng của client chậm nằm ở đây, nơi áp dụng chính sách:
+ * - Gộp: frame MESSAGE có đích thuộc websocket.outbound.coalesce-prefixes thay frame cùng đích còn chờ
+ *   (chỉ giá trị mới nhất của bộ đếm là có ý nghĩa).
+ * - Bỏ tin cũ nhất: khi phiên có quá websocket.outbound.session-queue-limit frame đang chờ, frame cũ
+ *   nhất thuộc websocket.outbound.droppable-prefixes bị bỏ.
+ * - Quá hạn: frame có thể bỏ đã chờ lâu hơn websocket.outbound.max-age-ms thì không gửi nữa.
+ * - Frame không thể bỏ (ví dụ /user/queue, CONNECTED, RECEIPT) không bao giờ bị bỏ; khi chúng vượt
+ *   websocket.send-buffer-size-limit byte, hoặc một lần ghi kéo dài quá websocket.send-time-limit-ms,
+ *   phiên bị đóng (SessionLimitExceededException, như ConcurrentWebSocketSessionDecorator).
+ */
+@Component
+public class StompOutboundGate implements WebSocketHandlerDecoratorFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(StompOutboundGate.class);
+
+    private static final List<String> EXECUTOR_BEANS = List.of(
+            "clientInboundChannelExecutor", "clientOutboundChannelExecutor", "brokerChannelExecutor");
+
+    private static final String MESSAGE_COMMAND = "MESSAGE\n";
+    private static final String DESTINATION_HEADER = "\ndestination:";
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Value("${websocket.outbound.session-queue-limit:256}")
+    private int sessionQueueLimit;
+
+    @Value("${websocket.outbound.max-age-ms:10000}")
+    private long maxAgeMs;
+
+    @Value("${websocket.outbound.droppable-prefixes:/topic/}")
+    private List<String> droppablePrefixes;
+
+    @Value("${websocket.outbound.coalesce-prefixes:/topic/question.}")
+    private List<String> coalescePrefixes;
+
+    @Value("${websocket.outbound.writer-threads:8}")
+    private int writerThreads;
+
+    @Value("${websocket.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${websocket.send-time-limit-ms:15000}")
+    private long sendTimeLimitMs;
+
+    private final ConcurrentHashMap<String, GatedSession> sessions = new ConcurrentHashMap<>();
+
+    // Mỗi phiên có tối đa 1 tác vụ ghi trong hàng đợi, nên hàng đợi bị chặn bởi số phiên
+    private ThreadPoolExecutor writer;
+
+    // Metrics
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong droppedOldest = new AtomicLong();
+    private final AtomicLong droppedStale = new AtomicLong();
+    private final AtomicLong droppedClosed = new AtomicLong();
+    private final AtomicLong limitExceeded = new AtomicLong();
+    private final AtomicLong sendFailures = new AtomicLong();
+    private final AtomicLong maxSessionBacklog = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        writer = new ThreadPoolExecutor(writerThreads, writerThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ws-writer-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdownNow();
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                GatedSession gated = new GatedSession(session);
+                sessions.put(session.getId(), gated);
+                super.afterConnectionEstablished(gated);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                GatedSession gated = sessions.remove(session.getId());
+                if (gated != null) {
+                    gated.discard();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Đích của frame MESSAGE, null với frame khác (CONNECTED, RECEIPT, ERROR, heartbeat)
+     */
+    static String destinationOf(WebSocketMessage<?> message) {
+        if (!(message instanceof TextMessage text)) {
+            return null;
+        }
+        String payload = text.getPayload();
+        if (!payload.startsWith(MESSAGE_COMMAND)) {
+            return null;
+        }
+        int headersEnd = payload.indexOf("\n\n");
+        int start = payload.indexOf(DESTINATION_HEADER);
+        if (start < 0 || (headersEnd >= 0 && start > headersEnd)) {
+            return null;
+        }
+        start += DESTINATION_HEADER.length();
+        int end = payload.indexOf('\n', start);
+        return payload.substring(start, end < 0 ? payload.length() : end);
+    }
+
+    private static boolean startsWithAny(String destination, List<String> prefixes) {
+        if (destination == null) {
+            return false;
+        }
+        for (String prefix : prefixes) {
+            if (!prefix.isEmpty() && destination.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Thống kê cho trang quản trị, kèm trạng thái executor của các kênh STOMP
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long queued = 0;
+        for (GatedSession session : sessions.values()) {
+            queued += session.backlog();
+        }
+        stats.put("sessions", sessions.size());
+        stats.put("queuedMessages", queued);
+        stats.put("maxSessionBacklog", maxSessionBacklog.get());
+        stats.put("accepted", accepted.get());
+        stats.put("delivered", delivered.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("droppedOldest", droppedOldest.get());
+        stats.put("droppedStale", droppedStale.get());
+        stats.put("droppedClosed", droppedClosed.get());
+        stats.put("limitExceeded", limitExceeded.get());
+        stats.put("sendFailures", sendFailures.get());
+
+        Map<String, Object> executors = new LinkedHashMap<>();
+        executors.put("sessionWriter", executorStats(writer));
+        for (String name : EXECUTOR_BEANS) {
+            if (applicationContext.containsBean(name)) {
+                executors.put(name, executorStats(applicationContext.getBean(name, ThreadPoolTaskExecutor.class)
+                        .getThreadPoolExecutor()));
+            }
+        }
+        stats.put("executors", executors);
+        return stats;
+    }
+
+    private static Map<String, Object> executorStats(ThreadPoolExecutor executor) {
+        Map<String, Object> executorStats = new LinkedHashMap<>();
+        executorStats.put("poolSize", executor.getPoolSize());
+        executorStats.put("activeThreads", executor.getActiveCount());
+        executorStats.put("queuedTasks", executor.getQueue().size());
+        executorStats.put("completedTasks", executor.getCompletedTaskCount());
+        return executorStats;
+    }
+
+    private static final class Frame {
+
+        final WebSocketMessage<?> message;
+        /** Đích dùng để gộp, null nếu không gộp */
+        final String coalesceKey;
+        final boolean droppable;
+        final int bytes;
+        final long createdAt = System.currentTimeMillis();
+        boolean cancelled;
+
+        Frame(WebSocketMessage<?> message, String coalesceKey, boolean droppable) {
+            this.message = message;
+            this.coalesceKey = coalesceKey;
+            this.droppable = droppable;
+            this.bytes = message.getPayloadLength();
+        }
+    }
+
+    /**
+     * Phiên có hàng đợi ra riêng; mọi truy cập hàng đợi đều giữ khóa trên chính đối tượng này
+     */
+    private final class GatedSession extends WebSocketSessionDecorator {
+
+        private final Deque<Frame> pending = new ArrayDeque<>();
+        private final Map<String, Frame> latest = new HashMap<>();
+        /** Số frame chưa bị hủy và chưa gửi */
+        private int live;
+        /** Tổng byte của các frame không thể bỏ đang chờ */
+        private long criticalBytes;
+        private boolean writing;
+        private boolean closed;
+        private volatile long writeStartedAt;
+
+        GatedSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            String destination = destinationOf(message);
+            Frame frame = new Frame(message,
+                    startsWithAny(destination, coalescePrefixes) ? destination : null,
+                    startsWithAny(destination, droppablePrefixes));
+            boolean schedule;
+            synchronized (this) {
+                if (closed) {
+                    droppedClosed.incrementAndGet();
+                    return;
+                }
+                if (frame.coalesceKey != null) {
+                    Frame previous = latest.put(frame.coalesceKey, frame);
+                    if (previous != null && cancel(previous)) {
+                        coalesced.incrementAndGet();
+                    }
+                }
+                pending.addLast(frame);
+                live++;
+                if (!frame.droppable) {
+                    criticalBytes += frame.bytes;
+                }
+                while (live > sessionQueueLimit && cancelOldestDroppable()) {
+                    droppedOldest.incrementAndGet();
+                }
+                maxSessionBacklog.accumulateAndGet(live, Math::max);
+                accepted.incrementAndGet();
+                checkLimits();
+                schedule = !writing;
+                writing = true;
+            }
+            if (schedule) {
+                writer.execute(this::drain);
+            }
+        }
+
+        private void checkLimits() {
+            long startedAt = writeStartedAt;
+            String reason = null;
+            if (criticalBytes > sendBufferSizeLimit) {
+                reason = "Buffer size " + criticalBytes + " bytes for session '" + getId()
+                        + "' exceeds the allowed limit " + sendBufferSizeLimit;
+            } else if (startedAt > 0 && System.currentTimeMillis() - startedAt > sendTimeLimitMs) {
+                reason = "Send time " + (System.currentTimeMillis() - startedAt) + " (ms) for session '"
+                        + getId() + "' exceeded the allowed limit " + sendTimeLimitMs;
+            }
+            if (reason != null) {
+                limitExceeded.incrementAndGet();
+                discardLocked();
+                throw new SessionLimitExceededException(reason, CloseStatus.SESSION_NOT_RELIABLE);
+            }
+        }
+
+        /**
+         * Chạy trên luồng ghi: ghi lần lượt cho tới khi hàng đợi rỗng
+         */
+        private void drain() {
+            while (true) {
+                Frame frame;
+                synchronized (this) {
+                    frame = next();
+                    if (frame == null) {
+                        writing = false;
+                        return;
+                    }
+                    writeStartedAt = System.currentTimeMillis();
+                }
+                try {
+                    getDelegate().sendMessage(frame.message);
+                    delivered.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    sendFailures.incrementAndGet();
+                    log.debug("Failed to send to WebSocket session {}: {}", getId(), e.getMessage());
+                    discard();
+                    return;
+                } finally {
+                    writeStartedAt = 0;
+                }
+            }
+        }
+
+        /**
+         * Frame kế tiếp cần ghi; bỏ qua frame đã hủy và frame có thể bỏ đã quá hạn
+         */
+        private Frame next() {
+            Frame frame;
+            while ((frame = pending.pollFirst()) != null) {
+                if (frame.cancelled) {
+                    continue;
+                }
+                if (frame.coalesceKey != null) {
+                    latest.remove(frame.coalesceKey, frame);
+                }
+                live--;
+                if (!frame.droppable) {
+                    criticalBytes -= frame.bytes;
+                } else if (System.currentTimeMillis() - frame.createdAt > maxAgeMs) {
+                    droppedStale.incrementAndGet();
+                    continue;
+                }
+                return frame;
+            }
+            return null;
+        }
+
+        private boolean cancel(Frame frame) {
+            if (frame.cancelled) {
+                return false;
+            }
+            frame.cancelled = true;
+            live--;
+            return true;
+        }
+
+        private boolean cancelOldestDroppable() {
+            Iterator<Frame> iterator = pending.iterator();
+            while (iterator.hasNext()) {
+                Frame frame = iterator.next();
+                if (frame.droppable && !frame.cancelled) {
+                    cancel(frame);
+                    iterator.remove();
+                    if (frame.coalesceKey != null) {
+                        latest.remove(frame.coalesceKey, frame);
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized int backlog() {
+            return live;
+        }
+
+        /**
+         * Phiên đã đóng: bỏ mọi frame còn chờ, frame gửi muộn sau đó bị bỏ qua
+         */
+        synchronized void discard() {
+            discardLocked();
+        }
+
+        private void discardLocked() {
+            closed = true;
+            pending.clear();
+            latest.clear();
+            live = 0;
+            criticalBytes = 0;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.dto.TagSuggestion;
+import com.stackoverflow.event.TagChangedEvent;
+import com.stackoverflow.repository.TagRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tag Autocomplete Service - Gợi ý thẻ theo tiền tố bằng trie trong bộ nhớ
+ *
+ * Mỗi nút trie lưu sẵn top K thẻ (theo questionCount) của cả cây con, nên tra cứu chỉ là
+ * đi theo tiền tố rồi trả về mảng có sẵn - không truy vấn DB.
+ * Khóa trie là tên thẻ đã bỏ dấu, chữ thường. Thêm/xóa/đổi tên thẻ chỉ tính lại top K trên đường đi
+ * (không nạp lại trên luồng request); số câu hỏi của thẻ thay đổi liên tục nên được làm mới bằng
+ * reload định kỳ. Tập tên thẻ trong bộ nhớ cũng phục vụ tìm thẻ theo chuỗi con ở trang /tags.
+ */
+@Service
+public class TagAutocompleteService {
+
+    private static final Logger log = LoggerFactory.getLogger(TagAutocompleteService.class);
+
+    private static final TagSuggestion[] NONE = new TagSuggestion[0];
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Value("${tags.autocomplete.max-suggestions:10}")
+    private int maxSuggestions;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Được bảo vệ bởi lock
+    private Node root = new Node();
+    private Map<String, TagSuggestion> byName = new HashMap<>();
+    /** Tên thẻ -> khóa đã bỏ dấu, để tìm theo chuỗi con không phải chuẩn hóa lại mỗi lần */
+    private Map<String, String> searchKeys = new HashMap<>();
+
+    // Metrics
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong totalLookupNanos = new AtomicLong();
+    private final AtomicLong incrementalUpdates = new AtomicLong();
+    private volatile long lastReloadAt;
+
+    /**
+     * Gợi ý thẻ bắt đầu bằng prefix, nhiều câu hỏi nhất trước
+     */
+    public List<TagSuggestion> suggest(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return Collections.emptyList();
+        }
+        long start = System.nanoTime();
+        String key = key(prefix);
+        TagSuggestion[] top;
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            top = node != null ? node.top : NONE;
+        } finally {
+            lock.readLock().unlock();
+        }
+        lookups.incrementAndGet();
+        totalLookupNanos.addAndGet(System.nanoTime() - start);
+        return Arrays.asList(top).subList(0, Math.min(Math.max(limit, 0), top.length));
+    }
+
+    /**
+     * Tên các thẻ có khóa chứa chuỗi tìm kiếm, nhiều câu hỏi nhất trước (không truy vấn DB).
+     * Rỗng nếu từ điển chưa được nạp.
+     */
+    public Optional<List<String>> search(String query) {
+        if (lastReloadAt == 0) {
+            return Optional.empty();
+        }
+        String needle = query != null ? key(query) : "";
+        List<TagSuggestion> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            searchKeys.forEach((name, key) -> {
+                if (key.contains(needle)) {
+                    matches.add(byName.get(name));
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(TagSuggestion.BY_POPULARITY);
+        List<String> names = new ArrayList<>(matches.size());
+        matches.forEach(suggestion -> names.add(suggestion.getName()));
+        return Optional.of(names);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reload();
+    }
+
+    /**
+     * Dựng lại toàn bộ trie từ DB (1 truy vấn tên + số câu hỏi), rồi thay thế
+     */
+    @Scheduled(initialDelayString = "${tags.autocomplete.refresh-ms:300000}", fixedDelayString = "${tags.autocomplete.refresh-ms:300000}")
+    public void reload() {
+        Map<String, TagSuggestion> names = new HashMap<>();
+        Map<String, String> keys = new HashMap<>();
+        Node newRoot = new Node();
+        for (Object[] row : tagRepository.findAllNamesAndCounts()) {
+            TagSuggestion suggestion = new TagSuggestion((String) row[0], row[1] != null ? (Integer) row[1] : 0);
+            names.put(suggestion.getName(), suggestion);
+            keys.put(suggestion.getName(), key(suggestion.getName()));
+            insertPath(newRoot, suggestion);
+        }
+        computeTop(newRoot);
+
+        lock.writeLock().lock();
+        try {
+            root = newRoot;
+            byName = names;
+            searchKeys = keys;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        lastReloadAt = System.currentTimeMillis();
+        log.debug("Tag autocomplete trie reloaded with {} tags", names.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTagChanged(TagChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            event.getRemoved().forEach(this::remove);
+            event.getUpserted().forEach((name, count) -> {
+                remove(name);
+                TagSuggestion suggestion = new TagSuggestion(name, count != null ? count : 0);
+                byName.put(name, suggestion);
+                searchKeys.put(name, key(name));
+                recomputePath(insertPath(root, suggestion));
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+        incrementalUpdates.incrementAndGet();
+    }
+
+    // Gọi trong write lock
+    private void remove(String name) {
+        TagSuggestion existing = byName.remove(name);
+        searchKeys.remove(name);
+        if (existing == null) {
+            return;
+        }
+        String key = key(name);
+        List<Node> path = new ArrayList<>(key.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+            if (node != null) {
+                path.add(node);
+            }
+        }
+        if (node == null) {
+            return;
+        }
+        node.terminal.removeIf(s -> s.getName().equals(name));
+
+        // Gỡ nút rỗng từ dưới lên
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node current = path.get(i);
+            if (current.terminal.isEmpty() && current.children.isEmpty()) {
+                path.get(i - 1).children.remove(key.charAt(i - 1));
+                path.remove(i);
+            } else {
+                break;
+            }
+        }
+        recomputePath(path);
+    }
+
+    /**
+     * Thêm thẻ vào trie (chưa tính top), trả về đường đi từ gốc
+     */
+    private List<Node> insertPath(Node start, TagSuggestion suggestion) {
+        String key = key(suggestion.getName());
+        List<Node> path = new ArrayList<>(key.length() + 1);
+        Node node = start;
+        path.add(node);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+            path.add(node);
+        }
+        node.terminal.add(suggestion);
+        return path;
+    }
+
+    // Tính lại top K từ nút sâu nhất lên gốc
+    private void recomputePath(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            recomputeTop(path.get(i));
+        }
+    }
+
+    // Duyệt hậu thứ tự khi dựng lại toàn bộ
+    private void computeTop(Node node) {
+        for (Node child : node.children.values()) {
+            computeTop(child);
+        }
+        recomputeTop(node);
+    }
+
+    private void recomputeTop(Node node) {
+        List<TagSuggestion> candidates = new ArrayList<>(node.terminal);
+        for (Node child : node.children.values()) {
+            candidates.addAll(Arrays.asList(child.top));
+        }
+        candidates.sort(TagSuggestion.BY_POPULARITY);
+        node.top = candidates.subList(0, Math.min(maxSuggestions, candidates.size())).toArray(NONE);
+    }
+
+    private static String key(String name) {
+        return SearchTextAnalyzer.fold(name.trim());
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("tags", byName.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        long count = lookups.get();
+        stats.put("lookups", count);
+        stats.put("avgLookupNanos", count > 0 ? totalLookupNanos.get() / count : 0);
+        stats.put("incrementalUpdates", incrementalUpdates.get());
+        stats.put("lastReloadAgeMs", System.currentTimeMillis() - lastReloadAt);
+        return stats;
+    }
+
+    private static final class Node {
+
+        final Map<Character, Node> children = new HashMap<>(4);
+
+        /** Thẻ có khóa kết thúc tại nút này */
+        final List<TagSuggestion> terminal = new ArrayList<>(1);
+
+        /** Top K của cả cây con (bất biến, thay thế nguyên mảng) */
+        TagSuggestion[] top = NONE;
+    }
+}
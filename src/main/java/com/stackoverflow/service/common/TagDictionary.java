@@ -0,0 +1,198 @@
+package com.stackoverflow.service.common;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stackoverflow.event.TagChangedEvent;
+import com.stackoverflow.repository.TagRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tag Dictionary - Bộ nhớ đệm tên thẻ (đã chuẩn hóa) -> id
+ *
+ * Tên trúng cache không cần truy vấn; các tên trượt được tra bằng một câu IN, tên chưa có thì
+ * tạo bằng "INSERT ... WHERE NOT EXISTS" (hai người đặt câu hỏi cùng lúc với cùng thẻ mới không
+ * làm hỏng giao dịch vì ràng buộc unique) rồi đọc lại id bằng một câu IN nữa.
+ * Chỉ id đã có sẵn trước giao dịch mới được đưa vào cache, để thẻ vừa tạo trong một giao dịch bị
+ * rollback không để lại id không tồn tại. Sửa, gộp, xóa thẻ làm mất hiệu lực qua TagChangedEvent.
+ */
+@Service
+public class TagDictionary {
+
+    private static final String INSERT_TAG_SQL =
+            "INSERT INTO tags (name, question_count, created_at) SELECT ?, 0, ? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM tags WHERE name = ?)";
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${tags.dictionary.max-entries:50000}")
+    private long maxEntries;
+
+    private Cache<String, Long> ids;
+
+    // Metrics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong insertConflicts = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        ids = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    /**
+     * Chuẩn hóa tên thẻ: bỏ khoảng trắng đầu cuối, chữ thường. Trả về null nếu rỗng
+     */
+    public static String normalize(String name) {
+        if (name == null) {
+            return null;
+        }
+        String normalized = name.trim().toLowerCase();
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    /**
+     * Chuẩn hóa và bỏ trùng một tập tên thẻ, giữ thứ tự nhập
+     */
+    public static Set<String> normalizeAll(Collection<String> names) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String name : names) {
+            String normalized = normalize(name);
+            if (normalized != null) {
+                result.add(normalized);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Id của các thẻ theo tên đã chuẩn hóa, tạo thẻ còn thiếu
+     *
+     * @param createdNames nhận tên các thẻ vừa được tạo (có thể null)
+     */
+    @Transactional
+    public Map<String, Long> resolve(Set<String> normalizedNames, Set<String> createdNames) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String name : normalizedNames) {
+            Long id = ids.getIfPresent(name);
+            if (id != null) {
+                result.put(name, id);
+                hits.incrementAndGet();
+            } else {
+                missing.add(name);
+                misses.incrementAndGet();
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        Map<String, Long> found = lookup(missing);
+        ids.putAll(found);
+        result.putAll(found);
+        missing.removeAll(found.keySet());
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (String name : missing) {
+            if (insert(name, now) && createdNames != null) {
+                createdNames.add(name);
+            }
+        }
+        // Không đưa vào cache: giao dịch hiện tại có thể còn rollback
+        result.putAll(lookup(missing));
+        return result;
+    }
+
+    /**
+     * Bỏ các tên khỏi cache (ví dụ khi id trong cache không còn tồn tại)
+     */
+    public void invalidate(Collection<String> normalizedNames) {
+        ids.invalidateAll(normalizedNames);
+        invalidations.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTagChanged(TagChangedEvent event) {
+        if (!event.getRemoved().isEmpty()) {
+            Set<String> removed = new HashSet<>();
+            event.getRemoved().forEach(name -> {
+                String normalized = normalize(name);
+                if (normalized != null) {
+                    removed.add(normalized);
+                }
+            });
+            invalidate(removed);
+        }
+    }
+
+    private Map<String, Long> lookup(Collection<String> names) {
+        Map<String, Long> found = new LinkedHashMap<>();
+        List<Object[]> rows = tagRepository.findIdsByNames(names);
+        for (Object[] row : rows) {
+            String normalized = normalize((String) row[0]);
+            if (normalized != null) {
+                found.put(normalized, (Long) row[1]);
+            }
+        }
+        return found;
+    }
+
+    private boolean insert(String name, Timestamp now) {
+        try {
+            if (jdbcTemplate.update(INSERT_TAG_SQL, name, now, name) > 0) {
+                created.incrementAndGet();
+                return true;
+            }
+        } catch (DuplicateKeyException e) {
+            // Giao dịch khác vừa tạo cùng thẻ: ràng buộc unique chặn lần chèn thứ hai
+        }
+        insertConflicts.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        stats.put("entries", ids.estimatedSize());
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("hitRatio", total > 0 ? (double) hitCount / total : 0.0);
+        stats.put("created", created.get());
+        stats.put("insertConflicts", insertConflicts.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+}
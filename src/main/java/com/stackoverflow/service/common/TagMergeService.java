@@ -0,0 +1,258 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.entity.Tag;
+import com.stackoverflow.entity.TagMergeJob;
+import com.stackoverflow.event.TagChangedEvent;
+import com.stackoverflow.repository.TagMergeJobRepository;
+import com.stackoverflow.repository.TagRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tag Merge Service - Gộp thẻ theo tập hợp, chạy nền theo từng đoạn question_id
+ *
+ * Đoạn được chọn theo keyset: chunk-size question_id kế tiếp của thẻ nguồn sau con trỏ, nên mỗi đoạn
+ * chạm đúng tối đa chunk-size dòng dù id thưa hay dày. Mặc định 1000, dưới ngưỡng ~5000 khóa mà SQL Server
+ * leo thang lên khóa bảng. Mỗi đoạn [cursor + 1, id cuối của đoạn] là một giao dịch ngắn gồm:
+ * INSERT dòng question_tags của thẻ đích cho câu hỏi chưa có (NOT EXISTS để bỏ trùng),
+ * DELETE dòng của thẻ nguồn trong đoạn, cập nhật bộ đếm tương đối và con trỏ của TagMergeJob.
+ * Vì con trỏ được lưu cùng giao dịch với dữ liệu, khởi động lại chỉ cần chạy tiếp từ con trỏ.
+ * Kết thúc: dọn dòng còn sót (câu hỏi gắn thẻ nguồn trong lúc gộp), đếm lại thẻ đích và xóa thẻ nguồn.
+ */
+@Service
+public class TagMergeService {
+
+    private static final Logger log = LoggerFactory.getLogger(TagMergeService.class);
+
+    private static final String MOVE_SQL =
+            "INSERT INTO question_tags (question_id, tag_id) " +
+            "SELECT qt.question_id, ? FROM question_tags qt " +
+            "WHERE qt.tag_id = ? AND qt.question_id BETWEEN ? AND ? " +
+            "AND NOT EXISTS (SELECT 1 FROM question_tags x WHERE x.question_id = qt.question_id AND x.tag_id = ?)";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM question_tags WHERE tag_id = ? AND question_id BETWEEN ? AND ?";
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private TagMergeJobRepository jobRepository;
+
+    @Autowired
+    private CounterService counterService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${tags.merge.chunk-size:1000}")
+    private int chunkSize;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tag-merge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Tạo tiến trình gộp sourceTag vào targetTag và chạy nền
+     */
+    public TagMergeJob startMerge(Long sourceTagId, Long targetTagId) {
+        if (sourceTagId.equals(targetTagId)) {
+            throw new RuntimeException("Không thể gộp thẻ với chính nó");
+        }
+        TagMergeJob job = transactionTemplate.execute(status -> {
+            Tag sourceTag = tagRepository.findById(sourceTagId)
+                    .orElseThrow(() -> new RuntimeException("Source tag not found"));
+            Tag targetTag = tagRepository.findById(targetTagId)
+                    .orElseThrow(() -> new RuntimeException("Target tag not found"));
+            if (jobRepository.existsActiveForTags(List.of(sourceTagId, targetTagId))) {
+                throw new RuntimeException("Thẻ đang trong một tiến trình gộp khác");
+            }
+
+            Map<String, Object> bounds = jdbcTemplate.queryForMap(
+                    "SELECT MIN(question_id) AS lo, MAX(question_id) AS hi FROM question_tags WHERE tag_id = ?", sourceTagId);
+            long lo = bounds.get("lo") != null ? ((Number) bounds.get("lo")).longValue() : 0L;
+            long hi = bounds.get("hi") != null ? ((Number) bounds.get("hi")).longValue() : -1L;
+
+            TagMergeJob newJob = new TagMergeJob();
+            newJob.setSourceTagId(sourceTagId);
+            newJob.setTargetTagId(targetTagId);
+            newJob.setSourceTagName(sourceTag.getName());
+            newJob.setTargetTagName(targetTag.getName());
+            newJob.setStartQuestionId(lo);
+            newJob.setEndQuestionId(hi);
+            newJob.setCursorQuestionId(lo - 1);
+            return jobRepository.save(newJob);
+        });
+        submit(job.getId());
+        return job;
+    }
+
+    /**
+     * Chạy tiếp tiến trình bị lỗi
+     */
+    public void resume(Long jobId) {
+        TagMergeJob job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Merge job not found"));
+        if (TagMergeJob.COMPLETED.equals(job.getStatus())) {
+            throw new RuntimeException("Tiến trình gộp đã hoàn tất");
+        }
+        submit(jobId);
+    }
+
+    public List<TagMergeJob> getRecentJobs() {
+        return jobRepository.findTop10ByOrderByCreatedAtDesc();
+    }
+
+    public TagMergeJob getJob(Long jobId) {
+        return jobRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Merge job not found"));
+    }
+
+    /**
+     * Chạy tiếp các tiến trình đang dở khi node bị tắt giữa chừng. Mọi node đều chạy lúc khởi động nên phải nhận
+     * tiến trình trước: chỉ node cập nhật được dòng job (status và updated_at chưa đổi) mới chạy tiếp
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        for (TagMergeJob job : jobRepository.findByStatusIn(Set.of(TagMergeJob.PENDING, TagMergeJob.RUNNING))) {
+            if (!claim(job)) {
+                continue;
+            }
+            log.info("Resuming tag merge job {} ({} -> {}) from question {}",
+                    job.getId(), job.getSourceTagName(), job.getTargetTagName(), job.getCursorQuestionId());
+            submit(job.getId());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Đoạn đang chạy bị hủy sẽ rollback, con trỏ đã lưu vẫn đúng
+        executor.shutdownNow();
+    }
+
+    private boolean claim(TagMergeJob job) {
+        LocalDateTime seen = job.getUpdatedAt();
+        return jdbcTemplate.update(
+                "UPDATE tag_merge_jobs SET status = ?, updated_at = ? WHERE id = ? AND status = ?"
+                        + (seen != null ? " AND updated_at = ?" : " AND updated_at IS NULL"),
+                seen != null
+                        ? new Object[]{TagMergeJob.RUNNING, LocalDateTime.now(), job.getId(), job.getStatus(), seen}
+                        : new Object[]{TagMergeJob.RUNNING, LocalDateTime.now(), job.getId(), job.getStatus()}) == 1;
+    }
+
+    private void submit(Long jobId) {
+        executor.submit(() -> run(jobId));
+    }
+
+    private void run(Long jobId) {
+        TagMergeJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || TagMergeJob.COMPLETED.equals(job.getStatus())) {
+            return;
+        }
+        try {
+            job.setStatus(TagMergeJob.RUNNING);
+            job.setError(null);
+            job = jobRepository.save(job);
+
+            for (List<Long> ids = nextQuestionIds(job);
+                 !ids.isEmpty() && !Thread.currentThread().isInterrupted();
+                 ids = nextQuestionIds(job)) {
+                job = processChunk(job, ids.get(ids.size() - 1));
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            complete(job);
+            log.info("Tag merge job {} completed: {} moved, {} deduplicated", jobId, job.getMovedRows(), job.getDedupedRows());
+        } catch (RuntimeException e) {
+            log.warn("Tag merge job {} failed at question {}: {}", jobId, job.getCursorQuestionId(), e.getMessage());
+            transactionTemplate.executeWithoutResult(status -> jobRepository.findById(jobId).ifPresent(failed -> {
+                failed.setStatus(TagMergeJob.FAILED);
+                String message = String.valueOf(e.getMessage());
+                failed.setError(message.length() > 1000 ? message.substring(0, 1000) : message);
+                jobRepository.save(failed);
+            }));
+        }
+    }
+
+    /**
+     * Tối đa chunk-size question_id kế tiếp của thẻ nguồn sau con trỏ (keyset)
+     */
+    private List<Long> nextQuestionIds(TagMergeJob job) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT question_id FROM question_tags WHERE tag_id = ? AND question_id > ? ORDER BY question_id");
+            statement.setLong(1, job.getSourceTagId());
+            statement.setLong(2, job.getCursorQuestionId());
+            statement.setMaxRows(chunkSize);
+            return statement;
+        }, (rs, rowNum) -> rs.getLong(1));
+    }
+
+    private TagMergeJob processChunk(TagMergeJob job, long to) {
+        return transactionTemplate.execute(status -> {
+            Long sourceId = job.getSourceTagId();
+            Long targetId = job.getTargetTagId();
+            long from = job.getCursorQuestionId() + 1;
+
+            int moved = jdbcTemplate.update(MOVE_SQL, targetId, sourceId, from, to, targetId);
+            int deleted = jdbcTemplate.update(DELETE_SQL, sourceId, from, to);
+            counterService.adjustTagQuestionCounts(List.of(targetId), moved);
+            counterService.adjustTagQuestionCounts(List.of(sourceId), -deleted);
+
+            job.setCursorQuestionId(to);
+            // Câu hỏi mới gắn thẻ nguồn trong lúc gộp có thể nằm sau mốc ban đầu
+            job.setEndQuestionId(Math.max(job.getEndQuestionId(), to));
+            job.setMovedRows(job.getMovedRows() + moved);
+            job.setDedupedRows(job.getDedupedRows() + Math.max(0, deleted - moved));
+            return jobRepository.save(job);
+        });
+    }
+
+    private void complete(TagMergeJob job) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Long sourceId = job.getSourceTagId();
+            Long targetId = job.getTargetTagId();
+            // Dòng gắn thẻ nguồn được thêm trong lúc gộp, kể cả sau lần đọc đoạn cuối: không giới hạn trên
+            int moved = jdbcTemplate.update(MOVE_SQL, targetId, sourceId, 0L, Long.MAX_VALUE, targetId);
+            int deleted = jdbcTemplate.update(DELETE_SQL, sourceId, 0L, Long.MAX_VALUE);
+
+            int targetCount = counterService.recountTagQuestionCount(targetId);
+            jdbcTemplate.update("DELETE FROM tags WHERE id = ?", sourceId);
+
+            job.setMovedRows(job.getMovedRows() + moved);
+            job.setDedupedRows(job.getDedupedRows() + Math.max(0, deleted - moved));
+            job.setStatus(TagMergeJob.COMPLETED);
+            job.setCompletedAt(LocalDateTime.now());
+            jobRepository.save(job);
+
+            eventPublisher.publishEvent(new TagChangedEvent(
+                    Map.of(job.getTargetTagName(), targetCount), Set.of(job.getSourceTagName())));
+        });
+    }
+}
@@ -1,14 +1,23 @@
 package com.stackoverflow.service.common;
 
 import com.stackoverflow.entity.Tag;
+import com.stackoverflow.event.TagChangedEvent;
 import com.stackoverflow.repository.TagRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -19,9 +28,23 @@ public class TagService {
     @Autowired
     private TagRepository tagRepository;
 
+    @Autowired
+    private TagDictionary tagDictionary;
+
+    @Autowired
+    private TagAutocompleteService tagAutocompleteService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     public Tag createTag(Tag tag) {
         tag.setQuestionCount(0);
-        return tagRepository.save(tag);
+        Tag saved = tagRepository.save(tag);
+        eventPublisher.publishEvent(TagChangedEvent.upserted(Map.of(saved.getName(), 0)));
+        return saved;
     }
 
     public Optional<Tag> findById(Long id) {
@@ -44,36 +67,86 @@ public class TagService {
         return tagRepository.findAllByOrderByNameAsc(pageable);
     }
 
+    /**
+     * Tìm thẻ có tên chứa chuỗi tìm kiếm, nhiều câu hỏi nhất trước. Lọc trên từ điển thẻ trong bộ nhớ
+     * (TagAutocompleteService), DB chỉ nạp các thẻ của trang hiện tại; dùng LIKE khi từ điển chưa nạp xong.
+     */
+    @Transactional(readOnly = true)
     public Page<Tag> searchTags(String search, Pageable pageable) {
-        return tagRepository.searchTags(search, pageable);
+        Optional<List<String>> matches = tagAutocompleteService.search(search);
+        if (matches.isEmpty()) {
+            return tagRepository.searchTags(search, pageable);
+        }
+        List<String> names = matches.get();
+        int from = (int) Math.min(pageable.getOffset(), names.size());
+        int to = Math.min(from + pageable.getPageSize(), names.size());
+        List<String> pageNames = names.subList(from, to);
+        List<Tag> tags = pageNames.isEmpty() ? List.of() : tagRepository.findByNameIn(pageNames);
+        Map<String, Integer> rank = new HashMap<>();
+        for (int i = 0; i < pageNames.size(); i++) {
+            rank.put(pageNames.get(i), i);
+        }
+        List<Tag> ordered = tags.stream()
+                .sorted(Comparator.comparingInt(tag -> rank.getOrDefault(tag.getName(), Integer.MAX_VALUE)))
+                .toList();
+        return new PageImpl<>(ordered, pageable, names.size());
     }
 
-    public Set<Tag> getOrCreateTags(Set<String> tagNames) {
-        Set<Tag> tags = new HashSet<>();
-        for (String name : tagNames) {
-            // Normalize tag name by trimming and converting to lowercase
-            String normalizedName = name.trim().toLowerCase();
-            if (!normalizedName.isEmpty()) {
-                Tag tag = tagRepository.findByName(normalizedName)
-                    .orElseGet(() -> {
-                        Tag newTag = new Tag();
-                        newTag.setName(normalizedName);
-                        newTag.setQuestionCount(0);
-                        return tagRepository.save(newTag);
-                    });
-                tags.add(tag);
-            }
+    /**
+     * Lấy (tạo nếu chưa có) các thẻ theo tên: tên được chuẩn hóa và tra qua TagDictionary,
+     * sau đó nạp entity bằng 1 truy vấn theo id
+     */
+    public Set<Tag> getOrCreateTags(Collection<String> tagNames) {
+        Set<String> normalized = TagDictionary.normalizeAll(tagNames);
+        if (normalized.isEmpty()) {
+            return new HashSet<>();
+        }
+        Set<String> createdNames = new HashSet<>();
+        Map<String, Long> ids = tagDictionary.resolve(normalized, createdNames);
+
+        Set<Tag> tags = new HashSet<>(tagRepository.findAllById(ids.values()));
+        if (tags.size() < ids.size()) {
+            // Id trong cache đã bị xóa ở nơi khác: bỏ khỏi cache rồi tra lại một lần
+            Set<Long> loaded = new HashSet<>();
+            tags.forEach(tag -> loaded.add(tag.getId()));
+            Set<String> stale = new HashSet<>();
+            ids.forEach((name, id) -> {
+                if (!loaded.contains(id)) {
+                    stale.add(name);
+                }
+            });
+            tagDictionary.invalidate(stale);
+            Map<String, Long> retried = tagDictionary.resolve(stale, createdNames);
+            tags.addAll(tagRepository.findAllById(retried.values()));
+        }
+
+        if (!createdNames.isEmpty()) {
+            Map<String, Integer> created = new HashMap<>();
+            createdNames.forEach(name -> created.put(name, 0));
+            eventPublisher.publishEvent(TagChangedEvent.upserted(created));
         }
         return tags;
     }
 
     public Tag updateTag(Tag tag) {
-        return tagRepository.save(tag);
+        return save(tag);
     }
 
     @Transactional
     public Tag save(Tag tag) {
-        return tagRepository.save(tag);
+        String previousName = tag.getId() != null ? storedName(tag.getId()) : null;
+        Tag saved = tagRepository.save(tag);
+        eventPublisher.publishEvent(TagChangedEvent.updated(previousName, saved.getName(),
+                saved.getQuestionCount() != null ? saved.getQuestionCount() : 0));
+        return saved;
+    }
+
+    /**
+     * Tên đang lưu trong DB. Đọc bằng JDBC để không kích hoạt flush entity đang sửa (đã mang tên mới)
+     */
+    private String storedName(Long tagId) {
+        List<String> names = jdbcTemplate.queryForList("SELECT name FROM tags WHERE id = ?", String.class, tagId);
+        return names.isEmpty() ? null : names.get(0);
     }
 
     /**
@@ -89,34 +162,6 @@ public class TagService {
         }
         
         tagRepository.deleteById(tagId);
-    }
-
-    /**
-     * Gộp 2 thẻ: chuyển tất cả câu hỏi từ sourceTag sang targetTag
-     */
-    @Transactional
-    public void mergeTags(Long sourceTagId, Long targetTagId) {
-        if (sourceTagId.equals(targetTagId)) {
-            throw new RuntimeException("Không thể gộp thẻ với chính nó");
-        }
-        
-        Tag sourceTag = tagRepository.findById(sourceTagId)
-                .orElseThrow(() -> new RuntimeException("Source tag not found"));
-        Tag targetTag = tagRepository.findById(targetTagId)
-                .orElseThrow(() -> new RuntimeException("Target tag not found"));
-        
-        // Di chuyển tất cả questions từ source sang target
-        sourceTag.getQuestions().forEach(question -> {
-            question.getTags().remove(sourceTag);
-            question.getTags().add(targetTag);
-        });
-        
-        // Cập nhật question count
-        targetTag.setQuestionCount(targetTag.getQuestionCount() + sourceTag.getQuestionCount());
-        sourceTag.setQuestionCount(0);
-        
-        // Xóa source tag
-        tagRepository.delete(sourceTag);
-        tagRepository.save(targetTag);
+        eventPublisher.publishEvent(TagChangedEvent.removed(tag.getName()));
     }
 }
\ No newline at end of file
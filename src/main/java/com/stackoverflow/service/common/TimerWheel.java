@@ -0,0 +1,75 @@
+package com.stackoverflow.service.common;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Bánh xe hẹn giờ (hashed timer wheel) cho các khóa có hạn
+ *
+ * Mỗi ô ứng với một nhịp tickMs; khóa được đặt vào ô của nhịp hết hạn nên advance() chỉ duyệt các ô
+ * đã qua thay vì toàn bộ khóa. Hạn xa hơn một vòng vẫn nằm trong ô và được bỏ qua cho tới vòng đúng.
+ * Mỗi khóa chỉ nằm trong một ô: gia hạn không dời khóa, người dùng kiểm tra lại khi khóa tới hạn
+ * và gọi schedule lần nữa nếu cần (gia hạn lười), nên mỗi lần gia hạn là O(1) và không tạo rác.
+ */
+public class TimerWheel<K> {
+
+    private final long tickMs;
+    private final List<Set<K>> slots;
+    private final ConcurrentHashMap<K, Long> deadlines = new ConcurrentHashMap<>();
+
+    private volatile long lastTick;
+
+    public TimerWheel(long tickMs, int slotCount, long nowMs) {
+        this.tickMs = tickMs;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(ConcurrentHashMap.newKeySet());
+        }
+        this.lastTick = nowMs / tickMs;
+    }
+
+    /**
+     * Hẹn khóa tới hạn lúc deadlineMs; không làm gì nếu khóa đã được hẹn
+     */
+    public void schedule(K key, long deadlineMs) {
+        if (deadlines.putIfAbsent(key, deadlineMs) == null) {
+            slots.get(slotOf(deadlineMs)).add(key);
+        }
+    }
+
+    /**
+     * Duyệt các ô từ lần gọi trước tới nowMs, gọi onDue cho từng khóa đã tới hạn (khóa được bỏ khỏi bánh xe trước)
+     */
+    public synchronized void advance(long nowMs, Consumer<K> onDue) {
+        long nowTick = nowMs / tickMs;
+        // Tối đa một vòng: các ô còn lại đều đã được duyệt
+        long from = Math.max(lastTick + 1, nowTick - slots.size() + 1);
+        for (long tick = from; tick <= nowTick; tick++) {
+            Set<K> slot = slots.get((int) (tick % slots.size()));
+            for (Iterator<K> iterator = slot.iterator(); iterator.hasNext(); ) {
+                K key = iterator.next();
+                Long deadline = deadlines.get(key);
+                if (deadline == null || deadline <= nowMs) {
+                    iterator.remove();
+                    deadlines.remove(key);
+                    onDue.accept(key);
+                }
+            }
+        }
+        lastTick = nowTick;
+    }
+
+    public int size() {
+        return deadlines.size();
+    }
+
+    private int slotOf(long deadlineMs) {
+        // Hạn đã qua thì đặt vào nhịp kế tiếp
+        long tick = Math.max(deadlineMs / tickMs, lastTick + 1);
+        return (int) (tick % slots.size());
+    }
+}
@@ -0,0 +1,133 @@
+package com.stackoverflow.service.common;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stackoverflow.event.UnreadCountChangedEvent;
+import com.stackoverflow.repository.MessageRepository;
+import com.stackoverflow.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Unread Counter Service - Số thông báo/tin nhắn chưa đọc cho badge ở header
+ *
+ * Đếm bằng truy vấn ở lần đọc đầu tiên rồi giữ trong cache theo username; các thao tác gửi, đọc,
+ * xóa phát UnreadCountChangedEvent và cache được cộng delta sau khi giao dịch commit, nên mỗi lần
+ * xem trang không tốn truy vấn nào. Thông báo chung làm mất hiệu lực bộ đếm thông báo của mọi người.
+ * Một lần đếm lại chạy song song với delta có thể lệch 1; thời hạn của cache giới hạn độ lệch đó.
+ */
+@Service
+public class UnreadCounterService {
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${notifications.unread-cache.max-entries:100000}")
+    private long maxEntries;
+
+    @Value("${notifications.unread-cache.ttl-ms:300000}")
+    private long ttlMs;
+
+    private Cache<String, Long> notificationCounts;
+    private Cache<String, Long> messageCounts;
+
+    // Metrics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong deltas = new AtomicLong();
+    private final AtomicLong recounts = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        notificationCounts = newCache();
+        messageCounts = newCache();
+    }
+
+    private Cache<String, Long> newCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+    }
+
+    public long getUnreadNotifications(String username) {
+        return get(notificationCounts, username, this::countNotifications);
+    }
+
+    public long getUnreadMessages(String username) {
+        return get(messageCounts, username, this::countMessages);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUnreadCountChanged(UnreadCountChangedEvent event) {
+        Cache<String, Long> cache = event.getCounter() == UnreadCountChangedEvent.Counter.NOTIFICATIONS
+                ? notificationCounts : messageCounts;
+        if (event.getUsername() == null) {
+            cache.invalidateAll();
+            recounts.incrementAndGet();
+        } else if (event.isRecount()) {
+            cache.invalidate(event.getUsername());
+            recounts.incrementAndGet();
+        } else if (event.getDelta() != 0) {
+            // Chưa có trong cache thì lần đọc sau sẽ đếm lại, không cần delta
+            cache.asMap().computeIfPresent(event.getUsername(), (username, count) -> Math.max(0, count + event.getDelta()));
+            deltas.incrementAndGet();
+        }
+    }
+
+    private long get(Cache<String, Long> cache, String username, Function<String, Long> loader) {
+        Long cached = cache.getIfPresent(username);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        return cache.get(username, key -> {
+            loads.incrementAndGet();
+            return loader.apply(key);
+        });
+    }
+
+    private Long countNotifications(String username) {
+        return userRepository.findByUsername(username)
+                .map(notificationService::countUnread)
+                .orElse(0L);
+    }
+
+    private Long countMessages(String username) {
+        return userRepository.findByUsername(username)
+                .map(messageRepository::countByReceiverAndIsReadFalse)
+                .orElse(0L);
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long total = hitCount + loads.get();
+        stats.put("notificationEntries", notificationCounts.estimatedSize());
+        stats.put("messageEntries", messageCounts.estimatedSize());
+        stats.put("hits", hitCount);
+        stats.put("loads", loads.get());
+        stats.put("hitRatio", total > 0 ? (double) hitCount / total : 0.0);
+        stats.put("deltas", deltas.get());
+        stats.put("recounts", recounts.get());
+        return stats;
+    }
+}
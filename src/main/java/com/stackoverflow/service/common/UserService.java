@@ -9,6 +9,9 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -51,6 +54,24 @@ public class UserService {
         return userRepository.findByUsername(username);
     }
 
+    public Optional<Long> findIdByUsername(String username) {
+        return userRepository.findIdByUsername(username);
+    }
+
+    /**
+     * Điểm uy tín hiện tại theo id user (1 truy vấn)
+     */
+    public Map<Long, Integer> getReputations(Collection<Long> userIds) {
+        Map<Long, Integer> reputations = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return reputations;
+        }
+        for (Object[] row : userRepository.findReputations(userIds)) {
+            reputations.put((Long) row[0], (Integer) row[1]);
+        }
+        return reputations;
+    }
+
     public Page<User> getAllUsers(Pageable pageable) {
         return userRepository.findAll(pageable);
     }
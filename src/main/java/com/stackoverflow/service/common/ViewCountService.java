@@ -0,0 +1,90 @@
+package com.stackoverflow.service.common;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+
+/**
+ * View Count Service - Gom lượt xem câu hỏi trong bộ nhớ và ghi xuống DB theo lô
+ *
+ * Mỗi lượt xem chỉ cộng delta theo questionId trong CounterBuffer, không đụng tới DB.
+ * Định kỳ các delta được ghi bằng UPDATE questions SET views = views + ? theo batch,
+ * nên không còn read-modify-write trên cả dòng questions.
+ */
+@Service
+public class ViewCountService {
+
+    private static final Logger log = LoggerFactory.getLogger(ViewCountService.class);
+
+    private static final String FLUSH_SQL = "UPDATE questions SET views = views + ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private CounterBuffer views;
+
+    @PostConstruct
+    public void init() {
+        views = new CounterBuffer("question view", FLUSH_SQL, jdbcTemplate, transactionTemplate);
+    }
+
+    /**
+     * Ghi nhận 1 lượt xem (không truy vấn DB)
+     */
+    public void recordView(Long questionId) {
+        views.add(questionId, 1);
+    }
+
+    /**
+     * Số lượt xem chưa được ghi xuống DB của 1 câu hỏi
+     */
+    public long getPendingViews(Long questionId) {
+        return views.getPending(questionId);
+    }
+
+    /**
+     * Lượt xem hiển thị = giá trị đã lưu + delta đang chờ
+     */
+    public long getViewCount(Long questionId, Integer persistedViews) {
+        long persisted = persistedViews != null ? persistedViews : 0;
+        return persisted + getPendingViews(questionId);
+    }
+
+    @Scheduled(fixedDelayString = "${views.flush-interval-ms:5000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        int flushed = flush();
+        log.info("Flushed {} pending question view counters on shutdown", flushed);
+    }
+
+    /**
+     * Ghi toàn bộ delta đang chờ xuống DB bằng 1 JDBC batch
+     *
+     * @return số câu hỏi được cập nhật
+     */
+    public int flush() {
+        return views.flush().size();
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public Map<String, Object> getStats() {
+        return views.getStats();
+    }
+}
@@ -0,0 +1,423 @@
+package com.stackoverflow.service.common;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stackoverflow.event.QuestionActivityEvent;
+import com.stackoverflow.event.QuestionContentChangedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vote Service - Lưu trữ lượt vote của người dùng
+ *
+ * Lượt vote là 1 dòng trong user_votes_questions / user_votes_answers (khóa chính user_id + entity id),
+ * ghi/xóa trực tiếp bằng SQL nên không nạp collection votedQuestions/votedAnswers của User.
+ * Chống vote trùng dựa trên khóa chính và được kiểm tra đồng bộ trong request.
+ *
+ * Số vote không được cập nhật ngay: delta ±1 được gộp theo câu hỏi/câu trả lời trong CounterBuffer và
+ * ghi xuống bằng một batch votes = votes + ? mỗi votes.flush-interval-ms, nên hàng trăm vote cùng lúc
+ * vào một câu hỏi chỉ thành một lệnh UPDATE. Số vote trả về = giá trị đã lưu + delta đang chờ.
+ *
+ * Mỗi người dùng có một Bloom filter (cache trên từng node) cho id đã vote. Filter chỉ là gợi ý: vote ở node
+ * khác hoặc filter dựng lại đúng lúc commit có thể thiếu trong filter, nên bỏ vote luôn chạy DELETE theo khóa
+ * chính và kiểm tra trạng thái luôn hỏi chỉ mục khóa chính; vote tìm thấy mà filter không có được bổ sung vào filter.
+ * Bloom filter và delta vote chỉ được cập nhật sau khi transaction commit, nên vote bị rollback không để lại
+ * bit hay delta nào; số vote trả về cộng sẵn delta của chính request này.
+ */
+@Service
+@Transactional
+public class VoteService {
+
+    private static final String INSERT_QUESTION_VOTE =
+            "INSERT INTO user_votes_questions (user_id, question_id) SELECT ?, ? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM user_votes_questions WHERE user_id = ? AND question_id = ?)";
+    private static final String DELETE_QUESTION_VOTE =
+            "DELETE FROM user_votes_questions WHERE user_id = ? AND question_id = ?";
+    private static final String INSERT_ANSWER_VOTE =
+            "INSERT INTO user_votes_answers (user_id, answer_id) SELECT ?, ? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM user_votes_answers WHERE user_id = ? AND answer_id = ?)";
+    private static final String DELETE_ANSWER_VOTE =
+            "DELETE FROM user_votes_answers WHERE user_id = ? AND answer_id = ?";
+
+    private static final int IN_CHUNK = 1000;
+
+    private static final Logger log = LoggerFactory.getLogger(VoteService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${votes.bloom.max-users:10000}")
+    private long maxUsers;
+
+    @Value("${votes.bloom.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private Cache<Long, UserVoteFilters> filters;
+
+    private CounterBuffer questionVotes;
+
+    private CounterBuffer answerVotes;
+
+    // Metrics
+    private final AtomicLong bloomNegatives = new AtomicLong();
+    private final AtomicLong bloomPositives = new AtomicLong();
+    private final AtomicLong bloomStaleMisses = new AtomicLong();
+    private final AtomicLong duplicateVotes = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // Hết hạn sau một thời gian để tự sửa nếu filter được dựng lại đúng lúc một vote chưa commit
+        filters = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(Duration.ofMinutes(30))
+                .build();
+        questionVotes = new CounterBuffer("question vote", "UPDATE questions SET votes = votes + ? WHERE id = ?", jdbcTemplate, transactionTemplate);
+        answerVotes = new CounterBuffer("answer vote", "UPDATE answers SET votes = votes + ? WHERE id = ?", jdbcTemplate, transactionTemplate);
+    }
+
+    // ================== QUESTION ==================
+
+    /**
+     * Vote câu hỏi (mỗi người 1 lần)
+     *
+     * @return số vote hiện tại
+     */
+    public int upvoteQuestion(Long questionId, Long userId) {
+        if (insertVote(INSERT_QUESTION_VOTE, userId, questionId, "Question not found")) {
+            afterCommit(() -> {
+                remember(userId, true, questionId);
+                questionVotes.add(questionId, 1);
+            });
+            return readQuestionVotes(questionId) + 1;
+        }
+        return readQuestionVotes(questionId);
+    }
+
+    /**
+     * Bỏ vote câu hỏi
+     *
+     * @return số vote hiện tại
+     */
+    public int retractQuestionVote(Long questionId, Long userId) {
+        if (jdbcTemplate.update(DELETE_QUESTION_VOTE, userId, questionId) > 0) {
+            afterCommit(() -> questionVotes.add(questionId, -1));
+            return readQuestionVotes(questionId) - 1;
+        }
+        return readQuestionVotes(questionId);
+    }
+
+    @Transactional(readOnly = true)
+    public boolean hasVotedQuestion(Long userId, Long questionId) {
+        boolean filtered = mightHaveVoted(filtersFor(userId).questions, questionId);
+        boolean voted = !jdbcTemplate.queryForList(
+                "SELECT 1 FROM user_votes_questions WHERE user_id = ? AND question_id = ?",
+                Integer.class, userId, questionId).isEmpty();
+        if (voted && !filtered) {
+            bloomStaleMisses.incrementAndGet();
+            remember(userId, true, questionId);
+        }
+        return voted;
+    }
+
+    // ================== ANSWER ==================
+
+    /**
+     * Vote câu trả lời (mỗi người 1 lần)
+     *
+     * @return số vote hiện tại
+     */
+    public int upvoteAnswer(Long answerId, Long userId) {
+        if (insertVote(INSERT_ANSWER_VOTE, userId, answerId, "Answer not found")) {
+            afterCommit(() -> {
+                remember(userId, false, answerId);
+                answerVotes.add(answerId, 1);
+            });
+            return readAnswerVotes(answerId) + 1;
+        }
+        return readAnswerVotes(answerId);
+    }
+
+    /**
+     * Bỏ vote câu trả lời
+     *
+     * @return số vote hiện tại
+     */
+    public int retractAnswerVote(Long answerId, Long userId) {
+        if (jdbcTemplate.update(DELETE_ANSWER_VOTE, userId, answerId) > 0) {
+            afterCommit(() -> answerVotes.add(answerId, -1));
+            return readAnswerVotes(answerId) - 1;
+        }
+        return readAnswerVotes(answerId);
+    }
+
+    /**
+     * Trong các câu trả lời đã cho, người dùng đã vote những câu nào (một truy vấn IN theo khóa chính mỗi
+     * IN_CHUNK id; Bloom filter không được dùng để loại id vì có thể thiếu vote từ node khác)
+     */
+    @Transactional(readOnly = true)
+    public Set<Long> getVotedAnswerIds(Long userId, Collection<Long> answerIds) {
+        if (answerIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        VoteBloomFilter filter = filtersFor(userId).answers;
+        Set<Long> voted = new HashSet<>();
+        for (List<Long> chunk : chunks(new HashSet<>(answerIds))) {
+            List<Object> args = new ArrayList<>(chunk.size() + 1);
+            args.add(userId);
+            args.addAll(chunk);
+            voted.addAll(jdbcTemplate.queryForList(
+                    "SELECT answer_id FROM user_votes_answers WHERE user_id = ? AND answer_id IN (" + placeholders(chunk) + ")",
+                    Long.class, args.toArray()));
+        }
+        for (Long answerId : voted) {
+            if (!mightHaveVoted(filter, answerId)) {
+                bloomStaleMisses.incrementAndGet();
+                remember(userId, false, answerId);
+            }
+        }
+        return voted;
+    }
+
+    // ================== INTERNAL ==================
+
+    /**
+     * @return true nếu đã thêm dòng vote mới, false nếu đã vote trước đó
+     */
+    private boolean insertVote(String sql, Long userId, Long entityId, String notFoundMessage) {
+        try {
+            if (jdbcTemplate.update(sql, userId, entityId, userId, entityId) > 0) {
+                return true;
+            }
+        } catch (DuplicateKeyException e) {
+            // Hai request vote đồng thời: khóa chính chặn request thứ hai
+        } catch (DataIntegrityViolationException e) {
+            throw new RuntimeException(notFoundMessage);
+        }
+        duplicateVotes.incrementAndGet();
+        return false;
+    }
+
+    private boolean mightHaveVoted(VoteBloomFilter filter, Long id) {
+        if (filter.mightContain(id)) {
+            bloomPositives.incrementAndGet();
+            return true;
+        }
+        bloomNegatives.incrementAndGet();
+        return false;
+    }
+
+    // ================== FLUSH ==================
+
+    /**
+     * Số vote hiển thị = giá trị đã lưu + delta đang chờ
+     */
+    public int getQuestionVotes(Long questionId, Integer persistedVotes) {
+        return (persistedVotes != null ? persistedVotes : 0) + (int) questionVotes.getPending(questionId);
+    }
+
+    /**
+     * Delta vote đang chờ của các câu trả lời (chỉ những id có delta khác 0)
+     */
+    public Map<Long, Long> getPendingAnswerVotes(Collection<Long> answerIds) {
+        Map<Long, Long> result = new HashMap<>();
+        for (Long answerId : answerIds) {
+            long pending = answerVotes.getPending(answerId);
+            if (pending != 0) {
+                result.put(answerId, pending);
+            }
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${votes.flush-interval-ms:1000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void flush() {
+        Map<Long, Long> questions = questionVotes.flush();
+        Map<Long, Long> answers = answerVotes.flush();
+        try {
+            publishQuestionChanges(questions.keySet());
+            publishAnswerChanges(answers.keySet());
+        } catch (RuntimeException e) {
+            // Số vote đã được ghi; chỉ cache/chỉ mục bị trễ tới lần thay đổi sau
+            log.warn("Failed to publish vote changes: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        questionVotes.flush();
+        answerVotes.flush();
+    }
+
+    /**
+     * Sau khi ghi: làm mới cache trang câu hỏi và chỉ mục hot (1 truy vấn IN cho cả lô)
+     */
+    private void publishQuestionChanges(Collection<Long> questionIds) {
+        for (List<Long> chunk : chunks(questionIds)) {
+            jdbcTemplate.query(
+                    "SELECT id, created_at, is_approved, votes, answer_count, views FROM questions WHERE id IN (" + placeholders(chunk) + ")",
+                    rs -> {
+                        Long id = rs.getLong(1);
+                        Timestamp createdAt = rs.getTimestamp(2);
+                        eventPublisher.publishEvent(new QuestionContentChangedEvent(id));
+                        eventPublisher.publishEvent(new QuestionActivityEvent(id,
+                                createdAt != null ? createdAt.toLocalDateTime() : null,
+                                rs.getBoolean(3), rs.getInt(4), rs.getInt(5), rs.getInt(6)));
+                    },
+                    chunk.toArray());
+        }
+    }
+
+    private void publishAnswerChanges(Collection<Long> answerIds) {
+        for (List<Long> chunk : chunks(answerIds)) {
+            List<Long> questionIds = jdbcTemplate.queryForList(
+                    "SELECT DISTINCT question_id FROM answers WHERE id IN (" + placeholders(chunk) + ")",
+                    Long.class, chunk.toArray());
+            questionIds.forEach(id -> eventPublisher.publishEvent(new QuestionContentChangedEvent(id)));
+        }
+    }
+
+    private static List<List<Long>> chunks(Collection<Long> ids) {
+        List<Long> all = new ArrayList<>(ids);
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += IN_CHUNK) {
+            chunks.add(all.subList(i, Math.min(i + IN_CHUNK, all.size())));
+        }
+        return chunks;
+    }
+
+    private static String placeholders(List<Long> ids) {
+        return String.join(",", Collections.nCopies(ids.size(), "?"));
+    }
+
+    private int readQuestionVotes(Long questionId) {
+        List<Integer> votes = jdbcTemplate.queryForList("SELECT votes FROM questions WHERE id = ?", Integer.class, questionId);
+        if (votes.isEmpty()) {
+            throw new RuntimeException("Question not found");
+        }
+        return votes.get(0) + (int) questionVotes.getPending(questionId);
+    }
+
+    private int readAnswerVotes(Long answerId) {
+        List<Integer> votes = jdbcTemplate.queryForList("SELECT votes FROM answers WHERE id = ?", Integer.class, answerId);
+        if (votes.isEmpty()) {
+            throw new RuntimeException("Answer not found");
+        }
+        return votes.get(0) + (int) answerVotes.getPending(answerId);
+    }
+
+    /**
+     * Thêm id vào filter hiện có của người dùng (lấy lại từ cache, không dùng bản đã đọc trước khi commit:
+     * bản đó có thể đã bị thay). Chưa có filter thì lần nạp sau đọc từ DB nên không cần làm gì
+     */
+    private void remember(Long userId, boolean question, Long id) {
+        UserVoteFilters userFilters = filters.getIfPresent(userId);
+        if (userFilters == null) {
+            return;
+        }
+        VoteBloomFilter filter = question ? userFilters.questions : userFilters.answers;
+        filter.put(id);
+        if (filter.isSaturated()) {
+            filters.invalidate(userId);
+        }
+    }
+
+    /**
+     * Chạy action sau khi transaction hiện tại commit (ngay lập tức nếu không có transaction)
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private UserVoteFilters filtersFor(Long userId) {
+        return filters.get(userId, this::loadFilters);
+    }
+
+    private UserVoteFilters loadFilters(Long userId) {
+        List<Long> questionIds = jdbcTemplate.queryForList(
+                "SELECT question_id FROM user_votes_questions WHERE user_id = ?", Long.class, userId);
+        List<Long> answerIds = jdbcTemplate.queryForList(
+                "SELECT answer_id FROM user_votes_answers WHERE user_id = ?", Long.class, userId);
+        return new UserVoteFilters(build(questionIds), build(answerIds));
+    }
+
+    private VoteBloomFilter build(List<Long> ids) {
+        // Chừa chỗ cho các vote mới; khi đầy filter được dựng lại
+        VoteBloomFilter filter = new VoteBloomFilter(Math.max(ids.size() * 2, 256), falsePositiveRate);
+        ids.forEach(filter::put);
+        return filter;
+    }
+
+    /**
+     * Thống kê cho trang quản trị
+     */
+    public Map<String, Object> getStats() {
+        long bytes = filters.asMap().values().stream()
+                .mapToLong(f -> f.questions.sizeInBytes() + f.answers.sizeInBytes())
+                .sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedUsers", filters.estimatedSize());
+        stats.put("bloomBytes", bytes);
+        stats.put("bloomNegatives", bloomNegatives.get());
+        stats.put("bloomPositives", bloomPositives.get());
+        stats.put("bloomStaleMisses", bloomStaleMisses.get());
+        stats.put("duplicateVotes", duplicateVotes.get());
+        stats.put("questionVoteQueue", questionVotes.getStats());
+        stats.put("answerVoteQueue", answerVotes.getStats());
+        return stats;
+    }
+
+    private static final class UserVoteFilters {
+
+        final VoteBloomFilter questions;
+        final VoteBloomFilter answers;
+
+        UserVoteFilters(VoteBloomFilter questions, VoteBloomFilter answers) {
+            this.questions = questions;
+            this.answers = answers;
+        }
+    }
+}
@@ -4,8 +4,10 @@ import com.stackoverflow.entity.Notification;
 import com.stackoverflow.entity.User;
 import com.stackoverflow.entity.UserGroup;
 import com.stackoverflow.entity.Question;
+import com.stackoverflow.event.UnreadCountChangedEvent;
 import com.stackoverflow.repository.NotificationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
@@ -21,6 +23,12 @@ public class WebSocketService {
     @Autowired
     private NotificationRepository notificationRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private GroupFanoutService groupFanoutService;
+
     public void notifyUser(User user, String title, String message, String type) {
         Notification notification = new Notification();
         notification.setUser(user);
@@ -30,6 +38,8 @@ public class WebSocketService {
         notification.setCreatedAt(LocalDateTime.now());
         
         notificationRepository.save(notification);
+        eventPublisher.publishEvent(UnreadCountChangedEvent.delta(
+            user.getUsername(), UnreadCountChangedEvent.Counter.NOTIFICATIONS, 1));
         
         messagingTemplate.convertAndSendToUser(
             user.getUsername(),
@@ -38,19 +48,18 @@ public class WebSocketService {
         );
     }
 
-    public void notifyGroup(UserGroup group, String message, String type) {
+    /**
+     * Gửi lên topic của nhóm rồi fan-out cho từng thành viên ở nền (GroupFanoutService)
+     *
+     * @return false nếu hàng đợi fan-out đầy (thành viên không nhận được thông báo riêng)
+     */
+    public boolean notifyGroup(UserGroup group, String message, String type) {
         messagingTemplate.convertAndSend(
             "/topic/group." + group.getId(),
             new GroupNotification(type, message)
         );
         
-        // Also notify all group members individually
-        group.getMembers().forEach(member -> {
-            notifyUser(member, 
-                      "Group: " + group.getName(), 
-                      message,
-                      type);
-        });
+        return groupFanoutService.fanOut(group.getId(), "Group: " + group.getName(), message, type);
     }
 
     public void notifyNewPost(UserGroup group, Question question) {
@@ -0,0 +1,142 @@
+package com.stackoverflow.benchmark;
+
+import com.stackoverflow.dto.StoredImage;
+import com.stackoverflow.service.common.HotImageCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phục vụ ảnh theo phân bố lệch (vài ảnh rất nóng, đuôi dài ảnh xem một lần): qua HotImageCache so với
+ * luôn đọc file. Thống kê cache (tỉ lệ trúng, số lần cấp phát/dùng lại buffer) được in khi kết thúc.
+ *
+ * Chạy (sau mvn test-compile; CP = classpath test từ dependency:build-classpath -Dmdep.includeScope=test):
+ *   java -cp target/test-classes:target/classes:$CP org.openjdk.jmh.Main HotImageCacheBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotImageCacheBenchmark {
+
+    private static final int SAMPLES = 1 << 16;
+
+    @Param({"500"})
+    public int imageCount;
+
+    @Param({"32768"})
+    public int imageBytes;
+
+    private Path directory;
+
+    private StoredImage[] images;
+
+    private Resource[] files;
+
+    private int[] sequence;
+
+    private int next;
+
+    private HotImageCache cache;
+
+    private final byte[] sink = new byte[8192];
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("hot-image-bench");
+        Random random = new Random(42);
+        images = new StoredImage[imageCount];
+        files = new Resource[imageCount];
+        byte[] content = new byte[imageBytes];
+        for (int i = 0; i < imageCount; i++) {
+            random.nextBytes(content);
+            Path file = directory.resolve("image-" + i + ".png");
+            Files.write(file, content);
+            images[i] = new StoredImage((long) i, file.getFileName().toString(), "image/png", imageBytes,
+                    Files.getLastModifiedTime(file).toMillis(), "\"" + i + "\"", true);
+            files[i] = new FileSystemResource(file);
+        }
+        // Lệch mạnh về các chỉ số nhỏ: u^3 dồn phần lớn lượt xem vào vài phần trăm ảnh đầu
+        sequence = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            double u = random.nextDouble();
+            sequence[i] = (int) (imageCount * u * u * u);
+        }
+
+        cache = new HotImageCache();
+        // Chứa được 1/4 số ảnh
+        ReflectionTestUtils.setField(cache, "maxBytes", (long) imageCount * imageBytes / 4);
+        ReflectionTestUtils.setField(cache, "maxEntryBytes", 2L * 1024 * 1024);
+        ReflectionTestUtils.setField(cache, "minFrequency", 2);
+        ReflectionTestUtils.setField(cache, "expectedImages", imageCount);
+        cache.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.println();
+        System.out.println("hot image cache: " + cache.getStats());
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long throughHotCache() throws IOException {
+        int index = sequence[next++ & (SAMPLES - 1)];
+        StoredImage image = images[index];
+        Resource file = files[index];
+        Resource resource = cache.get(image, () -> file);
+        if (resource == null) {
+            Resource admitted = cache.admit(image, file);
+            resource = admitted != null ? admitted : file;
+        }
+        return drain(resource);
+    }
+
+    @Benchmark
+    public long fileOnly() throws IOException {
+        return drain(files[sequence[next++ & (SAMPLES - 1)]]);
+    }
+
+    private long drain(Resource resource) throws IOException {
+        long total = 0;
+        try (InputStream in = resource.getInputStream()) {
+            int read;
+            while ((read = in.read(sink)) > 0) {
+                total += read;
+            }
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HotImageCacheBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
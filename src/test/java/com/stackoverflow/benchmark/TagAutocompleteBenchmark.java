@@ -0,0 +1,123 @@
+package com.stackoverflow.benchmark;
+
+import com.stackoverflow.dto.TagSuggestion;
+import com.stackoverflow.repository.TagRepository;
+import com.stackoverflow.service.common.TagAutocompleteService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Gợi ý thẻ theo tiền tố: trie (TagAutocompleteService) so với quét toàn bộ tên thẻ rồi sắp xếp,
+ * tương đương việc DB thực hiện cho LIKE 'prefix%' ORDER BY question_count không có chỉ mục phù hợp.
+ *
+ * Chạy (sau mvn test-compile; CP = classpath test từ dependency:build-classpath -Dmdep.includeScope=test):
+ *   java -cp target/test-classes:target/classes:$CP org.openjdk.jmh.Main TagAutocompleteBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagAutocompleteBenchmark {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
+
+    @Param({"1000", "50000"})
+    public int tagCount;
+
+    private TagAutocompleteService service;
+
+    private List<TagSuggestion> all;
+
+    private String[] prefixes;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>(tagCount);
+        all = new ArrayList<>(tagCount);
+        for (int i = 0; i < tagCount; i++) {
+            StringBuilder name = new StringBuilder();
+            int length = 3 + random.nextInt(10);
+            for (int c = 0; c < length; c++) {
+                name.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            name.append(i);
+            int count = random.nextInt(10_000);
+            rows.add(new Object[]{name.toString(), count});
+            all.add(new TagSuggestion(name.toString(), count));
+        }
+        TagRepository repository = mock(TagRepository.class);
+        when(repository.findAllNamesAndCounts()).thenReturn(rows);
+
+        service = new TagAutocompleteService();
+        ReflectionTestUtils.setField(service, "tagRepository", repository);
+        ReflectionTestUtils.setField(service, "maxSuggestions", 10);
+        service.reload();
+
+        prefixes = new String[256];
+        for (int i = 0; i < prefixes.length; i++) {
+            String name = all.get(random.nextInt(all.size())).getName();
+            prefixes[i] = name.substring(0, 1 + random.nextInt(Math.min(3, name.length())));
+        }
+    }
+
+    private String nextPrefix() {
+        return prefixes[next++ & (prefixes.length - 1)];
+    }
+
+    @Benchmark
+    public List<TagSuggestion> trieSuggest() {
+        return service.suggest(nextPrefix(), 10);
+    }
+
+    @Benchmark
+    public List<TagSuggestion> scanAndSort() {
+        String prefix = nextPrefix();
+        List<TagSuggestion> matches = new ArrayList<>();
+        for (TagSuggestion suggestion : all) {
+            if (suggestion.getName().startsWith(prefix)) {
+                matches.add(suggestion);
+            }
+        }
+        matches.sort(Comparator.comparing(TagSuggestion::getQuestionCount).reversed());
+        return matches.subList(0, Math.min(10, matches.size()));
+    }
+
+    @Benchmark
+    public Optional<List<String>> dictionarySearch() {
+        return service.search(nextPrefix());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TagAutocompleteBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
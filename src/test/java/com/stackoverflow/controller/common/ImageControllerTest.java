@@ -0,0 +1,60 @@
+package com.stackoverflow.controller.common;
+
+import com.stackoverflow.dto.StoredImage;
+import com.stackoverflow.service.common.ImageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ImageControllerTest {
+
+    private static final String ETAG = "\"1-4-18b\"";
+    private static final long LAST_MODIFIED = 1_700_000_000_000L;
+
+    private final ImageService imageService = mock(ImageService.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ImageController controller = new ImageController();
+        ReflectionTestUtils.setField(controller, "imageService", imageService);
+        ReflectionTestUtils.setField(controller, "cacheMaxAgeDays", 365L);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        StoredImage image = new StoredImage(1L, "a.png", "image/png", 4, LAST_MODIFIED, ETAG, true);
+        when(imageService.getStoredImage(1L, "original")).thenReturn(Optional.of(image));
+        when(imageService.openImage(any())).thenReturn(Optional.of(new ByteArrayResource(new byte[]{1, 2, 3, 4})));
+    }
+
+    @Test
+    void matchingEtagReturns304WithoutOpeningTheFile() throws Exception {
+        mockMvc.perform(get("/api/images/1").header("If-None-Match", ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", ETAG));
+
+        verify(imageService, never()).openImage(any());
+    }
+
+    @Test
+    void unconditionalRequestStreamsTheImage() throws Exception {
+        mockMvc.perform(get("/api/images/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", ETAG));
+
+        verify(imageService).openImage(any());
+    }
+}
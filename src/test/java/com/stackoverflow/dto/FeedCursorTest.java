@@ -0,0 +1,42 @@
+package com.stackoverflow.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FeedCursorTest {
+
+    @Test
+    void roundTripsCreatedAtCursor() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 10, 30, 15);
+        String token = FeedCursor.byCreatedAt(createdAt, 42L).encode();
+
+        FeedCursor cursor = FeedCursor.decode(token, FeedCursor.SORT_CREATED).orElseThrow();
+        assertEquals(createdAt, cursor.asCreatedAt());
+        assertEquals(42L, cursor.getId());
+    }
+
+    @Test
+    void rejectsCursorFromAnotherSort() {
+        String token = FeedCursor.byCreatedAt(LocalDateTime.now(), 1L).encode();
+        assertTrue(FeedCursor.decode(token, FeedCursor.SORT_VOTES).isEmpty());
+    }
+
+    @Test
+    void rejectsTamperedValues() {
+        assertTrue(FeedCursor.decode(token("created|yesterday|5"), FeedCursor.SORT_CREATED).isEmpty());
+        assertTrue(FeedCursor.decode(token("votes|many|5"), FeedCursor.SORT_VOTES).isEmpty());
+        assertTrue(FeedCursor.decode(token("votes|3|x"), FeedCursor.SORT_VOTES).isEmpty());
+        assertTrue(FeedCursor.decode(token("2024-05-01T10:30|5"), FeedCursor.SORT_CREATED).isEmpty());
+        assertTrue(FeedCursor.decode("%%%", FeedCursor.SORT_CREATED).isEmpty());
+    }
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,170 @@
+package com.stackoverflow.service.common;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CounterBufferTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate =
+            new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @Test
+    void concurrentAddsAreNeverLostWhileFlushing() throws Exception {
+        AtomicLong written = new AtomicLong();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> batch = invocation.getArgument(1);
+            batch.forEach(row -> written.addAndGet((Long) row[0]));
+            return new int[batch.size()];
+        });
+        CounterBuffer buffer = new CounterBuffer("test", "UPDATE t SET c = c + ? WHERE id = ?",
+                jdbcTemplate, transactionTemplate);
+
+        int threads = 8;
+        int addsPerThread = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicBoolean running = new AtomicBoolean(true);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < addsPerThread; i++) {
+                    buffer.add((long) (i % 4), 1);
+                }
+                done.countDown();
+            });
+        }
+        Thread flusher = new Thread(() -> {
+            while (running.get()) {
+                buffer.flush();
+            }
+        });
+        flusher.start();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        running.set(false);
+        flusher.join();
+        buffer.flush();
+        pool.shutdown();
+
+        assertEquals((long) threads * addsPerThread, written.get());
+        assertEquals(0, buffer.getPendingCount());
+    }
+
+    @Test
+    void addsRacingWithRetirementOfIdleIdsAreNeverLost() throws Exception {
+        AtomicLong written = new AtomicLong();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> batch = invocation.getArgument(1);
+            batch.forEach(row -> written.addAndGet((Long) row[0]));
+            return new int[batch.size()];
+        });
+        CounterBuffer buffer = new CounterBuffer("test", "UPDATE t SET c = c + ? WHERE id = ?",
+                jdbcTemplate, transactionTemplate);
+
+        // Nhiều id thưa: flush liên tục gỡ id rảnh đúng lúc luồng khác đang cộng vào chúng
+        int threads = 8;
+        int addsPerThread = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicBoolean running = new AtomicBoolean(true);
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            pool.execute(() -> {
+                for (int i = 0; i < addsPerThread; i++) {
+                    buffer.add((long) ((i * 31 + offset) % 5_000), i % 3 == 0 ? -1 : 2);
+                }
+                done.countDown();
+            });
+        }
+        Thread flusher = new Thread(() -> {
+            while (running.get()) {
+                buffer.flush();
+            }
+        });
+        flusher.start();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        running.set(false);
+        flusher.join();
+        buffer.flush();
+        pool.shutdown();
+
+        long expected = 0;
+        for (int i = 0; i < addsPerThread; i++) {
+            expected += i % 3 == 0 ? -1 : 2;
+        }
+        assertEquals(expected * threads, written.get());
+        assertEquals(0, buffer.getPendingCount());
+        // Một lần flush không có cập nhật gỡ mọi id khỏi map
+        buffer.flush();
+        assertEquals(0, buffer.getStats().get("trackedIds"));
+    }
+
+    @Test
+    void idleIdIsRetiredAndTrackedAgainOnNextAdd() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation ->
+                new int[((List<?>) invocation.getArgument(1)).size()]);
+        CounterBuffer buffer = new CounterBuffer("test", "UPDATE t SET c = c + ? WHERE id = ?",
+                jdbcTemplate, transactionTemplate);
+        buffer.add(5L, 2);
+        assertEquals(Map.of(5L, 2L), buffer.flush());
+        assertEquals(1, buffer.getStats().get("trackedIds"));
+
+        assertTrue(buffer.flush().isEmpty());
+        assertEquals(0, buffer.getStats().get("trackedIds"));
+
+        buffer.add(5L, 1);
+        assertEquals(1, buffer.getPending(5L));
+        assertEquals(Map.of(5L, 1L), buffer.flush());
+    }
+
+    @Test
+    void failedBatchRestoresEveryDelta() {
+        AtomicInteger calls = new AtomicInteger();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            if (calls.getAndIncrement() == 0) {
+                throw new IllegalStateException("deadlock victim");
+            }
+            List<Object[]> batch = invocation.getArgument(1);
+            return new int[batch.size()];
+        });
+        CounterBuffer buffer = new CounterBuffer("test", "UPDATE t SET c = c + ? WHERE id = ?",
+                jdbcTemplate, transactionTemplate);
+        buffer.add(1L, 3);
+        buffer.add(2L, -1);
+
+        assertTrue(buffer.flush().isEmpty());
+        assertEquals(3, buffer.getPending(1L));
+        assertEquals(-1, buffer.getPending(2L));
+
+        Map<Long, Long> flushed = buffer.flush();
+        assertEquals(Map.of(1L, 3L, 2L, -1L), flushed);
+        assertEquals(0, buffer.getPendingCount());
+    }
+
+    @Test
+    void entriesThatCancelOutAreRemoved() {
+        CounterBuffer buffer = new CounterBuffer("test", "UPDATE t SET c = c + ? WHERE id = ?",
+                jdbcTemplate, transactionTemplate);
+        buffer.add(7L, 1);
+        buffer.add(7L, -1);
+        assertEquals(0, buffer.getPendingCount());
+    }
+}
@@ -0,0 +1,293 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.entity.Answer;
+import com.stackoverflow.entity.Comment;
+import com.stackoverflow.entity.DeletionJob;
+import com.stackoverflow.entity.ImageAttachment;
+import com.stackoverflow.entity.Message;
+import com.stackoverflow.entity.Notification;
+import com.stackoverflow.entity.Question;
+import com.stackoverflow.entity.Tag;
+import com.stackoverflow.entity.User;
+import com.stackoverflow.event.UnreadCountChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureJdbc;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Xóa người dùng sở hữu đủ loại dữ liệu: không vi phạm khóa ngoại, bộ đếm của dòng còn lại đúng,
+ * file ảnh chỉ bị xóa sau khi đoạn tương ứng đã commit
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "deletion.chunk-size=2"
+})
+@AutoConfigureJdbc
+@Import({DeletionService.class, CounterService.class, DeletionServiceTest.UnreadEvents.class})
+// Tiến trình xóa chạy trên luồng riêng nên dữ liệu phải được commit trước
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DeletionServiceTest {
+
+    @Autowired
+    private DeletionService deletionService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UnreadEvents unreadEvents;
+
+    @MockBean
+    private ImageService imageService;
+
+    @MockBean
+    private ImageBlobStore blobStore;
+
+    @Test
+    void deletingAUserRemovesEverythingTheyOwnAndFixesSurvivingCounters() throws InterruptedException {
+        List<String> deletedFiles = new CopyOnWriteArrayList<>();
+        List<String> filesDeletedInTransaction = new CopyOnWriteArrayList<>();
+        List<String> filesDeletedBeforeCommit = new CopyOnWriteArrayList<>();
+        when(imageService.deleteStoredFile(anyString())).thenAnswer(invocation -> {
+            String path = invocation.getArgument(0);
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                filesDeletedInTransaction.add(path);
+            }
+            // Không có giao dịch: truy vấn này chỉ thấy dữ liệu đã commit
+            if (count("image_attachments WHERE path = '" + path + "'") > 0) {
+                filesDeletedBeforeCommit.add(path);
+            }
+            deletedFiles.add(path);
+            return true;
+        });
+
+        Map<String, Long> ids = transactionTemplate.execute(status -> seed());
+
+        DeletionJob job = deletionService.requestUserDeletion(ids.get("doomed"), "admin");
+        job = await(job.getId());
+
+        assertEquals(DeletionJob.COMPLETED, job.getStatus(), job.getError());
+        assertNull(job.getError());
+        assertEquals(0, job.getFailedFiles());
+        assertEquals(0, count("users WHERE id = " + ids.get("doomed")));
+        Long doomed = ids.get("doomed");
+        for (String where : List.of(
+                "questions WHERE author_id = " + doomed,
+                "answers WHERE author_id = " + doomed,
+                "comments WHERE author_id = " + doomed,
+                "image_attachments WHERE user_id = " + doomed,
+                "messages WHERE sender_id = " + doomed + " OR receiver_id = " + doomed,
+                "notifications WHERE user_id = " + doomed,
+                "user_votes_questions WHERE user_id = " + doomed,
+                "user_votes_answers WHERE user_id = " + doomed,
+                "question_tags WHERE question_id = " + ids.get("ownQuestion"))) {
+            assertEquals(0, count(where), where);
+        }
+
+        // Dữ liệu của người khác còn nguyên, bộ đếm đã trừ phần của người bị xóa
+        Long otherQuestion = ids.get("otherQuestion");
+        assertEquals(1, count("questions WHERE id = " + otherQuestion));
+        assertEquals(1, intValue("SELECT answer_count FROM questions WHERE id = ?", otherQuestion));
+        assertEquals(4, intValue("SELECT votes FROM questions WHERE id = ?", otherQuestion));
+        assertEquals(2, intValue("SELECT votes FROM answers WHERE id = ?", ids.get("otherAnswer")));
+        assertEquals(1, intValue("SELECT question_count FROM tags WHERE id = ?", ids.get("tag")));
+        assertEquals(1, count("comments WHERE question_id = " + otherQuestion));
+        assertEquals(1, count("image_attachments WHERE question_id = " + otherQuestion));
+        assertEquals(1, count("messages"));
+
+        assertEquals(Set.of("doomed/own-question.png", "doomed/own-question-thumb.png", "doomed/own-answer.png",
+                "doomed/elsewhere.png"), Set.copyOf(deletedFiles));
+        assertTrue(filesDeletedInTransaction.isEmpty(), filesDeletedInTransaction::toString);
+        assertTrue(filesDeletedBeforeCommit.isEmpty(), filesDeletedBeforeCommit::toString);
+
+        // Người nhận tin nhắn chưa đọc và chính tài khoản đã xóa được đếm lại số chưa đọc
+        Set<String> recounted = unreadEvents.events.stream()
+                .filter(UnreadCountChangedEvent::isRecount)
+                .map(event -> event.getUsername() + ":" + event.getCounter())
+                .collect(Collectors.toSet());
+        assertTrue(recounted.containsAll(Set.of("other:MESSAGES", "doomed:MESSAGES", "doomed:NOTIFICATIONS")),
+                recounted::toString);
+        assertFalse(recounted.contains("reader:MESSAGES"));
+    }
+
+    private Map<String, Long> seed() {
+        User doomed = user("doomed");
+        User other = user("other");
+        User reader = user("reader");
+
+        Tag tag = new Tag();
+        tag.setName("java");
+        tag.setQuestionCount(2);
+        entityManager.persist(tag);
+
+        Question ownQuestion = question("Question owned by the doomed user", doomed, 0, 1);
+        ownQuestion.getTags().add(tag);
+        Question otherQuestion = question("Question owned by another user", other, 5, 2);
+        otherQuestion.getTags().add(tag);
+        entityManager.flush();
+
+        Answer answerOnOwn = answer(ownQuestion, other, 0);
+        Answer ownAnswer = answer(otherQuestion, doomed, 0);
+        Answer otherAnswer = answer(otherQuestion, other, 3);
+        entityManager.flush();
+        jdbcTemplate.update("UPDATE questions SET accepted_answer_id = ? WHERE id = ?", ownAnswer.getId(),
+                otherQuestion.getId());
+
+        comment(ownQuestion, null, other);
+        comment(null, answerOnOwn, other);
+        comment(otherQuestion, null, doomed);
+        comment(null, otherAnswer, doomed);
+        comment(otherQuestion, null, other);
+
+        image(ownQuestion, null, doomed, "doomed/own-question.png", "doomed/own-question-thumb.png");
+        image(null, ownAnswer, doomed, "doomed/own-answer.png", null);
+        image(otherQuestion, null, doomed, "doomed/elsewhere.png", null);
+        image(otherQuestion, null, other, "other/kept.png", null);
+
+        message(doomed, other, false);
+        message(doomed, reader, true);
+        message(other, doomed, false);
+        message(other, reader, false);
+        notification(doomed);
+        entityManager.flush();
+
+        jdbcTemplate.update("INSERT INTO user_votes_questions (user_id, question_id) VALUES (?, ?)",
+                doomed.getId(), otherQuestion.getId());
+        jdbcTemplate.update("INSERT INTO user_votes_answers (user_id, answer_id) VALUES (?, ?)",
+                doomed.getId(), otherAnswer.getId());
+        jdbcTemplate.update("INSERT INTO user_votes_questions (user_id, question_id) VALUES (?, ?)",
+                other.getId(), ownQuestion.getId());
+        jdbcTemplate.update("INSERT INTO user_votes_answers (user_id, answer_id) VALUES (?, ?)",
+                other.getId(), ownAnswer.getId());
+
+        return Map.of("doomed", doomed.getId(), "otherQuestion", otherQuestion.getId(),
+                "otherAnswer", otherAnswer.getId(), "ownQuestion", ownQuestion.getId(),
+                "ownAnswer", ownAnswer.getId(), "tag", tag.getId());
+    }
+
+    private DeletionJob await(Long jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        DeletionJob job = deletionService.getJob(jobId);
+        while (job.isActive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            job = deletionService.getJob(jobId);
+        }
+        return job;
+    }
+
+    private int count(String from) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + from, Integer.class);
+    }
+
+    private int intValue(String sql, Long id) {
+        return jdbcTemplate.queryForObject(sql, Integer.class, id);
+    }
+
+    private User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("secret123");
+        return entityManager.persist(user);
+    }
+
+    private Question question(String title, User author, int votes, int answerCount) {
+        Question question = new Question();
+        question.setTitle(title);
+        question.setBody("Body");
+        question.setAuthor(author);
+        question.setVotes(votes);
+        question.setAnswerCount(answerCount);
+        return entityManager.persist(question);
+    }
+
+    private Answer answer(Question question, User author, int votes) {
+        Answer answer = new Answer();
+        answer.setBody("Answer");
+        answer.setQuestion(question);
+        answer.setAuthor(author);
+        answer.setVotes(votes);
+        return entityManager.persist(answer);
+    }
+
+    private void comment(Question question, Answer answer, User author) {
+        Comment comment = new Comment();
+        comment.setBody("Comment");
+        comment.setQuestion(question);
+        comment.setAnswer(answer);
+        comment.setAuthor(author);
+        entityManager.persist(comment);
+    }
+
+    private void image(Question question, Answer answer, User uploadedBy, String path, String thumbnailPath) {
+        ImageAttachment image = new ImageAttachment();
+        image.setFileName(path);
+        image.setContentType("image/png");
+        image.setPath(path);
+        image.setThumbnailPath(thumbnailPath);
+        image.setQuestion(question);
+        image.setAnswer(answer);
+        image.setUploadedBy(uploadedBy);
+        entityManager.persist(image);
+    }
+
+    private void message(User sender, User receiver, boolean read) {
+        Message message = new Message();
+        message.setSender(sender);
+        message.setReceiver(receiver);
+        message.setSubject("Subject");
+        message.setBody("Body");
+        message.setIsRead(read);
+        entityManager.persist(message);
+    }
+
+    private void notification(User user) {
+        Notification notification = new Notification();
+        notification.setUser(user);
+        notification.setType("SYSTEM");
+        notification.setMessage("Hello");
+        entityManager.persist(notification);
+    }
+
+    @TestConfiguration
+    static class UnreadEvents {
+
+        final List<UnreadCountChangedEvent> events = new CopyOnWriteArrayList<>();
+
+        @EventListener
+        public void onUnreadCountChanged(UnreadCountChangedEvent event) {
+            events.add(event);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.stackoverflow.service.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GroupFanoutServiceTest {
+
+    private static final int MEMBERS = 50;
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final AtomicInteger delivered = new AtomicInteger();
+    private GroupFanoutService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        AtomicInteger pages = new AtomicInteger();
+        when(jdbcTemplate.query(any(PreparedStatementCreator.class), any(RowMapper.class))).thenAnswer(invocation -> {
+            if (pages.getAndIncrement() > 0) {
+                return List.of();
+            }
+            RowMapper<?> mapper = invocation.getArgument(1);
+            List<Object> rows = new ArrayList<>();
+            for (int i = 1; i <= MEMBERS; i++) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong(1)).thenReturn((long) i);
+                when(rs.getString(2)).thenReturn("user" + i);
+                rows.add(mapper.mapRow(rs, i - 1));
+            }
+            return rows;
+        });
+        // Client chậm: hàng đợi push nhỏ sẽ đầy
+        doAnswer(invocation -> {
+            Thread.sleep(2);
+            delivered.incrementAndGet();
+            return null;
+        }).when(messagingTemplate).convertAndSendToUser(anyString(), eq("/queue/notifications"), any(Object.class));
+
+        service = new GroupFanoutService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "messagingTemplate", messagingTemplate);
+        ReflectionTestUtils.setField(service, "eventPublisher", mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+        ReflectionTestUtils.setField(service, "jobQueueCapacity", 1);
+        ReflectionTestUtils.setField(service, "pushThreads", 1);
+        ReflectionTestUtils.setField(service, "pushQueueCapacity", 2);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void fullPushQueueSlowsFanOutInsteadOfDroppingMessages() throws Exception {
+        assertTrue(service.fanOut(1L, "Group: g", "hello", "GROUP"));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (delivered.get() < MEMBERS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Map<String, Object> stats = service.getStats();
+        assertEquals(MEMBERS, delivered.get());
+        assertEquals(1L, stats.get("completedJobs"));
+        assertEquals((long) MEMBERS, stats.get("persistedNotifications"));
+        assertEquals(0L, stats.get("droppedPushes"));
+        assertTrue((Long) stats.get("callerRunPushes") > 0);
+    }
+
+    @Test
+    void interruptedJobIsNotCountedInLatency() throws Exception {
+        // Push treo tới khi shutdown ngắt luồng
+        doAnswer(invocation -> {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }).when(messagingTemplate).convertAndSendToUser(anyString(), eq("/queue/notifications"), any(Object.class));
+
+        assertTrue(service.fanOut(1L, "Group: g", "hello", "GROUP"));
+        Thread.sleep(200);
+        service.shutdown();
+        Thread.sleep(200);
+
+        Map<String, Object> stats = service.getStats();
+        assertEquals(0L, stats.get("completedJobs"));
+        assertEquals(0L, stats.get("maxLatencyMs"));
+        assertEquals(0L, stats.get("avgLatencyMs"));
+    }
+}
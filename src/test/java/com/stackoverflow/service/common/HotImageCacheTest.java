@@ -0,0 +1,97 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.dto.StoredImage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class HotImageCacheTest {
+
+    private static final int SIZE = 1024;
+
+    private HotImageCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new HotImageCache();
+        // Vừa đúng 1 ảnh
+        ReflectionTestUtils.setField(cache, "maxBytes", (long) SIZE);
+        ReflectionTestUtils.setField(cache, "maxEntryBytes", (long) SIZE);
+        ReflectionTestUtils.setField(cache, "minFrequency", 2);
+        ReflectionTestUtils.setField(cache, "expectedImages", 100);
+        cache.init();
+    }
+
+    @Test
+    void rejectedCandidatesAreNotAllocated() {
+        for (long id = 1; id <= 50; id++) {
+            StoredImage image = image(id);
+            assertNull(cache.get(image, () -> null));
+            assertNull(cache.admit(image, content(id)));
+        }
+        assertEquals(0L, cache.getStats().get("allocations"));
+        assertEquals(50L, cache.getStats().get("rejections"));
+    }
+
+    @Test
+    void evictedBufferIsReusedOnlyAfterItsReadersClose() throws Exception {
+        admit(1);
+        Resource first = cache.get(image(1), () -> content(1));
+        InputStream reading = first.getInputStream();
+
+        // Ảnh 2 nóng hơn đẩy ảnh 1 ra; buffer của ảnh 1 còn stream đang đọc nên không được dùng lại
+        admit(2, 4);
+        assertEquals(2L, cache.getStats().get("allocations"));
+        assertArrayEquals(bytes(1), reading.readAllBytes());
+        reading.close();
+
+        // Ảnh 3 đẩy ảnh 2 ra; không ai đọc ảnh 2 nên buffer của nó được dùng lại
+        Resource second = cache.get(image(2), () -> content(2));
+        admit(3, 8);
+        assertEquals(2L, cache.getStats().get("allocations"));
+        assertEquals(1L, cache.getStats().get("reusedBuffers"));
+
+        // Resource cũ của ảnh 2 mở stream sau khi buffer bị thu hồi: đọc từ file gốc
+        try (InputStream in = second.getInputStream()) {
+            assertArrayEquals(bytes(2), in.readAllBytes());
+        }
+        try (InputStream in = cache.get(image(3), () -> null).getInputStream()) {
+            assertArrayEquals(bytes(3), in.readAllBytes());
+        }
+    }
+
+    private void admit(long id) {
+        admit(id, 2);
+    }
+
+    private void admit(long id, int views) {
+        for (int i = 0; i < views; i++) {
+            cache.get(image(id), () -> null);
+        }
+        assertNotNull(cache.admit(image(id), content(id)));
+    }
+
+    private static StoredImage image(long id) {
+        return new StoredImage(id, "image-" + id + ".png", "image/png", SIZE, 0L, "\"" + id + "\"", true);
+    }
+
+    private static Resource content(long id) {
+        return new ByteArrayResource(bytes(id));
+    }
+
+    private static byte[] bytes(long id) {
+        byte[] bytes = new byte[SIZE];
+        Arrays.fill(bytes, (byte) id);
+        return bytes;
+    }
+}
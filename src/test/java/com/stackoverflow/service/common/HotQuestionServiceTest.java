@@ -0,0 +1,114 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.event.QuestionActivityEvent;
+import com.stackoverflow.event.QuestionLifecycleEvent;
+import com.stackoverflow.repository.QuestionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HotQuestionServiceTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private final QuestionRepository questionRepository = mock(QuestionRepository.class);
+    private final ViewCountService viewCountService = mock(ViewCountService.class);
+    private HotQuestionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new HotQuestionService();
+        ReflectionTestUtils.setField(service, "questionRepository", questionRepository);
+        ReflectionTestUtils.setField(service, "viewCountService", viewCountService);
+        ReflectionTestUtils.setField(service, "maxEntries", 100);
+        ReflectionTestUtils.setField(service, "rebuildWindowDays", 30);
+        when(viewCountService.getViewCount(anyLong(), any())).thenAnswer(invocation -> {
+            Integer views = invocation.getArgument(1);
+            return views != null ? views.longValue() : 0L;
+        });
+    }
+
+    @Test
+    void questionDeletedDuringRebuildIsNotResurrected() {
+        when(questionRepository.findHotCandidates(any())).thenAnswer(invocation -> {
+            List<Object[]> rows = List.of(row(1L, 5), row(2L, 3));
+            // Câu hỏi 1 bị xóa sau khi truy vấn đã đọc nó nhưng trước khi chỉ mục mới được thay
+            service.onLifecycle(new QuestionLifecycleEvent(1L, QuestionLifecycleEvent.Type.DELETED));
+            return rows;
+        });
+
+        service.rebuild();
+
+        assertEquals(List.of(2L), service.getHotQuestionIds(0, 10));
+    }
+
+    @Test
+    void lateActivityForDeletedQuestionIsIgnored() {
+        service.onActivity(activity(1L, 5));
+        service.onLifecycle(new QuestionLifecycleEvent(1L, QuestionLifecycleEvent.Type.DELETED));
+        service.onActivity(activity(1L, 6));
+
+        assertFalse(service.getHotQuestionIds(0, 10).contains(1L));
+    }
+
+    @Test
+    void activityDuringRebuildIsReplayedOntoNewIndex() {
+        when(questionRepository.findHotCandidates(any())).thenAnswer(invocation -> {
+            service.onActivity(activity(3L, 50));
+            return List.of(row(1L, 5), row(2L, 3));
+        });
+
+        service.rebuild();
+
+        assertEquals(List.of(3L, 1L, 2L), service.getHotQuestionIds(0, 10));
+    }
+
+    @Test
+    void concurrentActivityKeepsIndexBoundedAndConsistent() throws Exception {
+        ReflectionTestUtils.setField(service, "maxEntries", 50);
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            pool.execute(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    long id = (i * 31L + seed) % 500;
+                    service.onActivity(activity(id, (int) ((i + seed) % 97)));
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        List<Long> ids = service.getHotQuestionIds(0, 1000);
+        assertTrue(service.size() <= 50);
+        assertEquals(service.size(), ids.size());
+        assertEquals(ids.size(), new HashSet<>(ids).size());
+    }
+
+    private static Object[] row(Long id, int votes) {
+        return new Object[]{id, CREATED, votes, 0, 0};
+    }
+
+    private static QuestionActivityEvent activity(Long id, int votes) {
+        return new QuestionActivityEvent(id, CREATED, true, votes, 0, 0);
+    }
+}
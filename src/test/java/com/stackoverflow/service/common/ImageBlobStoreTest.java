@@ -0,0 +1,152 @@
+package com.stackoverflow.service.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureJdbc;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tham chiếu blob theo hash, ghi file sau commit và dọn blob không còn tham chiếu
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "upload.path=${java.io.tmpdir}/image-blob-store-test",
+        "images.blobs.gc-grace-ms=60000"
+})
+@AutoConfigureJdbc
+@Import(ImageBlobStore.class)
+class ImageBlobStoreTest {
+
+    @Autowired
+    private ImageBlobStore blobStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private ImageStorage imageStorage;
+
+    @MockBean
+    private HotImageCache hotImageCache;
+
+    private ImageBlobStore.StagedBlob staged;
+
+    @AfterEach
+    void tearDown() {
+        if (staged != null) {
+            blobStore.discard(staged);
+        }
+    }
+
+    @Test
+    void newContentIsWrittenOnlyByTheCallerAfterAcquire() throws IOException {
+        staged = stage("first");
+
+        ImageBlobStore.StoredBlob blob = blobStore.acquire(staged);
+
+        assertTrue(blob.isPendingWrite());
+        assertEquals("blobs/" + staged.getHash().substring(0, 2) + "/" + staged.getHash().substring(2, 4) + "/"
+                + staged.getHash(), blob.getPath());
+        verify(imageStorage, never()).put(anyString(), any());
+
+        blobStore.write(staged, blob);
+        verify(imageStorage).put(blob.getPath(), staged.temp);
+    }
+
+    @Test
+    void duplicateContentReusesTheBlob() throws IOException {
+        staged = stage("same");
+        ImageBlobStore.StoredBlob first = blobStore.acquire(staged);
+        when(imageStorage.exists(first.getPath())).thenReturn(true);
+
+        ImageBlobStore.StoredBlob second = blobStore.acquire(staged);
+
+        assertEquals(first.getId(), second.getId());
+        assertFalse(second.isPendingWrite());
+        assertEquals(2, refCount(first.getId()));
+        assertEquals(1L, blobStore.getStats().get("duplicateUploads"));
+    }
+
+    @Test
+    void missingFileIsRewrittenForAnExistingBlob() throws IOException {
+        staged = stage("lost");
+        ImageBlobStore.StoredBlob first = blobStore.acquire(staged);
+
+        ImageBlobStore.StoredBlob second = blobStore.acquire(staged);
+
+        assertEquals(first.getId(), second.getId());
+        assertTrue(second.isPendingWrite());
+    }
+
+    @Test
+    void releasedBlobIsCollectedAfterGraceAndReuploadCreatesANewOne() throws IOException {
+        staged = stage("garbage");
+        ImageBlobStore.StoredBlob blob = blobStore.acquire(staged);
+        blobStore.release(blob.getId());
+        when(imageStorage.delete(anyString())).thenReturn(true);
+
+        // Vẫn trong khoảng chờ
+        assertEquals(0, blobStore.collectGarbage());
+
+        jdbcTemplate.update("UPDATE image_blobs SET released_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusHours(1)), blob.getId());
+        assertEquals(1, blobStore.collectGarbage());
+        verify(imageStorage).delete(blob.getPath());
+        for (String variantPath : ImageVariantService.variantPaths(blob.getPath())) {
+            verify(imageStorage).delete(variantPath);
+            verify(hotImageCache).invalidatePath(variantPath);
+        }
+
+        ImageBlobStore.StoredBlob again = blobStore.acquire(staged);
+        assertNotEquals(blob.getId(), again.getId());
+        assertTrue(again.isPendingWrite());
+        assertEquals(1, refCount(again.getId()));
+    }
+
+    @Test
+    void referencedBlobIsNeverCollected() throws IOException {
+        staged = stage("kept");
+        ImageBlobStore.StoredBlob blob = blobStore.acquire(staged);
+        blobStore.acquire(staged);
+        blobStore.release(blob.getId());
+        jdbcTemplate.update("UPDATE image_blobs SET released_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusHours(1)), blob.getId());
+
+        assertEquals(0, blobStore.collectGarbage());
+        assertEquals(1, refCount(blob.getId()));
+        verify(imageStorage, never()).delete(anyString());
+    }
+
+    private ImageBlobStore.StagedBlob stage(String content) throws IOException {
+        ImageBlobStore.StagedBlob blob = blobStore.stage(new MockMultipartFile("file", "image.png", "image/png",
+                content.getBytes(StandardCharsets.UTF_8)));
+        assertTrue(Files.exists(blob.temp));
+        return blob;
+    }
+
+    private int refCount(Long id) {
+        return jdbcTemplate.queryForObject("SELECT ref_count FROM image_blobs WHERE id = ?", Integer.class, id);
+    }
+}
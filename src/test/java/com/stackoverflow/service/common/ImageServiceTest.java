@@ -0,0 +1,84 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.entity.ImageAttachment;
+import com.stackoverflow.repository.ImageAttachmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cache siêu dữ liệu ảnh được bỏ trực tiếp theo đường dẫn file
+ */
+class ImageServiceTest {
+
+    private ImageService imageService;
+    private ImageAttachmentRepository repository;
+    private ImageStorage imageStorage;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ImageAttachmentRepository.class);
+        imageStorage = mock(ImageStorage.class);
+        imageService = new ImageService();
+        ReflectionTestUtils.setField(imageService, "imageAttachmentRepository", repository);
+        ReflectionTestUtils.setField(imageService, "imageStorage", imageStorage);
+        ReflectionTestUtils.setField(imageService, "hotImageCache", mock(HotImageCache.class));
+        ReflectionTestUtils.setField(imageService, "metadataCacheSize", 100L);
+        imageService.init();
+
+        when(imageStorage.stat(anyString())).thenReturn(Optional.of(new ImageStorage.Stat(10, 1000)));
+        when(imageStorage.delete(anyString())).thenReturn(true);
+        attachment(1L, "blobs/aa/bb/shared");
+        attachment(2L, "blobs/aa/bb/shared");
+        attachment(3L, "blobs/cc/dd/other");
+    }
+
+    @Test
+    void deletingAFileEvictsEveryImageThatUsesIt() {
+        for (long id = 1; id <= 3; id++) {
+            imageService.getStoredImage(id);
+        }
+        clearInvocations(repository);
+
+        imageService.deleteStoredFile("blobs/aa/bb/shared");
+        for (long id = 1; id <= 3; id++) {
+            imageService.getStoredImage(id);
+        }
+
+        verify(repository).findById(1L);
+        verify(repository).findById(2L);
+        verify(repository, times(0)).findById(3L);
+    }
+
+    @Test
+    void evictedImageIsNoLongerReachableByPath() {
+        imageService.getStoredImage(1L);
+        imageService.getStoredImage(2L);
+        imageService.evictStoredImage(1L);
+        clearInvocations(repository);
+
+        imageService.deleteStoredFile("blobs/aa/bb/shared");
+        imageService.getStoredImage(1L);
+        imageService.getStoredImage(2L);
+
+        verify(repository).findById(1L);
+        verify(repository).findById(2L);
+    }
+
+    private void attachment(Long id, String path) {
+        ImageAttachment attachment = new ImageAttachment();
+        attachment.setId(id);
+        attachment.setPath(path);
+        attachment.setContentType("image/png");
+        when(repository.findById(id)).thenReturn(Optional.of(attachment));
+    }
+}
@@ -0,0 +1,213 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.entity.ImageAttachment;
+import com.stackoverflow.entity.ImageBlob;
+import com.stackoverflow.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureJdbc;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tạo biến thể và chuyển trạng thái PENDING -> READY/FAILED, khử trùng lặp theo blob
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "images.variants.thumbnail-size=32",
+        "images.variants.medium-size=128"
+})
+@AutoConfigureJdbc
+@Import(ImageVariantService.class)
+class ImageVariantServiceTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @MockBean
+    private ImageService imageService;
+
+    @MockBean
+    private ImageStorage imageStorage;
+
+    @MockBean
+    private ImageBlobStore blobStore;
+
+    /** Khóa -> kích thước ảnh đã ghi vào storage */
+    private final Map<String, BufferedImage> written = new ConcurrentHashMap<>();
+
+    private User owner;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        when(blobStore.createStagingFile(anyString())).thenAnswer(invocation -> Files.createTempFile("variant-", ".tmp"));
+        doAnswer(invocation -> {
+            Path source = invocation.getArgument(1);
+            written.put(invocation.getArgument(0), ImageIO.read(source.toFile()));
+            return null;
+        }).when(imageStorage).put(anyString(), any(Path.class));
+
+        owner = new User();
+        owner.setUsername("owner");
+        owner.setEmail("owner@example.com");
+        owner.setPassword("secret");
+        entityManager.persist(owner);
+    }
+
+    @Test
+    void largeImageGetsMediumAndThumbnail() throws IOException {
+        stubImage("uploads/large.png", 600, 300);
+        Long id = attachment("uploads/large.png", null);
+
+        imageVariantService.process(id);
+
+        Map<String, Object> row = row(id);
+        assertEquals(ImageAttachment.VARIANTS_READY, row.get("variant_status"));
+        assertEquals("uploads/large-medium.jpg", row.get("medium_path"));
+        assertEquals("uploads/large-thumbnail.jpg", row.get("thumbnail_path"));
+        assertEquals(128, written.get("uploads/large-medium.jpg").getWidth());
+        assertEquals(64, written.get("uploads/large-medium.jpg").getHeight());
+        assertEquals(32, written.get("uploads/large-thumbnail.jpg").getWidth());
+        verify(imageService).evictStoredImage(id);
+    }
+
+    @Test
+    void smallImageIsReadyWithoutVariants() throws IOException {
+        stubImage("uploads/small.png", 20, 20);
+        Long id = attachment("uploads/small.png", null);
+
+        imageVariantService.process(id);
+
+        Map<String, Object> row = row(id);
+        assertEquals(ImageAttachment.VARIANTS_READY, row.get("variant_status"));
+        assertNull(row.get("medium_path"));
+        assertNull(row.get("thumbnail_path"));
+        assertTrue(written.isEmpty());
+    }
+
+    @Test
+    void missingFileMarksFailed() {
+        when(imageStorage.open("uploads/gone.png")).thenReturn(Optional.empty());
+        Long id = attachment("uploads/gone.png", null);
+
+        imageVariantService.process(id);
+
+        assertEquals(ImageAttachment.VARIANTS_FAILED, row(id).get("variant_status"));
+    }
+
+    @Test
+    void sameBlobIsScaledOnceForAllImages() throws IOException {
+        String path = "blobs/ab/cd/abcd";
+        stubImage(path, 600, 300);
+        Long blobId = blob(path, null, null);
+        Long first = attachment(path, blobId);
+        Long second = attachment(path, blobId);
+
+        imageVariantService.process(first);
+        imageVariantService.process(second);
+
+        assertEquals(2, written.size());
+        assertEquals(ImageAttachment.VARIANTS_READY, row(first).get("variant_status"));
+        assertEquals(ImageAttachment.VARIANTS_READY, row(second).get("variant_status"));
+        assertEquals(path + "-medium.jpg", row(second).get("medium_path"));
+        assertEquals(ImageAttachment.VARIANTS_READY, jdbcTemplate.queryForObject(
+                "SELECT variant_status FROM image_blobs WHERE id = ?", String.class, blobId));
+        verify(imageStorage).open(path);
+    }
+
+    @Test
+    void blobClaimedByAnotherWorkerIsLeftToIt() {
+        String path = "blobs/ef/01/ef01";
+        Long blobId = blob(path, ImageAttachment.VARIANTS_PROCESSING, LocalDateTime.now());
+        Long id = attachment(path, blobId);
+
+        imageVariantService.process(id);
+
+        verify(imageStorage, never()).open(anyString());
+        assertEquals(ImageAttachment.VARIANTS_PENDING, row(id).get("variant_status"));
+        assertEquals(1L, imageVariantService.getStats().get("deduplicated"));
+    }
+
+    @Test
+    void staleClaimIsTakenOver() throws IOException {
+        String path = "blobs/23/45/2345";
+        stubImage(path, 600, 300);
+        Long blobId = blob(path, ImageAttachment.VARIANTS_PROCESSING, LocalDateTime.now().minusDays(1));
+        Long id = attachment(path, blobId);
+
+        imageVariantService.process(id);
+
+        assertEquals(ImageAttachment.VARIANTS_READY, row(id).get("variant_status"));
+        assertEquals(2, written.size());
+    }
+
+    private void stubImage(String path, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        when(imageStorage.open(path)).thenAnswer(invocation -> Optional.of(new ByteArrayResource(bytes.toByteArray())));
+    }
+
+    private Long attachment(String path, Long blobId) {
+        ImageAttachment attachment = new ImageAttachment();
+        attachment.setFileName(path.substring(path.lastIndexOf('/') + 1));
+        attachment.setContentType("image/png");
+        attachment.setPath(path);
+        attachment.setBlobId(blobId);
+        attachment.setVariantStatus(ImageAttachment.VARIANTS_PENDING);
+        attachment.setUploadedBy(owner);
+        Long id = entityManager.persistAndFlush(attachment).getId();
+        entityManager.clear();
+        return id;
+    }
+
+    private Long blob(String path, String variantStatus, LocalDateTime claimedAt) {
+        ImageBlob blob = new ImageBlob();
+        blob.setHash(path.substring(path.lastIndexOf('/') + 1));
+        blob.setPath(path);
+        blob.setSize(1L);
+        blob.setRefCount(1);
+        blob.setCreatedAt(LocalDateTime.now());
+        blob.setVariantStatus(variantStatus);
+        blob.setVariantClaimedAt(claimedAt);
+        return entityManager.persistAndFlush(blob).getId();
+    }
+
+    private Map<String, Object> row(Long id) {
+        return jdbcTemplate.queryForMap(
+                "SELECT variant_status, medium_path, thumbnail_path FROM image_attachments WHERE id = ?", id);
+    }
+}
@@ -0,0 +1,112 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.entity.Notification;
+import com.stackoverflow.entity.User;
+import com.stackoverflow.repository.NotificationRepository;
+import com.stackoverflow.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureJdbc;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Broadcast: 1 dòng chung thay cho N dòng riêng. số câu lệnh và số dòng không đổi theo số người nhận
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureJdbc
+@Import(NotificationService.class)
+class NotificationBroadcastTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 400})
+    void broadcastUsesConstantStatementsRegardlessOfRecipients(int users) {
+        for (int i = 0; i < users; i++) {
+            entityManager.persist(user("user" + i, i % 2 == 0 ? "USER" : "ROLE_USER"));
+            if (i % 200 == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // Cách cũ: 1 dòng cho mỗi người nhận
+        statistics.clear();
+        for (User recipient : userRepository.findAll()) {
+            notificationService.sendToUser(recipient, "fan-out", "SYSTEM");
+        }
+        entityManager.flush();
+        assertEquals(users, statistics.getEntityInsertCount());
+        assertEquals(users, notificationRepository.count());
+        notificationRepository.deleteAllInBatch();
+        entityManager.clear();
+
+        statistics.clear();
+        int recipients = notificationService.broadcastToRole("ROLE_USER", "global", "SYSTEM");
+        entityManager.flush();
+
+        assertEquals(users, recipients);
+        // Bất kể số người nhận: 1 INSERT, 1 dòng, thêm 2 COUNT theo role
+        assertEquals(1, statistics.getEntityInsertCount());
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(1, notificationRepository.count());
+    }
+
+    @Test
+    void markAsReadRejectsGlobalRowOfAnotherRole() {
+        User reader = entityManager.persist(user("reader", "USER"));
+        Notification adminOnly = new Notification();
+        adminOnly.setMessage("admin only");
+        adminOnly.setType("SYSTEM");
+        adminOnly.setIsRead(false);
+        adminOnly.setGlobal(true);
+        adminOnly.setTargetRole("ADMIN");
+        adminOnly.setCreatedAt(LocalDateTime.now());
+        Long id = notificationRepository.save(adminOnly).getId();
+
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> notificationService.markAsRead(id, reader));
+        assertEquals("Notification not found", error.getMessage());
+    }
+
+    private static User user(String username, String role) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("secret");
+        user.setRole(role);
+        return user;
+    }
+}
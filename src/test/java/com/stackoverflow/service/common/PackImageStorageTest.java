@@ -0,0 +1,231 @@
+package com.stackoverflow.service.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ghi/đọc, tombstone và compaction của pack, kể cả sau khi khởi động lại (đọc lại chỉ mục từ segment)
+ */
+class PackImageStorageTest {
+
+    private static final long SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path directory;
+
+    private FileImageStorage legacy;
+    private PackImageStorage storage;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        legacy = mock(FileImageStorage.class);
+        when(legacy.open(anyString())).thenReturn(Optional.empty());
+        when(legacy.stat(anyString())).thenReturn(Optional.empty());
+        when(legacy.delete(anyString())).thenReturn(true);
+        storage = start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.shutdown();
+    }
+
+    @Test
+    void storedImagesRoundTripAcrossRestart() throws IOException {
+        storage.put("blobs/aa/one", source("first image"));
+        storage.put("blobs/bb/two", source("second image"));
+        storage.put("blobs/aa/one", source("first image, rewritten"));
+
+        assertEquals("first image, rewritten", read("blobs/aa/one"));
+        assertEquals("second image", read("blobs/bb/two"));
+        assertEquals("second image".length(), storage.stat("blobs/bb/two").orElseThrow().getLength());
+
+        restart();
+        assertEquals("first image, rewritten", read("blobs/aa/one"));
+        assertEquals("second image", read("blobs/bb/two"));
+        assertEquals(2, storage.getStats().get("keys"));
+    }
+
+    @Test
+    void tornTailIsDroppedOnRestart() throws IOException {
+        storage.put("blobs/aa/one", source("complete"));
+        restartAfter(() -> {
+            Path segment = segments().get(0);
+            Files.write(segment, new byte[]{0x49, 0x4D, 0x47}, StandardOpenOption.APPEND);
+        });
+
+        assertEquals("complete", read("blobs/aa/one"));
+        storage.put("blobs/bb/two", source("after torn tail"));
+        restart();
+        assertEquals("complete", read("blobs/aa/one"));
+        assertEquals("after torn tail", read("blobs/bb/two"));
+    }
+
+    @Test
+    void deletedImageStaysDeletedAndRewriteSurvivesOldTombstone() throws IOException {
+        storage.put("blobs/aa/gone", source("old"));
+        assertTrue(storage.delete("blobs/aa/gone"));
+        assertFalse(storage.isPacked("blobs/aa/gone"));
+        assertTrue(storage.open("blobs/aa/gone").isEmpty());
+
+        restart();
+        assertFalse(storage.isPacked("blobs/aa/gone"));
+
+        // Tombstone cũ chỉ trỏ tới bản ghi PUT đầu tiên
+        storage.put("blobs/aa/gone", source("new"));
+        restart();
+        assertEquals("new", read("blobs/aa/gone"));
+    }
+
+    @Test
+    void compactionReclaimsDeadSegmentsAndKeepsLiveAndDeletedKeys() throws IOException {
+        byte[] payload = new byte[900];
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            String key = "blobs/k" + i;
+            payload[0] = (byte) i;
+            storage.put(key, source(payload));
+            keys.add(key);
+        }
+        List<Path> before = segments();
+        assertTrue(before.size() >= 3);
+        // Xóa phần lớn ảnh của các segment đầu; ảnh k0 còn sống phải được chép sang segment mới
+        for (int i = 1; i < 8; i++) {
+            assertTrue(storage.delete(keys.get(i)));
+        }
+
+        int compacted = storage.compact();
+
+        assertTrue(compacted > 0);
+        assertFalse(Files.exists(before.get(0)));
+        assertEquals(0, retiredMarkers());
+        assertEquals(0, readBytes("blobs/k0")[0]);
+        assertEquals(9, readBytes("blobs/k9")[0]);
+        for (int i = 1; i < 8; i++) {
+            assertFalse(storage.isPacked(keys.get(i)));
+        }
+
+        restart();
+        assertEquals(0, readBytes("blobs/k0")[0]);
+        for (int i = 8; i < 12; i++) {
+            assertEquals(i, readBytes(keys.get(i))[0]);
+        }
+        for (int i = 1; i < 8; i++) {
+            assertFalse(storage.isPacked(keys.get(i)), keys.get(i));
+        }
+    }
+
+    @Test
+    void retiredSegmentIsDeletedBeforeReplay() throws IOException {
+        storage.put("blobs/aa/live", source("live"));
+        restartAfter(() -> {
+            // Segment đã compact nhưng chưa xóa được (id lớn hơn để nếu được đọc lại thì PUT trong đó thắng)
+            storage.delete("blobs/aa/live");
+            Files.copy(segments().get(0), directory.resolve("segment-000099.pack"));
+            Files.write(directory.resolve("segment-000099.pack.retired"), new byte[0]);
+        });
+
+        assertFalse(storage.isPacked("blobs/aa/live"));
+        assertFalse(Files.exists(directory.resolve("segment-000099.pack")));
+        assertEquals(0, retiredMarkers());
+    }
+
+    @Test
+    void migratedImageKeepsItsLastModified() throws IOException {
+        long lastModified = 1_600_000_000_000L;
+        storage.put("uploads/old.png", source("legacy bytes"), lastModified);
+
+        assertEquals(lastModified, storage.stat("uploads/old.png").orElseThrow().getLastModified());
+        assertEquals(lastModified, storage.open("uploads/old.png").orElseThrow().lastModified());
+        restart();
+        assertEquals(lastModified, storage.stat("uploads/old.png").orElseThrow().getLastModified());
+    }
+
+    private PackImageStorage start() throws IOException {
+        PackImageStorage started = new PackImageStorage();
+        ReflectionTestUtils.setField(started, "packDir", directory.toString());
+        ReflectionTestUtils.setField(started, "segmentBytes", SEGMENT_BYTES);
+        ReflectionTestUtils.setField(started, "compactThreshold", 0.5);
+        ReflectionTestUtils.setField(started, "legacy", legacy);
+        started.init();
+        return started;
+    }
+
+    private void restart() throws IOException {
+        restartAfter(() -> { });
+    }
+
+    private void restartAfter(IoAction action) throws IOException {
+        action.run();
+        storage.shutdown();
+        storage = start();
+    }
+
+    private Path source(String content) throws IOException {
+        return source(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path source(byte[] content) throws IOException {
+        Path file = Files.createTempFile(directory, "source-", ".tmp");
+        Files.write(file, content);
+        return file;
+    }
+
+    private String read(String key) throws IOException {
+        return new String(readBytes(key), StandardCharsets.UTF_8);
+    }
+
+    private byte[] readBytes(String key) throws IOException {
+        Resource resource = storage.open(key).orElseThrow();
+        try (InputStream in = resource.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.pack")) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    private long retiredMarkers() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.retired")) {
+            long count = 0;
+            for (Path ignored : stream) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    @FunctionalInterface
+    private interface IoAction {
+
+        void run() throws IOException;
+    }
+}
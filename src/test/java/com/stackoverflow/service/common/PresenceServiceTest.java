@@ -0,0 +1,108 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PresenceServiceTest {
+
+    private static final Long USER_ID = 42L;
+    private static final Principal USER = () -> "alice";
+
+    private final InMemoryPresenceStore store = new InMemoryPresenceStore();
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    @Test
+    void userStaysOnlineWhileAnotherNodeHasASession() {
+        when(userRepository.findIdByUsername("alice")).thenReturn(Optional.of(USER_ID));
+        PresenceService nodeA = node("node-a");
+        PresenceService nodeB = node("node-b");
+
+        nodeA.onConnected(connected("a-1"));
+        nodeB.onConnected(connected("b-1"));
+
+        nodeA.onDisconnect(disconnected("a-1"));
+        assertTrue(nodeA.isOnline(USER_ID));
+        assertTrue(nodeB.isOnline(USER_ID));
+
+        nodeB.onDisconnect(disconnected("b-1"));
+        assertFalse(nodeA.isOnline(USER_ID));
+    }
+
+    @Test
+    void concurrentConnectAndDisconnectNeverLoseAnOpenSession() throws Exception {
+        when(userRepository.findIdByUsername("alice")).thenReturn(Optional.of(USER_ID));
+        PresenceService service = node("node-a");
+        // Một phiên giữ user online suốt quá trình
+        service.onConnected(connected("anchor"));
+
+        int threads = 8;
+        int rounds = 5_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String prefix = "t" + t + "-";
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    service.onConnected(connected(prefix + i));
+                    service.onDisconnect(disconnected(prefix + i));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertTrue(service.isOnline(USER_ID));
+        service.onDisconnect(disconnected("anchor"));
+        assertFalse(service.isOnline(USER_ID));
+    }
+
+    private PresenceService node(String nodeId) {
+        PresenceService service = new PresenceService();
+        ReflectionTestUtils.setField(service, "presenceStore", store);
+        ReflectionTestUtils.setField(service, "userRepository", userRepository);
+        ReflectionTestUtils.setField(service, "timeoutMs", 30_000L);
+        ReflectionTestUtils.setField(service, "wheelTickMs", 1_000L);
+        ReflectionTestUtils.setField(service, "nodeId", nodeId);
+        service.init();
+        return service;
+    }
+
+    private SessionConnectedEvent connected(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT_ACK);
+        accessor.setSessionId(sessionId);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        return new SessionConnectedEvent(this, message, USER);
+    }
+
+    private SessionDisconnectEvent disconnected(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        return new SessionDisconnectEvent(this, message, sessionId, CloseStatus.NORMAL);
+    }
+}
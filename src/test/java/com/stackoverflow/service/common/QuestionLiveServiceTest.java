@@ -0,0 +1,129 @@
+package com.stackoverflow.service.common;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QuestionLiveServiceTest {
+
+    private static final long QUESTION_ID = 7L;
+
+    private final QuestionLiveService service = new QuestionLiveService();
+
+    @Test
+    void concurrentSubscribeAndUnsubscribeKeepWatcherCount() throws Exception {
+        int threads = 8;
+        int rounds = 20_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String sessionId = "session-" + t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    service.onSubscribe(new SessionSubscribeEvent(this, frame(SimpMessageType.SUBSCRIBE, sessionId)));
+                    service.onUnsubscribe(new SessionUnsubscribeEvent(this, frame(SimpMessageType.UNSUBSCRIBE, sessionId)));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // Mọi subscription đã đóng: câu hỏi không còn ai xem
+        assertFalse(service.isWatched(QUESTION_ID));
+        assertEquals(0L, service.getStats().get("subscriptions"));
+
+        service.onSubscribe(new SessionSubscribeEvent(this, frame(SimpMessageType.SUBSCRIBE, "last")));
+        assertTrue(service.isWatched(QUESTION_ID));
+        assertEquals(1L, service.getStats().get("subscriptions"));
+    }
+
+    @Test
+    void tickPushesVoteAnswerAndCommentCounts() {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true).build();
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+            jdbcTemplate.execute("CREATE TABLE questions (id BIGINT PRIMARY KEY, votes INT, answer_count INT)");
+            jdbcTemplate.execute("CREATE TABLE answers (id BIGINT PRIMARY KEY, question_id BIGINT, votes INT)");
+            jdbcTemplate.execute("CREATE TABLE comments (id BIGINT PRIMARY KEY, question_id BIGINT, answer_id BIGINT, is_deleted BOOLEAN)");
+            jdbcTemplate.update("INSERT INTO questions VALUES (?, 4, 1)", QUESTION_ID);
+            jdbcTemplate.update("INSERT INTO answers VALUES (70, ?, 2)", QUESTION_ID);
+            jdbcTemplate.update("INSERT INTO comments VALUES (1, ?, NULL, FALSE)", QUESTION_ID);
+            jdbcTemplate.update("INSERT INTO comments VALUES (2, ?, NULL, FALSE)", QUESTION_ID);
+            // Bình luận đã xóa và bình luận của câu trả lời không tính
+            jdbcTemplate.update("INSERT INTO comments VALUES (3, ?, NULL, TRUE)", QUESTION_ID);
+            jdbcTemplate.update("INSERT INTO comments VALUES (4, ?, 70, FALSE)", QUESTION_ID);
+
+            SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+            VoteService voteService = mock(VoteService.class);
+            when(voteService.getQuestionVotes(anyLong(), anyInt())).thenAnswer(invocation -> invocation.getArgument(1));
+            when(voteService.getPendingAnswerVotes(any())).thenReturn(Map.of());
+            ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+            ReflectionTestUtils.setField(service, "messagingTemplate", messagingTemplate);
+            ReflectionTestUtils.setField(service, "voteService", voteService);
+
+            service.onSubscribe(new SessionSubscribeEvent(this, frame(SimpMessageType.SUBSCRIBE, "viewer")));
+            service.markChanged(QUESTION_ID);
+            service.tick();
+
+            @SuppressWarnings("unchecked")
+            ArgumentCaptor<Map<String, Object>> payload = ArgumentCaptor.forClass(Map.class);
+            verify(messagingTemplate).convertAndSend(eq(QuestionLiveService.TOPIC_PREFIX + QUESTION_ID), payload.capture());
+            assertEquals(4, payload.getValue().get("votes"));
+            assertEquals(1, payload.getValue().get("answerCount"));
+            assertEquals(2, payload.getValue().get("commentCount"));
+            assertEquals(Map.of(70L, 2L), payload.getValue().get("answerVotes"));
+
+            // Bình luận mới: nhịp sau đẩy số mới
+            jdbcTemplate.update("INSERT INTO comments VALUES (5, ?, NULL, FALSE)", QUESTION_ID);
+            service.markChanged(QUESTION_ID);
+            service.tick();
+            verify(messagingTemplate, times(2)).convertAndSend(eq(QuestionLiveService.TOPIC_PREFIX + QUESTION_ID), payload.capture());
+            assertEquals(3, payload.getValue().get("commentCount"));
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    private static Message<byte[]> frame(SimpMessageType type, String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination(QuestionLiveService.TOPIC_PREFIX + QUESTION_ID);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
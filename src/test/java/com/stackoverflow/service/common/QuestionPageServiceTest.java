@@ -0,0 +1,121 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.dto.QuestionPageView;
+import com.stackoverflow.entity.Answer;
+import com.stackoverflow.entity.Comment;
+import com.stackoverflow.entity.Question;
+import com.stackoverflow.entity.Tag;
+import com.stackoverflow.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Số câu lệnh SQL khi nạp trang câu hỏi phải cố định, không phụ thuộc số câu trả lời / bình luận
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+@Import(QuestionPageService.class)
+class QuestionPageServiceTest {
+
+    private static final long PAGE_STATEMENTS = 4;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private QuestionPageService questionPageService;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 5, 25})
+    void loadPageUsesFixedNumberOfStatements(int answerCount) {
+        Long questionId = createQuestion(answerCount, 3);
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        QuestionPageView page = questionPageService.loadPage(questionId).orElseThrow();
+        touchEverythingTheTemplateReads(page);
+
+        assertEquals(answerCount, page.getAnswers().size());
+        assertEquals(PAGE_STATEMENTS, statistics.getPrepareStatementCount());
+    }
+
+    private Long createQuestion(int answerCount, int commentsPerAnswer) {
+        User author = user("author" + answerCount);
+        Tag tag = new Tag();
+        tag.setName("java" + answerCount);
+        entityManager.persist(tag);
+
+        Question question = new Question();
+        question.setTitle("How do I count SQL statements?");
+        question.setBody("Body of the question");
+        question.setIsApproved(true);
+        question.setAuthor(author);
+        question.getTags().add(tag);
+        entityManager.persist(question);
+        entityManager.persist(comment(author, question, null));
+
+        for (int i = 0; i < answerCount; i++) {
+            User answerer = user("answerer" + answerCount + "x" + i);
+            Answer answer = new Answer();
+            answer.setBody("Answer " + i);
+            answer.setQuestion(question);
+            answer.setAuthor(answerer);
+            entityManager.persist(answer);
+            for (int c = 0; c < commentsPerAnswer; c++) {
+                entityManager.persist(comment(answerer, question, answer));
+            }
+        }
+        return question.getId();
+    }
+
+    private User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("secret123");
+        return entityManager.persist(user);
+    }
+
+    private static Comment comment(User author, Question question, Answer answer) {
+        Comment comment = new Comment();
+        comment.setBody("Comment");
+        comment.setAuthor(author);
+        comment.setQuestion(question);
+        comment.setAnswer(answer);
+        return comment;
+    }
+
+    private static void touchEverythingTheTemplateReads(QuestionPageView page) {
+        Question question = page.getQuestion();
+        question.getAuthor().getUsername();
+        question.getTags().forEach(Tag::getName);
+        page.getQuestionImages().size();
+        page.getQuestionComments().forEach(c -> c.getAuthor().getUsername());
+        for (Answer answer : page.getAnswers()) {
+            answer.getAuthor().getUsername();
+            answer.getImages().size();
+            List<Comment> comments = page.getAnswerComments().getOrDefault(answer.getId(), List.of());
+            comments.forEach(c -> c.getAuthor().getUsername());
+        }
+    }
+}
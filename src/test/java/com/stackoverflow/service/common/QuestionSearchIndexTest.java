@@ -0,0 +1,266 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.dto.SearchHits;
+import com.stackoverflow.event.QuestionLifecycleEvent;
+import com.stackoverflow.repository.QuestionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QuestionSearchIndexTest {
+
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @TempDir
+    Path dir;
+
+    /** Bảng questions giả: id -> (id, title, body, updatedAt, isApproved) */
+    private final Map<Long, Object[]> questions = new TreeMap<>();
+
+    private QuestionRepository questionRepository;
+
+    private QuestionSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        questionRepository = mock(QuestionRepository.class);
+        when(questionRepository.findSearchStamps()).thenAnswer(invocation -> {
+            List<Object[]> rows = new ArrayList<>();
+            questions.values().stream()
+                    .filter(row -> Boolean.TRUE.equals(row[4]))
+                    .forEach(row -> rows.add(new Object[]{row[0], row[3]}));
+            return rows;
+        });
+        when(questionRepository.findSearchDocuments(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            List<Object[]> rows = new ArrayList<>();
+            ids.stream().filter(questions::containsKey).forEach(id -> rows.add(questions.get(id)));
+            return rows;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    @Test
+    void titleMatchesOutrankBodyMatches() {
+        question(1L, "Cấu hình datasource", "Dùng transaction trong service");
+        question(2L, "Spring transaction rollback", "Ngoại lệ checked không rollback");
+        question(3L, "Thymeleaf layout", "Không liên quan");
+        index = start();
+
+        SearchHits hits = index.search("transaction", 0, 10).orElseThrow();
+
+        assertEquals(List.of(2L, 1L), hits.getQuestionIds());
+        assertEquals(2, hits.getTotalHits());
+    }
+
+    @Test
+    void rareTermsWeighMoreThanCommonOnes() {
+        question(1L, "Java stream", "java java");
+        question(2L, "Java optional", "java");
+        question(3L, "Java record", "java hibernate");
+        index = start();
+
+        // "hibernate" chỉ có ở câu 3 nên idf của nó vượt hẳn "java" (có ở mọi câu)
+        assertEquals(3L, index.search("java hibernate", 0, 10).orElseThrow().getQuestionIds().get(0));
+    }
+
+    @Test
+    void vietnameseAccentsAreFolded() {
+        question(1L, "Lập trình hướng đối tượng", "Kế thừa và đa hình");
+        question(2L, "Cơ sở dữ liệu", "Chỉ mục và truy vấn");
+        index = start();
+
+        assertEquals(List.of(1L), index.search("lap trinh", 0, 10).orElseThrow().getQuestionIds());
+        assertEquals(List.of(1L), index.search("LẬP TRÌNH", 0, 10).orElseThrow().getQuestionIds());
+        assertEquals(List.of(2L), index.search("du lieu", 0, 10).orElseThrow().getQuestionIds());
+    }
+
+    @Test
+    void upsertAndDeleteAreVisibleWithoutRebuild() {
+        question(1L, "Maven build", "Plugin surefire");
+        index = start();
+        assertEquals(0, index.search("gradle", 0, 10).orElseThrow().getTotalHits());
+
+        question(2L, "Gradle build", "Kotlin DSL");
+        index.onLifecycle(new QuestionLifecycleEvent(2L, QuestionLifecycleEvent.Type.CREATED));
+        assertEquals(List.of(2L), index.search("gradle", 0, 10).orElseThrow().getQuestionIds());
+
+        // Sửa tiêu đề: từ cũ biến mất, từ mới xuất hiện
+        question(1L, "Ant build", "Plugin surefire");
+        index.onLifecycle(new QuestionLifecycleEvent(1L, QuestionLifecycleEvent.Type.UPDATED));
+        assertEquals(0, index.search("maven", 0, 10).orElseThrow().getTotalHits());
+        assertEquals(List.of(1L), index.search("ant", 0, 10).orElseThrow().getQuestionIds());
+
+        questions.remove(2L);
+        index.onLifecycle(new QuestionLifecycleEvent(2L, QuestionLifecycleEvent.Type.DELETED));
+        assertEquals(0, index.search("gradle", 0, 10).orElseThrow().getTotalHits());
+        assertEquals(1, index.getStats().get("documents"));
+    }
+
+    @Test
+    void restartReloadsSegmentsWithoutReindexing() {
+        question(1L, "Docker compose", "Mạng giữa các container");
+        question(2L, "Kubernetes pod", "Khởi động lại container");
+        index = start();
+        question(3L, "Docker volume", "Dữ liệu bền vững");
+        index.onLifecycle(new QuestionLifecycleEvent(3L, QuestionLifecycleEvent.Type.CREATED));
+        index.close();
+
+        clearInvocations(questionRepository);
+        index = start();
+
+        verify(questionRepository, never()).findSearchDocuments(any());
+        assertEquals(0, index.getStats().get("reindexedOnStartup"));
+        assertEquals(Set.of(1L, 3L), Set.copyOf(index.search("docker", 0, 10).orElseThrow().getQuestionIds()));
+        assertEquals(2, index.search("container", 0, 10).orElseThrow().getTotalHits());
+    }
+
+    @Test
+    void compactionMergesSegmentsIntoOneSnapshot() throws IOException {
+        question(1L, "Redis cache", "TTL");
+        index = start();
+        for (long id = 2; id <= 5; id++) {
+            question(id, "Redis cluster " + id, "Sharding");
+            index.onLifecycle(new QuestionLifecycleEvent(id, QuestionLifecycleEvent.Type.CREATED));
+        }
+        questions.remove(5L);
+        index.onLifecycle(new QuestionLifecycleEvent(5L, QuestionLifecycleEvent.Type.DELETED));
+
+        index.compact();
+
+        assertEquals(2, index.getStats().get("segments"));
+        try (var files = Files.list(dir)) {
+            assertEquals(2, files.filter(file -> file.getFileName().toString().endsWith(".seg")).count());
+        }
+        index.close();
+        clearInvocations(questionRepository);
+        index = start();
+        verify(questionRepository, never()).findSearchDocuments(any());
+        assertEquals(4, index.search("redis", 0, 10).orElseThrow().getTotalHits());
+        assertEquals(3, index.search("sharding", 0, 10).orElseThrow().getTotalHits());
+    }
+
+    @Test
+    void tornUtfTailIsTruncatedAtLastCompleteRecord() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x51534958);
+        out.writeInt(1);
+        writeUpsert(out, 1L, "java");
+        int goodLength = bytes.size();
+        // Bản ghi thứ hai bị cắt giữa chuỗi UTF: độ dài khai báo 40 byte nhưng chỉ có 3 byte
+        out.writeByte(1);
+        out.writeLong(2L);
+        out.writeLong(0L);
+        out.writeInt(1);
+        out.writeInt(1);
+        out.writeInt(1);
+        out.writeShort(40);
+        out.write(new byte[]{(byte) 0xC3, 'a', 'b'});
+        out.flush();
+
+        Path segment = dir.resolve("segment-0000000001.seg");
+        Files.write(segment, bytes.toByteArray());
+
+        QuestionSearchIndex index = new QuestionSearchIndex();
+        ReflectionTestUtils.setField(index, "indexDir", dir.toString());
+        ReflectionTestUtils.invokeMethod(index, "readSegment", segment);
+
+        Map<?, ?> docs = (Map<?, ?>) ReflectionTestUtils.getField(index, "docs");
+        assertEquals(1, docs.size());
+        assertTrue(docs.containsKey(1L));
+        assertEquals(goodLength, Files.size(segment));
+    }
+
+    @Test
+    void malformedUtfIsTreatedAsTornTail() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x51534958);
+        out.writeInt(1);
+        writeUpsert(out, 1L, "spring");
+        int goodLength = bytes.size();
+        out.writeByte(1);
+        out.writeLong(2L);
+        out.writeLong(0L);
+        out.writeInt(1);
+        out.writeInt(1);
+        out.writeInt(1);
+        // Chuỗi UTF đủ độ dài nhưng byte tiếp nối sai (UTFDataFormatException)
+        out.writeShort(2);
+        out.write(new byte[]{(byte) 0xC3, 'x'});
+        out.writeInt(1);
+        out.writeInt(0);
+        out.flush();
+
+        Path segment = dir.resolve("segment-0000000001.seg");
+        Files.write(segment, bytes.toByteArray());
+
+        QuestionSearchIndex index = new QuestionSearchIndex();
+        ReflectionTestUtils.setField(index, "indexDir", dir.toString());
+        ReflectionTestUtils.invokeMethod(index, "readSegment", segment);
+
+        Map<?, ?> docs = (Map<?, ?>) ReflectionTestUtils.getField(index, "docs");
+        assertEquals(1, docs.size());
+        assertEquals(goodLength, Files.size(segment));
+    }
+
+    private void question(Long id, String title, String body) {
+        questions.put(id, new Object[]{id, title, body, UPDATED_AT, true});
+    }
+
+    private QuestionSearchIndex start() {
+        QuestionSearchIndex started = new QuestionSearchIndex();
+        ReflectionTestUtils.setField(started, "questionRepository", questionRepository);
+        ReflectionTestUtils.setField(started, "indexDir", dir.toString());
+        ReflectionTestUtils.setField(started, "titleBoost", 3.0);
+        ReflectionTestUtils.setField(started, "maxSegments", 8);
+        // Segment nhỏ để cập nhật tăng dần sinh ra nhiều segment
+        ReflectionTestUtils.setField(started, "segmentMaxRecords", 2);
+        started.load();
+        assertTrue(started.isReady());
+        return started;
+    }
+
+    private static void writeUpsert(DataOutputStream out, long id, String term) throws IOException {
+        out.writeByte(1);
+        out.writeLong(id);
+        out.writeLong(0L);
+        out.writeInt(1);
+        out.writeInt(0);
+        out.writeInt(1);
+        out.writeUTF(term);
+        out.writeInt(1);
+        out.writeInt(0);
+    }
+}
@@ -0,0 +1,192 @@
+package com.stackoverflow.service.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tải giả lập: hàng nghìn subscriber chậm của /topic/group.*, luồng gửi không bao giờ bị chặn
+ * và tồn đọng mỗi phiên bị giới hạn
+ */
+class StompOutboundGateLoadTest {
+
+    private static final int SESSIONS = 2000;
+    private static final int MESSAGES_PER_SESSION = 100;
+    private static final int QUEUE_LIMIT = 32;
+
+    private final CountDownLatch clientsSlow = new CountDownLatch(1);
+    private final AtomicInteger received = new AtomicInteger();
+    private final Map<String, WebSocketSession> established = new ConcurrentHashMap<>();
+    private StompOutboundGate gate;
+    private WebSocketHandler handler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        gate = new StompOutboundGate();
+        ReflectionTestUtils.setField(gate, "applicationContext", mock(ApplicationContext.class));
+        ReflectionTestUtils.setField(gate, "sessionQueueLimit", QUEUE_LIMIT);
+        ReflectionTestUtils.setField(gate, "maxAgeMs", 60_000L);
+        ReflectionTestUtils.setField(gate, "droppablePrefixes", List.of("/topic/"));
+        ReflectionTestUtils.setField(gate, "coalescePrefixes", List.of("/topic/question."));
+        ReflectionTestUtils.setField(gate, "writerThreads", 8);
+        ReflectionTestUtils.setField(gate, "sendBufferSizeLimit", 4096);
+        ReflectionTestUtils.setField(gate, "sendTimeLimitMs", 60_000L);
+        gate.init();
+
+        WebSocketHandler target = mock(WebSocketHandler.class);
+        doAnswer(invocation -> {
+            WebSocketSession session = invocation.getArgument(0);
+            established.put(session.getId(), session);
+            return null;
+        }).when(target).afterConnectionEstablished(any());
+        handler = gate.decorate(target);
+    }
+
+    @AfterEach
+    void tearDown() {
+        clientsSlow.countDown();
+        gate.shutdown();
+    }
+
+    @Test
+    void thousandsOfSlowGroupSubscribersStayBounded() throws Exception {
+        for (int i = 0; i < SESSIONS; i++) {
+            connect("s" + i);
+        }
+
+        ExecutorService publishers = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < 8; p++) {
+            int offset = p;
+            futures.add(publishers.submit(() -> {
+                for (int m = 0; m < MESSAGES_PER_SESSION; m++) {
+                    for (int i = offset; i < SESSIONS; i += 8) {
+                        send("s" + i, frame("/topic/group." + (i % 10), "m" + m));
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        publishers.shutdown();
+
+        Map<String, Object> stats = gate.getStats();
+        long total = (long) SESSIONS * MESSAGES_PER_SESSION;
+        assertEquals(total, stats.get("accepted"));
+        // Mỗi phiên giữ tối đa QUEUE_LIMIT frame chờ ghi dù client không đọc
+        assertTrue((Long) stats.get("maxSessionBacklog") <= QUEUE_LIMIT);
+        assertTrue((Long) stats.get("queuedMessages") <= (long) SESSIONS * QUEUE_LIMIT);
+
+        clientsSlow.countDown();
+        awaitDrained();
+        stats = gate.getStats();
+        assertEquals(total, (Long) stats.get("delivered") + (Long) stats.get("droppedOldest"));
+        assertEquals(received.get(), ((Long) stats.get("delivered")).intValue());
+    }
+
+    @Test
+    void supersededQuestionUpdatesAreCoalesced() throws Exception {
+        connect("q");
+        for (int i = 0; i < 10; i++) {
+            send("q", frame("/topic/question.5", "votes:" + i));
+        }
+        clientsSlow.countDown();
+        awaitDrained();
+
+        Map<String, Object> stats = gate.getStats();
+        // Frame đầu có thể đã được ghi; các frame còn lại chỉ giữ bản mới nhất
+        assertTrue((Long) stats.get("delivered") <= 2);
+        assertEquals(10L, (Long) stats.get("delivered") + (Long) stats.get("coalesced"));
+    }
+
+    @Test
+    void criticalFramesOverByteLimitCloseTheSession() throws Exception {
+        connect("c");
+        String body = "x".repeat(1024);
+        assertThrows(SessionLimitExceededException.class, () -> {
+            for (int i = 0; i < 10; i++) {
+                send("c", frame("/user/queue/notifications", body));
+            }
+        });
+        assertEquals(1L, gate.getStats().get("limitExceeded"));
+    }
+
+    @Test
+    void lateMessageAfterDisconnectIsIgnored() throws Exception {
+        WebSocketSession raw = connect("late");
+        WebSocketSession gated = established.get("late");
+        handler.afterConnectionClosed(raw, CloseStatus.NORMAL);
+
+        gated.sendMessage(frame("/topic/group.1", "late"));
+
+        Map<String, Object> stats = gate.getStats();
+        assertEquals(0, stats.get("sessions"));
+        assertEquals(1L, stats.get("droppedClosed"));
+    }
+
+    private WebSocketSession connect(String id) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            clientsSlow.await();
+            received.incrementAndGet();
+            return null;
+        }).when(session).sendMessage(any());
+        handler.afterConnectionEstablished(session);
+        return session;
+    }
+
+    private void send(String sessionId, TextMessage message) throws Exception {
+        established.get(sessionId).sendMessage(message);
+    }
+
+    /**
+     * Chờ tới khi mọi frame đã được ghi hoặc bị bỏ
+     */
+    private void awaitDrained() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            Map<String, Object> stats = gate.getStats();
+            long settled = (Long) stats.get("delivered") + (Long) stats.get("droppedOldest")
+                    + (Long) stats.get("coalesced") + (Long) stats.get("droppedStale");
+            if (settled == (Long) stats.get("accepted")) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private static TextMessage frame(String destination, String body) {
+        return new TextMessage("MESSAGE\ndestination:" + destination + "\nsubscription:sub-0\nmessage-id:1\n"
+                + "content-length:" + body.length() + "\n\n" + body + "\u0000");
+    }
+}
@@ -0,0 +1,60 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.dto.TagSuggestion;
+import com.stackoverflow.event.TagChangedEvent;
+import com.stackoverflow.repository.TagRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TagAutocompleteServiceTest {
+
+    private final TagRepository tagRepository = mock(TagRepository.class);
+    private TagAutocompleteService service;
+
+    @BeforeEach
+    void setUp() {
+        when(tagRepository.findAllNamesAndCounts()).thenReturn(List.of(
+                new Object[]{"java", 30},
+                new Object[]{"javascript", 50},
+                new Object[]{"spring-boot", 20}));
+        service = new TagAutocompleteService();
+        ReflectionTestUtils.setField(service, "tagRepository", tagRepository);
+        ReflectionTestUtils.setField(service, "maxSuggestions", 10);
+    }
+
+    @Test
+    void searchIsEmptyUntilLoaded() {
+        assertTrue(service.search("java").isEmpty());
+    }
+
+    @Test
+    void searchMatchesSubstringsByPopularity() {
+        service.reload();
+        assertEquals(List.of("javascript", "java"), service.search("ava").orElseThrow());
+        assertEquals(List.of("spring-boot"), service.search("BOOT").orElseThrow());
+    }
+
+    @Test
+    void renameIsAppliedWithoutReloading() {
+        service.reload();
+        service.onTagChanged(TagChangedEvent.updated("spring-boot", "springboot", 20));
+
+        assertEquals(List.of("springboot"), names(service.suggest("spring", 10)));
+        assertTrue(service.search("spring-boot").orElseThrow().isEmpty());
+        verify(tagRepository, times(1)).findAllNamesAndCounts();
+    }
+
+    private static List<String> names(List<TagSuggestion> suggestions) {
+        return suggestions.stream().map(TagSuggestion::getName).toList();
+    }
+}
@@ -0,0 +1,120 @@
+package com.stackoverflow.service.common;
+
+import com.stackoverflow.entity.Answer;
+import com.stackoverflow.entity.Question;
+import com.stackoverflow.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureJdbc;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bloom filter chỉ là gợi ý: vote không có trong filter của node này (ghi từ node khác) vẫn được nhận ra và bỏ được
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureJdbc
+@Import(VoteService.class)
+class VoteServiceTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private VoteService voteService;
+
+    private User voter;
+    private Question question;
+    private Answer answer;
+
+    @BeforeEach
+    void setUp() {
+        User author = user("author");
+        voter = user("voter");
+        question = new Question();
+        question.setTitle("Why is my filter stale?");
+        question.setBody("Body");
+        question.setAuthor(author);
+        question.setVotes(5);
+        entityManager.persist(question);
+        answer = new Answer();
+        answer.setBody("Answer");
+        answer.setQuestion(question);
+        answer.setAuthor(author);
+        answer.setVotes(3);
+        entityManager.persist(answer);
+        entityManager.flush();
+    }
+
+    @Test
+    void retractRemovesAVoteMissingFromTheFilter() {
+        // Filter của người dùng được nạp khi chưa có vote nào
+        assertFalse(voteService.hasVotedQuestion(voter.getId(), question.getId()));
+        voteOnAnotherNode("user_votes_questions", "question_id", question.getId());
+
+        assertEquals(4, voteService.retractQuestionVote(question.getId(), voter.getId()));
+        assertEquals(0, count("user_votes_questions"));
+    }
+
+    @Test
+    void voteMissingFromTheFilterIsStillReported() {
+        assertFalse(voteService.hasVotedQuestion(voter.getId(), question.getId()));
+        assertTrue(voteService.getVotedAnswerIds(voter.getId(), List.of(answer.getId())).isEmpty());
+        voteOnAnotherNode("user_votes_questions", "question_id", question.getId());
+        voteOnAnotherNode("user_votes_answers", "answer_id", answer.getId());
+
+        assertTrue(voteService.hasVotedQuestion(voter.getId(), question.getId()));
+        assertEquals(Set.of(answer.getId()), voteService.getVotedAnswerIds(voter.getId(), List.of(answer.getId())));
+        assertEquals(2L, voteService.getStats().get("bloomStaleMisses"));
+    }
+
+    @Test
+    void retractAnswerVoteMissingFromTheFilter() {
+        assertTrue(voteService.getVotedAnswerIds(voter.getId(), List.of(answer.getId())).isEmpty());
+        voteOnAnotherNode("user_votes_answers", "answer_id", answer.getId());
+
+        assertEquals(2, voteService.retractAnswerVote(answer.getId(), voter.getId()));
+        assertEquals(0, count("user_votes_answers"));
+        // Không có vote để bỏ: số vote giữ nguyên
+        assertEquals(3, voteService.retractAnswerVote(answer.getId(), voter.getId()));
+    }
+
+    @Test
+    void duplicateVoteIsIgnored() {
+        assertEquals(6, voteService.upvoteQuestion(question.getId(), voter.getId()));
+        assertEquals(5, voteService.upvoteQuestion(question.getId(), voter.getId()));
+        assertEquals(1, count("user_votes_questions"));
+    }
+
+    private void voteOnAnotherNode(String table, String column, Long id) {
+        jdbcTemplate.update("INSERT INTO " + table + " (user_id, " + column + ") VALUES (?, ?)", voter.getId(), id);
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+
+    private User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("secret123");
+        return entityManager.persist(user);
+    }
+}